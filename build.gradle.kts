@@ -10,6 +10,9 @@ plugins {
 	// auto update dependencies with 'useLatestVersions' task
 	id("se.patrikerdes.use-latest-versions") version "0.2.18"
 	id("com.github.ben-manes.versions") version "0.52.0"
+
+	// benchmarks in src/jmh/java, run with 'jmh' task
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 
@@ -41,6 +44,7 @@ dependencies {
 
 
 
+
 	implementation("ch.qos.logback:logback-classic:1.5.18")
 
     	// MCP Server dependencies
@@ -90,8 +94,7 @@ version = findProperty("version")?.toString() ?: System.getenv("VERSION") ?: "de
 
 tasks {
     withType(Test::class) {
-//        useJUnitPlatform()
-		enabled=false
+        useJUnitPlatform()
     }
 
     val shadowJar = withType(ShadowJar::class) {
@@ -109,6 +112,35 @@ tasks {
     }
 }
 
+// load test harness in src/loadtest/java, shares SyntheticApp and dependencies with tests
+val loadtest: SourceSet by sourceSets.creating {
+	compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+	runtimeClasspath += output + compileClasspath
+}
+configurations[loadtest.implementationConfigurationName].extendsFrom(configurations.testImplementation.get())
+configurations[loadtest.runtimeOnlyConfigurationName].extendsFrom(configurations.testRuntimeOnly.get())
+
+// e.g. gradlew loadTest -PloadTestArgs="--classes 50000 --agents 50 --duration 60 --max-p99-ms 200"
+tasks.register<JavaExec>("loadTest") {
+	group = "verification"
+	description = "Replays a synthetic agent request mix and reports throughput, latency and heap"
+	classpath = loadtest.runtimeClasspath
+	mainClass.set("jadx.plugins.mcp.LoadTest")
+	args = (findProperty("loadTestArgs")?.toString() ?: "").split(" ").filter { it.isNotEmpty() }
+	maxHeapSize = findProperty("loadTestHeap")?.toString() ?: "4g"
+}
+
+jmh {
+	// benchmarks use SyntheticApp and jadx-smali-input from the test classpath
+	includeTests.set(true)
+	warmupIterations.set(2)
+	iterations.set(5)
+	fork.set(1)
+	resultFormat.set("JSON")
+	// e.g. gradlew jmh -PjmhInclude=Lookup
+	findProperty("jmhInclude")?.toString()?.let { includes.set(listOf(it)) }
+}
+
 tasks.named("build") {
 	dependsOn("shadowJar")
 }
@@ -0,0 +1,132 @@
+#!/usr/bin/env python3
+# -*- coding: utf-8 -*-
+"""
+JADX MCP 客户端延迟基准测试
+
+对比两种请求方式访问本地运行的 JADX MCP 插件的延迟：
+  - per-request: 每次请求新建 httpx.AsyncClient（旧实现）
+  - pooled:      共享长连接池客户端（新实现）
+
+用法:
+    python bench_client.py --jadx-port 8656 --requests 200 --concurrency 8 \
+        --endpoint get-class-info --param class_name=com.example.MainActivity
+"""
+
+# /// script
+# requires-python = ">=3.10"
+# dependencies = [ "httpx", ]
+# ///
+
+import argparse
+import asyncio
+import statistics
+import time
+from typing import Dict, List
+
+import httpx
+
+
+def parse_args():
+    parser = argparse.ArgumentParser("JADX MCP client latency benchmark")
+    parser.add_argument("--jadx-port", default=8656, type=int)
+    parser.add_argument("--endpoint", default="health", help="Endpoint to call. (default:health)")
+    parser.add_argument(
+        "--param",
+        action="append",
+        default=[],
+        help="Query parameter as key=value, can be repeated.",
+    )
+    parser.add_argument("--requests", default=200, type=int, help="Requests per mode. (default:200)")
+    parser.add_argument("--concurrency", default=1, type=int, help="Concurrent requests. (default:1)")
+    parser.add_argument("--warmup", default=10, type=int, help="Warmup requests per mode. (default:10)")
+    return parser.parse_args()
+
+
+def percentile(sorted_values: List[float], p: float) -> float:
+    if not sorted_values:
+        return 0.0
+    k = min(len(sorted_values) - 1, max(0, int(round(p / 100.0 * (len(sorted_values) - 1)))))
+    return sorted_values[k]
+
+
+async def run_per_request(base: str, endpoint: str, params: Dict[str, str]) -> float:
+    start = time.perf_counter()
+    async with httpx.AsyncClient(timeout=60.0) as client:
+        resp = await client.get(f"{base}/{endpoint}", params=params)
+        resp.raise_for_status()
+    return time.perf_counter() - start
+
+
+async def run_pooled(client: httpx.AsyncClient, endpoint: str, params: Dict[str, str]) -> float:
+    start = time.perf_counter()
+    resp = await client.get(f"/{endpoint}", params=params)
+    resp.raise_for_status()
+    return time.perf_counter() - start
+
+
+async def bench(name: str, call, total: int, concurrency: int, warmup: int) -> Dict[str, float]:
+    for _ in range(warmup):
+        await call()
+
+    semaphore = asyncio.Semaphore(concurrency)
+    latencies: List[float] = []
+
+    async def one():
+        async with semaphore:
+            latencies.append(await call())
+
+    wall_start = time.perf_counter()
+    await asyncio.gather(*(one() for _ in range(total)))
+    wall = time.perf_counter() - wall_start
+
+    latencies.sort()
+    return {
+        "mode": name,
+        "requests": total,
+        "throughput_rps": total / wall if wall > 0 else 0.0,
+        "mean_ms": statistics.mean(latencies) * 1000,
+        "p50_ms": percentile(latencies, 50) * 1000,
+        "p95_ms": percentile(latencies, 95) * 1000,
+        "p99_ms": percentile(latencies, 99) * 1000,
+        "max_ms": latencies[-1] * 1000,
+    }
+
+
+async def main():
+    args = parse_args()
+    base = f"http://127.0.0.1:{args.jadx_port}"
+    params = dict(p.split("=", 1) for p in args.param)
+
+    results = [
+        await bench(
+            "per-request",
+            lambda: run_per_request(base, args.endpoint, params),
+            args.requests,
+            args.concurrency,
+            args.warmup,
+        )
+    ]
+
+    limits = httpx.Limits(max_connections=max(args.concurrency, 1), max_keepalive_connections=max(args.concurrency, 1))
+    async with httpx.AsyncClient(base_url=base, timeout=60.0, limits=limits) as client:
+        results.append(
+            await bench(
+                "pooled",
+                lambda: run_pooled(client, args.endpoint, params),
+                args.requests,
+                args.concurrency,
+                args.warmup,
+            )
+        )
+
+    print(f"endpoint=/{args.endpoint} params={params} concurrency={args.concurrency}")
+    print(f"{'mode':<12} {'rps':>9} {'mean(ms)':>9} {'p50(ms)':>9} {'p95(ms)':>9} {'p99(ms)':>9} {'max(ms)':>9}")
+    for r in results:
+        print(
+            f"{r['mode']:<12} {r['throughput_rps']:>9.1f} {r['mean_ms']:>9.2f} {r['p50_ms']:>9.2f} "
+            f"{r['p95_ms']:>9.2f} {r['p99_ms']:>9.2f} {r['max_ms']:>9.2f}"
+        )
+
+
+if __name__ == "__main__":
+    asyncio.run(main())
@@ -14,7 +14,9 @@ import asyncio
 import httpx
 import json
 import logging
+import os
 import sys
+from contextlib import asynccontextmanager
 from typing import Any, Dict, List, Optional, Union
 
 from fastmcp import FastMCP
@@ -23,6 +25,13 @@ from fastmcp.server.middleware.logging import StructuredLoggingMiddleware
 # 默认端口
 DEFAULT_JADX_POR = 8656
 DEFAULT_THRESHOLD = 200
+# JADX 仍在加载项目（503）或超过限流（429）时，请求最多等待这么久
+LOAD_WAIT_SECONDS = 120
+# 把客户端超时作为截止时间告诉 JADX，超时后服务端中止仍在进行的搜索/反编译，返回 504
+REQUEST_TIMEOUT_HEADER = "X-Request-Timeout-Ms"
+# JADX 按客户端限流和公平排队，多个代理共用一个 JADX 时各自使用不同的 id
+CLIENT_ID_HEADER = "X-Client-Id"
+CLIENT_WEIGHT_HEADER = "X-Client-Weight"
 
 # 配置日志
 # Set up logging configuration
@@ -37,8 +46,17 @@ console_handler.setFormatter(
 )
 logger.addHandler(console_handler)
 
+@asynccontextmanager
+async def http_client_lifespan(server):
+    """服务器退出时关闭共享连接池"""
+    try:
+        yield {}
+    finally:
+        await close_http_client()
+
+
 # 初始化
-mcp = FastMCP(name="jadx-mcp-server")
+mcp = FastMCP(name="jadx-mcp-server", lifespan=http_client_lifespan)
 mcp.add_middleware(StructuredLoggingMiddleware(include_payloads=True))
 
 # 解析参数
@@ -61,6 +79,48 @@ parser.add_argument(
     default=DEFAULT_JADX_POR,
     type=int,
 )
+parser.add_argument(
+    "--max-connections",
+    help="Max pooled HTTP connections to the JADX plugin. (default:16)",
+    default=16,
+    type=int,
+)
+parser.add_argument(
+    "--max-concurrency",
+    help="Max concurrent in-flight requests to the JADX plugin. (default:8)",
+    default=8,
+    type=int,
+)
+parser.add_argument(
+    "--keepalive-expiry",
+    help="Seconds an idle pooled connection is kept alive. (default:30)",
+    default=30.0,
+    type=float,
+)
+parser.add_argument(
+    "--timeout",
+    help="Request timeout in seconds. (default:60)",
+    default=60.0,
+    type=float,
+)
+parser.add_argument(
+    "--client-id",
+    help="Client id sent to JADX for per-client rate limiting and fair queuing. (default: mcp-<pid>)",
+    default=None,
+    type=str,
+)
+parser.add_argument(
+    "--client-weight",
+    help="Fair-queue weight (1-100) for heavy requests; batch agents that need throughput can use a larger weight. (default:1)",
+    default=1,
+    type=int,
+)
+parser.add_argument(
+    "--project",
+    help="Default project id when the JADX server hosts several projects (HeadlessMain --project).",
+    default=None,
+    type=str,
+)
 parser.add_argument(
     "--cache-threshold",
     help=f"Specify cache threshol. (default:{DEFAULT_THRESHOLD})",
@@ -91,24 +151,74 @@ def health_ping() -> Union[str, dict]:
 
 
 # 通用HTTP请求函数
-async def get_from_jadx(endpoint: str, params: dict = None) -> Union[str, dict]:
-    """通用的JADX API请求方法"""
-    if params is None:
-        params = {}
-
+# 长连接客户端：所有工具调用共享同一个连接池，避免每次请求重新建立TCP连接
+_http_client: Optional[httpx.AsyncClient] = None
+_request_semaphore: Optional[asyncio.Semaphore] = None
+# 多项目服务器上的当前项目，附加到每个请求的 project 参数
+_current_project: Optional[str] = args.project
+
+
+def get_http_client() -> httpx.AsyncClient:
+    """获取（必要时创建）共享的连接池客户端"""
+    global _http_client, _request_semaphore
+    if _http_client is None or _http_client.is_closed:
+        _http_client = httpx.AsyncClient(
+            base_url=JADX_HTTP_BASE,
+            timeout=args.timeout,
+            limits=httpx.Limits(
+                max_connections=args.max_connections,
+                max_keepalive_connections=args.max_connections,
+                keepalive_expiry=args.keepalive_expiry,
+            ),
+        )
+    if _request_semaphore is None:
+        _request_semaphore = asyncio.Semaphore(args.max_concurrency)
+    return _http_client
+
+
+async def close_http_client():
+    """关闭共享客户端"""
+    global _http_client
+    if _http_client is not None and not _http_client.is_closed:
+        await _http_client.aclose()
+    _http_client = None
+
+
+async def request_jadx(
+    method: str, endpoint: str, params: dict = None, data: dict = None, json_body: Any = None
+) -> Union[str, dict]:
+    """通过共享连接池发送请求，并发数受 --max-concurrency 限制"""
+    client = get_http_client()
+    if _current_project and not (params and "project" in params):
+        params = dict(params or {})
+        params["project"] = _current_project
     try:
-        async with httpx.AsyncClient(timeout=60.0) as client:
-            resp = await client.get(f"{JADX_HTTP_BASE}/{endpoint}", params=params)
-            resp.raise_for_status()
-            response = resp.text
-
-            if isinstance(response, str):
-                try:
-                    return json.loads(response)
-                except Exception:
-                    return {"response": response}
-
-            return response
+        loop = asyncio.get_running_loop()
+        deadline = loop.time() + LOAD_WAIT_SECONDS
+        while True:
+            async with _request_semaphore:
+                headers = {
+                    REQUEST_TIMEOUT_HEADER: str(int(args.timeout * 1000)),
+                    CLIENT_ID_HEADER: args.client_id or f"mcp-{os.getpid()}",
+                    CLIENT_WEIGHT_HEADER: str(args.client_weight),
+                }
+                resp = await client.request(
+                    method, f"/{endpoint}", params=params, data=data, json=json_body, headers=headers
+                )
+            if resp.status_code not in (429, 503) or loop.time() >= deadline:
+                break
+            # 项目加载中、服务器繁忙或超过限流，按 Retry-After 等待后重试
+            await asyncio.sleep(float(resp.headers.get("Retry-After", "1")))
+        resp.raise_for_status()
+        response = resp.text
+
+        if isinstance(response, str):
+            try:
+                return json.loads(response)
+            except Exception:
+                return {"response": response}
+
+        return response
 
     except httpx.HTTPStatusError as e:
         error_message = f"HTTP error {e.response.status_code}: {e.response.text}"
@@ -124,37 +234,58 @@ async def get_from_jadx(endpoint: str, params: dict = None) -> Union[str, dict]:
         return {"error": f"{error_message}."}
 
 
+async def get_from_jadx(endpoint: str, params: dict = None) -> Union[str, dict]:
+    """通用的JADX API请求方法"""
+    if params is None:
+        params = {}
+    return await request_jadx("GET", endpoint, params=params)
+
+
 async def post_to_jadx(endpoint: str, data: dict = None) -> Union[str, dict]:
     """POST请求到JADX API"""
     if data is None:
         data = {}
+    return await request_jadx("POST", endpoint, data=data)
 
-    try:
-        async with httpx.AsyncClient(timeout=60.0) as client:
-            resp = await client.post(f"{JADX_HTTP_BASE}/{endpoint}", data=data)
-            resp.raise_for_status()
-            response = resp.text
 
-            if isinstance(response, str):
-                try:
-                    return json.loads(response)
-                except Exception:
-                    return {"response": response}
+async def post_json_to_jadx(endpoint: str, body: Any) -> Union[str, dict]:
+    """以JSON请求体POST到JADX API"""
+    return await request_jadx("POST", endpoint, json_body=body)
 
-            return response
 
-    except httpx.HTTPStatusError as e:
-        error_message = f"HTTP error {e.response.status_code}: {e.response.text}"
-        logger.error(error_message)
-        return {"error": f"{error_message}."}
-    except httpx.RequestError as e:
-        error_message = f"Request failed: {str(e)}"
-        logger.error(error_message)
-        return {"error": f"{error_message}."}
-    except Exception as e:
-        error_message = f"Unexpected error: {str(e)}"
-        logger.error(error_message)
-        return {"error": f"{error_message}."}
+async def get_all_pages_from_jadx(endpoint: str, params: dict = None, page_size: int = 1000) -> Union[str, dict]:
+    """并行获取长文本的所有分页并拼接
+
+    先请求第一页拿到总页数，其余页通过共享连接池并发请求（受 --max-concurrency 限制），
+    最后按页码顺序拼接为完整内容。
+    """
+    params = dict(params or {})
+    params["page_size"] = page_size
+    params["page_index"] = 1
+    first = await get_from_jadx(endpoint, params)
+    if not isinstance(first, dict) or "error" in first or "pagination" not in first:
+        return first
+
+    pagination = first["pagination"]
+    total_pages = pagination.get("total_pages", 1)
+
+    async def fetch_page(index: int):
+        page_params = dict(params)
+        page_params["page_index"] = index
+        return await get_from_jadx(endpoint, page_params)
+
+    rest = await asyncio.gather(*(fetch_page(i) for i in range(2, total_pages + 1)))
+    parts = [first] + list(rest)
+    for part in parts:
+        if not isinstance(part, dict) or "error" in part:
+            return part
+
+    content = "".join("".join(part.get("data", [])) for part in parts)
+    result = {k: v for k, v in first.items() if k not in ("data", "pagination")}
+    result["content"] = content
+    result["total_chars"] = pagination.get("total", len(content))
+    result["pages_fetched"] = len(parts)
+    return result
 
 
 # 工具函数
@@ -247,7 +378,7 @@ async def get_current_class() -> dict:
 
 
 @mcp.tool()
-async def get_all_classes(page_index: int = 1, page_size: int = 100) -> dict:
+async def get_all_classes(page_index: int = 1, page_size: int = 100, exclude_libraries: bool = False) -> dict:
     """获取项目中所有类的完整列表，支持智能缓存和分页
 
     获取当前反编译项目中所有类的列表，包括内部类、匿名类等。
@@ -261,6 +392,7 @@ async def get_all_classes(page_index: int = 1, page_size: int = 100) -> dict:
     Args:
     page_index (int): 页码，从1开始。默认为1
     page_size (int): 每页大小。默认为100
+    exclude_libraries (bool): 排除 get_libraries 识别出的第三方库类，只列应用自身代码
 
     Returns:
         dict: 包含类列表和缓存信息的字典
@@ -270,6 +402,8 @@ async def get_all_classes(page_index: int = 1, page_size: int = 100) -> dict:
         params["page_index"] = page_index
     if page_size:
         params["page_size"] = page_size
+    if exclude_libraries:
+        params["exclude_libraries"] = "true"
 
     result = await get_from_jadx("get-all-classes", params)
 
@@ -305,6 +439,7 @@ async def get_class_source(
     class_name: str = None,
     page_index: int = 1,
     page_size: int = 1000,
+    all_pages: bool = False,
 ) -> dict:
     """获取指定类的完整Java源代码，支持精确查找和智能缓存
 
@@ -316,8 +451,11 @@ async def get_class_source(
         class_name (str, optional): (中等优先级)普通类名，如 "com.example.MainActivity"
         page_index (int): 页码，从1开始。默认为1
         page_size (int): 每页大小。默认为1000
+        all_pages (bool): 为True时并行获取全部分页并拼接为完整内容(content)，忽略page_index。默认为False
     """
     params = build_class_params(class_raw_name, class_name)
+    if all_pages:
+        return await get_all_pages_from_jadx("get-class-source", params, page_size or 1000)
     if page_index:
         params["page_index"] = page_index
     if page_size:
@@ -354,6 +492,7 @@ async def get_smali_of_class(
     class_name: str = None,
     page_index: int = 1,
     page_size: int = 1000,
+    all_pages: bool = False,
 ) -> dict:
     """获取指定类的Smali字节码代码
 
@@ -364,11 +503,14 @@ async def get_smali_of_class(
         同 get_class_source 的参数优先级
         page_index (int): 页码，从1开始。默认为1
         page_size (int): 每页大小。默认为1000
+        all_pages (bool): 为True时并行获取全部分页并拼接为完整内容(content)，忽略page_index。默认为False
 
     Returns:
         dict: 包含Smali代码的字典
     """
     params = build_class_params(class_raw_name, class_name)
+    if all_pages:
+        return await get_all_pages_from_jadx("get-smali-of-class", params, page_size or 1000)
     if page_index:
         params["page_index"] = page_index
     if page_size:
@@ -377,6 +519,39 @@ async def get_smali_of_class(
     return result
 
 
+
+@mcp.tool()
+async def get_smali_of_method(
+    class_raw_name: str = None,
+    class_name: str = None,
+    method_original_name: str = None,
+    method_name: str = None,
+    method_signature: str = None,
+    page_index: int = 1,
+    page_size: int = 1000,
+) -> dict:
+    """获取指定方法的Smali字节码代码
+
+    只返回单个方法的 .method ... .end method 部分，避免为查看一个方法拉取整个类的Smali。
+
+    Args:
+        同 get_method_source 的参数说明
+        page_index (int): 页码，从1开始。默认为1
+        page_size (int): 每页大小。默认为1000
+
+    Returns:
+        dict: 包含方法Smali代码的字典
+    """
+    params = build_method_params(
+        class_raw_name, class_name, method_original_name, method_name, method_signature
+    )
+    if page_index:
+        params["page_index"] = page_index
+    if page_size:
+        params["page_size"] = page_size
+    result = await get_from_jadx("get-smali-of-method", params)
+    return result
+
 # 方法相关工具
 @mcp.tool()
 async def get_method_source(
@@ -483,6 +658,123 @@ async def get_method_info(
     return result
 
 
+@mcp.tool()
+async def find_similar_methods(
+    class_raw_name: str = None,
+    class_name: str = None,
+    method_original_name: str = None,
+    method_name: str = None,
+    method_signature: str = None,
+    threshold: float = 0.7,
+    limit: int = 20,
+    exclude_libraries: bool = False,
+) -> dict:
+    """查找与指定方法指令结构相似的方法（克隆、混淆改名后的同一段库代码）
+
+    基于归一化指令 n-gram 的 MinHash/LSH 索引，与寄存器分配和应用内名称无关；第一次调用时构建索引。
+    找到的方法可直接沿用已知方法的重命名或注释。
+
+    Args:
+        方法参数同 get_method_source
+        threshold: 估计的相似度下限 (0, 1]，1.0 为结构完全相同
+        limit: 最多返回的方法数
+        exclude_libraries: 排除第三方库中的方法
+
+    Returns:
+        dict: {"results": [{"className", "classRawName", "name", "originalName", "signature", "similarity"}], "count", "indexedMethods"}
+    """
+    params = build_method_params(
+        class_raw_name,
+        class_name,
+        method_original_name,
+        method_name,
+        method_signature,
+    )
+    params["threshold"] = threshold
+    params["limit"] = limit
+    if exclude_libraries:
+        params["exclude_libraries"] = "true"
+    return await get_from_jadx("find-similar-methods", params)
+
+
+@mcp.tool()
+async def get_config() -> dict:
+    """获取 JADX MCP 服务器的运行时配置（端口、分页、线程数、缓存容量、索引开关）
+
+    Returns:
+        dict: {"config": {...}, "config_file"}
+    """
+    return await get_from_jadx("config")
+
+
+@mcp.tool()
+async def update_config(settings: dict, save: bool = False) -> dict:
+    """修改运行时配置，立即生效，不重启服务器也不清空缓存
+
+    Args:
+        settings: 要修改的配置项，如 {"page_size": 200, "code_index_cache": 1024, "similarity_search": false}；
+            可用配置项见 get_config。修改 port 后服务器迁移到新端口，需要用新端口重新启动本桥接
+        save: 同时写入配置文件，下次启动仍然生效
+
+    Returns:
+        dict: 新配置及 changed（发生变化的配置项）
+    """
+    body = dict(settings)
+    if save:
+        body["save"] = True
+    return await post_json_to_jadx("config", body)
+
+
+@mcp.tool()
+async def get_changes(since: int = 0, limit: int = 500) -> dict:
+    """获取序号 since 之后的变更事件（重命名、注释、缓存失效、后台加载进度），用于只重新获取发生变化的内容
+
+    其他代理或 GUI 中的用户改名、加注释后，根据事件中的 class / affected_classes 重新获取对应类即可，
+    不需要轮询 health 或重新拉取全部类。保存返回的 last_seq，下次作为 since 传入。
+    reset 为 true 表示 since 之后的部分事件已被覆盖，需要重新全量获取。
+    也可以用 SSE 客户端连接 /events（支持 Last-Event-ID 续传）接收实时推送。
+
+    Args:
+        since: 上次获取到的 last_seq，首次传 0
+        limit: 最多返回的事件数
+
+    Returns:
+        dict: {"last_seq", "oldest_seq", "reset", "has_more", "events": [{"seq", "type", "time", ...}]}
+    """
+    return await get_from_jadx("get-changes", {"since": since, "limit": limit})
+
+
+@mcp.tool()
+async def get_libraries() -> dict:
+    """获取识别出的第三方库（okhttp、gson、firebase 等）及其包和类数量
+
+    加载后在后台按包名、标志类和方法结构指纹识别，未完成时 status 为 detecting。
+    get_all_classes、search_method、find_similar_methods 可用 exclude_libraries 跳过这些库，只看应用自身代码；
+    识别未完成时这些请求返回错误（library_filter 为 pending），稍后重试即可。
+
+    Returns:
+        dict: {"status", "libraries": [{"id", "name", "packages", "classes", "confidence", "matched_by"}], "app_classes", "library_classes"}
+    """
+    return await get_from_jadx("get-libraries")
+
+
+@mcp.tool()
+async def get_library_fingerprints(package: str, id: str = None) -> dict:
+    """为指定包生成签名库条目（含方法结构哈希），用于识别被混淆或重定位的同一个库
+
+    在一个包名未混淆的应用中调用，把返回的条目加入 ~/.jadx-mcp/libraries.json 的 "libraries" 数组，
+    之后加载的应用即使包名被改也能按方法结构识别出该库。
+
+    Args:
+        package: 库的包名，如 okhttp3
+        id: 条目 id，默认为包名
+    """
+    params = {"package": package}
+    if id:
+        params["id"] = id
+    return await get_from_jadx("get-library-fingerprints", params)
+
+
 @mcp.tool()
 async def search_method(
     method_name: str = None,
@@ -492,6 +784,7 @@ async def search_method(
     method_signature: str = None,
     page_index: int = 1,
     lines_per_page: int = 200,
+    exclude_libraries: bool = False,
 ) -> dict:
     """搜索包含指定关键词的方法，支持全项目搜索或限定类搜索
 
@@ -514,6 +807,7 @@ async def search_method(
         method_signature (str, optional): 方法的方法签名，用于精确搜索
         page_index (int): 页码，从1开始。默认为1
         lines_per_page (int): 每页大小。默认为200
+        exclude_libraries (bool): 排除第三方库中的方法
     Returns:
         dict: 搜索结果，包含匹配的方法列表及其详细信息
     """
@@ -525,6 +819,8 @@ async def search_method(
         params["page_index"] = page_index
     if lines_per_page:
         params["lines_per_page"] = lines_per_page
+    if exclude_libraries:
+        params["exclude_libraries"] = "true"
     return await get_from_jadx("search-method", params)
 
 
@@ -830,6 +1126,7 @@ async def get_method_instructions(
     method_signature: str = None,
     page_index: int = 1,
     page_size: int = 1000,
+    format: str = "text",
 ) -> dict:
     """获取方法的字节码指令信息
 
@@ -840,6 +1137,10 @@ async def get_method_instructions(
         参数同 get_method_source
         page_index (int): 页码，从1开始。默认为1
         page_size (int): 每页大小。默认为1000
+        format (str): "text" 返回指令文本列表；"columnar" 返回列式结构
+            (offsets/opcodes/resultRegs/argStarts/argRegs/argLiterals/refs/targets/switchStarts/switchTargets，
+            opcodes和refs为opcodeTable/refTable的下标，-1表示无；第i条指令的switch目标为
+            switchTargets[switchStarts[i]:switchStarts[i+1]])。默认为"text"
 
     Returns:
         dict: 包含方法指令信息的列表
@@ -851,46 +1152,109 @@ async def get_method_instructions(
         params["page_index"] = page_index
     if page_size:
         params["page_size"] = page_size
+    if format:
+        params["format"] = format
     result = await get_from_jadx("get-method-instructions", params)
     return result
 
 
-# @mcp.tool()
-# async def get_method_code_refs_by_line(
-#     class_raw_name: str = None,
-#     class_name: str = None,
-#     method_original_name: str = None,
-#     method_name: str = None,
-#     method_signature: str = None,
-#     line: int = 0,
-#     page_index: int = 1,
-#     page_size: int = 1000,
-# ) -> dict:
-#     """获取方法中指定行号的代码引用信息
-#
-#     获取方法源码中指定行号位置的代码引用信息，包括该行引用的其他类、方法、字段等。
-#     适合用于代码依赖分析和调用关系分析。
-#
-#     Args:
-#         参数同 get_method_source
-#         line (int): 要分析的行号，从1开始计数，默认为0表示整个方法
-#         page_index (int): 页码，从1开始。默认为1
-#         page_size (int): 每页大小。默认为1000
-#
-#     Returns:
-#         dict: 包含指定行代码引用信息的字典
-#     """
-#     params = build_method_params(
-#         class_raw_name, class_name, method_original_name, method_name, method_signature
-#     )
-#     params["line"] = line
-#     if page_index:
-#         params["page_index"] = page_index
-#     if page_size:
-#         params["page_size"] = page_size
-#     result = await get_from_jadx("get-method-code-refs-by-line", params)
-#
-#     return result
+@mcp.tool()
+async def get_method_xrefs(
+    class_raw_name: str = None,
+    class_name: str = None,
+    method_original_name: str = None,
+    method_name: str = None,
+    method_signature: str = None,
+    page_index: int = None,
+    page_size: int = None,
+) -> dict:
+    """获取调用指定方法的所有方法(交叉引用)
+
+    优先从持久化索引读取(source="index")，索引未就绪时实时查询(source="live")。
+
+    Args:
+        参数同 get_method_source
+        page_index (int): 页码，从1开始，可选
+        page_size (int): 每页大小，可选
+
+    Returns:
+        dict: callers 列表，每项包含 className(原始类名)、signature、name
+    """
+    params = build_method_params(
+        class_raw_name, class_name, method_original_name, method_name, method_signature
+    )
+    if page_index:
+        params["page_index"] = page_index
+    if page_size:
+        params["page_size"] = page_size
+    result = await get_from_jadx("get-method-xrefs", params)
+    return result
+
+
+@mcp.tool()
+async def get_method_cfg(
+    class_raw_name: str = None,
+    class_name: str = None,
+    method_original_name: str = None,
+    method_name: str = None,
+    method_signature: str = None,
+) -> dict:
+    """获取方法的控制流图(CFG)
+
+    返回基本块及其边、直接支配者和循环，用于控制流分析，无需反复拉取指令列表。
+
+    Args:
+        参数同 get_method_source
+
+    Returns:
+        dict: blockInsnStarts/blockStartOffsets/blockEndOffsets 描述基本块；
+            块b的后继为 succs[succStarts[b]:succStarts[b+1]]，前驱同理(preds/predStarts)；
+            try区间内的块有到异常处理器入口块的边，handlerBlocks列出这些入口块；
+            idom为直接支配块(入口为-1，不可达为-2)；rpo为逆后序；
+            loops为自然循环列表(header/latches/blocks)
+    """
+    params = build_method_params(
+        class_raw_name, class_name, method_original_name, method_name, method_signature
+    )
+    result = await get_from_jadx("get-method-cfg", params)
+    return result
+
+
+@mcp.tool()
+async def get_method_code_refs_by_line(
+    class_raw_name: str = None,
+    class_name: str = None,
+    method_original_name: str = None,
+    method_name: str = None,
+    method_signature: str = None,
+    line: int = 0,
+    page_index: int = 1,
+    page_size: int = 1000,
+) -> dict:
+    """获取方法中指定行号的代码引用信息
+
+    获取方法源码中指定行号位置的代码引用信息，包括该行引用的其他类、方法、字段、局部变量，
+    以及该行对应的字节码指令偏移(instruction_offsets)。适合用于代码依赖分析和变量重命名/注释定位。
+
+    Args:
+        参数同 get_method_source
+        line (int): 要分析的行号，从1开始计数，默认为0表示整个方法
+        page_index (int): 页码，从1开始。默认为1
+        page_size (int): 每页大小。默认为1000
+
+    Returns:
+        dict: 包含指定行代码引用信息的字典
+    """
+    params = build_method_params(
+        class_raw_name, class_name, method_original_name, method_name, method_signature
+    )
+    params["line"] = line
+    if page_index:
+        params["page_index"] = page_index
+    if page_size:
+        params["page_size"] = page_size
+    result = await get_from_jadx("get-method-code-refs-by-line", params)
+    return result
 
 
 # 重命名功能
@@ -1123,7 +1487,75 @@ async def add_field_comment(
 
 
 
+# 批量查询
+@mcp.tool()
+async def batch_query(requests: List[Dict[str, Any]]) -> dict:
+    """一次往返执行多个查询，适合需要几十个类/方法信息的场景
+
+    子请求在JADX端并发执行，共享类和方法的查找结果，按提交顺序返回，每个子请求单独返回错误。
+    支持的path: /get-class-info, /get-methods, /get-fields, /get-method-info, /get-method-parameters
+
+    Args:
+        requests (list): 子请求列表，每项形如
+            {"path": "/get-method-info", "params": {"class_raw_name": "a.b.c", "method_original_name": "a"}}
+            params 的参数名与对应单个工具发送的参数名一致（如 class_name、class_raw_name、method_name、
+            method_original_name、method_signature）
+
+    Returns:
+        dict: {"results": [{"index", "path", "status", "result" 或 "error"}], "count", "error_count"}
+    """
+    return await post_json_to_jadx("batch", {"requests": requests})
+
+
 # 系统功能
+@mcp.tool()
+async def list_projects() -> dict:
+    """列出多项目服务器上托管的项目及其加载状态
+
+    Returns:
+        dict: {"projects": [{"id", "inputs", "loaded", "classes", "idle_ms", ...}], "loaded", "memory"}
+    """
+    return await get_from_jadx("projects")
+
+
+@mcp.tool()
+async def diff_projects(base: str, target: str, package: str = None, limit: int = 200) -> dict:
+    """对比多项目服务器上两个项目（如同一应用的两个版本）的类、方法和字段
+
+    方法体按结构哈希比较（与寄存器分配和本应用内的类名/成员名无关），只在一侧出现但内容相同的类和成员报告为 renamed。
+
+    Args:
+        base: 旧版本项目id
+        target: 新版本项目id
+        package: 只对比原始包名以此开头的类，例如 com.example.
+        limit: 每个列表最多返回的条目数，summary 计数不受限制
+
+    Returns:
+        dict: {"summary", "classes": {"added", "removed", "renamed", "changed"}, "truncated", "elapsed_ms"}
+    """
+    params = {"base": base, "target": target, "limit": limit}
+    if package:
+        params["package"] = package
+    return await get_from_jadx("diff", params)
+
+
+@mcp.tool()
+async def select_project(project_id: str) -> dict:
+    """切换后续请求使用的项目（多项目服务器），项目未加载时会先加载
+
+    Args:
+        project_id: 项目id，见 list_projects
+
+    Returns:
+        dict: 加载结果，失败时包含 error
+    """
+    global _current_project
+    result = await request_jadx("POST", "load-project", params={"project": project_id})
+    if isinstance(result, dict) and "error" not in result:
+        _current_project = project_id
+    return result
+
+
 @mcp.tool()
 async def health() -> dict:
     """检查JADX MCP服务器连接状态和健康状况
@@ -0,0 +1,82 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JavaClass;
+import jadx.api.JavaField;
+import jadx.api.JavaMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类/方法/字段查找：findClassByName 使用的线性查找、批量请求使用的 NodeResolver 索引查找，
+ * 以及 findMethod/findField，查找目标取类列表末尾的类（线性查找的最坏情况）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LookupBenchmark {
+
+	@Param({ "1000", "5000" })
+	public int classCount;
+
+	private SyntheticApp app;
+	private List<JavaClass> classes;
+	private NodeResolver resolver;
+	private JavaClass target;
+	private String targetRawName;
+	private String targetFullName;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		app = SyntheticApp.load(classCount, 20, 10);
+		classes = app.getClasses();
+		resolver = new NodeResolver(classes);
+		target = classes.get(classes.size() - 1);
+		targetRawName = target.getClassNode().getRawName();
+		targetFullName = target.getFullName();
+		// 预先加载方法和字段列表，只测量查找本身
+		target.getMethods();
+		target.getFields();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		app.close();
+	}
+
+	@Benchmark
+	public JavaClass findClassByRawName() {
+		return NodeResolver.findClassIn(classes, null, targetRawName);
+	}
+
+	@Benchmark
+	public JavaClass findClassByFullName() {
+		return NodeResolver.findClassIn(classes, targetFullName, null);
+	}
+
+	@Benchmark
+	public JavaClass findClassIndexed() {
+		return resolver.findClass(null, targetRawName);
+	}
+
+	@Benchmark
+	public JavaMethod findMethod() {
+		return NodeResolver.findMethodIn(target, null, "m19", "m19(I)I");
+	}
+
+	@Benchmark
+	public JavaField findField() {
+		return NodeResolver.findFieldIn(target, null, "f9");
+	}
+}
@@ -0,0 +1,73 @@
+package jadx.plugins.mcp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PaginationHelper 的列表分页和长字符串分页
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaginationBenchmark {
+
+	@Param({ "1000", "50000" })
+	public int size;
+
+	private final PaginationHelper paginationHelper = new PaginationHelper();
+	private List<String> items;
+	private String content;
+
+	@Setup
+	public void setup() {
+		items = new ArrayList<>(size);
+		StringBuilder sb = new StringBuilder(size * 40);
+		for (int i = 0; i < size; i++) {
+			String name = SyntheticApp.rawName(i);
+			items.add(name);
+			sb.append("    public static int m").append(i).append("(int i) { return ").append(name).append(".f0; }\n");
+		}
+		content = sb.toString();
+	}
+
+	@Benchmark
+	public Map<String, Object> listMiddlePage() {
+		return paginationHelper.paginateList(items, size / 200, 100, Object::toString);
+	}
+
+	@Benchmark
+	public Map<String, Object> listByOffset() {
+		return paginationHelper.paginateByOffset(items, size / 2, 100, Object::toString);
+	}
+
+	@Benchmark
+	public Map<String, Object> listAuto() {
+		return paginationHelper.handlePagination(items, "class", "classes");
+	}
+
+	@Benchmark
+	public Map<String, Object> stringMiddlePage() {
+		return paginationHelper.paginateLongString(content, 3, 1000);
+	}
+
+	@Benchmark
+	public Map<String, Object> stringByOffset() {
+		return paginationHelper.paginateStringByOffset(content, content.length() / 2, 1000);
+	}
+
+	@Benchmark
+	public Map<String, Object> stringAuto() {
+		return paginationHelper.autoPaginateLongString(content);
+	}
+}
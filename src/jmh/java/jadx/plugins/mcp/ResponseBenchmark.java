@@ -0,0 +1,89 @@
+package jadx.plugins.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jadx.api.JavaClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 响应构建：NodeInfoBuilder 生成的 Map，以及 Javalin 使用的 Jackson 序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseBenchmark {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final PaginationHelper paginationHelper = new PaginationHelper();
+
+	private SyntheticApp app;
+	private JavaClass target;
+	private Map<String, Object> classListPage;
+	private Map<String, Object> classInfo;
+	private List<Map<String, Object>> methods;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		app = SyntheticApp.load(2000, 50, 20);
+		List<JavaClass> classes = app.getClasses();
+		target = classes.get(classes.size() / 2);
+		classListPage = paginationHelper.paginateList(
+				classes.stream().map(JavaClass::getFullName).collect(Collectors.toList()), 1, 1000, Object::toString);
+		classInfo = NodeInfoBuilder.classInfo(target);
+		methods = NodeInfoBuilder.methodsOfClass(target);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		app.close();
+	}
+
+	@Benchmark
+	public Map<String, Object> buildClassInfo() {
+		return NodeInfoBuilder.classInfo(target);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> buildMethodsOfClass() {
+		return NodeInfoBuilder.methodsOfClass(target);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> buildFieldsOfClass() {
+		return NodeInfoBuilder.fieldsOfClass(target);
+	}
+
+	@Benchmark
+	public Map<String, Object> buildMethodInfo() {
+		return NodeInfoBuilder.methodInfo(target.getMethods().get(0));
+	}
+
+	@Benchmark
+	public String serializeClassListPage() throws JsonProcessingException {
+		return mapper.writeValueAsString(classListPage);
+	}
+
+	@Benchmark
+	public String serializeClassInfo() throws JsonProcessingException {
+		return mapper.writeValueAsString(classInfo);
+	}
+
+	@Benchmark
+	public byte[] serializeMethodsOfClass() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(methods);
+	}
+}
@@ -0,0 +1,481 @@
+package jadx.plugins.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jadx.api.JavaClass;
+import jadx.api.JavaMethod;
+import jadx.core.dex.nodes.ClassNode;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 负载测试 - 生成合成输入，模拟多个 agent 并发回放典型请求组合，输出吞吐量、各操作延迟分位数和堆使用情况；
+ * 设置 --max-p99-ms / --min-rps 时不达标以退出码 2 结束，可作为性能回归门禁
+ * <p>
+ * 目标：--url 指定的运行中服务器；未指定时在本进程内以无界面模式启动服务器并通过 HTTP 访问；
+ * --direct 时不经过 HTTP，直接调用各路由使用的查找、构建和序列化代码
+ */
+public final class LoadTest {
+
+	enum Op {
+		// 权重大致对应 agent 会话中的调用比例
+		CLASS_INFO(25), METHODS(20), METHOD_SOURCE(25), METHOD_INFO(15), FIELDS(10), ALL_CLASSES(5);
+
+		final int weight;
+
+		Op(int weight) {
+			this.weight = weight;
+		}
+	}
+
+	interface Target extends AutoCloseable {
+		/**
+		 * @return 响应字节数
+		 */
+		long call(Op op, int classIndex, int methodIndex) throws Exception;
+
+		@Override
+		default void close() throws Exception {
+		}
+	}
+
+	private static final class Options {
+		int classes = 5000;
+		int methods = 10;
+		int fields = 5;
+		int agents = 50;
+		int durationSeconds = 30;
+		int warmupSeconds = 5;
+		double hotRatio = 0.2;
+		String url;
+		boolean direct;
+		int port = 18656;
+		String report;
+		double maxP99Millis = -1;
+		double minRps = -1;
+		long seed = 42;
+	}
+
+	private static final class OpStats {
+		final LatencyHistogram latencyMicros = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+	}
+
+	private LoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = parseArgs(args);
+		System.out.printf("Generating %d classes x %d methods ...%n", options.classes, options.methods);
+		long loadStart = System.nanoTime();
+		try (SyntheticApp app = SyntheticApp.load(options.classes, options.methods, options.fields);
+			 Target target = createTarget(app, options)) {
+			long loadMillis = (System.nanoTime() - loadStart) / 1_000_000;
+			System.out.printf("Loaded in %d ms, target: %s%n", loadMillis, targetName(options));
+
+			if (options.warmupSeconds > 0) {
+				run(target, options, options.warmupSeconds, new EnumMap<>(Op.class), null);
+			}
+			Map<Op, OpStats> stats = new EnumMap<>(Op.class);
+			HeapSampler heap = new HeapSampler();
+			long elapsedNanos = run(target, options, options.durationSeconds, stats, heap);
+
+			Map<String, Object> report = buildReport(options, loadMillis, elapsedNanos, stats, heap);
+			ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+			System.out.println(mapper.writeValueAsString(report));
+			if (options.report != null) {
+				mapper.writeValue(new File(options.report), report);
+			}
+			List<String> failures = checkGate(options, report);
+			if (!failures.isEmpty()) {
+				failures.forEach(f -> System.err.println("GATE FAILED: " + f));
+				System.exit(2);
+			}
+		}
+	}
+
+	private static Target createTarget(SyntheticApp app, Options options) {
+		if (options.url != null) {
+			return new HttpTarget(options.url);
+		}
+		if (options.direct) {
+			return new InProcessTarget(app);
+		}
+		JadxMcpPlugin server = new JadxMcpPlugin();
+		server.startHeadless(new HeadlessBackend(app.getDecompiler()), options.port, 500, 100, false);
+		HttpTarget target = new HttpTarget("http://127.0.0.1:" + options.port);
+		return new Target() {
+			@Override
+			public long call(Op op, int classIndex, int methodIndex) throws Exception {
+				return target.call(op, classIndex, methodIndex);
+			}
+
+			@Override
+			public void close() {
+				server.shutdown();
+			}
+		};
+	}
+
+	private static String targetName(Options options) {
+		if (options.url != null) {
+			return options.url;
+		}
+		return options.direct ? "direct" : "headless-server";
+	}
+
+	/**
+	 * 每个 agent 一个线程，按权重随机选操作，类按热点分布选取（hotRatio 比例的类承担80%请求）
+	 */
+	private static long run(Target target, Options options, int seconds, Map<Op, OpStats> stats, HeapSampler heap)
+			throws InterruptedException {
+		for (Op op : Op.values()) {
+			stats.computeIfAbsent(op, k -> new OpStats());
+		}
+		int totalWeight = 0;
+		for (Op op : Op.values()) {
+			totalWeight += op.weight;
+		}
+		int hotClasses = Math.max(1, (int) (options.classes * options.hotRatio));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService pool = Executors.newFixedThreadPool(options.agents);
+		CountDownLatch done = new CountDownLatch(options.agents);
+		long start = System.nanoTime();
+		if (heap != null) {
+			heap.start();
+		}
+		for (int a = 0; a < options.agents; a++) {
+			Random random = new Random(options.seed + a);
+			int weightSum = totalWeight;
+			pool.execute(() -> {
+				try {
+					while (System.nanoTime() < deadline) {
+						Op op = pickOp(random.nextInt(weightSum));
+						int classIndex = random.nextInt(10) < 8
+								? random.nextInt(hotClasses)
+								: random.nextInt(options.classes);
+						int methodIndex = random.nextInt(options.methods);
+						OpStats s = stats.get(op);
+						long t0 = System.nanoTime();
+						try {
+							s.bytes.add(target.call(op, classIndex, methodIndex));
+						} catch (Exception e) {
+							s.errors.increment();
+						}
+						s.latencyMicros.record((System.nanoTime() - t0) / 1000);
+					}
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		pool.shutdown();
+		if (heap != null) {
+			heap.stop();
+		}
+		return elapsed;
+	}
+
+	private static Op pickOp(int roll) {
+		for (Op op : Op.values()) {
+			roll -= op.weight;
+			if (roll < 0) {
+				return op;
+			}
+		}
+		return Op.CLASS_INFO;
+	}
+
+	private static Map<String, Object> buildReport(Options options, long loadMillis, long elapsedNanos,
+												   Map<Op, OpStats> stats, HeapSampler heap) {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("target", targetName(options));
+		report.put("classes", options.classes);
+		report.put("methods_per_class", options.methods);
+		report.put("agents", options.agents);
+		report.put("duration_seconds", elapsedNanos / 1e9);
+		report.put("load_ms", loadMillis);
+
+		LatencyHistogram all = new LatencyHistogram();
+		long requests = 0;
+		long errors = 0;
+		Map<String, Object> ops = new LinkedHashMap<>();
+		for (Map.Entry<Op, OpStats> entry : stats.entrySet()) {
+			OpStats s = entry.getValue();
+			long count = s.latencyMicros.getCount();
+			requests += count;
+			errors += s.errors.sum();
+			ops.put(entry.getKey().name().toLowerCase(), latencySummary(s.latencyMicros, s.errors.sum(), s.bytes.sum()));
+		}
+		for (OpStats s : stats.values()) {
+			all.add(s.latencyMicros);
+		}
+		report.put("requests", requests);
+		report.put("errors", errors);
+		report.put("throughput_rps", requests / (elapsedNanos / 1e9));
+		report.put("latency", latencySummary(all, errors, -1));
+		report.put("operations", ops);
+		report.put("heap", heap.toMap());
+		return report;
+	}
+
+	private static Map<String, Object> latencySummary(LatencyHistogram h, long errors, long bytes) {
+		Map<String, Object> m = new LinkedHashMap<>();
+		m.put("count", h.getCount());
+		m.put("errors", errors);
+		if (bytes >= 0) {
+			m.put("bytes", bytes);
+		}
+		m.put("mean_ms", h.getCount() == 0 ? 0 : h.getSum() / 1000.0 / h.getCount());
+		m.put("p50_ms", h.getValueAtQuantile(0.5) / 1000.0);
+		m.put("p90_ms", h.getValueAtQuantile(0.9) / 1000.0);
+		m.put("p99_ms", h.getValueAtQuantile(0.99) / 1000.0);
+		m.put("p999_ms", h.getValueAtQuantile(0.999) / 1000.0);
+		m.put("max_ms", h.getMax() / 1000.0);
+		return m;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> checkGate(Options options, Map<String, Object> report) {
+		List<String> failures = new ArrayList<>();
+		double p99 = (double) ((Map<String, Object>) report.get("latency")).get("p99_ms");
+		double rps = (double) report.get("throughput_rps");
+		if (options.maxP99Millis > 0 && p99 > options.maxP99Millis) {
+			failures.add(String.format("p99 %.2f ms > %.2f ms", p99, options.maxP99Millis));
+		}
+		if (options.minRps > 0 && rps < options.minRps) {
+			failures.add(String.format("throughput %.1f rps < %.1f rps", rps, options.minRps));
+		}
+		if ((long) report.get("errors") > 0) {
+			failures.add("errors: " + report.get("errors"));
+		}
+		return failures;
+	}
+
+	private static Options parseArgs(String[] args) {
+		Options o = new Options();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--direct")) {
+				o.direct = true;
+				continue;
+			}
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			switch (arg) {
+				case "--classes": o.classes = Integer.parseInt(value); break;
+				case "--methods": o.methods = Integer.parseInt(value); break;
+				case "--fields": o.fields = Integer.parseInt(value); break;
+				case "--agents": o.agents = Integer.parseInt(value); break;
+				case "--duration": o.durationSeconds = Integer.parseInt(value); break;
+				case "--warmup": o.warmupSeconds = Integer.parseInt(value); break;
+				case "--hot-ratio": o.hotRatio = Double.parseDouble(value); break;
+				case "--url": o.url = value; break;
+				case "--port": o.port = Integer.parseInt(value); break;
+				case "--report": o.report = value; break;
+				case "--max-p99-ms": o.maxP99Millis = Double.parseDouble(value); break;
+				case "--min-rps": o.minRps = Double.parseDouble(value); break;
+				case "--seed": o.seed = Long.parseLong(value); break;
+				default: throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * 进程内目标：与路由处理函数使用相同的查找、Map构建、分页和 Jackson 序列化代码，不经过 HTTP
+	 */
+	private static final class InProcessTarget implements Target {
+		private final List<JavaClass> classes;
+		private final PaginationHelper paginationHelper = new PaginationHelper();
+		private final ObjectMapper mapper = new ObjectMapper();
+		private final Map<ClassNode, ClassCodeIndex> codeIndexes = new ConcurrentHashMap<>();
+
+		InProcessTarget(SyntheticApp app) {
+			this.classes = app.getClasses();
+		}
+
+		@Override
+		public long call(Op op, int classIndex, int methodIndex) throws Exception {
+			Object response;
+			if (op == Op.ALL_CLASSES) {
+				List<String> names = classes.stream().map(JavaClass::getFullName).collect(Collectors.toList());
+				response = paginationHelper.paginateList(names, 1 + classIndex % 10, 1000, Object::toString);
+				return mapper.writeValueAsBytes(response).length;
+			}
+			JavaClass cls = NodeResolver.findClassIn(classes, null, SyntheticApp.rawName(classIndex));
+			switch (op) {
+				case CLASS_INFO:
+					response = NodeInfoBuilder.classInfo(cls);
+					break;
+				case METHODS:
+					response = NodeInfoBuilder.methodsOfClass(cls);
+					break;
+				case FIELDS:
+					response = NodeInfoBuilder.fieldsOfClass(cls);
+					break;
+				case METHOD_INFO:
+					response = NodeInfoBuilder.methodInfo(findMethod(cls, methodIndex));
+					break;
+				case METHOD_SOURCE: {
+					JavaMethod method = findMethod(cls, methodIndex);
+					ClassNode topClass = cls.getClassNode().getTopParentClass();
+					ClassCodeIndex index = codeIndexes.computeIfAbsent(topClass, c -> ClassCodeIndex.build(c.getCode()));
+					response = paginationHelper.autoPaginateLongString(index.getMethodCode(method.getMethodNode()));
+					break;
+				}
+				default:
+					throw new IllegalStateException("Unexpected op: " + op);
+			}
+			return mapper.writeValueAsBytes(response).length;
+		}
+
+		private static JavaMethod findMethod(JavaClass cls, int methodIndex) {
+			return NodeResolver.findMethodIn(cls, null, "m" + methodIndex, null);
+		}
+	}
+
+	/**
+	 * HTTP目标：对运行中的服务器发送与 Python 桥接相同的请求
+	 */
+	private static final class HttpTarget implements Target {
+		private final String baseUrl;
+		private final HttpClient client = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+
+		HttpTarget(String baseUrl) {
+			this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		}
+
+		@Override
+		public long call(Op op, int classIndex, int methodIndex) throws Exception {
+			String cls = "class_raw_name=" + URLEncoder.encode(SyntheticApp.rawName(classIndex), StandardCharsets.UTF_8);
+			String method = cls + "&original_name=m" + methodIndex;
+			String path;
+			switch (op) {
+				case CLASS_INFO: path = "/get-class-info?" + cls; break;
+				case METHODS: path = "/get-methods?" + cls; break;
+				case FIELDS: path = "/get-fields?" + cls; break;
+				case METHOD_INFO: path = "/get-method-info?" + method; break;
+				case METHOD_SOURCE: path = "/get-method-source?" + method; break;
+				case ALL_CLASSES: path = "/get-all-classes?page_size=1000&page_index=" + (1 + classIndex % 10); break;
+				default: throw new IllegalStateException("Unexpected op: " + op);
+			}
+			HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+					.timeout(Duration.ofSeconds(60))
+					.GET()
+					.build();
+			HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+			if (response.statusCode() >= 400) {
+				throw new IllegalStateException("HTTP " + response.statusCode() + " for " + path);
+			}
+			return response.body().length;
+		}
+	}
+
+	/**
+	 * 运行期间每200ms采样一次堆使用量，结束后记录GC次数/耗时和GC后的老年代占用
+	 */
+	private static final class HeapSampler {
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		private final AtomicLong peakUsed = new AtomicLong();
+		private long gcCountStart;
+		private long gcTimeStart;
+		private long gcCount;
+		private long gcTime;
+		private Thread thread;
+		private volatile boolean running;
+
+		void start() {
+			gcCountStart = totalGcCount();
+			gcTimeStart = totalGcTime();
+			running = true;
+			thread = new Thread(() -> {
+				while (running) {
+					peakUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+					try {
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}, "load-test-heap");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		void stop() throws InterruptedException {
+			running = false;
+			thread.join();
+			gcCount = totalGcCount() - gcCountStart;
+			gcTime = totalGcTime() - gcTimeStart;
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> m = new LinkedHashMap<>();
+			MemoryUsage heap = memory.getHeapMemoryUsage();
+			m.put("max_mb", heap.getMax() / (1024 * 1024));
+			m.put("peak_used_mb", peakUsed.get() / (1024 * 1024));
+			long afterGc = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				MemoryUsage usage = pool.getCollectionUsage();
+				if (pool.getType() == MemoryType.HEAP && usage != null) {
+					afterGc += usage.getUsed();
+				}
+			}
+			m.put("used_after_last_gc_mb", afterGc / (1024 * 1024));
+			m.put("gc_count", gcCount);
+			m.put("gc_time_ms", gcTime);
+			return m;
+		}
+
+		private static long totalGcCount() {
+			long total = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				total += Math.max(0, gc.getCollectionCount());
+			}
+			return total;
+		}
+
+		private static long totalGcTime() {
+			long total = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				total += Math.max(0, gc.getCollectionTime());
+			}
+			return total;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package jadx.plugins.mcp;
+
+import jadx.plugins.mcp.StructuralIndex.ClassEntry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 两个版本的结构对比 - 类、方法、字段按原始名称对齐，方法体按结构哈希比较；
+ * 只在一侧出现的类/方法再按指纹配对，配上的报告为“改名但内容相同”（renamed），其余为新增/删除
+ */
+public final class ApkDiff {
+
+	private ApkDiff() {
+	}
+
+	private static final class Result {
+		final int limit;
+		final Map<String, Integer> summary = new LinkedHashMap<>();
+		final Map<String, List<Object>> classes = new LinkedHashMap<>();
+		boolean truncated;
+
+		Result(int limit) {
+			this.limit = limit;
+			for (String key : new String[] {"added", "removed", "renamed", "changed"}) {
+				classes.put(key, new ArrayList<>());
+			}
+		}
+
+		void count(String key, int n) {
+			summary.merge(key, n, Integer::sum);
+		}
+
+		void add(String kind, Object value) {
+			List<Object> list = classes.get(kind);
+			if (list.size() < limit) {
+				list.add(value);
+			} else {
+				truncated = true;
+			}
+		}
+	}
+
+	/**
+	 * @param limit 每个列表最多返回的条目数，summary 中的计数不受限制
+	 */
+	public static Map<String, Object> diff(Map<String, ClassEntry> base, Map<String, ClassEntry> target, int limit) {
+		Result result = new Result(limit);
+		for (String key : new String[] {"classes_unchanged", "classes_added", "classes_removed", "classes_renamed", "classes_changed",
+				"methods_added", "methods_removed", "methods_renamed", "methods_changed",
+				"fields_added", "fields_removed", "fields_renamed", "fields_changed"}) {
+			result.summary.put(key, 0);
+		}
+
+		List<ClassEntry> removed = new ArrayList<>();
+		for (ClassEntry baseCls : base.values()) {
+			ClassEntry targetCls = target.get(baseCls.rawName);
+			if (targetCls == null) {
+				removed.add(baseCls);
+			} else {
+				diffClass(baseCls, targetCls, result);
+			}
+		}
+		List<ClassEntry> added = new ArrayList<>();
+		for (ClassEntry targetCls : target.values()) {
+			if (!base.containsKey(targetCls.rawName)) {
+				added.add(targetCls);
+			}
+		}
+
+		// 只在一侧出现的类按指纹一一配对，视为整体改名
+		Map<Long, Deque<ClassEntry>> addedByFingerprint = new HashMap<>();
+		for (ClassEntry cls : added) {
+			addedByFingerprint.computeIfAbsent(cls.fingerprint, k -> new ArrayDeque<>()).add(cls);
+		}
+		for (ClassEntry cls : removed) {
+			Deque<ClassEntry> candidates = addedByFingerprint.get(cls.fingerprint);
+			ClassEntry renamedTo = candidates != null ? candidates.poll() : null;
+			if (renamedTo != null) {
+				result.count("classes_renamed", 1);
+				result.add("renamed", Map.of("from", cls.rawName, "to", renamedTo.rawName));
+			} else {
+				result.count("classes_removed", 1);
+				result.count("methods_removed", cls.methods.size());
+				result.count("fields_removed", cls.fields.size());
+				result.add("removed", cls.rawName);
+			}
+		}
+		for (Deque<ClassEntry> remaining : addedByFingerprint.values()) {
+			for (ClassEntry cls : remaining) {
+				result.count("classes_added", 1);
+				result.count("methods_added", cls.methods.size());
+				result.count("fields_added", cls.fields.size());
+				result.add("added", cls.rawName);
+			}
+		}
+
+		Map<String, Object> out = new LinkedHashMap<>();
+		out.put("summary", result.summary);
+		out.put("classes", result.classes);
+		out.put("truncated", result.truncated);
+		return out;
+	}
+
+	private static void diffClass(ClassEntry baseCls, ClassEntry targetCls, Result result) {
+		Map<String, Object> methods = diffMethods(baseCls.methods, targetCls.methods, result);
+		Map<String, Object> fields = diffFields(baseCls.fields, targetCls.fields, result);
+		if (methods.isEmpty() && fields.isEmpty() && baseCls.fingerprint == targetCls.fingerprint) {
+			result.count("classes_unchanged", 1);
+			return;
+		}
+		result.count("classes_changed", 1);
+		Map<String, Object> change = new LinkedHashMap<>();
+		change.put("class", baseCls.rawName);
+		if (!methods.isEmpty()) {
+			change.put("methods", methods);
+		}
+		if (!fields.isEmpty()) {
+			change.put("fields", fields);
+		}
+		result.add("changed", change);
+	}
+
+	private static Map<String, Object> diffMethods(Map<String, Long> base, Map<String, Long> target, Result result) {
+		List<String> changed = new ArrayList<>();
+		List<String> removed = new ArrayList<>();
+		for (Map.Entry<String, Long> entry : base.entrySet()) {
+			Long targetHash = target.get(entry.getKey());
+			if (targetHash == null) {
+				removed.add(entry.getKey());
+			} else if (!targetHash.equals(entry.getValue())) {
+				changed.add(entry.getKey());
+			}
+		}
+		Map<Long, Deque<String>> addedByHash = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : target.entrySet()) {
+			if (!base.containsKey(entry.getKey())) {
+				addedByHash.computeIfAbsent(entry.getValue(), k -> new ArrayDeque<>()).add(entry.getKey());
+			}
+		}
+
+		List<Object> renamed = new ArrayList<>();
+		List<String> removedOnly = new ArrayList<>();
+		for (String method : removed) {
+			Deque<String> candidates = addedByHash.get(base.get(method));
+			String renamedTo = candidates != null ? candidates.poll() : null;
+			if (renamedTo != null) {
+				renamed.add(Map.of("from", method, "to", renamedTo));
+			} else {
+				removedOnly.add(method);
+			}
+		}
+		List<String> added = new ArrayList<>();
+		for (Deque<String> remaining : addedByHash.values()) {
+			added.addAll(remaining);
+		}
+
+		result.count("methods_added", added.size());
+		result.count("methods_removed", removedOnly.size());
+		result.count("methods_renamed", renamed.size());
+		result.count("methods_changed", changed.size());
+		Map<String, Object> diff = new LinkedHashMap<>();
+		putIfNotEmpty(diff, "added", added);
+		putIfNotEmpty(diff, "removed", removedOnly);
+		putIfNotEmpty(diff, "renamed", renamed);
+		putIfNotEmpty(diff, "changed", changed);
+		return diff;
+	}
+
+	/**
+	 * 同名字段类型不同为 changed；只在一侧出现的字段按类型一一配对为 renamed
+	 */
+	private static Map<String, Object> diffFields(Map<String, String> base, Map<String, String> target, Result result) {
+		List<String> changed = new ArrayList<>();
+		List<String> removed = new ArrayList<>();
+		for (Map.Entry<String, String> entry : base.entrySet()) {
+			String targetType = target.get(entry.getKey());
+			if (targetType == null) {
+				removed.add(entry.getKey());
+			} else if (!targetType.equals(entry.getValue())) {
+				changed.add(entry.getKey());
+			}
+		}
+		Map<String, Deque<String>> addedByType = new LinkedHashMap<>();
+		for (Map.Entry<String, String> entry : target.entrySet()) {
+			if (!base.containsKey(entry.getKey())) {
+				addedByType.computeIfAbsent(entry.getValue(), k -> new ArrayDeque<>()).add(entry.getKey());
+			}
+		}
+
+		List<Object> renamed = new ArrayList<>();
+		List<String> removedOnly = new ArrayList<>();
+		for (String field : removed) {
+			Deque<String> candidates = addedByType.get(base.get(field));
+			String renamedTo = candidates != null ? candidates.poll() : null;
+			if (renamedTo != null) {
+				renamed.add(Map.of("from", field, "to", renamedTo));
+			} else {
+				removedOnly.add(field);
+			}
+		}
+		List<String> added = new ArrayList<>();
+		for (Deque<String> remaining : addedByType.values()) {
+			added.addAll(remaining);
+		}
+
+		result.count("fields_added", added.size());
+		result.count("fields_removed", removedOnly.size());
+		result.count("fields_renamed", renamed.size());
+		result.count("fields_changed", changed.size());
+		Map<String, Object> diff = new LinkedHashMap<>();
+		putIfNotEmpty(diff, "added", added);
+		putIfNotEmpty(diff, "removed", removedOnly);
+		putIfNotEmpty(diff, "renamed", renamed);
+		putIfNotEmpty(diff, "changed", changed);
+		return diff;
+	}
+
+	private static void putIfNotEmpty(Map<String, Object> map, String key, List<?> values) {
+		if (!values.isEmpty()) {
+			map.put(key, values);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package jadx.plugins.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 变更事件流 - 重命名、注释、缓存失效和加载进度按递增序号存入固定容量的环形缓冲区，
+ * 订阅者从指定序号之后续传；推送在单独的线程中按顺序进行，慢客户端不会阻塞发布者（jadx 事件线程、请求线程）
+ */
+public final class ChangeFeed {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+
+	private static final long HEARTBEAT_SECONDS = 15;
+
+	public static final class Event {
+		public final long seq;
+		public final String type;
+		public final long time;
+		public final Map<String, Object> data;
+
+		Event(long seq, String type, long time, Map<String, Object> data) {
+			this.seq = seq;
+			this.type = type;
+			this.time = time;
+			this.data = data;
+		}
+
+		public Map<String, Object> toJson() {
+			Map<String, Object> json = new LinkedHashMap<>();
+			json.put("seq", seq);
+			json.put("type", type);
+			json.put("time", time);
+			json.putAll(data);
+			return json;
+		}
+	}
+
+	public interface Subscriber {
+		/**
+		 * @return false 表示客户端已断开，取消订阅
+		 */
+		boolean send(Event event);
+
+		default boolean heartbeat() {
+			return true;
+		}
+
+		/**
+		 * 事件流关闭（项目卸载、插件停止）时断开客户端
+		 */
+		default void close() {
+		}
+	}
+
+	// 只在推送线程中访问，delivered 为已推送的最大序号，补发期间发布的事件不会重复推送
+	private static final class Subscription {
+		final Subscriber subscriber;
+		long delivered;
+
+		Subscription(Subscriber subscriber, long delivered) {
+			this.subscriber = subscriber;
+			this.delivered = delivered;
+		}
+
+		boolean send(Event event) {
+			if (event.seq <= delivered) {
+				return true;
+			}
+			delivered = event.seq;
+			return safe(() -> subscriber.send(event));
+		}
+	}
+
+	private final Event[] ring;
+	private long lastSeq;
+	private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService dispatcher;
+
+	public ChangeFeed(int capacity) {
+		this.ring = new Event[capacity];
+		this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "JADX-AI-MCP-Events");
+			t.setDaemon(true);
+			return t;
+		});
+		dispatcher.scheduleAtFixedRate(() -> subscribers.removeIf(s -> !safe(s.subscriber::heartbeat)),
+				HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public Event publish(String type, Map<String, Object> data) {
+		Event event;
+		synchronized (this) {
+			event = new Event(++lastSeq, type, System.currentTimeMillis(), data);
+			ring[(int) (event.seq % ring.length)] = event;
+		}
+		dispatch(() -> subscribers.removeIf(s -> !s.send(event)));
+		return event;
+	}
+
+	/**
+	 * 序号大于 seq 的事件；其中一部分已被环形缓冲区覆盖时返回null，客户端需要重新全量获取
+	 */
+	public synchronized List<Event> since(long seq) {
+		if (seq < getOldestSeq() - 1 || seq > lastSeq) {
+			return null;
+		}
+		List<Event> events = new ArrayList<>((int) (lastSeq - seq));
+		for (long s = seq + 1; s <= lastSeq; s++) {
+			events.add(ring[(int) (s % ring.length)]);
+		}
+		return events;
+	}
+
+	public synchronized long getLastSeq() {
+		return lastSeq;
+	}
+
+	/**
+	 * 缓冲区中最早事件的序号
+	 */
+	public synchronized long getOldestSeq() {
+		return Math.max(1, lastSeq - ring.length + 1);
+	}
+
+	/**
+	 * 先补发 since 之后的事件再开始推送新事件；since 已不在缓冲区中时先发送 reset 事件。
+	 * 补发和注册都在推送线程中执行，与新事件之间不会遗漏或重复
+	 */
+	public void subscribe(long since, Subscriber subscriber) {
+		// since 为负数时只接收订阅之后的事件
+		long start = since >= 0 ? since : getLastSeq();
+		dispatch(() -> {
+			List<Event> backlog;
+			long last;
+			synchronized (this) {
+				backlog = since(start);
+				last = lastSeq;
+			}
+			Subscription subscription = new Subscription(subscriber, start);
+			if (backlog == null) {
+				Map<String, Object> data = new LinkedHashMap<>();
+				data.put("requested_seq", since);
+				data.put("oldest_seq", getOldestSeq());
+				if (!subscription.send(new Event(last, "reset", System.currentTimeMillis(), data))) {
+					return;
+				}
+				backlog = List.of();
+			}
+			for (Event event : backlog) {
+				if (!subscription.send(event)) {
+					return;
+				}
+			}
+			subscribers.add(subscription);
+		});
+	}
+
+	public void unsubscribe(Subscriber subscriber) {
+		subscribers.removeIf(s -> s.subscriber == subscriber);
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	public void close() {
+		for (Subscription subscription : subscribers) {
+			safe(() -> {
+				subscription.subscriber.close();
+				return true;
+			});
+		}
+		subscribers.clear();
+		dispatcher.shutdownNow();
+	}
+
+	private void dispatch(Runnable task) {
+		try {
+			dispatcher.execute(task);
+		} catch (RejectedExecutionException e) {
+			// 已关闭
+		}
+	}
+
+	private interface Send {
+		boolean run();
+	}
+
+	private static boolean safe(Send send) {
+		try {
+			return send.run();
+		} catch (Exception e) {
+			logger.debug("JADX AI MCP: event subscriber dropped: " + e.getMessage());
+			return false;
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package jadx.plugins.mcp;
+
+import jadx.api.ICodeInfo;
+import jadx.api.metadata.ICodeAnnotation;
+import jadx.api.metadata.annotations.InsnCodeOffset;
+import jadx.api.metadata.annotations.NodeDeclareRef;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 类代码索引 - 对一个顶层类的反编译代码建立方法区间表（起止偏移和行号），
+ * 方法源码和长度直接从类代码中截取，无需再次调用 getCodeStr() 提取；
+ * 同时把代码元数据按位置排序存为数组（节点引用、指令偏移），按行查询时二分定位
+ */
+public final class ClassCodeIndex {
+
+	private final String code;
+	private final int[] lineStarts;
+	private final Map<MethodNode, int[]> methodSpans;
+	private final int[] refPositions;
+	private final ICodeAnnotation[] refs;
+	private final int[] insnPositions;
+	private final int[] insnOffsets;
+
+	private ClassCodeIndex(String code, int[] lineStarts, Map<MethodNode, int[]> methodSpans,
+						   int[] refPositions, ICodeAnnotation[] refs, int[] insnPositions, int[] insnOffsets) {
+		this.code = code;
+		this.lineStarts = lineStarts;
+		this.methodSpans = methodSpans;
+		this.refPositions = refPositions;
+		this.refs = refs;
+		this.insnPositions = insnPositions;
+		this.insnOffsets = insnOffsets;
+	}
+
+	/**
+	 * 遍历一次代码元数据：方法声明入栈，遇到 NodeEnd 时按缩进匹配对应的方法声明出栈
+	 */
+	public static ClassCodeIndex build(ICodeInfo codeInfo) {
+		String code = codeInfo.getCodeStr();
+		int[] lineStarts = computeLineStarts(code);
+
+		Map<Integer, ICodeAnnotation> annotations = codeInfo.getCodeMetadata().getAsMap();
+		int[] positions = new int[annotations.size()];
+		int n = 0;
+		for (Integer pos : annotations.keySet()) {
+			positions[n++] = pos;
+		}
+		Arrays.sort(positions, 0, n);
+
+		Map<MethodNode, int[]> spans = new IdentityHashMap<>();
+		Deque<MethodNode> open = new ArrayDeque<>();
+		List<MethodNode> declared = new ArrayList<>();
+		int[] refPositions = new int[n];
+		ICodeAnnotation[] refs = new ICodeAnnotation[n];
+		int refCount = 0;
+		int[] insnPositions = new int[n];
+		int[] insnOffsets = new int[n];
+		int insnCount = 0;
+		for (int i = 0; i < n; i++) {
+			int pos = positions[i];
+			ICodeAnnotation ann = annotations.get(pos);
+			if (ann == null) {
+				continue;
+			}
+			if (ann instanceof InsnCodeOffset) {
+				insnPositions[insnCount] = pos;
+				insnOffsets[insnCount++] = ((InsnCodeOffset) ann).getOffset();
+				continue;
+			}
+			if (ann.getAnnType() != ICodeAnnotation.AnnType.END) {
+				refPositions[refCount] = pos;
+				refs[refCount++] = ann;
+			}
+			if (ann instanceof NodeDeclareRef) {
+				Object node = ((NodeDeclareRef) ann).getNode();
+				if (node instanceof MethodNode) {
+					MethodNode mth = (MethodNode) node;
+					spans.put(mth, new int[] { methodStart(code, lineStarts, pos), -1 });
+					declared.add(mth);
+					if (!mth.isNoCode()) {
+						open.push(mth);
+					}
+				}
+			} else if (ann.getAnnType() == ICodeAnnotation.AnnType.END) {
+				int indent = indentOf(code, lineStarts, pos);
+				for (MethodNode candidate : open) {
+					int[] span = spans.get(candidate);
+					if (indentOf(code, lineStarts, span[0]) == indent) {
+						while (open.peek() != candidate) {
+							open.pop();
+						}
+						open.pop();
+						span[1] = lineEnd(code, pos);
+						break;
+					}
+				}
+			}
+		}
+		// 没有 NodeEnd 的方法（抽象方法或旧版本元数据）按缩进回退查找结束行
+		for (MethodNode mth : declared) {
+			int[] span = spans.get(mth);
+			if (span[1] == -1) {
+				span[1] = mth.isNoCode() ? lineEnd(code, span[0]) : closingBraceEnd(code, lineStarts, span[0]);
+			}
+		}
+		return new ClassCodeIndex(code, lineStarts, spans,
+				Arrays.copyOf(refPositions, refCount), Arrays.copyOf(refs, refCount),
+				Arrays.copyOf(insnPositions, insnCount), Arrays.copyOf(insnOffsets, insnCount));
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public boolean hasMethod(MethodNode mth) {
+		return methodSpans.containsKey(mth);
+	}
+
+	/**
+	 * @return 方法源码，方法不在本类代码中时返回null
+	 */
+	public String getMethodCode(MethodNode mth) {
+		int[] span = methodSpans.get(mth);
+		return span != null ? code.substring(span[0], span[1]) : null;
+	}
+
+	/**
+	 * @return 方法源码长度，方法不在本类代码中时返回-1
+	 */
+	public int getMethodCodeLength(MethodNode mth) {
+		int[] span = methodSpans.get(mth);
+		return span != null ? span[1] - span[0] : -1;
+	}
+
+	/**
+	 * @return 方法起始行号（从1开始），未找到返回-1
+	 */
+	public int getMethodStartLine(MethodNode mth) {
+		int[] span = methodSpans.get(mth);
+		return span != null ? lineOf(span[0]) : -1;
+	}
+
+	public int getMethodEndLine(MethodNode mth) {
+		int[] span = methodSpans.get(mth);
+		return span != null ? lineOf(Math.max(span[0], span[1] - 1)) : -1;
+	}
+
+	/**
+	 * 偏移量所在行号（从1开始）
+	 */
+	public int lineOf(int pos) {
+		int idx = Arrays.binarySearch(lineStarts, pos);
+		return idx >= 0 ? idx + 1 : -idx - 1;
+	}
+
+	public int lineStart(int line) {
+		return lineStarts[Math.max(0, Math.min(line - 1, lineStarts.length - 1))];
+	}
+
+	public int lineLimit(int line) {
+		return line < lineStarts.length ? lineStarts[line] : code.length();
+	}
+
+	/**
+	 * 代码区间 [start, end) 内的节点引用（声明、类/方法/字段/变量引用），按位置升序
+	 */
+	public List<Map.Entry<Integer, ICodeAnnotation>> getRefs(int start, int end) {
+		List<Map.Entry<Integer, ICodeAnnotation>> result = new ArrayList<>();
+		for (int i = lowerBound(refPositions, start); i < refPositions.length && refPositions[i] < end; i++) {
+			result.add(Map.entry(refPositions[i], refs[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * 位置上的注解（如 VarRef 指向的变量声明），没有返回null
+	 */
+	public ICodeAnnotation getRefAt(int pos) {
+		int idx = Arrays.binarySearch(refPositions, pos);
+		return idx >= 0 ? refs[idx] : null;
+	}
+
+	/**
+	 * 代码区间 [start, end) 内对应的字节码指令偏移，按代码位置排序
+	 */
+	public int[] getInsnOffsets(int start, int end) {
+		int from = lowerBound(insnPositions, start);
+		int to = lowerBound(insnPositions, end);
+		return Arrays.copyOfRange(insnOffsets, from, to);
+	}
+
+	private static int lowerBound(int[] sorted, int key) {
+		int idx = Arrays.binarySearch(sorted, key);
+		if (idx < 0) {
+			return -idx - 1;
+		}
+		while (idx > 0 && sorted[idx - 1] == key) {
+			idx--;
+		}
+		return idx;
+	}
+
+	private static int[] computeLineStarts(String code) {
+		int count = 1;
+		for (int i = 0; i < code.length(); i++) {
+			if (code.charAt(i) == '\n') {
+				count++;
+			}
+		}
+		int[] starts = new int[count];
+		int line = 1;
+		for (int i = 0; i < code.length(); i++) {
+			if (code.charAt(i) == '\n') {
+				starts[line++] = i + 1;
+			}
+		}
+		return starts;
+	}
+
+	/**
+	 * 方法起点：声明所在行的行首，并向上包含紧邻的注解和注释行
+	 */
+	private static int methodStart(String code, int[] lineStarts, int defPos) {
+		int line = lineIndex(lineStarts, defPos);
+		while (line > 0) {
+			String prev = code.substring(lineStarts[line - 1], lineStarts[line]).trim();
+			if (prev.startsWith("@") || prev.startsWith("/*") || prev.startsWith("*") || prev.startsWith("//")) {
+				line--;
+			} else {
+				break;
+			}
+		}
+		return lineStarts[line];
+	}
+
+	private static int closingBraceEnd(String code, int[] lineStarts, int start) {
+		int indent = indentOf(code, lineStarts, start);
+		for (int line = lineIndex(lineStarts, start) + 1; line < lineStarts.length; line++) {
+			int ls = lineStarts[line];
+			int le = lineEnd(code, ls);
+			String text = code.substring(ls, le);
+			if (text.trim().startsWith("}") && indentOf(code, lineStarts, ls) == indent) {
+				return le;
+			}
+		}
+		return code.length();
+	}
+
+	private static int lineIndex(int[] lineStarts, int pos) {
+		int idx = Arrays.binarySearch(lineStarts, pos);
+		return idx >= 0 ? idx : -idx - 2;
+	}
+
+	private static int indentOf(String code, int[] lineStarts, int pos) {
+		int i = lineStarts[lineIndex(lineStarts, pos)];
+		int indent = 0;
+		while (i < code.length() && (code.charAt(i) == ' ' || code.charAt(i) == '\t')) {
+			indent++;
+			i++;
+		}
+		return indent;
+	}
+
+	private static int lineEnd(String code, int pos) {
+		int end = code.indexOf('\n', pos);
+		return end == -1 ? code.length() : end;
+	}
+}
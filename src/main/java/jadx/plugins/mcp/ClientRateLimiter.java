@@ -0,0 +1,91 @@
+package jadx.plugins.mcp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按客户端的令牌桶限流 - 每个客户端（X-Client-Id 请求头或连接地址）一个桶，
+ * 按 rate 每秒补充令牌，最多积累 burst 个；请求时取一个令牌，取不到时返回需要等待的时间
+ */
+public final class ClientRateLimiter {
+
+	// 客户端数超过此值时清理已补满（空闲）的桶
+	private static final int MAX_IDLE_BUCKETS = 1024;
+
+	private static final class Bucket {
+		double tokens;
+		long lastNanos;
+
+		Bucket(double tokens, long lastNanos) {
+			this.tokens = tokens;
+			this.lastNanos = lastNanos;
+		}
+	}
+
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong rejected = new AtomicLong();
+	private volatile double rate;
+	private volatile double burst;
+
+	/**
+	 * @param rate 每秒补充的令牌数，0 为不限制；参数变化时所有桶重新开始
+	 */
+	public synchronized void configure(int rate, int burst) {
+		if (rate == this.rate && burst == this.burst) {
+			return;
+		}
+		this.rate = rate;
+		this.burst = burst;
+		buckets.clear();
+	}
+
+	public boolean isEnabled() {
+		return rate > 0;
+	}
+
+	/**
+	 * @return 0 表示放行，否则为下一个令牌可用前需要等待的毫秒数
+	 */
+	public long tryAcquire(String client) {
+		double rate = this.rate;
+		double burst = this.burst;
+		if (rate <= 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		if (buckets.size() > MAX_IDLE_BUCKETS) {
+			buckets.values().removeIf(b -> refill(b, now, rate, burst) >= burst);
+		}
+		Bucket bucket = buckets.computeIfAbsent(client, key -> new Bucket(burst, now));
+		synchronized (bucket) {
+			double tokens = refill(bucket, now, rate, burst);
+			if (tokens >= 1) {
+				bucket.tokens = tokens - 1;
+				return 0;
+			}
+			rejected.incrementAndGet();
+			return Math.max(1, (long) Math.ceil((1 - tokens) / rate * 1000));
+		}
+	}
+
+	private static double refill(Bucket bucket, long now, double rate, double burst) {
+		synchronized (bucket) {
+			double elapsed = (now - bucket.lastNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+			if (elapsed > 0) {
+				bucket.tokens = Math.min(burst, bucket.tokens + elapsed * rate);
+				bucket.lastNanos = now;
+			}
+			return bucket.tokens;
+		}
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public int getClientCount() {
+		return buckets.size();
+	}
+}
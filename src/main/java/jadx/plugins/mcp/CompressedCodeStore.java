@@ -0,0 +1,361 @@
+package jadx.plugins.mcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩代码存储 - 反编译代码压缩后追加写入堆外的溢出文件（由操作系统页缓存承载），
+ * 堆上只保留每个类的位置表和一个很小的LRU热缓存，堆占用不随已查看类的数量增长。
+ * 失效的条目在文件中成为死数据，死数据超过存活数据且达到 COMPACT_MIN_BYTES 时把存活条目复制到新文件
+ */
+public final class CompressedCodeStore implements Closeable {
+
+	private static final long COMPACT_MIN_BYTES = 16L << 20;
+
+	private final Path dir;
+	private Path file;
+	private FileChannel channel;
+	private final Map<String, long[]> entries = new ConcurrentHashMap<>();
+	private final LruCache<String, String> hot;
+	private final AtomicLong writePos = new AtomicLong();
+	// 存活条目的原始和压缩字节数，失效和覆盖时减去
+	private final AtomicLong rawBytes = new AtomicLong();
+	private final AtomicLong storedBytes = new AtomicLong();
+	private final AtomicLong deadBytes = new AtomicLong();
+	// 读写文件持读锁，压缩（更换文件）持写锁
+	private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+	// 每次失效加一；加载或读取期间发生失效时结果可能已过期，不写入存储和热缓存。修改在 synchronized(this) 中进行
+	private volatile long generation;
+	private long compactions;
+
+	private CompressedCodeStore(Path dir, Path file, FileChannel channel, int hotSize) {
+		this.dir = dir;
+		this.file = file;
+		this.channel = channel;
+		this.hot = new LruCache<>("code-store-hot", hotSize);
+	}
+
+	/**
+	 * 在目录下创建临时溢出文件，关闭时删除
+	 */
+	public static CompressedCodeStore create(Path dir, int hotSize) throws IOException {
+		Files.createDirectories(dir);
+		Path file = Files.createTempFile(dir, "jadx-mcp-code-", ".bin");
+		return new CompressedCodeStore(dir, file, openChannel(file), hotSize);
+	}
+
+	private static FileChannel openChannel(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	public String get(String key) {
+		String code = hot.get(key);
+		if (code != null) {
+			return code;
+		}
+		fileLock.readLock().lock();
+		try {
+			long gen = generation;
+			long[] entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			code = read(entry);
+			synchronized (this) {
+				if (gen == generation) {
+					hot.put(key, code);
+				}
+			}
+			return code;
+		} finally {
+			fileLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 未命中时调用 loader 加载；加载期间有条目失效时（如重命名），加载结果可能是失效前的代码，只返回不存储
+	 */
+	public String computeIfAbsent(String key, Function<String, String> loader) {
+		long gen = generation;
+		String code = get(key);
+		if (code != null) {
+			return code;
+		}
+		code = loader.apply(key);
+		if (code != null) {
+			put(key, code, gen);
+		}
+		return code;
+	}
+
+	public void put(String key, String code) {
+		put(key, code, generation);
+	}
+
+	private void put(String key, String code, long expectedGeneration) {
+		byte[] raw = code.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = compress(raw);
+		fileLock.readLock().lock();
+		try {
+			long pos = writePos.getAndAdd(compressed.length);
+			try {
+				ByteBuffer src = ByteBuffer.wrap(compressed);
+				while (src.hasRemaining()) {
+					channel.write(src, pos + src.position());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to write code store: " + e.getMessage(), e);
+			}
+			synchronized (this) {
+				if (expectedGeneration != generation) {
+					deadBytes.addAndGet(compressed.length);
+					return;
+				}
+				long[] old = entries.put(key, new long[] { pos, compressed.length, raw.length });
+				if (old != null) {
+					removeLive(old);
+				}
+				rawBytes.addAndGet(raw.length);
+				storedBytes.addAndGet(compressed.length);
+				hot.put(key, code);
+			}
+		} finally {
+			fileLock.readLock().unlock();
+		}
+		compactIfNeeded();
+	}
+
+	public synchronized void invalidate(String key) {
+		generation++;
+		hot.remove(key);
+		long[] old = entries.remove(key);
+		if (old != null) {
+			removeLive(old);
+		}
+	}
+
+	/**
+	 * 条目不再存活：压缩数据计入死数据，从存活字节数中减去；调用方持有 this 锁
+	 */
+	private void removeLive(long[] entry) {
+		deadBytes.addAndGet(entry[1]);
+		storedBytes.addAndGet(-entry[1]);
+		rawBytes.addAndGet(-entry[2]);
+	}
+
+	/**
+	 * @return 失效的条目数
+	 */
+	public int invalidateIf(Predicate<String> predicate) {
+		int removed = 0;
+		synchronized (this) {
+			generation++;
+			hot.removeIf(predicate);
+			for (String key : entries.keySet()) {
+				if (predicate.test(key)) {
+					invalidate(key);
+					removed++;
+				}
+			}
+		}
+		compactIfNeeded();
+		return removed;
+	}
+
+	/**
+	 * 全部失效，溢出文件截断为空
+	 */
+	public void clear() {
+		fileLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				generation++;
+				hot.clear();
+				entries.clear();
+				try {
+					channel.truncate(0);
+				} catch (IOException e) {
+					throw new IllegalStateException("Failed to truncate code store: " + e.getMessage(), e);
+				}
+				writePos.set(0);
+				deadBytes.set(0);
+				rawBytes.set(0);
+				storedBytes.set(0);
+			}
+		} finally {
+			fileLock.writeLock().unlock();
+		}
+	}
+
+	private void compactIfNeeded() {
+		long dead = deadBytes.get();
+		if (dead >= COMPACT_MIN_BYTES && dead > writePos.get() - dead) {
+			compact();
+		}
+	}
+
+	/**
+	 * 把存活条目复制到新的溢出文件并删除旧文件；期间读写等待
+	 */
+	private void compact() {
+		fileLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				long dead = deadBytes.get();
+				if (dead < COMPACT_MIN_BYTES || dead <= writePos.get() - dead) {
+					return;
+				}
+				Path newFile = Files.createTempFile(dir, "jadx-mcp-code-", ".bin");
+				FileChannel newChannel = openChannel(newFile);
+				// 新偏移先记在单独的数组中，全部复制成功后才写回条目；中途失败时条目仍指向旧文件
+				long[][] live = entries.values().toArray(new long[0][]);
+				long[] newOffsets = new long[live.length];
+				long pos = 0;
+				try {
+					for (int i = 0; i < live.length; i++) {
+						long[] entry = live[i];
+						long copied = 0;
+						while (copied < entry[1]) {
+							copied += channel.transferTo(entry[0] + copied, entry[1] - copied, newChannel);
+						}
+						newOffsets[i] = pos;
+						pos += entry[1];
+					}
+				} catch (IOException | RuntimeException e) {
+					newChannel.close();
+					throw e;
+				}
+				for (int i = 0; i < live.length; i++) {
+					live[i][0] = newOffsets[i];
+				}
+				FileChannel oldChannel = channel;
+				channel = newChannel;
+				file = newFile;
+				writePos.set(pos);
+				deadBytes.set(0);
+				compactions++;
+				oldChannel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to compact code store: " + e.getMessage(), e);
+		} finally {
+			fileLock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public LruCache<String, String> getHotCache() {
+		return hot;
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		fileLock.readLock().lock();
+		try {
+			stats.put("file", file.toString());
+		} finally {
+			fileLock.readLock().unlock();
+		}
+		stats.put("entries", entries.size());
+		stats.put("raw_bytes", rawBytes.get());
+		stats.put("stored_bytes", storedBytes.get());
+		stats.put("dead_bytes", deadBytes.get());
+		stats.put("file_bytes", writePos.get());
+		synchronized (this) {
+			stats.put("compactions", compactions);
+		}
+		stats.put("hot", hot.getStats());
+		return stats;
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileLock.writeLock().lock();
+		try {
+			hot.clear();
+			entries.clear();
+			channel.close();
+		} finally {
+			fileLock.writeLock().unlock();
+		}
+	}
+
+	private String read(long[] entry) {
+		byte[] compressed = new byte[(int) entry[1]];
+		ByteBuffer dst = ByteBuffer.wrap(compressed);
+		try {
+			while (dst.hasRemaining()) {
+				if (channel.read(dst, entry[0] + dst.position()) < 0) {
+					throw new IOException("Unexpected end of code store");
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read code store: " + e.getMessage(), e);
+		}
+		return new String(decompress(compressed, (int) entry[2]), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] compress(byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] out = new byte[Math.max(64, raw.length / 2)];
+			int len = 0;
+			while (!deflater.finished()) {
+				if (len == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+				}
+				len += deflater.deflate(out, len, out.length - len);
+			}
+			return Arrays.copyOf(out, len);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress(byte[] compressed, int rawLength) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] raw = new byte[rawLength];
+			int len = 0;
+			while (len < rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, len, rawLength - len);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				len += n;
+			}
+			if (len != rawLength) {
+				throw new IllegalStateException("Corrupted code store entry");
+			}
+			return raw;
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupted code store entry: " + e.getMessage(), e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
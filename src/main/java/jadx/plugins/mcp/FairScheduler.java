@@ -0,0 +1,220 @@
+package jadx.plugins.mcp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 加权公平队列 - 限制重接口（反编译、全量搜索、批量查询）的并发数，满员时按客户端公平排队。
+ * 采用 start-time fair queuing：请求到达时的开始标签为 max(虚拟时间, 该客户端上一请求的结束标签)，
+ * 结束标签再加上 预计耗时/权重；许可释放时标签最小的请求先执行。
+ * 偶尔请求的交互式客户端标签接近当前虚拟时间，排在批量客户端积压的请求前面；
+ * 批量客户端在没有竞争时仍可用满全部许可。预计耗时取该客户端最近请求的平均耗时，完成后按实际耗时修正
+ */
+public final class FairScheduler {
+
+	// 没有历史数据时的预计耗时
+	private static final double DEFAULT_COST_MILLIS = 10;
+	private static final int MAX_IDLE_CLIENTS = 1024;
+
+	private static final class Client {
+		final String id;
+		double finishTag;
+		double costMillis = DEFAULT_COST_MILLIS;
+		int pending;
+		long requests;
+		long queued;
+		long waitMillis;
+		long maxWaitMillis;
+
+		Client(String id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * 已获得的执行许可，处理完成后 close
+	 */
+	public final class Ticket implements AutoCloseable {
+		private final Client client;
+		private final int weight;
+		private final double startTag;
+		private final double costMillis;
+		private final long seq;
+		private final long enqueueNanos = System.nanoTime();
+		private long startNanos;
+		private boolean granted;
+		private boolean closed;
+
+		private Ticket(Client client, int weight, double startTag, double costMillis, long seq) {
+			this.client = client;
+			this.weight = weight;
+			this.startTag = startTag;
+			this.costMillis = costMillis;
+			this.seq = seq;
+		}
+
+		public long getWaitMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(startNanos - enqueueNanos);
+		}
+
+		@Override
+		public void close() {
+			release(this);
+		}
+	}
+
+	private final PriorityQueue<Ticket> queue = new PriorityQueue<>((a, b) -> a.startTag != b.startTag
+			? Double.compare(a.startTag, b.startTag) : Long.compare(a.seq, b.seq));
+	private final Map<String, Client> clients = new HashMap<>();
+	private final LatencyHistogram waitMicros = new LatencyHistogram();
+	private int permits;
+	private int running;
+	private double virtualTime;
+	private long seq;
+	private long timeouts;
+
+	public FairScheduler(int permits) {
+		this.permits = permits;
+	}
+
+	public synchronized void setPermits(int permits) {
+		this.permits = permits;
+		dispatch();
+	}
+
+	/**
+	 * 取得一个执行许可，需要排队时最多等待 timeoutMillis
+	 *
+	 * @param weight 客户端权重，权重越大分到的执行时间越多
+	 * @throws TimeoutException 等待超时，请求已移出队列
+	 */
+	public synchronized Ticket acquire(String clientId, int weight, long timeoutMillis) throws InterruptedException, TimeoutException {
+		if (clients.size() > MAX_IDLE_CLIENTS) {
+			clients.values().removeIf(c -> c.pending == 0 && c.finishTag <= virtualTime);
+		}
+		Client client = clients.computeIfAbsent(clientId, Client::new);
+		double startTag = Math.max(virtualTime, client.finishTag);
+		Ticket ticket = new Ticket(client, weight, startTag, client.costMillis, seq++);
+		client.finishTag = startTag + ticket.costMillis / weight;
+		client.pending++;
+		client.requests++;
+
+		if (running < permits && queue.isEmpty()) {
+			grant(ticket);
+			return ticket;
+		}
+		client.queued++;
+		queue.add(ticket);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		try {
+			while (!ticket.granted) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					queue.remove(ticket);
+					// 未执行的请求不占用该客户端的份额
+					client.finishTag -= ticket.costMillis / weight;
+					client.pending--;
+					timeouts++;
+					throw new TimeoutException("Timed out after " + timeoutMillis + " ms in the request queue");
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		} catch (InterruptedException e) {
+			if (ticket.granted) {
+				release(ticket);
+			} else {
+				queue.remove(ticket);
+				client.finishTag -= ticket.costMillis / weight;
+				client.pending--;
+			}
+			throw e;
+		}
+		return ticket;
+	}
+
+	private void grant(Ticket ticket) {
+		running++;
+		virtualTime = Math.max(virtualTime, ticket.startTag);
+		ticket.granted = true;
+		ticket.startNanos = System.nanoTime();
+		long waitMillis = ticket.getWaitMillis();
+		Client client = ticket.client;
+		client.waitMillis += waitMillis;
+		client.maxWaitMillis = Math.max(client.maxWaitMillis, waitMillis);
+		waitMicros.record(TimeUnit.NANOSECONDS.toMicros(ticket.startNanos - ticket.enqueueNanos));
+	}
+
+	private synchronized void release(Ticket ticket) {
+		if (ticket.closed) {
+			return;
+		}
+		ticket.closed = true;
+		running--;
+		Client client = ticket.client;
+		client.pending--;
+		double actualMillis = (System.nanoTime() - ticket.startNanos) / 1e6;
+		// 按实际耗时修正结束标签，耗时长的请求让该客户端后续请求排得更靠后
+		client.finishTag += (actualMillis - ticket.costMillis) / ticket.weight;
+		client.costMillis = Math.max(1, client.costMillis * 0.8 + actualMillis * 0.2);
+		dispatch();
+	}
+
+	private void dispatch() {
+		boolean granted = false;
+		while (running < permits && !queue.isEmpty()) {
+			grant(queue.poll());
+			granted = true;
+		}
+		if (granted) {
+			notifyAll();
+		}
+	}
+
+	public synchronized int getQueueLength() {
+		return queue.size();
+	}
+
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	public synchronized long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * 排队等待时间（微秒），不需要排队的请求记为0
+	 */
+	public LatencyHistogram getWaitMicros() {
+		return waitMicros;
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("permits", permits);
+		stats.put("running", running);
+		stats.put("queued", queue.size());
+		stats.put("timeouts", timeouts);
+		stats.put("wait_p99_ms", waitMicros.getValueAtQuantile(0.99) / 1000.0);
+		List<Map<String, Object>> clientStats = new ArrayList<>();
+		for (Client client : clients.values()) {
+			Map<String, Object> info = new LinkedHashMap<>();
+			info.put("client", client.id);
+			info.put("pending", client.pending);
+			info.put("requests", client.requests);
+			info.put("queued", client.queued);
+			info.put("avg_wait_ms", client.requests == 0 ? 0 : client.waitMillis / client.requests);
+			info.put("max_wait_ms", client.maxWaitMillis);
+			info.put("avg_cost_ms", Math.round(client.costMillis));
+			clientStats.add(info);
+		}
+		stats.put("clients", clientStats);
+		return stats;
+	}
+}
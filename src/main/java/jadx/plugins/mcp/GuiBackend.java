@@ -0,0 +1,149 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+import jadx.api.JavaPackage;
+import jadx.api.ResourceFile;
+import jadx.api.data.impl.JadxCodeData;
+import jadx.api.plugins.events.IJadxEvents;
+import jadx.api.plugins.events.JadxEvents;
+import jadx.api.plugins.events.types.NodeRenamedByUser;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.gui.settings.JadxProject;
+import jadx.gui.treemodel.JClass;
+import jadx.gui.ui.MainWindow;
+import jadx.gui.ui.panel.ContentPanel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * jadx-gui 插件模式：数据来自主窗口的 JadxWrapper 和当前项目，重命名由 jadx-gui 处理
+ */
+public final class GuiBackend implements McpBackend {
+
+	private static final Logger logger = LoggerFactory.getLogger(GuiBackend.class);
+
+	private final MainWindow mainWindow;
+
+	public GuiBackend(MainWindow mainWindow) {
+		this.mainWindow = mainWindow;
+	}
+
+	@Override
+	public boolean isGui() {
+		return true;
+	}
+
+	@Override
+	public JadxDecompiler getDecompiler() {
+		return mainWindow.getWrapper().getDecompiler();
+	}
+
+	@Override
+	public List<JavaClass> getClasses() {
+		return mainWindow.getWrapper().getIncludedClassesWithInners();
+	}
+
+	@Override
+	public List<JavaPackage> getPackages() {
+		return mainWindow.getWrapper().getPackages();
+	}
+
+	@Override
+	public List<ResourceFile> getResources() {
+		return mainWindow.getWrapper().getResources();
+	}
+
+	@Override
+	public JadxArgs getArgs() {
+		return mainWindow.getWrapper().getArgs();
+	}
+
+	@Override
+	public IJadxEvents events() {
+		return mainWindow.events();
+	}
+
+	/**
+	 * jadx-gui 自己的重命名处理在主窗口创建时注册，先于插件收到事件：它更新代码数据，
+	 * 并把受影响类的刷新排入后台任务队列（单线程顺序执行），回调排在刷新任务之后
+	 */
+	@Override
+	public void addRenameListener(Consumer<NodeRenamedByUser> listener) {
+		events().addListener(JadxEvents.NODE_RENAMED_BY_USER,
+				event -> mainWindow.getBackgroundExecutor().execute("JADX AI MCP rename", () -> listener.accept(event)));
+	}
+
+	@Override
+	public JadxCodeData getCodeData() {
+		return mainWindow.getProject().getCodeData();
+	}
+
+	@Override
+	public void setCodeData(JadxCodeData codeData) {
+		mainWindow.getProject().setCodeData(codeData);
+	}
+
+	@Override
+	public void reloadCodeData() {
+		mainWindow.getWrapper().reloadCodeData();
+	}
+
+	@Override
+	public void saveProject() {
+		mainWindow.getProject().save();
+	}
+
+	@Override
+	public Path getProjectPath() {
+		JadxProject project = mainWindow.getProject();
+		return project != null ? project.getProjectPath() : null;
+	}
+
+	/**
+	 * 在事件分发线程上读取标签页；读取失败时返回 null，调用方应跳过本轮卸载
+	 */
+	@Override
+	public Set<ClassNode> getOpenClasses() {
+		Set<ClassNode> classes = new HashSet<>();
+		Runnable collect = () -> {
+			JTabbedPane tabs = mainWindow.getTabbedPane();
+			for (int i = 0; i < tabs.getTabCount(); i++) {
+				Component tab = tabs.getComponentAt(i);
+				if (tab instanceof ContentPanel) {
+					JClass root = ((ContentPanel) tab).getNode().getRootClass();
+					if (root != null) {
+						classes.add(root.getCls().getClassNode().getTopParentClass());
+					}
+				}
+			}
+		};
+		try {
+			if (SwingUtilities.isEventDispatchThread()) {
+				collect.run();
+			} else {
+				SwingUtilities.invokeAndWait(collect);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (InvocationTargetException e) {
+			logger.warn("JADX AI MCP: failed to read open tabs: " + e.getCause(), e.getCause());
+			return null;
+		}
+		return Collections.unmodifiableSet(classes);
+	}
+}
@@ -0,0 +1,212 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+import jadx.api.JavaPackage;
+import jadx.api.ResourceFile;
+import jadx.api.data.ICodeData;
+import jadx.api.data.ICodeRename;
+import jadx.api.data.impl.JadxCodeData;
+import jadx.api.data.impl.JadxCodeRef;
+import jadx.api.data.impl.JadxCodeRename;
+import jadx.api.data.impl.JadxNodeRef;
+import jadx.api.metadata.ICodeNodeRef;
+import jadx.api.metadata.annotations.VarNode;
+import jadx.api.plugins.events.IJadxEvents;
+import jadx.api.plugins.events.JadxEvents;
+import jadx.api.plugins.events.types.NodeRenamedByUser;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 无界面模式：直接使用 jadx-core 的 JadxDecompiler；没有 jadx-gui 处理重命名事件，
+ * 由本类把重命名写入代码数据并卸载受影响类的代码。修改只保存在内存中
+ */
+public final class HeadlessBackend implements McpBackend {
+
+	private static final Logger logger = LoggerFactory.getLogger(HeadlessBackend.class);
+
+	private final JadxDecompiler decompiler;
+	private final List<Consumer<NodeRenamedByUser>> renameListeners = new CopyOnWriteArrayList<>();
+
+	public HeadlessBackend(JadxDecompiler decompiler) {
+		this.decompiler = decompiler;
+		decompiler.events().addListener(JadxEvents.NODE_RENAMED_BY_USER, this::applyRename);
+	}
+
+	@Override
+	public boolean isGui() {
+		return false;
+	}
+
+	@Override
+	public JadxDecompiler getDecompiler() {
+		return decompiler;
+	}
+
+	@Override
+	public List<JavaClass> getClasses() {
+		return decompiler.getClassesWithInners();
+	}
+
+	@Override
+	public List<JavaPackage> getPackages() {
+		return decompiler.getPackages();
+	}
+
+	@Override
+	public List<ResourceFile> getResources() {
+		return decompiler.getResources();
+	}
+
+	@Override
+	public JadxArgs getArgs() {
+		return decompiler.getArgs();
+	}
+
+	@Override
+	public IJadxEvents events() {
+		return decompiler.events();
+	}
+
+	@Override
+	public void addRenameListener(Consumer<NodeRenamedByUser> listener) {
+		renameListeners.add(listener);
+	}
+
+	@Override
+	public synchronized JadxCodeData getCodeData() {
+		ICodeData codeData = decompiler.getArgs().getCodeData();
+		if (codeData instanceof JadxCodeData) {
+			return (JadxCodeData) codeData;
+		}
+		JadxCodeData result = new JadxCodeData();
+		if (codeData != null) {
+			result.setComments(new ArrayList<>(codeData.getComments()));
+			result.setRenames(new ArrayList<>(codeData.getRenames()));
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void setCodeData(JadxCodeData codeData) {
+		decompiler.getArgs().setCodeData(codeData);
+	}
+
+	@Override
+	public void reloadCodeData() {
+		decompiler.reloadCodeData();
+	}
+
+	@Override
+	public void saveProject() {
+		// 无项目文件
+	}
+
+	@Override
+	public Path getProjectPath() {
+		return null;
+	}
+
+	@Override
+	public Set<ClassNode> getOpenClasses() {
+		return Collections.emptySet();
+	}
+
+	private void applyRename(NodeRenamedByUser event) {
+		try {
+			ICodeNodeRef node = event.getRenameNode();
+			ICodeRename rename = toCodeRename(node, event.getNewName());
+
+			synchronized (this) {
+				JadxCodeData codeData = getCodeData();
+				List<ICodeRename> renames = new ArrayList<>(codeData.getRenames());
+				renames.removeIf(r -> Objects.equals(r.getNodeRef(), rename.getNodeRef())
+						&& Objects.equals(r.getCodeRef(), rename.getCodeRef()));
+				if (!event.isResetName()) {
+					renames.add(rename);
+				}
+				Collections.sort(renames);
+				codeData.setRenames(renames);
+				setCodeData(codeData);
+			}
+			reloadCodeData();
+
+			for (ClassNode cls : collectAffectedTopClasses(node)) {
+				cls.unloadCode();
+			}
+		} catch (Exception e) {
+			logger.error("JADX AI MCP: failed to apply rename: " + e.getMessage(), e);
+			return;
+		}
+		for (Consumer<NodeRenamedByUser> listener : renameListeners) {
+			try {
+				listener.accept(event);
+			} catch (Exception e) {
+				logger.warn("JADX AI MCP: rename listener failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private ICodeRename toCodeRename(ICodeNodeRef node, String newName) {
+		if (node instanceof ClassNode) {
+			return new JadxCodeRename(JadxNodeRef.forCls(decompiler.getJavaClassByNode((ClassNode) node)), newName);
+		}
+		if (node instanceof MethodNode) {
+			return new JadxCodeRename(JadxNodeRef.forMth(decompiler.getJavaMethodByNode((MethodNode) node)), newName);
+		}
+		if (node instanceof FieldNode) {
+			return new JadxCodeRename(JadxNodeRef.forFld(decompiler.getJavaFieldByNode((FieldNode) node)), newName);
+		}
+		if (node instanceof VarNode) {
+			VarNode var = (VarNode) node;
+			return new JadxCodeRename(JadxNodeRef.forMth(decompiler.getJavaMethodByNode(var.getMth())),
+					JadxCodeRef.forVar(var.getReg(), var.getSsa()), newName);
+		}
+		throw new UnsupportedOperationException("Rename is not supported in headless mode for: " + node);
+	}
+
+	/**
+	 * 节点所在顶层类及引用它的类
+	 */
+	private static Set<ClassNode> collectAffectedTopClasses(ICodeNodeRef node) {
+		Set<ClassNode> result = new HashSet<>();
+		if (node instanceof ClassNode) {
+			ClassNode cls = (ClassNode) node;
+			result.add(cls.getTopParentClass());
+			for (ClassNode user : cls.getUseIn()) {
+				result.add(user.getTopParentClass());
+			}
+		} else if (node instanceof MethodNode) {
+			MethodNode mth = (MethodNode) node;
+			result.add(mth.getParentClass().getTopParentClass());
+			for (MethodNode user : mth.getUseIn()) {
+				result.add(user.getParentClass().getTopParentClass());
+			}
+		} else if (node instanceof FieldNode) {
+			FieldNode fld = (FieldNode) node;
+			result.add(fld.getParentClass().getTopParentClass());
+			for (MethodNode user : fld.getUseIn()) {
+				result.add(user.getParentClass().getTopParentClass());
+			}
+		} else if (node instanceof VarNode) {
+			result.add(((VarNode) node).getMth().getParentClass().getTopParentClass());
+		}
+		return result;
+	}
+}
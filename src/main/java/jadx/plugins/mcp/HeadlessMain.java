@@ -0,0 +1,153 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无界面模式命令行入口，classpath 需包含 jadx 的依赖（如 jadx 发行包 lib 目录下的 jar）：
+ * <pre>
+ * java -cp "jadx/lib/*:jadx-mcp-plugin.jar" jadx.plugins.mcp.HeadlessMain [--port 8656] [--threads N]
+ *      [--page-threshold 500] [--page-size 100] [--code-store] [--config config.json] app.apk ...
+ * </pre>
+ * 多项目模式：每个 --project 注册一个项目，请求用 project 参数选择，空闲项目自动卸载：
+ * <pre>
+ * ... HeadlessMain --project v1=app-1.0.apk --project v2=app-1.1.apk,extra.dex [--idle-minutes 30] [--max-loaded 2]
+ *      [--load-dir /data/apks]
+ * </pre>
+ * /load-project 只能用 path 注册 --load-dir 目录下的文件，未指定 --load-dir 时不允许通过接口注册
+ */
+public final class HeadlessMain {
+
+	private static final Logger logger = LoggerFactory.getLogger(HeadlessMain.class);
+
+	private HeadlessMain() {
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		int port = 8656;
+		int threshold = 500;
+		int pageSize = 100;
+		boolean codeStore = false;
+		Path configFile = null;
+		int threads = 0;
+		long idleMinutes = 30;
+		int maxLoaded = 0;
+		List<File> loadDirs = new ArrayList<>();
+		Map<String, List<File>> projects = new LinkedHashMap<>();
+		JadxArgs jadxArgs = new JadxArgs();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--port":
+					port = Integer.parseInt(args[++i]);
+					break;
+				case "--threads":
+					threads = Integer.parseInt(args[++i]);
+					jadxArgs.setThreadsCount(threads);
+					break;
+				case "--page-threshold":
+					threshold = Integer.parseInt(args[++i]);
+					break;
+				case "--page-size":
+					pageSize = Integer.parseInt(args[++i]);
+					break;
+				case "--code-store":
+					codeStore = true;
+					break;
+				case "--config":
+					configFile = Paths.get(args[++i]);
+					break;
+				case "--project": {
+					String spec = args[++i];
+					int eq = spec.indexOf('=');
+					if (eq <= 0) {
+						usage("Invalid --project, expected id=file[,file...]: " + spec);
+						return;
+					}
+					List<File> inputs = new ArrayList<>();
+					for (String file : spec.substring(eq + 1).split(",")) {
+						inputs.add(new File(file));
+					}
+					projects.put(spec.substring(0, eq), inputs);
+					break;
+				}
+				case "--idle-minutes":
+					idleMinutes = Long.parseLong(args[++i]);
+					break;
+				case "--max-loaded":
+					maxLoaded = Integer.parseInt(args[++i]);
+					break;
+				case "--load-dir":
+					loadDirs.add(new File(args[++i]));
+					break;
+				default:
+					if (args[i].startsWith("--")) {
+						usage("Unknown option: " + args[i]);
+						return;
+					}
+					jadxArgs.getInputFiles().add(new File(args[i]));
+			}
+		}
+		if (!projects.isEmpty()) {
+			if (!jadxArgs.getInputFiles().isEmpty()) {
+				usage("Use either --project or plain input files, not both");
+				return;
+			}
+			ProjectRegistry registry = new ProjectRegistry(port, threads, threshold, pageSize, codeStore,
+					TimeUnit.MINUTES.toMillis(idleMinutes), maxLoaded);
+			projects.forEach(registry::add);
+			for (File dir : loadDirs) {
+				try {
+					registry.addLoadDir(dir);
+				} catch (IOException | IllegalArgumentException e) {
+					usage("Invalid --load-dir: " + e.getMessage());
+					return;
+				}
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(registry::shutdown, "JADX-AI-MCP-Shutdown"));
+			registry.start();
+			return;
+		}
+		if (jadxArgs.getInputFiles().isEmpty()) {
+			usage("No input files");
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		JadxDecompiler decompiler = new JadxDecompiler(jadxArgs);
+		decompiler.load();
+		logger.info("JADX AI MCP headless: loaded {} classes in {} ms",
+				decompiler.getClassesWithInners().size(), System.currentTimeMillis() - startTime);
+
+		JadxMcpPlugin server = new JadxMcpPlugin();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.shutdown();
+			decompiler.close();
+		}, "JADX-AI-MCP-Shutdown"));
+		server.setConfigFile(configFile);
+		server.startHeadless(new HeadlessBackend(decompiler), port, threshold, pageSize, codeStore);
+	}
+
+	private static void usage(String error) {
+		System.err.println(error);
+		System.err.println("Usage: HeadlessMain [--port 8656] [--threads N] [--page-threshold 500] [--page-size 100]"
+				+ " [--code-store] [--config config.json] <input files...>");
+		System.err.println("       HeadlessMain [options] --project <id>=<file>[,file...] ... [--idle-minutes 30] [--max-loaded N]"
+				+ " [--load-dir dir]");
+		System.exit(1);
+	}
+}
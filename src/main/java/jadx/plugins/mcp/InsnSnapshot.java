@@ -0,0 +1,428 @@
+package jadx.plugins.mcp;
+
+import jadx.api.plugins.input.data.ICatch;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.ITry;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.ConstClassNode;
+import jadx.core.dex.instructions.ConstStringNode;
+import jadx.core.dex.instructions.GotoNode;
+import jadx.core.dex.instructions.IndexInsnNode;
+import jadx.core.dex.instructions.InvokeNode;
+import jadx.core.dex.instructions.SwitchInsn;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.instructions.args.RegisterArg;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方法指令快照 - 把 InsnNode 列表压缩为列式原始数组（偏移、操作码、寄存器、字面量、引用、跳转目标），
+ * 操作码和引用通过方法内的字符串表去重，快照生成后与 MethodNode 是否卸载无关，可长期缓存；
+ * 同时保存 try 区间及其异常处理器入口偏移；指令文本只在 format=text 第一次请求时生成
+ */
+public final class InsnSnapshot {
+
+	/** argRegs 中表示字面量参数 */
+	public static final int ARG_LITERAL = -1;
+	/** argRegs 中表示其他参数（包装指令等） */
+	public static final int ARG_OTHER = -2;
+
+	private final int count;
+	private final int[] offsets;
+	private final int[] opcodes;
+	private final String[] opcodeTable;
+	private final int[] resultRegs;
+	private final int[] argStarts;
+	private final int[] argRegs;
+	private final long[] argLiterals;
+	private final int[] refs;
+	private final String[] refTable;
+	private final String[] refKindTable;
+	private final int[] targets;
+	private final int[] switchStarts;
+	private final int[] switchTargets;
+	private final int[] tryStarts;
+	private final int[] tryEnds;
+	private final int[] tryHandlerStarts;
+	private final int[] tryHandlers;
+	private final MethodNode mth;
+	private volatile List<String> text;
+
+	private InsnSnapshot(MethodNode mth, Builder b) {
+		this.mth = mth;
+		this.count = b.count;
+		this.offsets = Arrays.copyOf(b.offsets, b.count);
+		this.opcodes = Arrays.copyOf(b.opcodes, b.count);
+		this.opcodeTable = b.opcodeNames.toArray(new String[0]);
+		this.resultRegs = Arrays.copyOf(b.resultRegs, b.count);
+		this.argStarts = Arrays.copyOf(b.argStarts, b.count + 1);
+		this.argRegs = Arrays.copyOf(b.argRegs, b.argCount);
+		this.argLiterals = Arrays.copyOf(b.argLiterals, b.argCount);
+		this.refs = Arrays.copyOf(b.refs, b.count);
+		this.refTable = b.refNames.toArray(new String[0]);
+		this.refKindTable = b.refKinds.toArray(new String[0]);
+		this.targets = Arrays.copyOf(b.targets, b.count);
+		this.switchStarts = Arrays.copyOf(b.switchStarts, b.count + 1);
+		this.switchTargets = Arrays.copyOf(b.switchTargets, b.switchCount);
+		this.tryStarts = b.tryStarts;
+		this.tryEnds = b.tryEnds;
+		this.tryHandlerStarts = b.tryHandlerStarts;
+		this.tryHandlers = b.tryHandlers;
+	}
+
+	/**
+	 * 从已加载的方法生成快照，调用方负责保证方法指令已加载
+	 */
+	public static InsnSnapshot build(MethodNode mth) {
+		InsnNode[] insns = mth.getInstructions();
+		Builder b = new Builder(insns != null ? insns.length : 0);
+		if (insns != null) {
+			for (InsnNode insn : insns) {
+				if (insn != null) {
+					b.add(insn);
+				}
+			}
+		}
+		b.addTries(mth.getCodeReader());
+		return new InsnSnapshot(mth, b);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getOffset(int i) {
+		return offsets[i];
+	}
+
+	public String getOpcode(int i) {
+		return opcodeTable[opcodes[i]];
+	}
+
+	public int getTarget(int i) {
+		return targets[i];
+	}
+
+	/**
+	 * switch指令的全部case目标偏移，非switch指令返回空数组
+	 */
+	public int[] getSwitchTargets(int i) {
+		return Arrays.copyOfRange(switchTargets, switchStarts[i], switchStarts[i + 1]);
+	}
+
+	public int getTryCount() {
+		return tryStarts.length;
+	}
+
+	/**
+	 * try 区间第一条指令的偏移
+	 */
+	public int getTryStart(int i) {
+		return tryStarts[i];
+	}
+
+	/**
+	 * try 区间最后一条指令的偏移（含）
+	 */
+	public int getTryEnd(int i) {
+		return tryEnds[i];
+	}
+
+	/**
+	 * try 区间的全部异常处理器入口偏移，含 catch-all
+	 */
+	public int[] getTryHandlers(int i) {
+		return Arrays.copyOfRange(tryHandlers, tryHandlerStarts[i], tryHandlerStarts[i + 1]);
+	}
+
+	/**
+	 * 指令偏移对应的下标，偏移不是指令起点时返回-1
+	 */
+	public int indexOfOffset(int offset) {
+		int idx = Arrays.binarySearch(offsets, 0, count, offset);
+		return idx >= 0 ? idx : -1;
+	}
+
+	/**
+	 * 指令的文本形式（InsnNode.toString()），兼容旧接口；第一次调用时生成，方法已卸载时重新加载。
+	 * 指令数组已被 jadx 释放（块划分之后）时返回 null，不缓存
+	 */
+	public List<String> getText() {
+		List<String> result = text;
+		if (result != null) {
+			return result;
+		}
+		synchronized (mth) {
+			if (text == null) {
+				if (!mth.isLoaded()) {
+					mth.reload();
+				}
+				InsnNode[] insns = mth.getInstructions();
+				if (insns == null) {
+					return count == 0 ? Collections.emptyList() : null;
+				}
+				List<String> lines = new ArrayList<>(count);
+				for (InsnNode insn : insns) {
+					if (insn != null) {
+						lines.add(insn.toString());
+					}
+				}
+				text = Collections.unmodifiableList(lines);
+			}
+			return text;
+		}
+	}
+
+	/**
+	 * 按指令下标区间 [from, to) 输出列式结构，用于分页
+	 */
+	public Map<String, Object> toColumns(int from, int to) {
+		from = Math.max(0, Math.min(from, count));
+		to = Math.max(from, Math.min(to, count));
+		int argFrom = argStarts[from];
+		int argTo = argStarts[to];
+
+		int[] argIndex = new int[to - from + 1];
+		for (int i = from; i <= to; i++) {
+			argIndex[i - from] = argStarts[i] - argFrom;
+		}
+
+		Map<String, Object> columns = new LinkedHashMap<>();
+		columns.put("offsets", Arrays.copyOfRange(offsets, from, to));
+		columns.put("opcodes", Arrays.copyOfRange(opcodes, from, to));
+		columns.put("resultRegs", Arrays.copyOfRange(resultRegs, from, to));
+		columns.put("argStarts", argIndex);
+		columns.put("argRegs", Arrays.copyOfRange(argRegs, argFrom, argTo));
+		columns.put("argLiterals", Arrays.copyOfRange(argLiterals, argFrom, argTo));
+		columns.put("refs", Arrays.copyOfRange(refs, from, to));
+		columns.put("targets", Arrays.copyOfRange(targets, from, to));
+		int switchFrom = switchStarts[from];
+		int[] switchIndex = new int[to - from + 1];
+		for (int i = from; i <= to; i++) {
+			switchIndex[i - from] = switchStarts[i] - switchFrom;
+		}
+		columns.put("switchStarts", switchIndex);
+		columns.put("switchTargets", Arrays.copyOfRange(switchTargets, switchFrom, switchStarts[to]));
+		columns.put("opcodeTable", opcodeTable);
+		columns.put("refTable", refTable);
+		columns.put("refKindTable", refKindTable);
+		return columns;
+	}
+
+	/**
+	 * 流式写出全部列，大方法无需先构造中间Map和装箱集合
+	 */
+	public void writeColumns(JsonGenerator gen) throws IOException {
+		gen.writeFieldName("offsets");
+		gen.writeArray(offsets, 0, count);
+		gen.writeFieldName("opcodes");
+		gen.writeArray(opcodes, 0, count);
+		gen.writeFieldName("resultRegs");
+		gen.writeArray(resultRegs, 0, count);
+		gen.writeFieldName("argStarts");
+		gen.writeArray(argStarts, 0, count + 1);
+		gen.writeFieldName("argRegs");
+		gen.writeArray(argRegs, 0, argRegs.length);
+		gen.writeFieldName("argLiterals");
+		gen.writeArray(argLiterals, 0, argLiterals.length);
+		gen.writeFieldName("refs");
+		gen.writeArray(refs, 0, count);
+		gen.writeFieldName("targets");
+		gen.writeArray(targets, 0, count);
+		gen.writeFieldName("switchStarts");
+		gen.writeArray(switchStarts, 0, count + 1);
+		gen.writeFieldName("switchTargets");
+		gen.writeArray(switchTargets, 0, switchTargets.length);
+		writeStrings(gen, "opcodeTable", opcodeTable);
+		writeStrings(gen, "refTable", refTable);
+		writeStrings(gen, "refKindTable", refKindTable);
+	}
+
+	private static void writeStrings(JsonGenerator gen, String name, String[] values) throws IOException {
+		gen.writeFieldName(name);
+		gen.writeStartArray();
+		for (String value : values) {
+			gen.writeString(value);
+		}
+		gen.writeEndArray();
+	}
+
+	private static final class Builder {
+		private int count;
+		private int argCount;
+		private int[] offsets;
+		private int[] opcodes;
+		private int[] resultRegs;
+		private int[] argStarts;
+		private int[] argRegs;
+		private long[] argLiterals;
+		private int[] refs;
+		private int[] targets;
+		private int switchCount;
+		private int[] switchStarts;
+		private int[] switchTargets;
+		private int[] tryStarts = new int[0];
+		private int[] tryEnds = new int[0];
+		private int[] tryHandlerStarts = new int[] { 0 };
+		private int[] tryHandlers = new int[0];
+		private final List<String> opcodeNames = new ArrayList<>();
+		private final Map<String, Integer> opcodeIds = new HashMap<>();
+		private final List<String> refNames = new ArrayList<>();
+		private final List<String> refKinds = new ArrayList<>();
+		private final Map<String, Integer> refIds = new HashMap<>();
+
+		Builder(int capacity) {
+			capacity = Math.max(capacity, 1);
+			offsets = new int[capacity];
+			opcodes = new int[capacity];
+			resultRegs = new int[capacity];
+			argStarts = new int[capacity + 1];
+			argRegs = new int[capacity * 2];
+			argLiterals = new long[capacity * 2];
+			refs = new int[capacity];
+			targets = new int[capacity];
+			switchStarts = new int[capacity + 1];
+			switchTargets = new int[4];
+		}
+
+		void add(InsnNode insn) {
+			ensureCapacity(count + 1);
+			offsets[count] = insn.getOffset();
+			opcodes[count] = opcodeIds.computeIfAbsent(insn.getType().name(), name -> {
+				opcodeNames.add(name);
+				return opcodeNames.size() - 1;
+			});
+			RegisterArg result = insn.getResult();
+			resultRegs[count] = result != null ? result.getRegNum() : -1;
+
+			argStarts[count] = argCount;
+			for (InsnArg arg : insn.getArguments()) {
+				ensureArgCapacity(argCount + 1);
+				if (arg instanceof RegisterArg) {
+					argRegs[argCount] = ((RegisterArg) arg).getRegNum();
+				} else if (arg instanceof LiteralArg) {
+					argRegs[argCount] = ARG_LITERAL;
+					argLiterals[argCount] = ((LiteralArg) arg).getLiteral();
+				} else {
+					argRegs[argCount] = ARG_OTHER;
+				}
+				argCount++;
+			}
+			argStarts[count + 1] = argCount;
+
+			refs[count] = refOf(insn);
+			targets[count] = insn instanceof GotoNode ? ((GotoNode) insn).getTarget() : -1;
+			switchStarts[count] = switchCount;
+			if (insn instanceof SwitchInsn) {
+				int[] caseTargets = ((SwitchInsn) insn).getTargets();
+				if (caseTargets != null) {
+					if (switchCount + caseTargets.length > switchTargets.length) {
+						switchTargets = Arrays.copyOf(switchTargets, Math.max(switchCount + caseTargets.length, switchTargets.length * 2));
+					}
+					System.arraycopy(caseTargets, 0, switchTargets, switchCount, caseTargets.length);
+					switchCount += caseTargets.length;
+				}
+			}
+			switchStarts[count + 1] = switchCount;
+			count++;
+		}
+
+		void addTries(ICodeReader codeReader) {
+			if (codeReader == null) {
+				return;
+			}
+			List<ITry> tries = codeReader.getTries();
+			int tryCount = tries.size();
+			tryStarts = new int[tryCount];
+			tryEnds = new int[tryCount];
+			tryHandlerStarts = new int[tryCount + 1];
+			int[] handlers = new int[tryCount * 2];
+			int handlerCount = 0;
+			for (int i = 0; i < tryCount; i++) {
+				ITry tryData = tries.get(i);
+				tryStarts[i] = tryData.getStartOffset();
+				tryEnds[i] = tryData.getEndOffset();
+				tryHandlerStarts[i] = handlerCount;
+				ICatch catchData = tryData.getCatch();
+				int[] addrs = catchData.getHandlers();
+				int catchAll = catchData.getCatchAllHandler();
+				int needed = handlerCount + addrs.length + 1;
+				if (needed > handlers.length) {
+					handlers = Arrays.copyOf(handlers, Math.max(needed, handlers.length * 2));
+				}
+				System.arraycopy(addrs, 0, handlers, handlerCount, addrs.length);
+				handlerCount += addrs.length;
+				if (catchAll >= 0) {
+					handlers[handlerCount++] = catchAll;
+				}
+			}
+			tryHandlerStarts[tryCount] = handlerCount;
+			tryHandlers = Arrays.copyOf(handlers, handlerCount);
+		}
+
+		private int refOf(InsnNode insn) {
+			if (insn instanceof InvokeNode) {
+				MethodInfo callMth = ((InvokeNode) insn).getCallMth();
+				return ref("method", callMth.getRawFullId());
+			}
+			if (insn instanceof ConstStringNode) {
+				return ref("string", ((ConstStringNode) insn).getString());
+			}
+			if (insn instanceof ConstClassNode) {
+				return ref("type", String.valueOf(((ConstClassNode) insn).getClsType()));
+			}
+			if (insn instanceof IndexInsnNode) {
+				Object index = ((IndexInsnNode) insn).getIndex();
+				if (index instanceof FieldInfo) {
+					return ref("field", ((FieldInfo) index).getRawFullId());
+				}
+				if (index != null) {
+					return ref("type", String.valueOf(index));
+				}
+			}
+			return -1;
+		}
+
+		private int ref(String kind, String name) {
+			return refIds.computeIfAbsent(kind + ':' + name, key -> {
+				refNames.add(name);
+				refKinds.add(kind);
+				return refNames.size() - 1;
+			});
+		}
+
+		private void ensureCapacity(int size) {
+			if (size > offsets.length) {
+				int newSize = Math.max(size, offsets.length * 2);
+				offsets = Arrays.copyOf(offsets, newSize);
+				opcodes = Arrays.copyOf(opcodes, newSize);
+				resultRegs = Arrays.copyOf(resultRegs, newSize);
+				argStarts = Arrays.copyOf(argStarts, newSize + 1);
+				refs = Arrays.copyOf(refs, newSize);
+				targets = Arrays.copyOf(targets, newSize);
+				switchStarts = Arrays.copyOf(switchStarts, newSize + 1);
+			}
+		}
+
+		private void ensureArgCapacity(int size) {
+			if (size > argRegs.length) {
+				int newSize = Math.max(size, argRegs.length * 2);
+				argRegs = Arrays.copyOf(argRegs, newSize);
+				argLiterals = Arrays.copyOf(argLiterals, newSize);
+			}
+		}
+	}
+}
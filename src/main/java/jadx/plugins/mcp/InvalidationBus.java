@@ -0,0 +1,210 @@
+package jadx.plugins.mcp;
+
+import jadx.api.data.ICodeComment;
+import jadx.api.data.ICodeData;
+import jadx.api.metadata.ICodeNodeRef;
+import jadx.api.metadata.annotations.VarNode;
+import jadx.api.plugins.events.JadxEvents;
+import jadx.api.plugins.events.types.NodeRenamedByUser;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存失效总线 - 订阅重命名（已应用之后，见 McpBackend.addRenameListener）、代码数据更新和项目重载；
+ * 重命名只影响节点所在顶层类及通过交叉引用使用它的类，注释只影响所在顶层类，只让这些类的缓存条目失效，
+ * 项目重载时节点全部更换，通知监听者整体清空
+ */
+public final class InvalidationBus {
+
+	private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+	public interface Listener {
+		/**
+		 * @param topClassRawNames 受影响的顶层类原始名，内部类的缓存随顶层类一起失效
+		 */
+		void invalidateClasses(Set<String> topClassRawNames);
+
+		void invalidateAll();
+
+		/**
+		 * 注释新增/修改（removed=false）或删除，来自插件接口或 jadx-gui，在受影响类失效之后调用
+		 */
+		default void commentChanged(ICodeComment comment, boolean removed) {
+		}
+	}
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong invalidatedClasses = new AtomicLong();
+	private final AtomicLong fullInvalidations = new AtomicLong();
+
+	// 上一次代码数据中的注释，节点+代码位置 -> 注释
+	private Map<String, ICodeComment> comments = Map.of();
+	// 当前监听代码数据的 RootNode，项目重新加载后旧 RootNode 的回调不再处理
+	private volatile RootNode attachedRoot;
+
+	public InvalidationBus(McpBackend backend) {
+		backend.addRenameListener(this::onNodeRenamed);
+		backend.events().addListener(JadxEvents.RELOAD_PROJECT, event -> projectReloaded());
+	}
+
+	/**
+	 * 项目加载完成后调用：监听代码数据更新（插件接口和 jadx-gui 中修改注释后都会 reloadCodeData），
+	 * 与上一次的注释比较，只让注释发生变化的类失效；回调发生在新代码数据生效之后
+	 */
+	public void attach(RootNode root) {
+		synchronized (this) {
+			attachedRoot = root;
+			comments = snapshotComments(root.getArgs().getCodeData());
+		}
+		root.registerCodeDataUpdateListener(codeData -> onCodeDataUpdated(root, codeData));
+	}
+
+	private void onCodeDataUpdated(RootNode root, ICodeData codeData) {
+		Set<String> changedClasses = new HashSet<>();
+		List<ICodeComment> changed = new ArrayList<>();
+		List<ICodeComment> removed = new ArrayList<>();
+		synchronized (this) {
+			if (root != attachedRoot) {
+				return;
+			}
+			Map<String, ICodeComment> current = snapshotComments(codeData);
+			for (Map.Entry<String, ICodeComment> entry : current.entrySet()) {
+				ICodeComment old = comments.get(entry.getKey());
+				if (old == null || !old.getComment().equals(entry.getValue().getComment())) {
+					changedClasses.add(entry.getValue().getNodeRef().getDeclaringClass());
+					changed.add(entry.getValue());
+				}
+			}
+			for (Map.Entry<String, ICodeComment> entry : comments.entrySet()) {
+				if (!current.containsKey(entry.getKey())) {
+					changedClasses.add(entry.getValue().getNodeRef().getDeclaringClass());
+					removed.add(entry.getValue());
+				}
+			}
+			comments = current;
+		}
+		if (changedClasses.isEmpty()) {
+			return;
+		}
+		Set<String> topClasses = new HashSet<>();
+		for (String declaringClass : changedClasses) {
+			ClassNode cls = root.resolveRawClass(declaringClass);
+			topClasses.add(cls != null ? cls.getTopParentClass().getRawName() : declaringClass);
+		}
+		publish(topClasses);
+		for (Listener listener : listeners) {
+			try {
+				for (ICodeComment comment : changed) {
+					listener.commentChanged(comment, false);
+				}
+				for (ICodeComment comment : removed) {
+					listener.commentChanged(comment, true);
+				}
+			} catch (Exception e) {
+				logger.warn("JADX AI MCP: comment listener failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private static Map<String, ICodeComment> snapshotComments(ICodeData codeData) {
+		if (codeData == null) {
+			return Map.of();
+		}
+		Map<String, ICodeComment> result = new HashMap<>();
+		for (ICodeComment comment : codeData.getComments()) {
+			result.put(comment.getNodeRef() + "|" + comment.getCodeRef(), comment);
+		}
+		return result;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	private void onNodeRenamed(NodeRenamedByUser event) {
+		publish(affectedTopClasses(event.getNode()));
+	}
+
+	public void projectReloaded() {
+		events.incrementAndGet();
+		fullInvalidations.incrementAndGet();
+		for (Listener listener : listeners) {
+			try {
+				listener.invalidateAll();
+			} catch (Exception e) {
+				logger.warn("JADX AI MCP: cache invalidation failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private void publish(Set<String> topClassRawNames) {
+		events.incrementAndGet();
+		if (topClassRawNames.isEmpty()) {
+			return;
+		}
+		invalidatedClasses.addAndGet(topClassRawNames.size());
+		for (Listener listener : listeners) {
+			try {
+				listener.invalidateClasses(topClassRawNames);
+			} catch (Exception e) {
+				logger.warn("JADX AI MCP: cache invalidation failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * 节点所在顶层类，加上通过交叉引用使用该节点的类（重命名会改变这些类的代码）
+	 */
+	static Set<String> affectedTopClasses(ICodeNodeRef node) {
+		Set<String> result = new HashSet<>();
+		if (node instanceof ClassNode) {
+			ClassNode cls = (ClassNode) node;
+			result.add(cls.getTopParentClass().getRawName());
+			for (ClassNode user : cls.getUseIn()) {
+				result.add(user.getTopParentClass().getRawName());
+			}
+		} else if (node instanceof MethodNode) {
+			MethodNode mth = (MethodNode) node;
+			result.add(mth.getParentClass().getTopParentClass().getRawName());
+			for (MethodNode user : mth.getUseIn()) {
+				result.add(user.getParentClass().getTopParentClass().getRawName());
+			}
+		} else if (node instanceof FieldNode) {
+			FieldNode fld = (FieldNode) node;
+			result.add(fld.getParentClass().getTopParentClass().getRawName());
+			for (MethodNode user : fld.getUseIn()) {
+				result.add(user.getParentClass().getTopParentClass().getRawName());
+			}
+		} else if (node instanceof VarNode) {
+			result.add(((VarNode) node).getMth().getParentClass().getTopParentClass().getRawName());
+		}
+		return result;
+	}
+
+	public long getEvents() {
+		return events.get();
+	}
+
+	public long getInvalidatedClasses() {
+		return invalidatedClasses.get();
+	}
+
+	public long getFullInvalidations() {
+		return fullInvalidations.get();
+	}
+}
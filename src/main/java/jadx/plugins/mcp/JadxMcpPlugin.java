@@ -4,12 +4,18 @@ package jadx.plugins.mcp;
 import jadx.api.*;
 import jadx.api.data.*;
 import jadx.api.data.impl.*;
+import jadx.api.metadata.ICodeAnnotation;
 import jadx.api.metadata.ICodeNodeRef;
 import jadx.api.metadata.annotations.*;
 import jadx.api.plugins.*;
 import jadx.api.plugins.events.types.NodeRenamedByUser;
 import jadx.api.plugins.gui.*;
+import jadx.api.plugins.pass.JadxPassInfo;
+import jadx.api.plugins.pass.impl.SimpleJadxPassInfo;
+import jadx.api.plugins.pass.types.JadxAfterLoadPass;
 import jadx.api.security.IJadxSecurity;
+import jadx.core.Jadx;
+import jadx.core.dex.info.MethodInfo;
 import jadx.core.dex.instructions.args.*;
 import jadx.core.dex.nodes.*;
 import jadx.core.utils.android.AndroidManifestParser;
@@ -17,13 +23,21 @@ import jadx.core.utils.android.AppAttribute;
 import jadx.core.utils.android.ApplicationParams;
 import jadx.core.utils.exceptions.JadxRuntimeException;
 import jadx.core.xmlgen.ResContainer;
-import jadx.gui.JadxWrapper;
 import jadx.gui.ui.MainWindow;
-import jadx.gui.settings.JadxProject;
 import jadx.gui.utils.pkgs.JRenamePackage;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.sse.SseClient;
+import io.javalin.http.sse.SseHandler;
+import io.javalin.json.JavalinJackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +49,31 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
@@ -58,21 +88,33 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private JadxGuiContext guiContext;
 	private MainWindow mainWindow;
+	private volatile McpBackend backend;
 	private Javalin app;
 
 	private final AtomicBoolean shouldStop = new AtomicBoolean(false);
 
 
-	private ScheduledExecutorService scheduler;
-
-
 	private volatile boolean serverStarted = false;
 
+	// jadx 加载完成（JadxAfterLoadPass）前只开放 AVAILABLE_WHILE_LOADING 中的接口，其余返回 503
+	private volatile boolean projectReady = false;
+	private volatile long loadStartMillis = System.currentTimeMillis();
+	// 加载阶段 -> 状态，随 load 事件更新，加载中的 503 响应和 /health 中返回
+	private final Map<String, String> loadStages = new ConcurrentHashMap<>();
+	private static final Set<String> AVAILABLE_WHILE_LOADING = Set.of("/health", "/metrics", "/events", "/get-changes", "/config",
+			"/start-jfr-recording", "/stop-jfr-recording", "/get-jfr-status");
 
-	private static final int MAX_STARTUP_ATTEMPTS = 30;
-
+	// 反编译、全量扫描或批量处理的接口，经过公平队列限制并发
+	private static final Set<String> HEAVY_ROUTES = Set.of("/get-class-source", "/get-method-source",
+			"/get-smali-of-class", "/get-smali-of-method", "/get-method-code-refs-by-line", "/search-method",
+			"/get-main-activity", "/get-main-application-classes-code", "/find-similar-methods",
+			"/get-library-fingerprints", "/batch");
 
-	private static final int CHECK_INTERVAL_SECONDS = 1;
+	private static final String CLIENT_ID_HEADER = "X-Client-Id";
+	private static final String CLIENT_WEIGHT_HEADER = "X-Client-Weight";
+	private static final int MAX_CLIENT_WEIGHT = 100;
+	// 没有请求截止时间时在队列中最多等待这么久
+	private static final long MAX_QUEUE_WAIT_MILLIS = 120_000;
 
 
 	private static final String PREF_KEY_PORT = "jadx_ai_mcp_port";
@@ -82,15 +124,115 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private static final int DEFAULT_PORT = 8656;
 
+	private static final int MAX_BATCH_SIZE = 500;
 
-	private int currentPort = DEFAULT_PORT;
-	private int currentthreshold = 500;
-	private int currentPageSize = 100;
+	private static final String[] CLASS_NAME_PARAMS = {"name", "class_name", "class"};
+	private static final String[] CLASS_RAW_NAME_PARAMS = {"rawName", "raw_name", "class_raw_name", "classRawName"};
+	private static final String[] METHOD_NAME_PARAMS = {"method", "method_name", "methodName"};
+	private static final String[] METHOD_ORIGINAL_NAME_PARAMS = {"original_name", "originalName", "method_original_name"};
+	private static final String[] METHOD_SIGNATURE_PARAMS = {"method_signature", "signature"};
+	private static final String[] FIELD_NAME_PARAMS = {"fieldName", "field_name", "field"};
+	private static final String[] FIELD_RAW_NAME_PARAMS = {"field_rawName", "field_raw_name", "fieldRawName"};
+
+
+	// 当前配置快照，updateConfig 合并后整体替换，请求中读取一次即得到一致的配置
+	private volatile McpConfig config = McpConfig.DEFAULTS;
+	// 配置文件，null 时不读取也不保存
+	private Path configFile;
+	private static final long DRAIN_TIMEOUT_MILLIS = 30_000;
+	// 当前 HTTP 服务器上正在处理的请求数，更换端口时等待旧服务器上的请求处理完再停止
+	private volatile AtomicInteger inFlightRequests = new AtomicInteger();
+	// 超过客户端截止时间（X-Request-Timeout-Ms）而中止的请求数
+	private final AtomicLong deadlineExceeded = new AtomicLong();
+
+	// 按客户端限流和重接口的公平队列，参数随配置更新
+	private final ClientRateLimiter rateLimiter = new ClientRateLimiter();
+	private final FairScheduler heavyScheduler = new FairScheduler(McpConfig.DEFAULTS.heavyConcurrency);
 
 
 	private Preferences prefs;
 
-	private PaginationHelper paginationHelper;
+	private volatile PaginationHelper paginationHelper;
+
+	// 处理批量子请求等耗时任务的工作线程池
+	private ExecutorService workerPool;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Map<String, BatchRoute> batchRoutes = new HashMap<>();
+
+	// 顶层类 -> 代码索引（方法区间表），随类代码一起缓存
+	private final LruCache<ClassNode, ClassCodeIndex> codeIndexCache = new LruCache<>("class-code-index", 256);
+	// 代码失效代数：重命名、注释、重载使类代码失效时加一；构建期间发生失效的代码索引不放入缓存，
+	// 因此缓存中的索引总是当前代码的，读取时不需要再与 jadx 代码比较
+	private long codeGeneration;
+	private final Object codeIndexLock = new Object();
+
+	// 类 -> smali文本及方法区间表
+	private final LruCache<ClassNode, SmaliIndex> smaliIndexCache = new LruCache<>("smali-index", 128);
+
+	// 方法 -> 列式指令快照
+	private final LruCache<MethodNode, InsnSnapshot> insnSnapshotCache = new LruCache<>("insn-snapshot", 512);
+
+	// 方法 -> 控制流图
+	private final LruCache<MethodNode, MethodCfg> cfgCache = new LruCache<>("method-cfg", 256);
+
+	// 持久化分析索引，后台打开或构建完成前为null
+	private volatile PersistentIndex persistentIndex;
+
+	// 方法结构哈希，第一次版本对比或相似搜索时创建，按类惰性计算
+	private volatile StructuralIndex structuralIndex;
+
+	// 方法相似度索引，第一次相似搜索时并行构建
+	private volatile MinHashIndex<MethodNode> similarityIndex;
+	// 正在进行的相似度索引构建，由 similarityLock 保护
+	private CompletableFuture<MinHashIndex<MethodNode>> similarityBuild;
+	private final Object similarityLock = new Object();
+	private volatile long similarityIndexBuildMillis;
+
+	// 指令数少于此值的方法（getter/setter等）不进入相似度索引
+	private static final int MIN_SIMILARITY_INSNS = 8;
+	// /get-library-fingerprints 生成的标志类数量
+	private static final int FINGERPRINT_MARKERS = 3;
+
+	// 第三方库识别结果，加载后在后台识别，完成前为null
+	private volatile LibraryDetector libraries;
+	private final AtomicBoolean detectingLibraries = new AtomicBoolean();
+	private final AtomicBoolean loadingPersistentIndex = new AtomicBoolean();
+
+	private static final String[] EXCLUDE_LIBRARIES_PARAMS = {"exclude_libraries", "excludeLibraries"};
+
+	// 堆外压缩代码存储，未启用 code-store 选项时为null
+	private volatile CompressedCodeStore codeStore;
+
+	// 超过此时间未被请求访问的类，在内存紧张时卸载其代码
+	private static final long IDLE_UNLOAD_MILLIS = 60_000;
+
+	// 顶层类 -> 最近一次被请求访问的时间
+	private final Map<ClassNode, Long> classAccessTimes = new ConcurrentHashMap<>();
+
+	// 请求处理期间（包括其批量子请求）持有读锁，卸载类代码需要取得写锁，不会卸载正在被请求使用的类
+	private final ReentrantReadWriteLock codeUnloadLock = new ReentrantReadWriteLock();
+
+	private MemoryMonitor memoryMonitor;
+	private InvalidationBus invalidationBus;
+
+	// 变更事件流保留的最近事件数，断线重连时在此范围内续传
+	private static final int CHANGE_FEED_CAPACITY = 4096;
+	private ChangeFeed changeFeed;
+
+	private final RouteMetrics routeMetrics = new RouteMetrics();
+
+	// "GET /path" -> 处理函数，registerApiRoutes 填充，单独启动时注册到 app，多项目模式下由 ProjectRegistry 分发
+	private final Map<String, Handler> routeTable = new LinkedHashMap<>();
+
+	// 多项目模式下的项目id，单独启动时为null
+	private String projectId;
+
+	// 工作线程池和内存监控由多项目注册表共享时为false，关闭时不停止它们
+	private boolean ownsSharedServices = true;
+
+	private final McpJfr jfr = new McpJfr(Paths.get(System.getProperty("user.home"), ".jadx-mcp", "jfr"));
 
 	@Override
 	public JadxPluginInfo getPluginInfo() {
@@ -112,6 +254,10 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			try {
 
+				if (context.getGuiContext() == null) {
+					logger.info("JADX-AI-MCP插件：非GUI环境，插件不启动，无界面模式请使用 HeadlessMain");
+					return;
+				}
 				this.mainWindow = (MainWindow) context.getGuiContext().getMainFrame();
 				if (this.mainWindow == null) {
 					logger.error("JADX-AI-MCP插件：主窗口为null，JADX AI MCP将无法启动。");
@@ -119,24 +265,42 @@ public class JadxMcpPlugin implements JadxPlugin {
 				}
 
 				prefs = Preferences.userNodeForPackage(JadxMcpPlugin.class);
-				currentPort = prefs.getInt(PREF_KEY_PORT, DEFAULT_PORT);
+				configFile = Paths.get(System.getProperty("user.home"), ".jadx-mcp", "config.json");
+				initConfig(prefs.getInt(PREF_KEY_PORT, DEFAULT_PORT), prefs.getInt(PREF_KEY_THRESHOLD, 500),
+						prefs.getInt(PREF_KEY_PAGESIZE, 100));
 
-				currentthreshold = prefs.getInt(PREF_KEY_THRESHOLD, 500);
-				currentPageSize = prefs.getInt(PREF_KEY_PAGESIZE, 100);
+				context.addPass(new JadxAfterLoadPass() {
+					@Override
+					public JadxPassInfo getInfo() {
+						return new SimpleJadxPassInfo("JadxMcpReady", "Open JADX AI MCP API after project load");
+					}
 
-				paginationHelper = new PaginationHelper(currentthreshold, currentPageSize);
+					@Override
+					public void init(JadxDecompiler decompiler) {
+						onProjectLoaded(decompiler);
+					}
+				});
 
-				addMenuItems();
+				if (serverStarted) {
+					// 同一实例重新加载项目：服务器保持运行，加载完成前接口返回 503；
+					// 旧项目的缓存和持久化索引不再有效，新项目加载完成后重新打开索引
+					projectReady = false;
+					invalidateAllCaches();
+					persistentIndex = null;
+					loadStartMillis = System.currentTimeMillis();
+					publishLoadState("project", "loading");
+					return;
+				}
 
-				logger.info("JADX-AI-MCP插件：正在初始化并等待JADX完全加载...");
+				backend = new GuiBackend(mainWindow);
+				initServices(options.isCodeStore(), null, null);
 
-				scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-					Thread t = new Thread(r, "JADX-AI-MCP-Startup");
-					t.setDaemon(true); // 设置为守护线程，不阻止JADX退出
-					return t;
-				});
+				addMenuItems();
 
-				startDelayedInitialization();
+				// 端口立即监听，jadx 加载完成前请求返回 503 和加载进度
+				publishLoadState("project", "loading");
+				start();
+				serverStarted = app != null;
 
 			} catch (Exception e) {
 				logger.error("JADX-AI-MCP插件：初始化错误：" + e.getMessage(), e);
@@ -146,74 +310,143 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
-	private void startDelayedInitialization() {
+	/**
+	 * 无界面模式：在已加载的 JadxDecompiler 上启动与插件相同的 HTTP API，可从命令行（HeadlessMain）或作为库调用
+	 */
+	public void startHeadless(McpBackend backend, int port, int pageThreshold, int pageSize, boolean codeStore) {
+		this.backend = backend;
+		initConfig(port, pageThreshold, pageSize);
+		initServices(codeStore, null, null);
+		invalidationBus.attach(backend.getDecompiler().getRoot());
+		projectReady = true;
+		start();
+		serverStarted = app != null;
+		if (!serverStarted) {
+			throw new IllegalStateException("Failed to start HTTP server on port " + config.port);
+		}
+	}
 
-		scheduler.scheduleAtFixedRate(() -> {
-			try {
 
-				if (serverStarted) {
-					scheduler.shutdown();
-					return;
-				}
+	/**
+	 * 多项目模式：作为注册表中的一个项目挂载，不启动自己的HTTP服务器，路由由 ProjectRegistry 通过 createRouteTable 分发
+	 */
+	void attachProject(String projectId, McpBackend backend, int port, int pageThreshold, int pageSize, boolean codeStore,
+			ExecutorService sharedPool, MemoryMonitor sharedMonitor) {
+		this.projectId = projectId;
+		this.backend = backend;
+		initConfig(port, pageThreshold, pageSize);
+		initServices(codeStore, sharedPool, sharedMonitor);
+		invalidationBus.attach(backend.getDecompiler().getRoot());
+		serverStarted = true;
+		projectReady = true;
+		startBackgroundIndexing();
+	}
 
-				if (isJadxFullyLoaded()) {
-					logger.info("JADX-AI-MCP插件：JADX完全加载，正在启动HTTP服务器...");
-					start(); // 启动HTTP服务器
-					serverStarted = true;
-					scheduler.shutdown(); // 关闭调度器
-				} else {
-					logger.debug("JADX-AI-MCP插件：等待JADX完全加载...");
-				}
-			} catch (Exception e) {
-				logger.error("JADX-AI-MCP插件：延迟初始化期间出错：" + e.getMessage(), e);
-			}
-		}, 2, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
 
-		scheduler.schedule(() -> {
-			if (!serverStarted) {
-				logger.warn("JADX-AI-MCP插件：等待JADX加载超时，强制启动服务器...");
-				try {
-					start(); // 强制启动HTTP服务器
-					serverStarted = true;
-				} catch (Exception e) {
-					logger.error("JADX-AI-MCP插件：超时后启动服务器失败：" + e.getMessage(), e);
-				}
-			}
-		}, MAX_STARTUP_ATTEMPTS, TimeUnit.SECONDS);
+	/**
+	 * 无界面模式下 HeadlessMain --config 指定的配置文件，需在 startHeadless 之前设置
+	 */
+	void setConfigFile(Path configFile) {
+		this.configFile = configFile;
 	}
 
 
-	private boolean isJadxFullyLoaded() {
+	/**
+	 * 初始配置：默认值 + 保存的端口/分页设置（GUI首选项或命令行参数），配置文件中的值优先
+	 */
+	private void initConfig(int port, int pageThreshold, int pageSize) {
+		McpConfig initial = McpConfig.DEFAULTS.merge(Map.of("port", port, "page_threshold", pageThreshold, "page_size", pageSize));
 		try {
-			if (mainWindow == null) {
-				return false;
-			}
+			initial = initial.load(objectMapper, configFile);
+		} catch (Exception e) {
+			logger.warn("JADX-AI-MCP插件：配置文件读取失败，使用默认配置：" + e.getMessage());
+		}
+		config = initial;
+		paginationHelper = new PaginationHelper(initial.pageThreshold, initial.pageSize);
+	}
+
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			if (wrapper == null) {
-				logger.debug("JADX-AI-MCP插件：JadxWrapper为null，尚未就绪");
-				return false;
+	/**
+	 * GUI和无界面模式共用的后台服务：事件监听、代码存储、内存监控、指标和工作线程池，
+	 * sharedPool/sharedMonitor 非null时使用多项目共享的实例
+	 */
+	private void initServices(boolean enableCodeStore, ExecutorService sharedPool, MemoryMonitor sharedMonitor) {
+		changeFeed = new ChangeFeed(CHANGE_FEED_CAPACITY);
+		invalidationBus = new InvalidationBus(backend);
+		invalidationBus.addListener(new InvalidationBus.Listener() {
+			@Override
+			public void invalidateClasses(Set<String> topClassRawNames) {
+				invalidateCachedClasses(topClassRawNames);
 			}
 
-			List<JavaClass> classes = wrapper.getIncludedClassesWithInners();
-			if (classes == null) {
-				logger.debug("JADX-AI-MCP插件：类列表为null，尚未就绪");
-				return false;
+			@Override
+			public void invalidateAll() {
+				invalidateAllCaches();
 			}
 
-			boolean hasDecompilerData = wrapper.getDecompiler() != null;
+			@Override
+			public void commentChanged(ICodeComment comment, boolean removed) {
+				Map<String, Object> event = new LinkedHashMap<>();
+				event.put("class", comment.getNodeRef().getDeclaringClass());
+				event.put("node_type", comment.getNodeRef().getType().name().toLowerCase(Locale.ROOT));
+				event.put("short_id", comment.getNodeRef().getShortId());
+				event.put("comment", removed ? "" : comment.getComment());
+				event.put("removed", removed);
+				changeFeed.publish("comment", event);
+			}
+		});
+		backend.addRenameListener(this::onNodeRenamed);
 
-			if (!hasDecompilerData) {
-				logger.debug("JADX-AI-MCP插件：反编译器尚未就绪");
-				return false;
+		if (enableCodeStore) {
+			try {
+				codeStore = CompressedCodeStore.create(Paths.get(System.getProperty("java.io.tmpdir"), "jadx-mcp"), 16);
+			} catch (Exception e) {
+				logger.warn("JADX-AI-MCP插件：代码存储创建失败，直接使用jadx代码：" + e.getMessage());
 			}
+		}
 
-			logger.debug("JADX-AI-MCP插件：发现{}个类，JADX似乎已加载", classes.size());
-			return true;
+		ownsSharedServices = sharedPool == null;
+		if (sharedMonitor != null) {
+			memoryMonitor = sharedMonitor;
+		} else {
+			memoryMonitor = new MemoryMonitor(0.75, 0.90, this::unloadIdleClasses);
+			memoryMonitor.start(5);
+		}
+		memoryMonitor.register(codeIndexCache);
+		memoryMonitor.register(smaliIndexCache);
+		memoryMonitor.register(insnSnapshotCache);
+		memoryMonitor.register(cfgCache);
+		if (codeStore != null) {
+			memoryMonitor.register(codeStore.getHotCache());
+		}
+		applyCacheSizes(config);
+		applyAdmissionLimits(config);
 
-		} catch (Exception e) {
-			logger.debug("JADX-AI-MCP插件：就绪检查期间出现异常：" + e.getMessage());
-			return false;
+		registerMetrics();
+
+		if (sharedPool != null) {
+			workerPool = sharedPool;
+			return;
+		}
+		AtomicInteger workerIndex = new AtomicInteger();
+		workerPool = Executors.newFixedThreadPool(config.workerThreads, r -> {
+			Thread t = new Thread(r, "JADX-AI-MCP-Worker-" + workerIndex.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+
+	/**
+	 * jadx 加载完成（所有类已加载）后由 JadxAfterLoadPass 调用：开放全部接口并开始后台索引
+	 */
+	private void onProjectLoaded(JadxDecompiler decompiler) {
+		invalidationBus.attach(decompiler.getRoot());
+		projectReady = true;
+		logger.info("JADX-AI-MCP插件：JADX加载完成，用时{} ms", System.currentTimeMillis() - loadStartMillis);
+		publishLoadState("project", "ready");
+		if (serverStarted) {
+			startBackgroundIndexing();
 		}
 	}
 
@@ -221,12 +454,33 @@ public class JadxMcpPlugin implements JadxPlugin {
 	public void shutdown() {
 		try {
 
-			if (scheduler != null && !scheduler.isShutdown()) {
-				scheduler.shutdown();
+			if (workerPool != null && ownsSharedServices) {
+				workerPool.shutdownNow();
+			}
+
+			if (memoryMonitor != null) {
+				if (ownsSharedServices) {
+					memoryMonitor.stop();
+				} else {
+					memoryMonitor.unregister(codeIndexCache);
+					memoryMonitor.unregister(smaliIndexCache);
+					memoryMonitor.unregister(insnSnapshotCache);
+					memoryMonitor.unregister(cfgCache);
+				}
+			}
+
+			jfr.close();
 
-				if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-					scheduler.shutdownNow();
+			if (changeFeed != null) {
+				changeFeed.close();
+			}
+
+			if (codeStore != null) {
+				if (!ownsSharedServices) {
+					memoryMonitor.unregister(codeStore.getHotCache());
 				}
+				codeStore.close();
+				codeStore = null;
 			}
 
 			if (app != null) {
@@ -243,69 +497,570 @@ public class JadxMcpPlugin implements JadxPlugin {
 		try {
 
 			logger.info("创建并启动Javalin HTTP服务器");
-			app = Javalin.create().start(currentPort);
-
-			logger.info("注册所有API路由");
-			registerApiRoutes();
+			AtomicInteger inFlight = new AtomicInteger();
+			app = createServer(config.port, inFlight);
+			inFlightRequests = inFlight;
 
 			logger.info("启动成功日志信息");
 			printStartupBanner();
 			logger.info("start启动完成");
 
+			if (projectReady) {
+				startBackgroundIndexing();
+			}
+
 		} catch (Exception e) {
 			logger.error("JADX-AI-MCP插件错误：无法启动HTTP服务器。异常：" + e.getMessage());
 		}
 	}
 
 
+	/**
+	 * 创建注册了全部路由的 Javalin 服务器并监听 port，inFlight 统计该服务器上正在处理的请求数；
+	 * 监听失败时停止已创建的服务器并抛出异常
+	 */
+	private Javalin createServer(int port, AtomicInteger inFlight) {
+		Javalin server = Javalin.create(javalinConfig -> javalinConfig.jsonMapper(new TimedJsonMapper(new JavalinJackson())));
+
+		logger.info("注册所有API路由");
+		for (Map.Entry<String, Handler> route : createRouteTable().entrySet()) {
+			String[] key = route.getKey().split(" ", 2);
+			Handler gated = readinessGate(key[1], route.getValue());
+			Handler handler = routeMetrics.wrap(key[0], key[1], ctx -> {
+				inFlight.incrementAndGet();
+				try {
+					gated.handle(ctx);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			});
+			if ("POST".equals(key[0])) {
+				server.post(key[1], handler);
+			} else {
+				server.get(key[1], handler);
+			}
+		}
+		try {
+			return server.start(port);
+		} catch (RuntimeException e) {
+			server.stop();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * 合并配置项并原子替换配置快照：分页、缓存容量、线程池和索引开关立即生效，不重启服务器、不清空缓存；
+	 * 只有端口变化时在新端口上监听，旧服务器处理完正在进行的请求后停止
+	 *
+	 * @param save 同时写入配置文件（GUI下还写入首选项）
+	 * @return 发生变化的配置项
+	 */
+	synchronized Map<String, Object> updateConfig(Map<String, ?> values, boolean save) throws IOException {
+		McpConfig old = config;
+		McpConfig next = old.merge(values);
+		if (next.port != old.port && projectId != null) {
+			throw new IllegalArgumentException("'port' is owned by the project registry, use --port instead");
+		}
+		if (next.workerThreads != old.workerThreads && !ownsSharedServices) {
+			throw new IllegalArgumentException("'worker_threads' is shared by all projects, use --threads instead");
+		}
+		if (save && configFile == null) {
+			throw new IllegalArgumentException("No config file, start with --config to enable saving");
+		}
+		if (next.port != old.port && app != null) {
+			rebind(next.port);
+		}
+		config = next;
+		if (next.port != old.port && app == null && backend != null) {
+			// 服务器之前未能启动（如端口被占用），在新端口上启动
+			start();
+			serverStarted = app != null;
+		}
+		if (next.pageThreshold != old.pageThreshold || next.pageSize != old.pageSize) {
+			paginationHelper = new PaginationHelper(next.pageThreshold, next.pageSize);
+		}
+		applyCacheSizes(next);
+		applyAdmissionLimits(next);
+		if (next.workerThreads != old.workerThreads && workerPool instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) workerPool;
+			// 先调大上限再调核心数（缩小时相反），否则 setCorePoolSize 会因超过上限而失败
+			if (next.workerThreads > pool.getMaximumPoolSize()) {
+				pool.setMaximumPoolSize(next.workerThreads);
+				pool.setCorePoolSize(next.workerThreads);
+			} else {
+				pool.setCorePoolSize(next.workerThreads);
+				pool.setMaximumPoolSize(next.workerThreads);
+			}
+		}
+		if (!next.persistentIndex) {
+			persistentIndex = null;
+		}
+		if (!next.libraryDetection) {
+			libraries = null;
+		}
+		if (serverStarted && projectReady) {
+			startBackgroundIndexing();
+		}
+
+		if (save) {
+			next.save(objectMapper, configFile);
+			if (prefs != null) {
+				prefs.putInt(PREF_KEY_PORT, next.port);
+				prefs.putInt(PREF_KEY_THRESHOLD, next.pageThreshold);
+				prefs.putInt(PREF_KEY_PAGESIZE, next.pageSize);
+			}
+		}
+		Map<String, Object> changed = old.diff(next);
+		if (!changed.isEmpty()) {
+			logger.info("JADX-AI-MCP插件：配置已更新：" + changed);
+			changeFeed.publish("config", Map.of("changed", changed));
+		}
+		return changed;
+	}
+
+
+	private void applyCacheSizes(McpConfig cfg) {
+		memoryMonitor.resize(codeIndexCache, cfg.codeIndexCache);
+		memoryMonitor.resize(smaliIndexCache, cfg.smaliIndexCache);
+		memoryMonitor.resize(insnSnapshotCache, cfg.insnSnapshotCache);
+		memoryMonitor.resize(cfgCache, cfg.cfgCache);
+		CompressedCodeStore store = codeStore;
+		if (store != null) {
+			memoryMonitor.resize(store.getHotCache(), cfg.codeStoreHotCache);
+		}
+	}
+
+
+	private void applyAdmissionLimits(McpConfig cfg) {
+		rateLimiter.configure(cfg.rateLimit, cfg.rateLimitBurst);
+		heavyScheduler.setPermits(cfg.heavyConcurrency);
+	}
+
+
+	/**
+	 * 在新端口上启动服务器后切换，旧服务器等待正在处理的请求（包括发起本次修改的请求）完成后停止，
+	 * 最多等待 DRAIN_TIMEOUT_MILLIS；新端口监听失败时旧服务器不受影响
+	 */
+	private void rebind(int port) {
+		Javalin oldServer = app;
+		AtomicInteger oldInFlight = inFlightRequests;
+		AtomicInteger inFlight = new AtomicInteger();
+		Javalin newServer;
+		try {
+			newServer = createServer(port, inFlight);
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to listen on port " + port + ": " + e.getMessage(), e);
+		}
+		app = newServer;
+		inFlightRequests = inFlight;
+		logger.info("JADX AI MCP插件HTTP服务器已切换到端口：" + port);
+
+		Thread drain = new Thread(() -> {
+			long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+			try {
+				while (oldInFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(50);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			oldServer.stop();
+			logger.info("JADX AI MCP插件：旧端口上的HTTP服务器已停止");
+		}, "JADX-AI-MCP-Drain");
+		drain.setDaemon(true);
+		drain.start();
+	}
+
+
+	/**
+	 * 构建 "GET /path" -> 处理函数 的路由表，处理函数只在请求时访问 backend，未挂载项目时也可调用
+	 */
+	Map<String, Handler> createRouteTable() {
+		routeTable.clear();
+		registerApiRoutes();
+		return new LinkedHashMap<>(routeTable);
+	}
+
+
+	/**
+	 * 后台打开/构建持久化索引并识别第三方库
+	 */
+	private void startBackgroundIndexing() {
+		if (config.persistentIndex && persistentIndex == null && loadingPersistentIndex.compareAndSet(false, true)) {
+			workerPool.submit(() -> {
+				try {
+					loadPersistentIndex();
+				} finally {
+					loadingPersistentIndex.set(false);
+				}
+			});
+		}
+		requestLibraryDetection();
+	}
+
+
+	private void requestLibraryDetection() {
+		if (config.libraryDetection && libraries == null && detectingLibraries.compareAndSet(false, true)) {
+			publishLoadState("libraries", "loading");
+			workerPool.submit(() -> {
+				try {
+					detectLibraries();
+				} finally {
+					detectingLibraries.set(false);
+				}
+			});
+		}
+	}
+
+
 	private void registerApiRoutes() {
 
-		app.get("/get-current-class", this::handleCurrentClass);
-		app.get("/get-all-classes", this::handleAllClasses);
-		app.get("/get-selected-text", this::handleSelectedText);
-		app.get("/get-class-source", this::handleClassSource);
-		app.get("/get-smali-of-class", this::handleSmaliOfClass);
+		get("/get-current-class", guiOnly(this::handleCurrentClass));
+		get("/get-all-classes", this::handleAllClasses);
+		get("/get-selected-text", guiOnly(this::handleSelectedText));
+		get("/get-class-source", this::handleClassSource);
+		get("/get-smali-of-class", this::handleSmaliOfClass);
+		get("/get-smali-of-method", this::handleSmaliOfMethod);
 
-		app.get("/get-class-info", this::handleClassInfo);
+		get("/get-class-info", this::handleClassInfo);
 
-		app.get("/get-method-source", this::handleMethodSource);
-		app.get("/get-method-info", this::handleMethodInfo);
+		get("/get-method-source", this::handleMethodSource);
+		get("/get-method-info", this::handleMethodInfo);
 
-		app.get("/search-method", this::handleSearchMethod);
+		get("/search-method", this::handleSearchMethod);
 
-		app.get("/get-methods", this::handleMethodsOfClass);
-		app.get("/get-fields", this::handleFieldsOfClass);
-		app.get("/get-method-parameters", this::handleGetParameters);
+		get("/get-methods", this::handleMethodsOfClass);
+		get("/get-fields", this::handleFieldsOfClass);
+		get("/get-method-parameters", this::handleGetParameters);
 
-		app.get("/get-manifest", this::handleManifest);
-		app.get("/get-main-activity", this::handleMainActivity);
-		app.get("/get-main-application-classes-code", this::handleMainApplicationClassesCode);
-		app.get("/get-main-application-classes-names", this::handleMainApplicationClassesNames);
+		get("/get-manifest", this::handleManifest);
+		get("/get-main-activity", this::handleMainActivity);
+		get("/get-main-application-classes-code", this::handleMainApplicationClassesCode);
+		get("/get-main-application-classes-names", this::handleMainApplicationClassesNames);
 
-		app.get("/get-strings", this::handleStrings);
-		app.get("/get-list-all-resource-files-names", this::handleListAllResourceFilesNames);
-		app.get("/get-resource-file", this::handleGetResourceFile);
+		get("/get-strings", this::handleStrings);
+		get("/get-list-all-resource-files-names", this::handleListAllResourceFilesNames);
+		get("/get-resource-file", this::handleGetResourceFile);
 
-		app.get("/get-method-instructions", this::handleGetMethodInstructions);
+		get("/get-method-instructions", this::handleGetMethodInstructions);
+		get("/get-method-cfg", this::handleGetMethodCfg);
+		get("/get-method-xrefs", this::handleGetMethodXrefs);
+		get("/find-similar-methods", this::handleFindSimilarMethods);
+		get("/get-libraries", this::handleGetLibraries);
+		get("/get-library-fingerprints", this::handleGetLibraryFingerprints);
 
-		//todo 获取方法内部block、var等的nodeRef，用于对其进行重命名或注释注释
-//		app.get("/get-method-code-refs-by-line", this::handleGetMethodCodeRefsByLine);
+		// 获取方法内部var等的nodeRef及指令偏移，用于对其进行重命名或注释
+		get("/get-method-code-refs-by-line", this::handleGetMethodCodeRefsByLine);
 
 		//禁用，容易出问题，即使人为修改也容易出错
 //		app.post("/rename-class", this::handleRenameClass);
-		app.post("/rename-class", this::handleRenameClass);
-		app.post("/rename-method", this::handleRenameMethod);
-		app.post("/rename-field", this::handleRenameField);
-		app.post("/rename-method-parameter", this::handleRenameMethodParameter);
+		post("/rename-class", this::handleRenameClass);
+		post("/rename-method", this::handleRenameMethod);
+		post("/rename-field", this::handleRenameField);
+		post("/rename-method-parameter", this::handleRenameMethodParameter);
+
+		post("/add-class-comment", this::handleAddClassComment);
+		post("/add-method-comment", this::handleAddMethodComment);
+		post("/add-field-comment", this::handleAddFieldComment);
+
+		post("/batch", this::handleBatch);
+		registerBatchRoutes();
+
+
+
+
+		get("/health", this::handleHealth);
+		get("/events", new SseHandler(this::handleEventStream));
+		get("/get-changes", this::handleGetChanges);
+		get("/config", ctx -> ctx.json(getConfigJson()));
+		post("/config", this::handleUpdateConfig);
+		get("/metrics", this::handleMetrics);
+		post("/start-jfr-recording", this::handleStartJfrRecording);
+		post("/stop-jfr-recording", this::handleStopJfrRecording);
+		get("/get-jfr-status", ctx -> ctx.json(jfr.getStatus()));
+	}
+
+
+	/**
+	 * 依赖 jadx-gui 界面的接口，无界面模式下返回 501
+	 */
+	private Handler guiOnly(Handler handler) {
+		return ctx -> {
+			if (backend.isGui()) {
+				handler.handle(ctx);
+			} else {
+				ctx.status(501).json(Map.of("error", "Not available in headless mode: " + ctx.path()));
+			}
+		};
+	}
+
+
+	/**
+	 * 项目加载完成前返回 503 和加载进度（Retry-After: 1），健康检查、指标和事件流接口不受限制
+	 */
+	private Handler readinessGate(String path, Handler handler) {
+		if (AVAILABLE_WHILE_LOADING.contains(path)) {
+			return handler;
+		}
+		return ctx -> {
+			if (projectReady) {
+				handler.handle(ctx);
+			} else {
+				ctx.header("Retry-After", "1");
+				ctx.status(503).json(getLoadProgress("JADX is still loading the project"));
+			}
+		};
+	}
+
+
+	private Map<String, Object> getLoadProgress(String error) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		if (error != null) {
+			result.put("error", error);
+		}
+		result.put("ready", projectReady);
+		result.put("elapsed_ms", System.currentTimeMillis() - loadStartMillis);
+		result.put("stages", new TreeMap<>(loadStages));
+		return result;
+	}
+
+
+	private void get(String path, Handler handler) {
+		routeTable.put("GET " + path, RequestDeadline.wrap(admission(path, holdingCode(path, handler)), deadlineExceeded));
+	}
+
+
+	private void post(String path, Handler handler) {
+		routeTable.put("POST " + path, RequestDeadline.wrap(admission(path, holdingCode(path, handler)), deadlineExceeded));
+	}
+
+
+	/**
+	 * 请求处理期间持有 codeUnloadLock 读锁；健康检查、事件流等不访问类代码的接口（事件流连接长期存在）不持有
+	 */
+	private Handler holdingCode(String path, Handler handler) {
+		if (AVAILABLE_WHILE_LOADING.contains(path)) {
+			return handler;
+		}
+		return ctx -> {
+			codeUnloadLock.readLock().lock();
+			try {
+				handler.handle(ctx);
+			} finally {
+				codeUnloadLock.readLock().unlock();
+			}
+		};
+	}
 
-		app.post("/add-class-comment", this::handleAddClassComment);
-		app.post("/add-method-comment", this::handleAddMethodComment);
-		app.post("/add-field-comment", this::handleAddFieldComment);
+
+	/**
+	 * 准入控制：按客户端令牌桶限流，超出时返回 429 和 Retry-After；重接口再经过加权公平队列，
+	 * 在请求截止时间内（没有时最多 MAX_QUEUE_WAIT_MILLIS）等待执行许可。健康检查、指标、事件流和配置接口不受限制
+	 */
+	private Handler admission(String path, Handler handler) {
+		if (AVAILABLE_WHILE_LOADING.contains(path)) {
+			return handler;
+		}
+		boolean heavy = HEAVY_ROUTES.contains(path);
+		return ctx -> {
+			String client = getClientId(ctx);
+			long retryMillis = rateLimiter.tryAcquire(client);
+			if (retryMillis > 0) {
+				ctx.header("Retry-After", String.valueOf((retryMillis + 999) / 1000));
+				ctx.status(429).json(Map.of("error", "Rate limit exceeded for client '" + client + "', retry in " + retryMillis + " ms"));
+				return;
+			}
+			if (!heavy) {
+				handler.handle(ctx);
+				return;
+			}
+
+			int weight;
+			try {
+				weight = getClientWeight(ctx);
+			} catch (IllegalArgumentException e) {
+				ctx.status(400).json(Map.of("error", e.getMessage()));
+				return;
+			}
+			RequestDeadline deadline = RequestDeadline.current();
+			FairScheduler.Ticket ticket;
+			try {
+				ticket = heavyScheduler.acquire(client, weight, deadline != null ? deadline.remainingMillis() : MAX_QUEUE_WAIT_MILLIS);
+			} catch (TimeoutException e) {
+				if (deadline != null) {
+					throw new RequestDeadline.Exceeded(e.getMessage());
+				}
+				ctx.header("Retry-After", "1");
+				ctx.status(503).json(Map.of("error", "Server busy: " + e.getMessage()));
+				return;
+			}
+			try (ticket) {
+				ctx.header("X-Queue-Wait-Ms", String.valueOf(ticket.getWaitMillis()));
+				handler.handle(ctx);
+			}
+		};
+	}
+
+
+	/**
+	 * 客户端标识：X-Client-Id 请求头，没有时为连接的远端地址
+	 */
+	private static String getClientId(Context ctx) {
+		String client = ctx.header(CLIENT_ID_HEADER);
+		return client != null && !client.isBlank() ? client.trim() : ctx.ip();
+	}
+
+
+	private static int getClientWeight(Context ctx) {
+		String value = ctx.header(CLIENT_WEIGHT_HEADER);
+		if (value == null || value.isBlank()) {
+			return 1;
+		}
+		try {
+			int weight = Integer.parseInt(value.trim());
+			if (weight >= 1 && weight <= MAX_CLIENT_WEIGHT) {
+				return weight;
+			}
+		} catch (NumberFormatException e) {
+			// 按无效值处理
+		}
+		throw new IllegalArgumentException(CLIENT_WEIGHT_HEADER + " must be an integer between 1 and " + MAX_CLIENT_WEIGHT + ": " + value);
+	}
+
+
+	/**
+	 * 版本对比用的结构哈希，按 packagePrefix（null 为全部）过滤，未计算的类在工作线程池中并行计算
+	 */
+	Map<String, StructuralIndex.ClassEntry> getStructuralEntries(String packagePrefix) {
+		return getStructuralIndex().entries(packagePrefix, workerPool);
+	}
+
+
+	private StructuralIndex getStructuralIndex() {
+		StructuralIndex index = structuralIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = structuralIndex;
+				if (index == null) {
+					index = new StructuralIndex(backend.getDecompiler().getRoot().getClasses());
+					structuralIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+
+	/**
+	 * 获取（必要时构建）方法相似度索引：第一个请求在自己的线程上构建（类分块提交到工作线程池，
+	 * 从原始指令计算 MinHash 签名后合并），同时到达的请求等待同一个 future；不持有插件对象锁，
+	 * 构建期间其他用到 this 锁的接口不受影响
+	 */
+	private MinHashIndex<MethodNode> getSimilarityIndex() {
+		MinHashIndex<MethodNode> index = similarityIndex;
+		if (index != null) {
+			return index;
+		}
+		CompletableFuture<MinHashIndex<MethodNode>> build;
+		boolean owner = false;
+		synchronized (similarityLock) {
+			if (similarityIndex != null) {
+				return similarityIndex;
+			}
+			build = similarityBuild;
+			if (build == null) {
+				build = new CompletableFuture<>();
+				similarityBuild = build;
+				owner = true;
+			}
+		}
+		if (owner) {
+			try {
+				index = buildSimilarityIndex();
+			} catch (RuntimeException | Error e) {
+				synchronized (similarityLock) {
+					if (similarityBuild == build) {
+						similarityBuild = null;
+					}
+				}
+				build.completeExceptionally(e);
+				throw e;
+			}
+			synchronized (similarityLock) {
+				// 构建期间项目已重载时不保存旧项目的索引
+				if (similarityBuild == build) {
+					similarityIndex = index;
+					similarityBuild = null;
+				}
+			}
+			build.complete(index);
+			return index;
+		}
+		// 等待其他请求的构建，期间仍检查本请求的截止时间
+		while (!build.isDone()) {
+			RequestDeadline.checkCurrent();
+			try {
+				build.get(50, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException | ExecutionException e) {
+				// 继续循环或在下面取结果
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RequestDeadline.Exceeded("Request cancelled");
+			}
+		}
+		try {
+			return build.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
 
 
+	private MinHashIndex<MethodNode> buildSimilarityIndex() {
+		long startTime = System.currentTimeMillis();
+		StructuralIndex tokens = getStructuralIndex();
+		List<ClassNode> classes = backend.getDecompiler().getRoot().getClasses();
+		List<CompletableFuture<List<Object[]>>> futures = new ArrayList<>();
+		for (int from = 0; from < classes.size(); from += 256) {
+			List<ClassNode> chunk = classes.subList(from, Math.min(from + 256, classes.size()));
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				List<Object[]> signed = new ArrayList<>();
+				for (ClassNode cls : chunk) {
+					for (MethodNode mth : cls.getMethods()) {
+						long[] insns = tokens.insnTokens(mth);
+						if (insns != null && insns.length >= MIN_SIMILARITY_INSNS) {
+							signed.add(new Object[] { mth, MinHashIndex.signature(insns) });
+						}
+					}
+				}
+				return signed;
+			}, workerPool));
+		}
+		List<MethodNode> methods = new ArrayList<>();
+		List<int[]> signatures = new ArrayList<>();
+		for (CompletableFuture<List<Object[]>> future : futures) {
+			for (Object[] signed : future.join()) {
+				methods.add((MethodNode) signed[0]);
+				signatures.add((int[]) signed[1]);
+			}
+		}
+		MinHashIndex<MethodNode> index = new MinHashIndex<>(methods, signatures);
+		similarityIndexBuildMillis = System.currentTimeMillis() - startTime;
+		logger.info("JADX AI MCP: similarity index built for {} methods in {} ms", methods.size(), similarityIndexBuildMillis);
+		publishLoadState("similarity_index", "ready");
+		return index;
+	}
 
 
-		app.get("/health", this::handleHealth);
+	/**
+	 * 本项目的路由指标，多项目模式下由注册表按项目输出
+	 */
+	RouteMetrics getRouteMetrics() {
+		return routeMetrics;
 	}
 
 
@@ -314,7 +1069,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 				"// -------------------- JADX AI MCP PLUGIN -------------------- //\n"
 						+ " - 由 Jafar Pathan (https://github.com/zinja-coder) 开发\n"
 						+ " - 报告问题: https://github.com/zinja-coder/jadx-ai-mcp\n\n");
-		logger.info("JADX AI MCP插件HTTP服务器已启动，地址：http://127.0.0.1:" + currentPort + "/");
+		logger.info("JADX AI MCP插件HTTP服务器已启动，地址：http://127.0.0.1:" + config.port + "/");
 	}
 
 
@@ -428,18 +1183,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private void setToDefautlPort() {
 
-		currentPort = 8650;
-
-		prefs.putInt(PREF_KEY_PORT, currentPort);
-
-		JOptionPane.showMessageDialog(
-				mainWindow,
-				"Port updated to " + currentPort + ". Server will restart automatically.",
-				"Port Updated",
-				JOptionPane.INFORMATION_MESSAGE);
-
-		restartServer();
-	}
+		updateConfigFromDialog(Map.of("port", McpConfig.DEFAULTS.port));
+	}
 
 
 	private void showPortConfigDialog() {
@@ -453,7 +1198,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		gbc.insets = new Insets(5, 5, 5, 5);
 		panel.add(new JLabel("Server Port:"), gbc);
 
-		JTextField portField = new JTextField(String.valueOf(currentPort), 10);
+		JTextField portField = new JTextField(String.valueOf(config.port), 10);
 		gbc.gridx = 1;
 		panel.add(portField, gbc);
 
@@ -464,7 +1209,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		panel.add(new JLabel("<html><i>Valid range: 1024-65535</i></html>"), gbc);
 
 		gbc.gridy = 2;
-		panel.add(new JLabel("<html><i>Current port: " + currentPort + "</i></html>"), gbc);
+		panel.add(new JLabel("<html><i>Current port: " + config.port + "</i></html>"), gbc);
 
 		int result = JOptionPane.showConfirmDialog(
 				mainWindow,
@@ -488,19 +1233,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 					return;
 				}
 
-				if (newPort != currentPort) {
-
-					currentPort = newPort;
-
-					prefs.putInt(PREF_KEY_PORT, currentPort);
-
-					JOptionPane.showMessageDialog(
-							mainWindow,
-							"Port updated to " + currentPort + ". Server will restart automatically.",
-							"Port Updated",
-							JOptionPane.INFORMATION_MESSAGE);
-
-					restartServer();
+				if (newPort != config.port) {
+					updateConfigFromDialog(Map.of("port", newPort));
 				}
 
 			} catch (NumberFormatException e) {
@@ -525,7 +1259,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		gbc.insets = new Insets(5, 5, 5, 5);
 		panel.add(new JLabel("threshold:"), gbc);
 
-		JTextField field = new JTextField(String.valueOf(currentthreshold), 10);
+		JTextField field = new JTextField(String.valueOf(config.pageThreshold), 10);
 		gbc.gridx = 1;
 		panel.add(field, gbc);
 
@@ -536,7 +1270,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		panel.add(new JLabel("<html><i>Valid range: 0-10000000(set 0 to disable auto-page)</i></html>"), gbc);
 
 		gbc.gridy = 2;
-		panel.add(new JLabel("<html><i>Current threshold: " + currentthreshold + "</i></html>"), gbc);
+		panel.add(new JLabel("<html><i>Current threshold: " + config.pageThreshold + "</i></html>"), gbc);
 
 		int result = JOptionPane.showConfirmDialog(
 				mainWindow,
@@ -560,19 +1294,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 					return;
 				}
 
-				if (newValue != currentthreshold) {
-
-					currentthreshold = newValue;
-
-					prefs.putInt(PREF_KEY_THRESHOLD, currentthreshold);
-
-					JOptionPane.showMessageDialog(
-							mainWindow,
-							"threshold updated to " + currentthreshold + ". Server will restart automatically.",
-							"threshold Updated",
-							JOptionPane.INFORMATION_MESSAGE);
-
-					restartServer();
+				if (newValue != config.pageThreshold) {
+					updateConfigFromDialog(Map.of("page_threshold", newValue));
 				}
 
 			} catch (NumberFormatException e) {
@@ -597,7 +1320,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		gbc.insets = new Insets(5, 5, 5, 5);
 		panel.add(new JLabel("page size:"), gbc);
 
-		JTextField field = new JTextField(String.valueOf(currentthreshold), 10);
+		JTextField field = new JTextField(String.valueOf(config.pageSize), 10);
 		gbc.gridx = 1;
 		panel.add(field, gbc);
 
@@ -608,7 +1331,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		panel.add(new JLabel("<html><i>Valid range: 0-10000000(set 0 to disable auto-page)</i></html>"), gbc);
 
 		gbc.gridy = 2;
-		panel.add(new JLabel("<html><i>Current page size: " + currentthreshold + "</i></html>"), gbc);
+		panel.add(new JLabel("<html><i>Current page size: " + config.pageSize + "</i></html>"), gbc);
 
 		int result = JOptionPane.showConfirmDialog(
 				mainWindow,
@@ -632,19 +1355,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 					return;
 				}
 
-				if (newValue != currentPageSize) {
-
-					currentPageSize = newValue;
-
-					prefs.putInt(PREF_KEY_PAGESIZE, currentPageSize);
-
-					JOptionPane.showMessageDialog(
-							mainWindow,
-							"page size updated to " + currentPageSize + ". Server will restart automatically.",
-							"page size Updated",
-							JOptionPane.INFORMATION_MESSAGE);
-
-					restartServer();
+				if (newValue != config.pageSize) {
+					updateConfigFromDialog(Map.of("page_size", newValue));
 				}
 
 			} catch (NumberFormatException e) {
@@ -659,12 +1371,36 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	/**
+	 * 菜单对话框修改配置：在后台线程中应用并保存（更换端口时要等待旧端口上的请求处理完），完成后提示
+	 */
+	private void updateConfigFromDialog(Map<String, ?> values) {
+		new Thread(() -> {
+			try {
+				Map<String, Object> changed = updateConfig(values, true);
+				SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+						mainWindow,
+						"AI MCP Server configuration updated: " + changed,
+						"Configuration Updated",
+						JOptionPane.INFORMATION_MESSAGE));
+			} catch (Exception e) {
+				logger.error("JADX-AI-MCP Plugin: Error updating configuration: " + e.getMessage(), e);
+				SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+						mainWindow,
+						"Failed to update configuration: " + e.getMessage(),
+						"Configuration Error",
+						JOptionPane.ERROR_MESSAGE));
+			}
+		}, "JADX-AI-MCP-Config").start();
+	}
+
+
 	private void restartServer() {
 
 		new Thread(() -> {
 			try {
 
-				logger.info("JADX-AI-MCP Plugin: Restarting server on port " + currentPort);
+				logger.info("JADX-AI-MCP Plugin: Restarting server on port " + config.port);
 
 				if (app != null) {
 					app.stop();            // 停止Javalin HTTP服务器
@@ -679,7 +1415,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 				SwingUtilities.invokeLater(() -> {
 					JOptionPane.showMessageDialog(
 							mainWindow,
-							"AI MCP Server restarted successfully on port " + currentPort,
+							"AI MCP Server restarted successfully on port " + config.port,
 							"Server Restarted",
 							JOptionPane.INFORMATION_MESSAGE);
 				});
@@ -704,7 +1440,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 		String status = serverStarted && app != null ? "Running" : "Stopped";
 
-		String url = serverStarted ? "http://127.0.0.1:" + currentPort + "/" : "N/A";
+		String url = serverStarted ? "http://127.0.0.1:" + config.port + "/" : "N/A";
 
 		JPanel panel = new JPanel(new GridBagLayout());
 		GridBagConstraints gbc = new GridBagConstraints();
@@ -722,7 +1458,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		gbc.gridy = 1;  // 第二行
 		panel.add(new JLabel("Port:"), gbc);     // 端口标签
 		gbc.gridx = 1;  // 第二列
-		panel.add(new JLabel(String.valueOf(currentPort)), gbc);  // 端口值
+		panel.add(new JLabel(String.valueOf(config.port)), gbc);  // 端口值
 
 		gbc.gridx = 0;  // 第一列
 		gbc.gridy = 2;  // 第三行
@@ -738,16 +1474,310 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	private void registerMetrics() {
+		routeMetrics.registerCache(codeIndexCache);
+		routeMetrics.registerCache(smaliIndexCache);
+		routeMetrics.registerCache(insnSnapshotCache);
+		routeMetrics.registerCache(cfgCache);
+		if (codeStore != null) {
+			routeMetrics.registerCache(codeStore.getHotCache());
+			routeMetrics.registerGauge("jadx_mcp_code_store_entries", "Classes held in the compressed code store", "gauge",
+					() -> codeStore != null ? codeStore.size() : 0);
+		}
+		routeMetrics.registerGauge("jadx_mcp_memory_level", "Memory pressure level (0 normal, 1 high, 2 critical)", "gauge",
+				() -> memoryMonitor.getLevel().ordinal());
+		routeMetrics.registerGauge("jadx_mcp_memory_shed_events_total", "Cache shrink/clear actions taken under memory pressure", "counter",
+				() -> memoryMonitor.getShedEvents());
+		routeMetrics.registerGauge("jadx_mcp_memory_unloaded_classes_total", "Classes whose code was unloaded under memory pressure", "counter",
+				() -> memoryMonitor.getUnloadedClasses());
+		routeMetrics.registerGauge("jadx_mcp_invalidation_events_total", "Rename, comment and reload events handled by the invalidation bus", "counter",
+				() -> invalidationBus.getEvents());
+		routeMetrics.registerGauge("jadx_mcp_invalidated_classes_total", "Top-level classes whose cached code was invalidated by renames or comments", "counter",
+				() -> invalidationBus.getInvalidatedClasses());
+		routeMetrics.registerGauge("jadx_mcp_full_invalidations_total", "Project reloads that cleared all caches", "counter",
+				() -> invalidationBus.getFullInvalidations());
+		routeMetrics.registerGauge("jadx_mcp_event_stream_clients", "Connected /events subscribers", "gauge",
+				() -> changeFeed.getSubscriberCount());
+		routeMetrics.registerGauge("jadx_mcp_persistent_index_ready", "1 when the persistent index is open", "gauge",
+				() -> persistentIndex != null ? 1 : 0);
+		routeMetrics.registerGauge("jadx_mcp_deadline_exceeded_total", "Requests aborted after the client deadline passed", "counter",
+				() -> deadlineExceeded.get());
+		routeMetrics.registerGauge("jadx_mcp_rate_limited_total", "Requests rejected by the per-client rate limit", "counter",
+				() -> rateLimiter.getRejected());
+		routeMetrics.registerGauge("jadx_mcp_heavy_queue_length", "Heavy-route requests waiting in the fair queue", "gauge",
+				() -> heavyScheduler.getQueueLength());
+		routeMetrics.registerGauge("jadx_mcp_heavy_running", "Heavy-route requests currently executing", "gauge",
+				() -> heavyScheduler.getRunning());
+		routeMetrics.registerGauge("jadx_mcp_heavy_queue_timeouts_total", "Heavy-route requests that gave up waiting in the fair queue", "counter",
+				() -> heavyScheduler.getTimeouts());
+		routeMetrics.registerSummary("jadx_mcp_heavy_queue_wait_seconds", "Time heavy-route requests waited for an execution slot",
+				heavyScheduler.getWaitMicros());
+	}
+
+
+	/**
+	 * SSE 变更事件流：事件 id 为序号，重连时带 Last-Event-ID（或 since 参数）从该序号之后续传
+	 */
+	private void handleEventStream(SseClient client) {
+		long since;
+		try {
+			since = parseSince(client.ctx().header("Last-Event-ID"), client.ctx().queryParam("since"));
+		} catch (NumberFormatException e) {
+			since = -1;
+		}
+		ChangeFeed.Subscriber subscriber = new ChangeFeed.Subscriber() {
+			@Override
+			public boolean send(ChangeFeed.Event event) {
+				if (client.terminated()) {
+					return false;
+				}
+				client.sendEvent(event.type, toJsonString(event.toJson()), String.valueOf(event.seq));
+				return !client.terminated();
+			}
+
+			@Override
+			public boolean heartbeat() {
+				if (client.terminated()) {
+					return false;
+				}
+				client.sendComment("ping");
+				return !client.terminated();
+			}
+
+			@Override
+			public void close() {
+				client.close();
+			}
+		};
+		client.onClose(() -> changeFeed.unsubscribe(subscriber));
+		client.keepAlive();
+		changeFeed.subscribe(since, subscriber);
+	}
+
+
+	/**
+	 * 轮询方式获取 since 之后的变更事件，供不能保持长连接的客户端使用；
+	 * reset 为 true 表示部分事件已被覆盖，需要重新全量获取
+	 */
+	private void handleGetChanges(Context ctx) {
+		try {
+			long since = parseSince(null, getParameter(ctx, "since"));
+			String limitParam = getParameter(ctx, "limit");
+			int limit = limitParam != null ? Integer.parseInt(limitParam) : 500;
+			if (limit <= 0) {
+				throw new IllegalArgumentException("'limit' must be positive");
+			}
+			List<ChangeFeed.Event> events = changeFeed.since(Math.max(since, 0));
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("last_seq", changeFeed.getLastSeq());
+			result.put("oldest_seq", changeFeed.getOldestSeq());
+			result.put("reset", events == null);
+			List<Map<String, Object>> items = new ArrayList<>();
+			if (events != null) {
+				for (ChangeFeed.Event event : events.subList(0, Math.min(limit, events.size()))) {
+					items.add(event.toJson());
+				}
+			}
+			result.put("events", items);
+			result.put("has_more", events != null && events.size() > limit);
+			ctx.json(result);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to get changes: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * 续传序号：优先使用 Last-Event-ID，都没有时返回 -1，只接收新事件
+	 */
+	private static long parseSince(String lastEventId, String since) {
+		String value = lastEventId != null && !lastEventId.isEmpty() ? lastEventId : since;
+		return value != null && !value.isEmpty() ? Long.parseLong(value.trim()) : -1;
+	}
+
+
+	private String toJsonString(Object value) {
+		try {
+			return objectMapper.writeValueAsString(value);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	private void publishLoadState(String stage, String state) {
+		loadStages.put(stage, state);
+		Map<String, Object> event = new LinkedHashMap<>();
+		event.put("stage", stage);
+		event.put("state", state);
+		changeFeed.publish("load", event);
+	}
+
+
+	private static Map<String, Object> describeRename(NodeRenamedByUser event) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		ICodeNodeRef node = event.getNode();
+		if (node instanceof ClassNode) {
+			result.put("node_type", "class");
+			result.put("class", ((ClassNode) node).getRawName());
+		} else if (node instanceof MethodNode) {
+			MethodNode mth = (MethodNode) node;
+			result.put("node_type", "method");
+			result.put("class", mth.getParentClass().getRawName());
+			result.put("short_id", mth.getMethodInfo().getShortId());
+		} else if (node instanceof FieldNode) {
+			FieldNode fld = (FieldNode) node;
+			result.put("node_type", "field");
+			result.put("class", fld.getParentClass().getRawName());
+			result.put("short_id", fld.getFieldInfo().getShortId());
+		} else if (node instanceof VarNode) {
+			MethodNode mth = ((VarNode) node).getMth();
+			result.put("node_type", "variable");
+			result.put("class", mth.getParentClass().getRawName());
+			result.put("short_id", mth.getMethodInfo().getShortId());
+		} else {
+			result.put("node_type", "package");
+		}
+		result.put("old_name", event.getOldName());
+		result.put("new_name", event.isResetName() ? null : event.getNewName());
+		result.put("affected_classes", new TreeSet<>(InvalidationBus.affectedTopClasses(node)));
+		return result;
+	}
+
+
+	private Map<String, Object> getConfigJson() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("config", config.toJson());
+		result.put("config_file", configFile != null ? configFile.toString() : null);
+		return result;
+	}
+
+
+	/**
+	 * 修改运行时配置：JSON 请求体或请求参数中的配置项，save=true 时写入配置文件，reload=true 时重新读取配置文件
+	 */
+	private void handleUpdateConfig(Context ctx) {
+		try {
+			Map<String, Object> values = new LinkedHashMap<>();
+			if (ctx.contentType() != null && ctx.contentType().startsWith("application/json") && !ctx.body().isEmpty()) {
+				values.putAll(objectMapper.readValue(ctx.body(), new TypeReference<Map<String, Object>>() {
+				}));
+			} else {
+				for (String key : McpConfig.DEFAULTS.toJson().keySet()) {
+					String value = getParameter(ctx, key);
+					if (value != null) {
+						values.put(key, value);
+					}
+				}
+			}
+			Object saveValue = values.containsKey("save") ? values.remove("save") : getParameter(ctx, "save");
+			Object reloadValue = values.containsKey("reload") ? values.remove("reload") : getParameter(ctx, "reload");
+			boolean save = saveValue != null && Boolean.parseBoolean(saveValue.toString());
+			boolean reload = reloadValue != null && Boolean.parseBoolean(reloadValue.toString());
+			values.remove("project");
+			if (reload) {
+				if (configFile == null) {
+					throw new IllegalArgumentException("No config file, start with --config to enable reloading");
+				}
+				// 文件中的配置项，再叠加本次请求中的配置项
+				Map<String, Object> fromFile = new LinkedHashMap<>();
+				if (Files.isRegularFile(configFile)) {
+					fromFile.putAll(objectMapper.readValue(configFile.toFile(), new TypeReference<Map<String, Object>>() {
+					}));
+				}
+				fromFile.putAll(values);
+				values = fromFile;
+			}
+			Map<String, Object> changed = updateConfig(values, save);
+			Map<String, Object> result = getConfigJson();
+			result.put("changed", changed);
+			ctx.json(result);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (IllegalStateException e) {
+			ctx.status(409).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to update config: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * Prometheus 文本格式的指标
+	 */
+	private void handleMetrics(Context ctx) {
+		ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+		ctx.result(routeMetrics.toPrometheus());
+	}
+
+
+	/**
+	 * 开始JFR录制：settings 为 mcp（默认，只录插件事件）、default 或 profile，duration 秒数到时自动停止
+	 */
+	private void handleStartJfrRecording(Context ctx) {
+		try {
+			String settings = ctx.queryParam("settings");
+			String duration = ctx.queryParam("duration");
+			long durationSeconds = duration != null && !duration.isEmpty() ? Long.parseLong(duration) : 0;
+			ctx.json(jfr.start(settings, durationSeconds));
+		} catch (NumberFormatException e) {
+			ctx.status(400).json(Map.of("error", "Invalid 'duration' parameter: " + e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (IllegalStateException e) {
+			ctx.status(409).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to start JFR recording: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * 停止JFR录制，返回 .jfr 文件路径和大小
+	 */
+	private void handleStopJfrRecording(Context ctx) {
+		try {
+			ctx.json(jfr.stop());
+		} catch (IllegalStateException e) {
+			ctx.status(409).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to stop JFR recording: " + e.getMessage()));
+		}
+	}
+
+
 	public void handleHealth(Context ctx) {
 		try {
 
-			String status = serverStarted && app != null ? "Running" : "Stopped";
+			String status = serverStarted && (app != null || projectId != null) ? "Running" : "Stopped";
 
-			String url = serverStarted ? "http://127.0.0.1:" + currentPort + "/" : "N/A";
+			String url = serverStarted ? "http://127.0.0.1:" + config.port + "/" : "N/A";
 
 			Map<String, Object> result = new HashMap<>();
 			result.put("status", status);  // 服务器状态
 			result.put("url", url);        // 访问地址
+			result.put("mode", backend != null && backend.isGui() ? "gui" : "headless");
+			if (projectId != null) {
+				result.put("project", projectId);
+			}
+			result.put("load", getLoadProgress(null));
+			PersistentIndex index = persistentIndex;
+			result.put("index", index != null ? index.getStats() : Map.of("status", "loading"));
+			CompressedCodeStore store = codeStore;
+			result.put("code_store", store != null ? store.getStats() : Map.of("status", "disabled"));
+			if (memoryMonitor != null) {
+				result.put("memory", memoryMonitor.getStats());
+			}
+			Map<String, Object> admission = heavyScheduler.getStats();
+			admission.put("rate_limit", config.rateLimit);
+			admission.put("rate_limited", rateLimiter.getRejected());
+			result.put("admission", admission);
 
 			logger.info("JADX AI MCP Plugin: GOT HEALTH PING");
 
@@ -793,12 +1823,20 @@ public class JadxMcpPlugin implements JadxPlugin {
 			String pageIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String pageSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<JavaClass> classes = wrapper.getIncludedClassesWithInners();
+			if (isLibraryFilterUnavailable(ctx)) {
+				return;
+			}
+			List<JavaClass> classes = backend.getClasses();
+			LibraryDetector libraryFilter = getLibraryFilter(ctx);
+			if (libraryFilter != null) {
+				classes = classes.stream()
+						.filter(cls -> !libraryFilter.isLibraryClass(cls.getRawName()))
+						.collect(Collectors.toList());
+			}
 
 			if (pageIndex != null && !pageIndex.isEmpty()) {
 				int index = Integer.parseInt(pageIndex);
-				int size = (pageSize != null && !pageSize.isEmpty()) ? Integer.parseInt(pageSize) : currentPageSize;
+				int size = (pageSize != null && !pageSize.isEmpty()) ? Integer.parseInt(pageSize) : config.pageSize;
 
 				Map<String, Object> result = paginationHelper.paginateList(
 						classes,
@@ -842,7 +1880,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						selectedText,
@@ -876,35 +1914,22 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			JavaMethod method = findMethod(ctx);
 
-			Map<String, Object> result = new HashMap<>();
-			result.put("className", method.getDeclaringClass().getName());
-			jadx.core.dex.nodes.MethodNode methodNode = method.getMethodNode();
-			jadx.core.dex.info.MethodInfo methodInfo = methodNode.getMethodInfo();
-			result.put("name(originalName)", methodInfo.getName());
-			result.put("Alias", method.getName());
-			result.put("fullName", method.getFullName());             // 方法名称
-			result.put("signature", method.getMethodNode().getMethodInfo().getShortId());
-			result.put("isPublic", method.getAccessFlags().isPublic());
-			result.put("isStatic", method.getAccessFlags().isStatic());
-			result.put("arguments", method.getArguments().stream()
-					.map(arg -> arg.toString()) // 转换为字符串
-					.collect(java.util.stream.Collectors.toList()));            //List<ArgType> 类型
-			result.put("returnType", method.getReturnType().toString());             //ArgType 类型
-			result.put("defPos", method.getDefPos());
-			result.put("nodeRef", method.getCodeNodeRef().toString());
-			result.put("isConstructor", method.isConstructor());
-			result.put("isClassInit", method.isClassInit());
-			result.put("regsCount", methodNode.getRegsCount());
-			result.put("insnsCount", methodNode.getInsnsCount());
-			result.put("methodCodeOffset", methodNode.getMethodCodeOffset());
-			result.put("useInCount", methodNode.getUseIn().size());
-
-			String code = method.getCodeStr();
+			Map<String, Object> result = NodeInfoBuilder.methodInfo(method);
+
+			MethodNode methodNode = method.getMethodNode();
+			ClassCodeIndex codeIndex = getCodeIndex(methodNode.getParentClass());
+			String code = codeIndex.getMethodCode(methodNode);
+			if (code == null) {
+				code = method.getCodeStr();
+			} else {
+				result.put("startLine", codeIndex.getMethodStartLine(methodNode));
+				result.put("endLine", codeIndex.getMethodEndLine(methodNode));
+			}
 			Map<String, Object> codePage;
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				codePage = paginationHelper.paginateLongString(
 						code,
@@ -919,6 +1944,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			ctx.json(result);
 
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
 		} catch (NoSuchElementException e) {
 			ctx.status(404).json(Map.of("error", e.getMessage()));
 		} catch (IllegalArgumentException e) {
@@ -933,30 +1960,9 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			JavaMethod method = findMethod(ctx);
 
-			Map<String, Object> result = new HashMap<>();
-			result.put("className", method.getDeclaringClass().getName());
-			jadx.core.dex.nodes.MethodNode methodNode = method.getMethodNode();
-			jadx.core.dex.info.MethodInfo methodInfo = methodNode.getMethodInfo();
-			result.put("name(originalName)", methodInfo.getName());
-			result.put("Alias", method.getName());
-			result.put("fullName", method.getFullName());             // 方法名称
-			result.put("signature", method.getMethodNode().getMethodInfo().getShortId());
-			result.put("isPublic", method.getAccessFlags().isPublic());
-			result.put("isStatic", method.getAccessFlags().isStatic());
-			result.put("arguments", method.getArguments().stream()
-					.map(arg -> arg.toString()) // 转换为字符串
-					.collect(java.util.stream.Collectors.toList()));            //List<ArgType> 类型
-			result.put("returnType", method.getReturnType().toString());             //ArgType 类型
-			result.put("defPos", method.getDefPos());
-			result.put("nodeRef", method.getCodeNodeRef().toString());
-			result.put("isConstructor", method.isConstructor());
-			result.put("isClassInit", method.isClassInit());
-			result.put("regsCount", methodNode.getRegsCount());
-			result.put("insnsCount", methodNode.getInsnsCount());
-			result.put("methodCodeOffset", methodNode.getMethodCodeOffset());
-			result.put("useInCount", methodNode.getUseIn().size());
-
-			result.put("codeLength", method.getCodeStr().length());                       // 方法的完整源代码
+			Map<String, Object> result = NodeInfoBuilder.methodInfo(method);
+
+			putCodeLength(result, method);
 
 			ctx.json(result);
 
@@ -970,6 +1976,371 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	/**
+	 * 查找与指定方法指令结构相似的方法（克隆/改名后的同一段代码），threshold 为估计的 Jaccard 相似度下限
+	 */
+	private void handleFindSimilarMethods(Context ctx) {
+		try {
+			if (!config.similaritySearch) {
+				ctx.status(503).json(Map.of("error", "Similarity search is disabled (similarity_search=false)"));
+				return;
+			}
+			JavaMethod method = findMethod(ctx);
+			String thresholdParam = getParameter(ctx, "threshold");
+			String limitParam = getParameter(ctx, "limit");
+			double threshold = thresholdParam != null ? Double.parseDouble(thresholdParam) : 0.7;
+			int limit = limitParam != null ? Integer.parseInt(limitParam) : 20;
+			if (threshold <= 0 || threshold > 1 || limit <= 0) {
+				throw new IllegalArgumentException("'threshold' must be in (0, 1] and 'limit' positive");
+			}
+
+			if (isLibraryFilterUnavailable(ctx)) {
+				return;
+			}
+			MethodNode methodNode = method.getMethodNode();
+			int[] signature = MinHashIndex.signature(getStructuralIndex().insnTokens(methodNode));
+			if (signature == null) {
+				throw new IllegalArgumentException("Method has no instructions: " + method.getFullName());
+			}
+			MinHashIndex<MethodNode> index = getSimilarityIndex();
+
+			LibraryDetector libraryFilter = getLibraryFilter(ctx);
+			// 先过滤再截取，排在前面的库方法不会挤掉应用方法
+			List<Map<String, Object>> results = new ArrayList<>();
+			for (MinHashIndex.Match<MethodNode> match : index.findSimilar(signature, threshold, limit,
+					similar -> similar != methodNode && (libraryFilter == null
+							|| !libraryFilter.isLibraryClass(similar.getParentClass().getRawName())))) {
+				MethodNode similar = match.item;
+				Map<String, Object> item = new LinkedHashMap<>();
+				item.put("className", similar.getParentClass().getFullName());
+				item.put("classRawName", similar.getParentClass().getRawName());
+				item.put("name", similar.getAlias());
+				item.put("originalName", similar.getMethodInfo().getName());
+				item.put("signature", similar.getMethodInfo().getShortId());
+				item.put("similarity", match.similarity);
+				results.add(item);
+			}
+
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("className", method.getDeclaringClass().getFullName());
+			result.put("signature", methodNode.getMethodInfo().getShortId());
+			result.put("threshold", threshold);
+			result.put("count", results.size());
+			result.put("results", results);
+			result.put("indexedMethods", index.size());
+			result.put("indexBuildMillis", similarityIndexBuildMillis);
+			ctx.json(result);
+
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
+		} catch (NumberFormatException e) {
+			ctx.status(400).json(Map.of("error", "Invalid 'threshold' or 'limit' parameter: " + e.getMessage()));
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to find similar methods: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * 识别出的第三方库及其包、类数量，后台识别未完成时 status 为 detecting
+	 */
+	private void handleGetLibraries(Context ctx) {
+		try {
+			if (!config.libraryDetection) {
+				ctx.json(Map.of("status", "disabled"));
+				return;
+			}
+			LibraryDetector detector = libraries;
+			if (detector == null) {
+				// 项目重载后识别结果被清空，在第一次查询时重新识别
+				requestLibraryDetection();
+			}
+			ctx.json(detector != null ? detector.toJson() : Map.of("status", "detecting"));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to get libraries: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * 从本项目中某个已知库的包生成签名库条目（方法结构哈希），追加到 ~/.jadx-mcp/libraries.json 后，
+	 * 其他应用中包名被混淆的同一个库也能识别
+	 */
+	private void handleGetLibraryFingerprints(Context ctx) {
+		try {
+			String packageName = getParameter(ctx, "package");
+			if (packageName == null) {
+				throw new IllegalArgumentException("Missing 'package' parameter");
+			}
+			String id = getParameter(ctx, "id");
+			StructuralIndex index = getStructuralIndex();
+			Map<String, StructuralIndex.ClassEntry> entries = index.entries(packageName + ".", workerPool);
+			if (entries.isEmpty()) {
+				throw new NoSuchElementException("No classes in package: " + packageName);
+			}
+			Set<String> hashes = new TreeSet<>();
+			// 特征方法最多的顶层类作为标志类，按包名识别时至少需要找到一个标志类
+			Map<String, Integer> topClassHashes = new HashMap<>();
+			for (ClassNode cls : backend.getDecompiler().getRoot().getClasses()) {
+				StructuralIndex.ClassEntry entry = entries.get(cls.getRawName());
+				if (entry == null) {
+					continue;
+				}
+				RequestDeadline.checkCurrent();
+				for (MethodNode mth : cls.getMethods()) {
+					// 短方法的结构在各处高度重复，不作为库特征
+					long[] tokens = index.insnTokens(mth);
+					if (tokens != null && tokens.length >= MIN_SIMILARITY_INSNS) {
+						hashes.add(Long.toHexString(entry.methods.get(mth.getMethodInfo().getShortId())));
+						topClassHashes.merge(cls.getTopParentClass().getRawName(), 1, Integer::sum);
+					}
+				}
+			}
+			List<String> markers = new ArrayList<>(topClassHashes.keySet());
+			markers.sort(Comparator.comparing((String name) -> -topClassHashes.get(name)).thenComparing(name -> name));
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("id", id != null ? id : packageName);
+			result.put("name", id != null ? id : packageName);
+			result.put("packages", List.of(packageName));
+			result.put("markers", markers.subList(0, Math.min(FINGERPRINT_MARKERS, markers.size())));
+			result.put("method_hashes", hashes);
+			ctx.json(result);
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to build library fingerprints: " + e.getMessage()));
+		}
+	}
+
+
+	private void detectLibraries() {
+		try {
+			List<LibraryDetector.Library> database = LibraryDetector.loadDatabase(objectMapper,
+					Paths.get(System.getProperty("user.home"), ".jadx-mcp", "libraries.json"));
+			List<String> classNames = new ArrayList<>();
+			for (ClassNode cls : backend.getDecompiler().getRoot().getClasses()) {
+				classNames.add(cls.getRawName());
+			}
+			// 本身在工作线程池中运行，结构哈希在当前线程计算，不再向同一个线程池提交任务并等待（线程池占满时会死锁）
+			Map<String, StructuralIndex.ClassEntry> structural = LibraryDetector.hasFingerprints(database)
+					? getStructuralIndex().entries(null, Runnable::run) : null;
+			LibraryDetector detector = LibraryDetector.detect(database, classNames, structural);
+			libraries = detector;
+			logger.info("JADX AI MCP: library detection finished: {}", detector.toJson().get("library_classes"));
+			publishLoadState("libraries", "ready");
+		} catch (Exception e) {
+			logger.warn("JADX AI MCP: library detection failed: " + e.getMessage(), e);
+			publishLoadState("libraries", "failed");
+		}
+	}
+
+
+	/**
+	 * exclude_libraries=true 且库识别已完成时返回识别结果用于过滤，否则返回null
+	 */
+	private LibraryDetector getLibraryFilter(Context ctx) {
+		return Boolean.parseBoolean(getParameter(ctx, EXCLUDE_LIBRARIES_PARAMS)) ? libraries : null;
+	}
+
+	/**
+	 * 请求了 exclude_libraries 但识别结果还不可用时返回 503（library_filter 为 pending 或 disabled），
+	 * 不返回未经过滤的结果
+	 */
+	private boolean isLibraryFilterUnavailable(Context ctx) {
+		if (!Boolean.parseBoolean(getParameter(ctx, EXCLUDE_LIBRARIES_PARAMS)) || libraries != null) {
+			return false;
+		}
+		if (!config.libraryDetection) {
+			ctx.status(503).json(Map.of("error", "Library detection is disabled (library_detection=false)",
+					"library_filter", "disabled"));
+			return true;
+		}
+		// 项目重载后识别结果被清空，重新开始识别
+		requestLibraryDetection();
+		ctx.header("Retry-After", "5");
+		ctx.status(503).json(Map.of("error", "Library detection is still running, retry shortly",
+				"library_filter", "pending"));
+		return true;
+	}
+
+
+	/**
+	 * 方法源码长度：仅在类已反编译时从代码索引中读取，不为获取长度而触发反编译
+	 */
+	private void putCodeLength(Map<String, Object> result, JavaMethod method) {
+		MethodNode methodNode = method.getMethodNode();
+		ClassCodeIndex codeIndex = getCodeIndexIfDecompiled(methodNode.getParentClass());
+		result.put("codeLength", codeIndex != null ? codeIndex.getMethodCodeLength(methodNode) : -1);
+		result.put("codeDecompiled", codeIndex != null);
+	}
+
+
+	/**
+	 * 获取（必要时构建）类所在顶层类的代码索引，类未反编译时会触发反编译
+	 */
+	private ClassCodeIndex getCodeIndex(ClassNode cls) {
+		ClassNode topClass = cls.getTopParentClass();
+		ClassCodeIndex index = codeIndexCache.get(topClass);
+		if (index != null) {
+			return index;
+		}
+		long generation = getCodeGeneration();
+		// 反编译本身无法中途取消，开始前检查请求是否已超时
+		RequestDeadline.checkCurrent();
+		McpJfr.DecompileEvent event = new McpJfr.DecompileEvent();
+		event.begin();
+		ICodeInfo codeInfo = topClass.getCode();
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = topClass.getRawName();
+			event.source = "jadx";
+			event.codeLength = codeInfo.getCodeStr().length();
+			event.commit();
+		}
+		index = ClassCodeIndex.build(codeInfo);
+		putCodeIndex(topClass, index, generation);
+		return index;
+	}
+
+
+	/**
+	 * 仅当类代码已在jadx代码缓存中时返回代码索引，否则返回null，不触发反编译
+	 */
+	private ClassCodeIndex getCodeIndexIfDecompiled(ClassNode cls) {
+		ClassNode topClass = cls.getTopParentClass();
+		ClassCodeIndex index = codeIndexCache.get(topClass);
+		if (index != null) {
+			return index;
+		}
+		long generation = getCodeGeneration();
+		ICodeCache codeCache = topClass.root().getCodeCache();
+		if (!codeCache.contains(topClass.getRawName())) {
+			return null;
+		}
+		index = ClassCodeIndex.build(codeCache.get(topClass.getRawName()));
+		putCodeIndex(topClass, index, generation);
+		return index;
+	}
+
+
+	private long getCodeGeneration() {
+		synchronized (codeIndexLock) {
+			return codeGeneration;
+		}
+	}
+
+
+	/**
+	 * 构建开始后没有发生失效时才缓存索引
+	 */
+	private void putCodeIndex(ClassNode topClass, ClassCodeIndex index, long generation) {
+		synchronized (codeIndexLock) {
+			if (generation == codeGeneration) {
+				codeIndexCache.put(topClass, index);
+			}
+		}
+	}
+
+
+	/**
+	 * 类代码：启用代码存储时从压缩存储读取，未命中才调用jadx获取并写入存储
+	 */
+	private String getClassCode(JavaClass cls) {
+		RequestDeadline.checkCurrent();
+		McpJfr.DecompileEvent event = new McpJfr.DecompileEvent();
+		event.begin();
+		CompressedCodeStore store = codeStore;
+		boolean[] loaded = new boolean[1];
+		String code;
+		if (store == null) {
+			code = cls.getCode();
+			loaded[0] = true;
+		} else {
+			code = store.computeIfAbsent(cls.getRawName(), key -> {
+				loaded[0] = true;
+				return cls.getCode();
+			});
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = cls.getRawName();
+			event.source = loaded[0] ? "jadx" : "store";
+			event.codeLength = code != null ? code.length() : 0;
+			event.commit();
+		}
+		return code;
+	}
+
+
+	/**
+	 * 重命名或注释会改变节点所在类及引用它的类的代码，从代码存储中移除这些顶层类（含内部类）
+	 */
+	private void invalidateStoredCode(Collection<String> topClassRawNames) {
+		CompressedCodeStore store = codeStore;
+		if (store == null || topClassRawNames.isEmpty()) {
+			return;
+		}
+		// 内部类原始名不一定带 '$'（如 jadx 移动或重命名过的类），按类节点取顶层类
+		RootNode root = backend.getDecompiler().getRoot();
+		store.invalidateIf(key -> {
+			ClassNode cls = root.resolveRawClass(key);
+			return topClassRawNames.contains(cls != null ? cls.getTopParentClass().getRawName() : key);
+		});
+	}
+
+
+	/**
+	 * 重命名或注释后由失效总线调用：只移除受影响顶层类的存储代码和代码索引
+	 */
+	private void invalidateCachedClasses(Set<String> topClassRawNames) {
+		invalidateStoredCode(topClassRawNames);
+		synchronized (codeIndexLock) {
+			codeGeneration++;
+			codeIndexCache.removeIf(topClass -> topClassRawNames.contains(topClass.getRawName()));
+		}
+		changeFeed.publish("invalidate", Map.of("classes", new TreeSet<>(topClassRawNames)));
+	}
+
+
+	/**
+	 * 项目重载后节点对象全部更换，以节点为键的缓存和基于旧节点构建的索引整体清空，下次使用时重建
+	 */
+	private void invalidateAllCaches() {
+		synchronized (codeIndexLock) {
+			codeGeneration++;
+			codeIndexCache.clear();
+		}
+		smaliIndexCache.clear();
+		insnSnapshotCache.clear();
+		cfgCache.clear();
+		classAccessTimes.clear();
+		CompressedCodeStore store = codeStore;
+		if (store != null) {
+			store.clear();
+		}
+		synchronized (this) {
+			structuralIndex = null;
+		}
+		synchronized (similarityLock) {
+			similarityIndex = null;
+			similarityBuild = null;
+		}
+		libraries = null;
+		changeFeed.publish("invalidate", Map.of("all", true));
+	}
+
+
 	private void handleClassSource(Context ctx) {
 
 		try {
@@ -977,13 +2348,13 @@ public class JadxMcpPlugin implements JadxPlugin {
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
 			JavaClass cls = findClass(ctx);
-			String code = cls.getCode();
+			String code = getClassCode(cls);
 
 			Map<String, Object> result;
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						code,
@@ -998,6 +2369,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 			ctx.json(result);
 
 
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
 		} catch (NoSuchElementException e) {
 			ctx.status(404).json(Map.of("error", e.getMessage()));
 		} catch (NumberFormatException e) {
@@ -1014,11 +2387,14 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private void handleSearchMethod(Context ctx) {
 		try {
-			String methodName = getParameter(ctx, "method", "method_name", "methodName");
-			String originalName = getParameter(ctx, "original_name", "originalName", "method_original_name");
-			String methodSignature = getParameter(ctx, "method_signature", "signature");
-			String className = getParameter(ctx, "name", "class_name", "class");
-			String rawName = getParameter(ctx, "rawName", "raw_name", "class_raw_name", "classRawName");
+			if (isLibraryFilterUnavailable(ctx)) {
+				return;
+			}
+			String methodName = getParameter(ctx, METHOD_NAME_PARAMS);
+			String originalName = getParameter(ctx, METHOD_ORIGINAL_NAME_PARAMS);
+			String methodSignature = getParameter(ctx, METHOD_SIGNATURE_PARAMS);
+			String className = getParameter(ctx, CLASS_NAME_PARAMS);
+			String rawName = getParameter(ctx, CLASS_RAW_NAME_PARAMS);
 
 			boolean hasClassName = className != null && !className.isEmpty();
 			boolean hasClassRawName = rawName != null && !rawName.isEmpty();
@@ -1030,20 +2406,33 @@ public class JadxMcpPlugin implements JadxPlugin {
 				throw new IllegalArgumentException("Missing 'method_name' or 'original_name' parameter");
 			}
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			if (wrapper == null) {
-				logger.error("JADX AI MCP Error: JadxWrapper not initialized");
-				ctx.status(500).json(Map.of("error", "JadxWrapper not initialized"));
-				return;
-			}
 			List<JavaMethod> methodMatches = new ArrayList<>();
+			PersistentIndex index = persistentIndex;
 			if (hasClassName || hasClassRawName) {
 				JavaMethod method = findMethod(ctx);
 
 
 				methodMatches.add(method);
+			} else if (index != null) {
+				// 索引给出候选类，只在这些类中查找
+				NodeResolver resolver = new NodeResolver(backend.getClasses());
+				for (String candidate : index.findClassesWithMethod(originalName, methodName)) {
+					RequestDeadline.checkCurrent();
+					try {
+						JavaClass cls = resolver.findClass(null, candidate);
+						methodMatches.add(findMethod(cls, methodName, originalName, methodSignature));
+					} catch (NoSuchElementException e) {
+						// 候选类中没有签名匹配的方法
+						logger.debug("JADX AI MCP: index candidate {} skipped: {}", candidate, e.getMessage());
+					} catch (RequestDeadline.Exceeded e) {
+						throw e;
+					} catch (RuntimeException e) {
+						logger.warn("JADX AI MCP: failed to search index candidate " + candidate + ": " + e.getMessage(), e);
+					}
+				}
 			} else {
-				for (JavaClass cls : wrapper.getIncludedClassesWithInners()) {
+				for (JavaClass cls : backend.getClasses()) {
+					RequestDeadline.checkCurrent();
 					try {
 						JavaMethod method = findMethod(cls, methodName, originalName, methodSignature);
 
@@ -1055,6 +2444,11 @@ public class JadxMcpPlugin implements JadxPlugin {
 				}
 			}
 
+			LibraryDetector libraryFilter = getLibraryFilter(ctx);
+			if (libraryFilter != null) {
+				methodMatches.removeIf(method -> libraryFilter.isLibraryClass(method.getDeclaringClass().getRawName()));
+			}
+
 			Map<String, Object> result = new HashMap<>();
 			result.put("class_filter", className != null ? className : "all");
 			result.put("match_count", methodMatches.size());
@@ -1067,7 +2461,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			if (pageIndex != null && !pageIndex.isEmpty()) {
 				int index = Integer.parseInt(pageIndex);
-				int size = (pageSize != null && !pageSize.isEmpty()) ? Integer.parseInt(pageSize) : currentPageSize;
+				int size = (pageSize != null && !pageSize.isEmpty()) ? Integer.parseInt(pageSize) : config.pageSize;
 
 				methods = paginationHelper.<JavaMethod>paginateList(
 						methodMatches,
@@ -1101,6 +2495,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 
 			ctx.status(200).json(result);
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
 		} catch (Exception e) {
 			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
 			ctx.status(500).json(Map.of("error", "Internal error during method search: " + e.getMessage()));
@@ -1134,22 +2530,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		try {
 			JavaClass cls = findClass(ctx);
 
-			List<Map<String, Object>> methodInfos = new ArrayList<>();
-			for (JavaMethod method : cls.getMethods()) {
-				Map<String, Object> methodInfo = new HashMap<>();
-
-				jadx.core.dex.info.MethodInfo methodInfoDetail = method.getMethodNode().getMethodInfo();
-				methodInfo.put("signature", methodInfoDetail.getShortId());
-				methodInfo.put("originalName", methodInfoDetail.getName());
-
-				methodInfo.put("name", method.getName());
-				methodInfo.put("isPublic", method.getAccessFlags().isPublic());
-				methodInfo.put("isStatic", method.getAccessFlags().isStatic());
-				methodInfo.put("isConstructor", method.isConstructor());
-
-				methodInfos.add(methodInfo);
-			}
-
+			List<Map<String, Object>> methodInfos = NodeInfoBuilder.methodsOfClass(cls);
 
 			ctx.json(methodInfos);
 
@@ -1168,29 +2549,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		try {
 			JavaMethod method = findMethod(ctx);
 
-			MethodNode methodNode = method.getMethodNode();
-			List<VarNode> argNodes = methodNode.collectArgNodes();
-			List<ArgType> argTypes = method.getArguments();
-
-			List<Map<String, Object>> parameters = new ArrayList<>();
-			for (int i = 0; i < argNodes.size(); i++) {
-				VarNode varNode = argNodes.get(i);
-				ArgType argType = i < argTypes.size() ? argTypes.get(i) : null;
-
-				Map<String, Object> paramInfo = new HashMap<>();
-				paramInfo.put("index", i);
-				paramInfo.put("name", varNode.getName());
-				paramInfo.put("type", argType != null ? argType.toString() : "unknown");
-				paramInfo.put("register", varNode.getReg());
-				paramInfo.put("ssa_version", varNode.getSsa());
-
-				parameters.add(paramInfo);
-			}
-
-			Map<String, Object> result = new HashMap<>();
-			result.put("method", method.getName());
-			result.put("parameters", parameters);
-			result.put("total_count", parameters.size());
+			Map<String, Object> result = NodeInfoBuilder.methodParameters(method);
 
 			ctx.json(result);
 
@@ -1209,19 +2568,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 		try {
 			JavaClass cls = findClass(ctx);
 
-			List<Map<String, Object>> FieldInfos = new ArrayList<>();
-			for (JavaField field : cls.getFields()) {
-				Map<String, Object> fieldInfo = new HashMap<>();
-
-				fieldInfo.put("name", field.getName());
-				fieldInfo.put("fullName", field.getFullName());
-				fieldInfo.put("rawName", field.getRawName());
-				fieldInfo.put("isPublic", field.getAccessFlags().isPublic());
-				fieldInfo.put("isStatic", field.getAccessFlags().isStatic());
-				fieldInfo.put("type", field.getType().toString());
-
-				FieldInfos.add(fieldInfo);
-			}
+			List<Map<String, Object>> FieldInfos = NodeInfoBuilder.fieldsOfClass(cls);
 			ctx.json(FieldInfos);
 
 		} catch (NoSuchElementException e) {
@@ -1256,7 +2603,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			event.setResetName(newName.isEmpty());
 
-			mainWindow.events().send(event);
+			backend.events().send(event);
 
 			logger.info("rename Class " + cls.getName() + " to " + newName);
 
@@ -1297,7 +2644,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			event.setResetName(newName.isEmpty());
 
-			mainWindow.events().send(event);
+			backend.events().send(event);
 
 			logger.info("rename method " + method.getName() + " to " + newName);
 
@@ -1335,7 +2682,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			event.setRenameNode(field.getFieldNode());
 			event.setResetName(newFieldName.isEmpty());
 
-			mainWindow.events().send(event);
+			backend.events().send(event);
 			Map<String, Object> result = new HashMap<>();
 			result.put("result", "rename field " + field.getName() + " to " + newFieldName);
 			ctx.json(result);
@@ -1358,13 +2705,13 @@ public class JadxMcpPlugin implements JadxPlugin {
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
 			JavaClass cls = findClass(ctx);
-			String code = cls.getSmali();
+			String code = getSmaliIndex(cls).getClassSmali(cls.getClassNode().getRawName());
 
 			Map<String, Object> result;
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						code,
@@ -1393,13 +2740,72 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	private void handleSmaliOfMethod(Context ctx) {
+
+		try {
+			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
+			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
+
+			JavaMethod method = findMethod(ctx);
+			JavaClass cls = method.getDeclaringClass();
+			String shortId = method.getMethodNode().getMethodInfo().getShortId();
+
+			String code = getSmaliIndex(cls).getMethodSmali(cls.getClassNode().getRawName(), shortId);
+			if (code == null) {
+				throw new NoSuchElementException("Smali of method not found: " + shortId);
+			}
+
+			Map<String, Object> result;
+
+			if (strIndex != null && !strIndex.isEmpty()) {
+				int index = Integer.parseInt(strIndex);
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
+
+				result = paginationHelper.paginateLongString(
+						code,
+						index,
+						size
+				);
+			} else {
+
+				result = paginationHelper.autoPaginateLongString(code);
+			}
+
+			result.put("className", cls.getFullName());
+			result.put("signature", shortId);
+			result.put("type", "code/smali");
+
+			ctx.json(result);
+
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (NumberFormatException e) {
+			logger.error("JADX AI MCP Pagination Parameter Error: " + e.getMessage());
+			ctx.status(400).json(Map.of("error", "Invalid pagination parameter: " + e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			ctx.status(500).json(Map.of("error", "Internal server error: " + e.getMessage()));
+		}
+
+	}
+
+
+	/**
+	 * 获取类所在顶层类的smali索引（含内部类），首次访问时生成smali并建立方法区间表；内部类共用顶层类的条目
+	 */
+	private SmaliIndex getSmaliIndex(JavaClass cls) {
+		return smaliIndexCache.computeIfAbsent(cls.getClassNode().getTopParentClass(),
+				topClass -> SmaliIndex.build(topClass.getDisassembledCode()));
+	}
+
+
 	private void handleManifest(Context ctx) {
 		try {
 			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resources = wrapper.getResources();
+			List<ResourceFile> resources = backend.getResources();
 			ResourceFile manifest = AndroidManifestParser.getAndroidManifest(resources);
 
 			if (manifest == null) {
@@ -1414,7 +2820,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			Map<String, Object> result;
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						manifestContent,
@@ -1440,8 +2846,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private void handleMainApplicationClassesNames(Context ctx) {
 		try {
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resources = wrapper.getResources();
+			List<ResourceFile> resources = backend.getResources();
 
 			ResourceFile manifestRes = AndroidManifestParser.getAndroidManifest(resources);
 			if (manifestRes == null) {
@@ -1451,7 +2856,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			}
 
 			String manifestXml = manifestRes.loadContent().getText().getCodeStr();
-			Document manifestDoc = parseManifestXml(manifestXml, wrapper.getArgs().getSecurity());
+			Document manifestDoc = parseManifestXml(manifestXml, backend.getArgs().getSecurity());
 
 			Element manifestElement = (Element) manifestDoc.getElementsByTagName("manifest").item(0);
 			String packageName = manifestElement.getAttribute("package");
@@ -1462,7 +2867,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 				return;
 			}
 
-			List<JavaClass> matchedClasses = wrapper.getDecompiler()
+			List<JavaClass> matchedClasses = backend.getDecompiler()
 					.getClasses()
 					.stream()
 					.filter(cls -> cls.getFullName().startsWith(packageName))
@@ -1489,8 +2894,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resources = wrapper.getResources();
+			List<ResourceFile> resources = backend.getResources();
 
 			ResourceFile manifestRes = AndroidManifestParser.getAndroidManifest(resources);
 			if (manifestRes == null) {
@@ -1500,7 +2904,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			}
 
 			String manifestXml = manifestRes.loadContent().getText().getCodeStr();
-			Document manifestDoc = parseManifestXml(manifestXml, wrapper.getArgs().getSecurity());
+			Document manifestDoc = parseManifestXml(manifestXml, backend.getArgs().getSecurity());
 
 			Element manifestElement = (Element) manifestDoc.getElementsByTagName("manifest").item(0);
 			String packageName = manifestElement.getAttribute("package");
@@ -1511,7 +2915,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 				return;
 			}
 
-			List<JavaClass> matchedClasses = wrapper.getDecompiler()
+			List<JavaClass> matchedClasses = backend.getDecompiler()
 					.getClasses()
 					.stream()
 					.filter(cls -> cls.getFullName().startsWith(packageName))
@@ -1520,7 +2924,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			Map<String, Object> result;
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateList(
 						matchedClasses,
@@ -1530,7 +2934,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 							Map<String, Object> classInfo = new HashMap<>();
 							classInfo.put("name", cls.getFullName());
 							classInfo.put("type", "code/java");
-							classInfo.put("content", cls.getCode());
+							classInfo.put("content", getClassCode(cls));
 							return classInfo;
 						}
 				);
@@ -1543,13 +2947,15 @@ public class JadxMcpPlugin implements JadxPlugin {
 							Map<String, Object> classInfo = new HashMap<>();
 							classInfo.put("name", cls.getFullName());
 							classInfo.put("type", "code/java");
-							classInfo.put("content", cls.getCode());
+							classInfo.put("content", getClassCode(cls));
 							return classInfo;
 						}
 				);
 			}
 
 			ctx.json(result);
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
 		} catch (Exception e) {
 			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
 			ctx.status(500).json(Map.of("error", "Internal error retrieving AndroidManifest.xml: " + e.getMessage()));
@@ -1564,13 +2970,12 @@ public class JadxMcpPlugin implements JadxPlugin {
 			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resources = wrapper.getResources();
+			List<ResourceFile> resources = backend.getResources();
 
 			AndroidManifestParser parser = new AndroidManifestParser(
 					AndroidManifestParser.getAndroidManifest(resources),
 					EnumSet.of(AppAttribute.MAIN_ACTIVITY),
-					wrapper.getArgs().getSecurity());
+					backend.getArgs().getSecurity());
 
 			if (!parser.isManifestFound()) {
 				logger.error("JADX AI MCP Error: AndroidManifest.xml not found.");
@@ -1585,19 +2990,19 @@ public class JadxMcpPlugin implements JadxPlugin {
 				return;
 			}
 
-			JavaClass mainActivityClass = results.getMainActivityJavaClass(wrapper.getDecompiler());
+			JavaClass mainActivityClass = results.getMainActivityJavaClass(backend.getDecompiler());
 			if (mainActivityClass == null) {
 				logger.error("JADX AI MCP Error: Failed to get activity class: " + results.getApplication());
 				ctx.status(404).json(Map.of("error", "Failed to get activity class: " + results.getApplication()));
 				return;
 			}
 
-			String activityCode = mainActivityClass.getCode();
+			String activityCode = getClassCode(mainActivityClass);
 			Map<String, Object> result;
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						activityCode,
@@ -1612,6 +3017,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 			result.put("type", "code/java");
 
 			ctx.json(result);
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
 		} catch (Exception e) {
 			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
 			ctx.status(500).json(Map.of("error", "Internal error retrieving AndroidManifest.xml: " + e.getMessage()));
@@ -1623,35 +3030,10 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private void handleStrings(Context ctx) {
 		try {
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resourceFiles = wrapper.getResources();
-
-			List<Map<String, Object>> allStringEntries = new ArrayList<>();
-
-			for (ResourceFile resFile : resourceFiles) {
-				try {
-					if ("resources.arsc".equals(resFile.getDeobfName())) {
-						ResContainer container = resFile.loadContent();
-						List<ResContainer> subFiles = container.getSubFiles();
-						for (ResContainer file : subFiles) {
-							if ("res/values/strings.xml".equals(file.getFileName())) {
-								Map<String, Object> entry = new HashMap<>();
-								entry.put("file", file.getFileName());
-								entry.put("content", file.getText().getCodeStr());
-								allStringEntries.add(entry);
-							}
-						}
-					} else if ("res/values/strings.xml".equals(resFile.getDeobfName())) {
-						ResContainer container = resFile.loadContent();
-						Map<String, Object> entry = new HashMap<>();
-						entry.put("file", resFile.getDeobfName());
-						entry.put("content", container.getText().getCodeStr());
-						allStringEntries.add(entry);
-					}
-				} catch (Exception e) {
-					logger.error("JADX AI MCP Error: {}", e.getMessage(), e);
-				}
-			}
+			PersistentIndex index = persistentIndex;
+			List<Map<String, Object>> allStringEntries = index != null
+					? index.getResourceStrings()
+					: collectResourceStrings();
 
 			if (allStringEntries.isEmpty()) {
 				ctx.status(404).json(Map.of("error", "No strings.xml resource found"));
@@ -1676,29 +3058,46 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
-	private void handleListAllResourceFilesNames(Context ctx) {
-		try {
-			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
-			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
-
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resourceFiles = wrapper.getResources();
-			List<String> resourceFileNames = new ArrayList<>();
+	private List<Map<String, Object>> collectResourceStrings() {
+		List<Map<String, Object>> allStringEntries = new ArrayList<>();
 
-			for (ResourceFile resFile : resourceFiles) {
-				try {
-					if (resFile.getDeobfName().equals("resources.arsc")) {
-						ResContainer container = resFile.loadContent();
-						List<ResContainer> subFiles = container.getSubFiles();
-						for (ResContainer file : subFiles) {
-							resourceFileNames.add(file.getFileName());
+		for (ResourceFile resFile : backend.getResources()) {
+			try {
+				if ("resources.arsc".equals(resFile.getDeobfName())) {
+					ResContainer container = resFile.loadContent();
+					List<ResContainer> subFiles = container.getSubFiles();
+					for (ResContainer file : subFiles) {
+						if ("res/values/strings.xml".equals(file.getFileName())) {
+							Map<String, Object> entry = new HashMap<>();
+							entry.put("file", file.getFileName());
+							entry.put("content", file.getText().getCodeStr());
+							allStringEntries.add(entry);
 						}
 					}
-					resourceFileNames.add(resFile.getDeobfName());
-				} catch (Exception e) {
-					logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+				} else if ("res/values/strings.xml".equals(resFile.getDeobfName())) {
+					ResContainer container = resFile.loadContent();
+					Map<String, Object> entry = new HashMap<>();
+					entry.put("file", resFile.getDeobfName());
+					entry.put("content", container.getText().getCodeStr());
+					allStringEntries.add(entry);
 				}
+			} catch (Exception e) {
+				logger.error("JADX AI MCP Error: {}", e.getMessage(), e);
 			}
+		}
+		return allStringEntries;
+	}
+
+
+	private void handleListAllResourceFilesNames(Context ctx) {
+		try {
+			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
+			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
+
+			PersistentIndex persisted = persistentIndex;
+			List<String> resourceFileNames = persisted != null
+					? persisted.getResourceNames()
+					: collectResourceFileNames();
 
 			if (resourceFileNames.isEmpty()) {
 				ctx.status(404).json(Map.of("error", "No resources found"));
@@ -1708,7 +3107,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			Map<String, Object> result;
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.<String>paginateList(
 						resourceFileNames,
@@ -1736,13 +3135,33 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	private List<String> collectResourceFileNames() {
+		List<String> resourceFileNames = new ArrayList<>();
+
+		for (ResourceFile resFile : backend.getResources()) {
+			try {
+				if (resFile.getDeobfName().equals("resources.arsc")) {
+					ResContainer container = resFile.loadContent();
+					List<ResContainer> subFiles = container.getSubFiles();
+					for (ResContainer file : subFiles) {
+						resourceFileNames.add(file.getFileName());
+					}
+				}
+				resourceFileNames.add(resFile.getDeobfName());
+			} catch (Exception e) {
+				logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			}
+		}
+		return resourceFileNames;
+	}
+
+
 	private void handleGetResourceFile(Context ctx) {
 		try {
 			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
 
-			JadxWrapper wrapper = mainWindow.getWrapper();
-			List<ResourceFile> resourceFiles = wrapper.getResources();
+			List<ResourceFile> resourceFiles = backend.getResources();
 			Map<String, Object> resFileContent = new HashMap<>();
 			String filename = ctx.queryParam("file_name");
 
@@ -1780,7 +3199,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 			if (strIndex != null && !strIndex.isEmpty()) {
 				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
 				result = paginationHelper.paginateLongString(
 						content,
@@ -1905,8 +3324,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 			renameEvent.setResetName(reset);
 
 			javax.swing.SwingUtilities.invokeLater(() -> {
-				mainWindow.events().send(renameEvent);
-				mainWindow.getProject().save();
+				backend.events().send(renameEvent);
+				backend.saveProject();
 			});
 
 			logger.info("Renamed package: {} -> {}", packageName, newName);
@@ -1925,12 +3344,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 	private JavaPackage findPackage(String packageName) {
-		JadxWrapper wrapper = mainWindow.getWrapper();
-		if (wrapper == null) {
-			return null;
-		}
-
-		for (JavaPackage pkg : wrapper.getPackages()) {
+		for (JavaPackage pkg : backend.getPackages()) {
 			if (pkg.getFullName().equals(packageName)) {
 				return pkg;
 			}
@@ -1973,7 +3387,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 			event.setRenameNode(targetParamNode);
 			event.setResetName(newName.isEmpty());
 
-			mainWindow.events().send(event);
+			backend.events().send(event);
 
 			Map<String, Object> result = new HashMap<>();
 			result.put("success", true);
@@ -2138,8 +3552,8 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private JavaClass findClass(Context ctx) {
 
-		String className = getParameter(ctx, "name", "class_name", "class");
-		String rawName = getParameter(ctx, "rawName", "raw_name", "class_raw_name", "classRawName");
+		String className = getParameter(ctx, CLASS_NAME_PARAMS);
+		String rawName = getParameter(ctx, CLASS_RAW_NAME_PARAMS);
 
 		return findClassByName(className, rawName);
 	}
@@ -2176,142 +3590,78 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 	private JavaClass findClassByName(String className, String rawName) {
-		JadxWrapper wrapper = mainWindow.getWrapper();
-		if (wrapper == null) {
-			logger.error("wrapper is null");
-			throw new IllegalStateException("wrapper is null");
-		}
-
-		if ((className == null || className.isEmpty()) && (rawName == null || rawName.isEmpty())) {
-			logger.error("JADX AI MCP Error: Missing class name parameters");
-			throw new IllegalArgumentException("Missing 'className' or 'rawName' parameter.");
-		}
-
-		if (rawName != null && !rawName.isEmpty()) {
-			for (JavaClass cls : wrapper.getIncludedClassesWithInners()) {
-				if (cls.getClassNode().getRawName().equals(rawName)) {
-					return cls;
-				}
-			}
+		if (!McpJfr.isLookupEnabled()) {
+			return touchClass(NodeResolver.findClassIn(backend.getClasses(), className, rawName));
 		}
-
-		if (className != null && !className.isEmpty()) {
-			String searchName = className.replace('$', '.');
-			for (JavaClass cls : wrapper.getIncludedClassesWithInners()) {
-				if (cls.getFullName().equals(searchName)) {
-					return cls;
-				}
-			}
-		}
-
-		String searchName = className != null ? className : rawName;
-		logger.error("JADX AI MCP Error: Class not found: " + searchName);
-		throw new NoSuchElementException("Class not found: " + searchName);
+		return touchClass(McpJfr.lookup("class", rawName != null ? rawName : className,
+				() -> NodeResolver.findClassIn(backend.getClasses(), className, rawName)));
 	}
 
-	private JavaField findField(Context ctx) {
-
-		String fieldName = getParameter(ctx, "fieldName", "field_name", "field");
-		String fieldRawName = getParameter(ctx, "field_rawName", "field_raw_name", "fieldRawName");
 
-		JavaClass cls = findClass(ctx);
-		return findField(cls, fieldName, fieldRawName);
+	private JavaClass touchClass(JavaClass cls) {
+		classAccessTimes.put(cls.getClassNode().getTopParentClass(), System.currentTimeMillis());
+		return cls;
 	}
 
-	private JavaField findField(JavaClass cls, String fieldName, String fieldRawName) {
-		boolean hasFieldName = fieldName != null && !fieldName.isEmpty();
-		boolean hasFieldRawName = fieldRawName != null && !fieldRawName.isEmpty();
 
-		if (!hasFieldName && !hasFieldRawName) {
-			logger.error("JADX AI MCP Error: Missing 'field_name' or 'field_rawName' name parameters");
-			throw new IllegalArgumentException("Missing 'field_name' or 'field_rawName' name parameters");
+	/**
+	 * 卸载超过 IDLE_UNLOAD_MILLIS 未被访问的类的代码，并移除其代码索引和内部类的 smali 索引。
+	 * GUI 模式下跳过标签页中打开的类；只处理插件自己访问过的类，jadx-gui 自身加载的类不在其中。
+	 * 只在没有请求正在处理时进行：取不到 codeUnloadLock 写锁时本轮跳过，不等待
+	 */
+	int unloadIdleClasses() {
+		if (backend == null) {
+			return 0;
+		}
+		// 在取写锁之前读取标签页，避免持锁等待事件分发线程
+		Set<ClassNode> openClasses = backend.getOpenClasses();
+		if (openClasses == null || !codeUnloadLock.writeLock().tryLock()) {
+			return 0;
 		}
-
 		try {
-			for (JavaField field : cls.getFields()) {
-
-				if (hasFieldRawName && field.getRawName().equals(fieldRawName)) {
-					return field;
-				}
-
-				if (hasFieldName && field.getName().equals(fieldName)) {
-					return field;
+			long cutoff = System.currentTimeMillis() - IDLE_UNLOAD_MILLIS;
+			int unloaded = 0;
+			Iterator<Map.Entry<ClassNode, Long>> it = classAccessTimes.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<ClassNode, Long> entry = it.next();
+				if (entry.getValue() < cutoff && !openClasses.contains(entry.getKey())) {
+					ClassNode topClass = entry.getKey();
+					it.remove();
+					codeIndexCache.remove(topClass);
+					smaliIndexCache.remove(topClass);
+					topClass.unloadCode();
+					unloaded++;
 				}
 			}
-		} catch (Exception e) {
-			logger.error("Error finding field: " + e.getMessage(), e);
+			return unloaded;
+		} finally {
+			codeUnloadLock.writeLock().unlock();
 		}
-		throw new NoSuchElementException("Field not found: " + (hasFieldRawName ? fieldRawName : fieldName));
-
 	}
 
+	private JavaField findField(Context ctx) {
 
-	private JavaMethod findMethod(JavaClass cls, String methodName, String originalName, String methodSignature) {
-		boolean hasMethodName = methodName != null && !methodName.isEmpty();
-		boolean hasOriginalName = originalName != null && !originalName.isEmpty();
-		boolean hasSignature = methodSignature != null && !methodSignature.isEmpty();
-
-		if (!hasMethodName && !hasOriginalName) {
-			throw new IllegalArgumentException("Missing 'method_name' or 'original_name' parameter");
-		}
-
-		try {
-			for (JavaMethod method : cls.getMethods()) {
-				jadx.core.dex.nodes.MethodNode methodNode = method.getMethodNode();
-				jadx.core.dex.info.MethodInfo methodInfo = methodNode.getMethodInfo();
-
-				boolean nameMatch = false;
-				String searchTarget = null;
-
-				if (hasOriginalName && methodInfo.getName().equals(originalName)) {
-					nameMatch = true;
-					searchTarget = originalName;
-				} else if (hasMethodName && method.getName().equals(methodName)) {
-					nameMatch = true;
-					searchTarget = methodName;
-				}
-
-				if (nameMatch) {
-					if (hasSignature) {
-
-						if (methodInfo.getShortId().equals(methodSignature) ||
-								methodInfo.getShortId().contains(methodSignature)) {
-							return method;
-						}
+		String fieldName = getParameter(ctx, FIELD_NAME_PARAMS);
+		String fieldRawName = getParameter(ctx, FIELD_RAW_NAME_PARAMS);
 
-						continue;
-					}
+		JavaClass cls = findClass(ctx);
+		return NodeResolver.findFieldIn(cls, fieldName, fieldRawName);
+	}
 
-					return method;
-				}
-			}
-		} catch (Exception e) {
-			logger.error("Error searching methods in class {}: {}", cls.getFullName(), e.getMessage());
-			throw new RuntimeException("Failed to search methods: " + e.getMessage(), e);
-		}
 
-		String errorMsg = String.format("Method not found in class %s", cls.getFullName());
-		if (hasOriginalName) {
-			errorMsg += String.format(" (searched for original name: '%s'", originalName);
-		}
-		if (hasMethodName) {
-			errorMsg += String.format("%ssearched for name: '%s'",
-					hasOriginalName ? ", " : " (", methodName);
-		}
-		if (hasSignature) {
-			errorMsg += String.format(" with signature containing: '%s'", methodSignature);
+	private JavaMethod findMethod(JavaClass cls, String methodName, String originalName, String methodSignature) {
+		if (!McpJfr.isLookupEnabled()) {
+			return NodeResolver.findMethodIn(cls, methodName, originalName, methodSignature);
 		}
-		errorMsg += ")";
-
-		throw new NoSuchElementException(errorMsg);
-
+		return McpJfr.lookup("method", cls.getRawName() + "." + (originalName != null ? originalName : methodName),
+				() -> NodeResolver.findMethodIn(cls, methodName, originalName, methodSignature));
 	}
 
 	private JavaMethod findMethod(Context ctx) {
 
-		String methodName = getParameter(ctx, "method", "method_name", "methodName");
-		String originalName = getParameter(ctx, "original_name", "originalName", "method_original_name");
-		String methodSignature = getParameter(ctx, "method_signature", "signature");
+		String methodName = getParameter(ctx, METHOD_NAME_PARAMS);
+		String originalName = getParameter(ctx, METHOD_ORIGINAL_NAME_PARAMS);
+		String methodSignature = getParameter(ctx, METHOD_SIGNATURE_PARAMS);
 
 		JavaClass cls = findClass(ctx);
 
@@ -2319,36 +3669,6 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
-	private List<Map<String, Object>> parseMethodCodeLines(String methodCode, JavaMethod method) {
-		List<Map<String, Object>> codeLines = new ArrayList<>();
-
-		if (methodCode == null || methodCode.isEmpty()) {
-			return codeLines;
-		}
-
-		String[] lines = methodCode.split("\n");
-		int currentOffset = 0;
-
-		for (int i = 0; i < lines.length; i++) {
-			String line = lines[i].trim();
-			if (line.isEmpty()) {
-				continue;
-			}
-
-			Map<String, Object> lineInfo = new HashMap<>();
-			lineInfo.put("line_number", i + 1);
-			lineInfo.put("line_content", line);
-			lineInfo.put("instruction_offset", currentOffset);
-			lineInfo.put("code_type", determineCodeType(line));
-
-			codeLines.add(lineInfo);
-			currentOffset += estimateInstructionSize(line);
-		}
-
-		return codeLines;
-	}
-
-
 	private String determineCodeType(String line) {
 		line = line.trim();
 		if (line.startsWith("//") || line.startsWith("/*")) {
@@ -2367,34 +3687,10 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
-	private int estimateInstructionSize(String line) {
-
-
-		return line.length() + 2; // 简单估算
-	}
-
 	public void handleClassInfo(Context ctx) {
 		try {
 			JavaClass cls = findClass(ctx);
-			Map<String, Object> classInfo = new HashMap<>();
-			classInfo.put("className", cls.getFullName());
-			classInfo.put("shortName", cls.getName());
-			classInfo.put("rawName", cls.getClassNode().getRawName());
-			classInfo.put("type", cls.isInner() ? "inner class" : "class");
-			classInfo.put("packageName", cls.getPackage());
-			classInfo.put("isInner", cls.isInner());
-			classInfo.put("codeSourceLength", cls.getCode().length());
-
-			classInfo.put("innerClassesCount", cls.getInnerClasses().size());
-			classInfo.put("inlinedClassesCount", cls.getInlinedClasses().size());
-			classInfo.put("fieldsCount", cls.getFields().size());
-			classInfo.put("methodsCount", cls.getMethods().size());
-
-			List<String> innerClassNames = new ArrayList<>();
-			for (JavaClass innerClass : cls.getInnerClasses()) {
-				innerClassNames.add(innerClass.getFullName());
-			}
-			classInfo.put("innerClassNames", innerClassNames);
+			Map<String, Object> classInfo = NodeInfoBuilder.classInfo(cls);
 
 			ctx.json(classInfo);
 
@@ -2410,8 +3706,7 @@ public class JadxMcpPlugin implements JadxPlugin {
 
 	private void addCommentToProject(ICodeComment comment) {
 		try {
-			JadxProject project = mainWindow.getProject();
-			JadxCodeData codeData = project.getCodeData();
+			JadxCodeData codeData = backend.getCodeData();
 			if (codeData == null) {
 				codeData = new JadxCodeData();
 			}
@@ -2425,9 +3720,10 @@ public class JadxMcpPlugin implements JadxPlugin {
 			Collections.sort(commentList);
 
 			codeData.setComments(commentList);
-			project.setCodeData(codeData);
+			backend.setCodeData(codeData);
 
-			mainWindow.getWrapper().reloadCodeData();
+			// 缓存失效和 comment 事件由 InvalidationBus 在代码数据更新回调中发出，此时新注释已生效
+			backend.reloadCodeData();
 
 
 		} catch (Exception e) {
@@ -2439,54 +3735,190 @@ public class JadxMcpPlugin implements JadxPlugin {
 	}
 
 
+	/**
+	 * 方法指令：format=text（默认）返回 InsnNode 文本列表；format=columnar 返回列式结构，
+	 * 引用和操作码通过字符串表编码；stream=true 时用 JsonGenerator 直接写出全部列
+	 */
 	private void handleGetMethodInstructions(Context ctx) {
 		try {
 			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
 			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
+			String format = ctx.queryParam("format");
+			boolean stream = "true".equalsIgnoreCase(ctx.queryParam("stream"));
 
 			JavaMethod method = findMethod(ctx);
 			MethodNode methodNode = method.getMethodNode();
+			InsnSnapshot snapshot = getInsnSnapshot(methodNode);
+			if (snapshot == null) {
+				respondInsnsUnavailable(ctx, methodNode);
+				return;
+			}
+
+			Map<String, Object> baseInfo = new HashMap<>();
+			baseInfo.put("method", method.getName());
+			baseInfo.put("signature", methodNode.getMethodInfo().getShortId());
+			baseInfo.put("instructionCount", snapshot.getCount());
+
+			if (format == null || format.isEmpty() || "text".equalsIgnoreCase(format)) {
+				List<String> insS = snapshot.getText();
+				if (insS == null) {
+					respondInsnsUnavailable(ctx, methodNode);
+					return;
+				}
+				Map<String, Object> result;
+				if (strIndex != null && !strIndex.isEmpty()) {
+					int index = Integer.parseInt(strIndex);
+					int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
+
+					result = paginationHelper.<String>paginateList(
+							insS,
+							index,
+							size,
+							str -> str
+					);
+				} else {
+					result = paginationHelper.<String>handlePagination(
+							insS,
+							"method-instructions",
+							"instructions",
+							str -> str
 
-			if (!methodNode.isLoaded()) {
-				logger.warn(methodNode.getName() + " 需要重新加载");
-				methodNode.reload();
+					);
+				}
+
+				result.putAll(baseInfo);
+				ctx.json(result);
+				return;
+			}
+
+			if (!"columnar".equalsIgnoreCase(format)) {
+				throw new IllegalArgumentException("Unsupported format: " + format + ", supported: text, columnar");
 			}
 
-			List<String> insS = new ArrayList<>();
-			if (methodNode.getInstructions() != null) {
-				for (InsnNode ins : methodNode.getInstructions()) {
-					if (ins == null) continue;
-					insS.add(ins.toString());
+			if (stream) {
+				ctx.contentType("application/json");
+				try (JsonGenerator gen = objectMapper.getFactory().createGenerator(ctx.outputStream())) {
+					gen.writeStartObject();
+					for (Map.Entry<String, Object> entry : baseInfo.entrySet()) {
+						gen.writeObjectField(entry.getKey(), entry.getValue());
+					}
+					gen.writeStringField("type", "method-instructions/columnar");
+					snapshot.writeColumns(gen);
+					gen.writeEndObject();
 				}
+				return;
 			}
 
-			Map<String, Object> baseInfo = new HashMap<>();
-			baseInfo.put("method", method.getName());
-			baseInfo.put("signature", method.getMethodNode().getMethodInfo().getShortId());
-			baseInfo.put("instructionCount", methodNode.getInstructions() != null ? methodNode.getInstructions().length : 0);
+			int total = snapshot.getCount();
+			int page = 1;
+			int size = Math.max(total, 1);
+			if (strIndex != null && !strIndex.isEmpty()) {
+				page = Math.max(1, Integer.parseInt(strIndex));
+				size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
+				if (size <= 0) {
+					throw new IllegalArgumentException("Invalid page size: " + size);
+				}
+			}
+			// 页码或页大小很大时 (page-1)*size 会溢出 int，按 long 计算后截到指令数
+			long start = (long) (page - 1) * size;
+			int from = (int) Math.min(start, total);
+			int to = (int) Math.min(start + size, total);
+			Map<String, Object> result = new LinkedHashMap<>(baseInfo);
+			result.put("type", "method-instructions/columnar");
+			result.put("page", page);
+			result.put("pageSize", size);
+			result.put("totalPages", (int) (((long) total + size - 1) / size));
+			result.put("from", from);
+			result.putAll(snapshot.toColumns(from, to));
+			ctx.json(result);
+
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal server error: " + e.getMessage()));
+		}
+
+	}
+
+
+	/**
+	 * 方法控制流图：基本块（指令下标和偏移区间）、后继/前驱邻接数组、直接支配者和自然循环
+	 */
+	private void handleGetMethodCfg(Context ctx) {
+		try {
+			JavaMethod method = findMethod(ctx);
+			MethodNode methodNode = method.getMethodNode();
+			MethodCfg cfg = cfgCache.computeIfAbsent(methodNode, mth -> {
+				InsnSnapshot snapshot = getInsnSnapshot(mth);
+				return snapshot != null ? MethodCfg.build(snapshot) : null;
+			});
+			if (cfg == null) {
+				respondInsnsUnavailable(ctx, methodNode);
+				return;
+			}
+
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("type", "method-cfg");
+			result.put("method", method.getName());
+			result.put("signature", methodNode.getMethodInfo().getShortId());
+			result.putAll(cfg.toMap());
+			ctx.json(result);
+
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal server error: " + e.getMessage()));
+		}
+	}
+
+
+	/**
+	 * 方法调用者列表：持久化索引就绪时从索引读取，否则使用 MethodNode.getUseIn()
+	 */
+	private void handleGetMethodXrefs(Context ctx) {
+		try {
+			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
+			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
+
+			JavaMethod method = findMethod(ctx);
+			MethodNode methodNode = method.getMethodNode();
+			MethodInfo methodInfo = methodNode.getMethodInfo();
+
+			PersistentIndex index = persistentIndex;
+			List<Map<String, Object>> callers = index != null
+					? index.getCallers(methodNode.getParentClass().getRawName(), methodInfo.getName(), methodInfo.getShortId())
+					: null;
+			String source = "index";
+			if (callers == null) {
+				source = "live";
+				callers = new ArrayList<>();
+				for (MethodNode caller : methodNode.getUseIn()) {
+					Map<String, Object> info = new LinkedHashMap<>();
+					info.put("className", caller.getParentClass().getRawName());
+					info.put("signature", caller.getMethodInfo().getShortId());
+					info.put("name", caller.getName());
+					callers.add(info);
+				}
+			}
 
 			Map<String, Object> result;
 			if (strIndex != null && !strIndex.isEmpty()) {
-				int index = Integer.parseInt(strIndex);
-				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : currentPageSize;
+				int page = Integer.parseInt(strIndex);
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
 
-				result = paginationHelper.<String>paginateList(
-						insS,
-						index,
-						size,
-						str -> str
-				);
+				result = paginationHelper.paginateList(callers, page, size, item -> item);
 			} else {
-				result = paginationHelper.<String>handlePagination(
-						insS,
-						"method-instructions",
-						"instructions",
-						str -> str
-
-				);
+				result = paginationHelper.handlePagination(callers, "method-xrefs", "callers", item -> item);
 			}
-
-			result.putAll(baseInfo);
+			result.put("method", method.getName());
+			result.put("signature", methodInfo.getShortId());
+			result.put("source", source);
 			ctx.json(result);
 
 		} catch (NoSuchElementException e) {
@@ -2497,12 +3929,422 @@ public class JadxMcpPlugin implements JadxPlugin {
 			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
 			ctx.status(500).json(Map.of("error", "Internal server error: " + e.getMessage()));
 		}
+	}
+
 
+	/**
+	 * 打开持久化索引，键不匹配（输入文件或版本变化）时重新构建
+	 */
+	private void loadPersistentIndex() {
+		try {
+			JadxDecompiler decompiler = backend.getDecompiler();
+			List<File> inputs = decompiler.getArgs().getInputFiles();
+			if (inputs.isEmpty()) {
+				return;
+			}
+			long startTime = System.currentTimeMillis();
+			publishLoadState("persistent_index", "loading");
+			Path dir = getPersistentIndexDir(inputs);
+			String key = PersistentIndex.computeKey(dir, inputs, Jadx.getVersion() + "|" + getPluginVersion());
+
+			PersistentIndex index = PersistentIndex.open(dir, key);
+			if (index != null) {
+				logger.info("JADX AI MCP: persistent index opened in {} ms: {}", System.currentTimeMillis() - startTime, dir);
+			} else {
+				index = buildPersistentIndex().write(dir, key);
+				logger.info("JADX AI MCP: persistent index built in {} ms: {}", System.currentTimeMillis() - startTime, dir);
+			}
+			if (backend.getDecompiler() != decompiler) {
+				// 构建期间项目已重新加载，索引属于旧项目；新项目已就绪时此时的后台任务被跳过，在这里重新打开
+				publishLoadState("persistent_index", "stale");
+				if (projectReady) {
+					loadPersistentIndex();
+				}
+				return;
+			}
+			persistentIndex = index;
+			// 重命名以项目当前数据为准，赋值后再读取，期间应用的重命名不会丢失
+			index.setMethodRenames(collectMethodRenames());
+			publishLoadState("persistent_index", "ready");
+		} catch (Exception e) {
+			logger.warn("JADX AI MCP: persistent index unavailable: " + e.getMessage(), e);
+			publishLoadState("persistent_index", "failed");
+		}
+	}
+
+
+	/**
+	 * 项目当前的方法重命名，键为 "类原始名->shortId"
+	 */
+	private Map<String, String> collectMethodRenames() {
+		Map<String, String> renames = new HashMap<>();
+		for (ICodeRename rename : backend.getCodeData().getRenames()) {
+			IJavaNodeRef nodeRef = rename.getNodeRef();
+			if (nodeRef.getType() == IJavaNodeRef.RefType.METHOD && rename.getCodeRef() == null) {
+				renames.put(nodeRef.getDeclaringClass() + "->" + nodeRef.getShortId(), rename.getNewName());
+			}
+		}
+		return renames;
 	}
 
-	// todo 未完成
+
+	private PersistentIndex.Builder buildPersistentIndex() {
+		PersistentIndex.Builder builder = new PersistentIndex.Builder();
+		Map<MethodNode, Integer> methodIds = new IdentityHashMap<>();
+		// 用户重命名不写入索引文件，被重命名的方法记录原始名
+		Set<String> renamed = collectMethodRenames().keySet();
+		for (JavaClass cls : backend.getClasses()) {
+			String rawName = cls.getClassNode().getRawName();
+			int classIdx = builder.addClass(rawName, cls.getFullName());
+			for (JavaMethod method : cls.getMethods()) {
+				MethodNode methodNode = method.getMethodNode();
+				MethodInfo methodInfo = methodNode.getMethodInfo();
+				String alias = renamed.contains(rawName + "->" + methodInfo.getShortId()) ? methodInfo.getName() : method.getName();
+				methodIds.put(methodNode, builder.addMethod(classIdx, methodInfo.getName(), methodInfo.getShortId(), alias));
+			}
+		}
+		for (Map.Entry<MethodNode, Integer> entry : methodIds.entrySet()) {
+			for (MethodNode caller : entry.getKey().getUseIn()) {
+				Integer callerId = methodIds.get(caller);
+				if (callerId != null) {
+					builder.addXref(entry.getValue(), callerId);
+				}
+			}
+		}
+		for (Map<String, Object> entry : collectResourceStrings()) {
+			builder.addResourceString((String) entry.get("file"), (String) entry.get("content"));
+		}
+		for (String name : collectResourceFileNames()) {
+			builder.addResourceName(name);
+		}
+		return builder;
+	}
+
+
+	/**
+	 * 索引目录：已保存的项目放在项目文件旁，否则放在用户目录下按输入文件区分
+	 */
+	private Path getPersistentIndexDir(List<File> inputs) {
+		Path projectPath = backend.getProjectPath();
+		if (projectPath != null) {
+			return projectPath.resolveSibling(projectPath.getFileName() + ".mcp-index");
+		}
+		File first = inputs.get(0);
+		return Paths.get(System.getProperty("user.home"), ".jadx-mcp", "index",
+				first.getName() + "-" + Integer.toHexString(first.getAbsolutePath().hashCode()));
+	}
+
+
+	private static String getPluginVersion() {
+		String version = JadxMcpPlugin.class.getPackage().getImplementationVersion();
+		return version != null ? version : "dev";
+	}
+
+
+	/**
+	 * 重命名已应用后调用：方法重命名同步到持久化索引，缓存失效由 InvalidationBus 处理
+	 */
+	private void onNodeRenamed(NodeRenamedByUser event) {
+		changeFeed.publish("rename", describeRename(event));
+
+		PersistentIndex index = persistentIndex;
+		if (index != null && event.getNode() instanceof MethodNode) {
+			MethodNode methodNode = (MethodNode) event.getNode();
+			String newName = event.isResetName() ? "" : event.getNewName();
+			index.recordMethodRename(methodNode.getParentClass().getRawName(), methodNode.getMethodInfo().getShortId(), newName);
+		}
+	}
+
+
+	/**
+	 * 获取方法指令快照，每个方法最多重新加载一次，之后直接使用缓存。
+	 * jadx 划分基本块后会释放方法的指令数组（如其他线程正在反编译该类），此时有代码的方法得到空快照，
+	 * 返回 null 且不缓存，下次请求重新生成
+	 */
+	private InsnSnapshot getInsnSnapshot(MethodNode methodNode) {
+		return insnSnapshotCache.computeIfAbsent(methodNode, mth -> {
+			synchronized (mth) {
+				if (!mth.isLoaded()) {
+					logger.warn(mth.getName() + " 需要重新加载");
+					mth.reload();
+				}
+				InsnSnapshot snapshot = InsnSnapshot.build(mth);
+				return snapshot.getCount() == 0 && !mth.isNoCode() ? null : snapshot;
+			}
+		});
+	}
+
+	private static void respondInsnsUnavailable(Context ctx, MethodNode methodNode) {
+		ctx.header("Retry-After", "1");
+		ctx.status(503).json(Map.of("error", "Instructions of " + methodNode.getMethodInfo().getShortId()
+				+ " are in use by the decompiler, retry shortly"));
+	}
+
+	/**
+	 * 批量子请求的处理函数，参数来自子请求的params对象
+	 */
+	@FunctionalInterface
+	private interface BatchRoute {
+		Object handle(Map<String, String> params, NodeResolver resolver);
+	}
+
+
+	private void registerBatchRoutes() {
+		batchRoutes.clear();
+		batchRoutes.put("/get-class-info", (params, resolver) ->
+				NodeInfoBuilder.classInfo(resolveClass(params, resolver)));
+		batchRoutes.put("/get-methods", (params, resolver) ->
+				NodeInfoBuilder.methodsOfClass(resolveClass(params, resolver)));
+		batchRoutes.put("/get-fields", (params, resolver) ->
+				NodeInfoBuilder.fieldsOfClass(resolveClass(params, resolver)));
+		batchRoutes.put("/get-method-info", (params, resolver) -> {
+			JavaMethod method = resolveMethod(params, resolver);
+			Map<String, Object> result = NodeInfoBuilder.methodInfo(method);
+			putCodeLength(result, method);
+			return result;
+		});
+		batchRoutes.put("/get-method-parameters", (params, resolver) ->
+				NodeInfoBuilder.methodParameters(resolveMethod(params, resolver)));
+	}
+
+
+	private JavaClass resolveClass(Map<String, String> params, NodeResolver resolver) {
+		String className = getParameter(params, CLASS_NAME_PARAMS);
+		String rawName = getParameter(params, CLASS_RAW_NAME_PARAMS);
+		if (!McpJfr.isLookupEnabled()) {
+			return touchClass(resolver.findClass(className, rawName));
+		}
+		return touchClass(McpJfr.lookup("class", rawName != null ? rawName : className,
+				() -> resolver.findClass(className, rawName)));
+	}
+
+
+	private JavaMethod resolveMethod(Map<String, String> params, NodeResolver resolver) {
+		JavaClass cls = resolveClass(params, resolver);
+		String methodName = getParameter(params, METHOD_NAME_PARAMS);
+		String originalName = getParameter(params, METHOD_ORIGINAL_NAME_PARAMS);
+		String methodSignature = getParameter(params, METHOD_SIGNATURE_PARAMS);
+		if (!McpJfr.isLookupEnabled()) {
+			return resolver.findMethod(cls, methodName, originalName, methodSignature);
+		}
+		return McpJfr.lookup("method", cls.getRawName() + "." + (originalName != null ? originalName : methodName),
+				() -> resolver.findMethod(cls, methodName, originalName, methodSignature));
+	}
+
+
+	private String getParameter(Map<String, String> params, String... paramNames) {
+		for (String paramName : paramNames) {
+			String value = params.get(paramName);
+			if (value != null && !value.isEmpty()) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * 批量查询：请求体为 {"requests":[{"path":"/get-method-info","params":{...}}, ...]} 或直接为数组，
+	 * 子请求在工作线程池中并发执行，共享类名索引和方法查找结果，按请求顺序返回，每项单独返回错误；
+	 * 子请求继承请求的截止时间，超时后取消尚未完成的子请求
+	 */
+	private void handleBatch(Context ctx) {
+		try {
+			JsonNode body = objectMapper.readTree(ctx.body());
+			JsonNode requests = body != null && body.isObject() ? body.get("requests") : body;
+			if (requests == null || !requests.isArray()) {
+				throw new IllegalArgumentException("Request body must be a JSON array or an object with a 'requests' array");
+			}
+			if (requests.size() > MAX_BATCH_SIZE) {
+				throw new IllegalArgumentException("Too many sub-requests: " + requests.size() + " (max " + MAX_BATCH_SIZE + ")");
+			}
+
+			NodeResolver resolver = new NodeResolver(backend.getClasses());
+			RequestDeadline deadline = RequestDeadline.current();
+
+			List<Future<Object>> futures = new ArrayList<>(requests.size());
+			List<String> paths = new ArrayList<>(requests.size());
+			for (JsonNode request : requests) {
+				String path = request.path("path").asText("");
+				if (!path.startsWith("/")) {
+					path = "/" + path;
+				}
+				Map<String, String> params = new HashMap<>();
+				request.path("params").fields().forEachRemaining(e -> params.put(e.getKey(), e.getValue().asText()));
+
+				BatchRoute route = batchRoutes.get(path);
+				paths.add(path);
+				if (route == null) {
+					CompletableFuture<Object> unsupported = new CompletableFuture<>();
+					unsupported.completeExceptionally(new IllegalArgumentException("Unsupported batch path: " + path
+							+ ", supported: " + batchRoutes.keySet()));
+					futures.add(unsupported);
+				} else {
+					// 取消的子请求可能在批量请求返回后才结束，自己持有读锁
+					Callable<Object> task = () -> {
+						codeUnloadLock.readLock().lock();
+						try {
+							return RequestDeadline.call(deadline, () -> route.handle(params, resolver));
+						} finally {
+							codeUnloadLock.readLock().unlock();
+						}
+					};
+					futures.add(workerPool.submit(task));
+				}
+			}
+
+			List<Map<String, Object>> results = new ArrayList<>(futures.size());
+			int errorCount = 0;
+			for (int i = 0; i < futures.size(); i++) {
+				Map<String, Object> item = new HashMap<>();
+				item.put("index", i);
+				item.put("path", paths.get(i));
+				try {
+					item.put("result", deadline != null
+							? futures.get(i).get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+							: futures.get(i).get());
+					item.put("status", 200);
+				} catch (TimeoutException e) {
+					int cancelled = 0;
+					for (Future<Object> future : futures) {
+						if (future.cancel(true)) {
+							cancelled++;
+						}
+					}
+					throw new RequestDeadline.Exceeded("Request deadline exceeded, cancelled " + cancelled + " pending sub-requests");
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause() != null ? e.getCause() : e;
+					item.put("status", errorStatus(cause));
+					item.put("error", cause.getMessage());
+					errorCount++;
+				}
+				results.add(item);
+			}
+
+			Map<String, Object> result = new HashMap<>();
+			result.put("results", results);
+			result.put("count", results.size());
+			result.put("error_count", errorCount);
+			ctx.json(result);
+
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
+		} catch (JsonProcessingException e) {
+			ctx.status(400).json(Map.of("error", "Invalid JSON body: " + e.getOriginalMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			ctx.status(500).json(Map.of("error", "Batch interrupted"));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal error during batch: " + e.getMessage()));
+		}
+	}
+
+
+	private static int errorStatus(Throwable e) {
+		if (e instanceof RequestDeadline.Exceeded) {
+			return 504;
+		}
+		if (e instanceof NoSuchElementException) {
+			return 404;
+		}
+		if (e instanceof IllegalArgumentException) {
+			return 400;
+		}
+		return 500;
+	}
+
+	/**
+	 * 按行获取方法代码中的节点引用和对应的指令偏移：line 为方法内行号（从1开始），0 表示整个方法；
+	 * 引用和偏移取自类代码索引中按位置排序的元数据数组，二分查找定位
+	 */
 	private void handleGetMethodCodeRefsByLine(Context ctx) {
+		try {
+			String strIndex = getRenameParameter(ctx, "index", "pageIndex", "page_index");
+			String strSize = getRenameParameter(ctx, "pageSize", "page_size", "limit");
+			String strLine = getParameter(ctx, "line", "line_number", "lineNumber");
+			int line = strLine != null ? Integer.parseInt(strLine) : 0;
+			if (line < 0) {
+				throw new IllegalArgumentException("Invalid line: " + line);
+			}
+
+			JavaMethod method = findMethod(ctx);
+			MethodNode methodNode = method.getMethodNode();
+			ClassCodeIndex codeIndex = getCodeIndex(methodNode.getParentClass());
+			if (!codeIndex.hasMethod(methodNode)) {
+				throw new NoSuchElementException("Method code not found in class code: " + method.getName());
+			}
+
+			int startLine = codeIndex.getMethodStartLine(methodNode);
+			int endLine = codeIndex.getMethodEndLine(methodNode);
+			int first = startLine;
+			int last = endLine;
+			if (line > 0) {
+				first = startLine + line - 1;
+				if (first > endLine) {
+					throw new IllegalArgumentException("Line " + line + " out of range, method has "
+							+ (endLine - startLine + 1) + " lines");
+				}
+				last = first;
+			}
+
+			List<Map<String, Object>> lines = new ArrayList<>();
+			String code = codeIndex.getCode();
+			for (int classLine = first; classLine <= last; classLine++) {
+				int lineStart = codeIndex.lineStart(classLine);
+				int lineLimit = codeIndex.lineLimit(classLine);
+				String content = code.substring(lineStart, lineLimit).trim();
+				if (content.isEmpty()) {
+					continue;
+				}
+
+				List<Map<String, Object>> refs = new ArrayList<>();
+				for (Map.Entry<Integer, ICodeAnnotation> entry : codeIndex.getRefs(lineStart, lineLimit)) {
+					Map<String, Object> refInfo = NodeInfoBuilder.codeRefInfo(entry.getValue(), codeIndex);
+					if (refInfo != null) {
+						refInfo.put("column", entry.getKey() - lineStart + 1);
+						refs.add(refInfo);
+					}
+				}
+
+				Map<String, Object> lineInfo = new HashMap<>();
+				lineInfo.put("line_number", classLine - startLine + 1);
+				lineInfo.put("class_line_number", classLine);
+				lineInfo.put("line_content", content);
+				lineInfo.put("code_type", determineCodeType(content));
+				lineInfo.put("instruction_offsets", codeIndex.getInsnOffsets(lineStart, lineLimit));
+				lineInfo.put("refs", refs);
+				lines.add(lineInfo);
+			}
+
+			Map<String, Object> result;
+			if (strIndex != null && !strIndex.isEmpty()) {
+				int index = Integer.parseInt(strIndex);
+				int size = (strSize != null && !strSize.isEmpty()) ? Integer.parseInt(strSize) : config.pageSize;
+
+				result = paginationHelper.paginateList(lines, index, size, item -> item);
+			} else {
+				result = paginationHelper.handlePagination(lines, "method-code-refs", "lines", item -> item);
+			}
+
+			result.put("method", method.getName());
+			result.put("signature", methodNode.getMethodInfo().getShortId());
+			result.put("startLine", startLine);
+			result.put("endLine", endLine);
+			ctx.json(result);
 
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal server error: " + e.getMessage()));
+		}
 	}
 
 }
@@ -0,0 +1,286 @@
+package jadx.plugins.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 第三方库识别 - 签名库（插件自带 jadx-mcp-libraries.json，可用 ~/.jadx-mcp/libraries.json 追加）中每个库有包名、
+ * 标志类和可选的方法结构哈希；包名在应用的包树中存在且至少找到一个标志类时按包名识别，标志类越多置信度越高，
+ * 只有包名相同的应用代码不会被当作库；包名被混淆或重定位时，按方法结构哈希在各包中的命中比例识别。
+ * 自带签名库只有包名和标志类，方法结构哈希需要用 /get-library-fingerprints 生成后加入用户签名库
+ */
+public final class LibraryDetector {
+
+	public static final String BUNDLED_DATABASE = "/jadx-mcp-libraries.json";
+
+	// 按指纹识别时，一个包至少命中的方法数和命中比例
+	private static final int MIN_FINGERPRINT_MATCHES = 5;
+	private static final double MIN_FINGERPRINT_RATIO = 0.5;
+
+	public static final class Library {
+		final String id;
+		final String name;
+		final List<String> packages;
+		final List<String> markers;
+		final Set<Long> methodHashes;
+
+		Library(String id, String name, List<String> packages, List<String> markers, Set<Long> methodHashes) {
+			this.id = id;
+			this.name = name;
+			this.packages = packages;
+			this.markers = markers;
+			this.methodHashes = methodHashes;
+		}
+	}
+
+	private static final class Detection {
+		final Library library;
+		final String packageRoot;
+		final String matchedBy;
+		final int classCount;
+		final double confidence;
+		final int markersFound;
+
+		Detection(Library library, String packageRoot, String matchedBy, int classCount, double confidence, int markersFound) {
+			this.library = library;
+			this.packageRoot = packageRoot;
+			this.matchedBy = matchedBy;
+			this.classCount = classCount;
+			this.confidence = confidence;
+			this.markersFound = markersFound;
+		}
+	}
+
+	private final List<Detection> detections = new ArrayList<>();
+	// 识别出的库包根，isLibraryClass 逐级查找类所在的各级包
+	private final Set<String> libraryRoots = new HashSet<>();
+	private int libraryClassCount;
+	private int totalClassCount;
+	private long elapsedMillis;
+
+	private LibraryDetector() {
+	}
+
+	/**
+	 * 读取自带签名库，userDatabase 存在时追加其中的库（id 相同时覆盖）
+	 */
+	public static List<Library> loadDatabase(ObjectMapper mapper, Path userDatabase) throws IOException {
+		Map<String, Library> libraries = new LinkedHashMap<>();
+		try (InputStream in = LibraryDetector.class.getResourceAsStream(BUNDLED_DATABASE)) {
+			if (in != null) {
+				parse(mapper.readTree(in), libraries);
+			}
+		}
+		if (userDatabase != null && Files.isRegularFile(userDatabase)) {
+			try (InputStream in = Files.newInputStream(userDatabase)) {
+				parse(mapper.readTree(in), libraries);
+			}
+		}
+		return new ArrayList<>(libraries.values());
+	}
+
+	public static boolean hasFingerprints(List<Library> database) {
+		for (Library lib : database) {
+			if (!lib.methodHashes.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void parse(JsonNode root, Map<String, Library> out) {
+		for (JsonNode lib : root.path("libraries")) {
+			String id = lib.path("id").asText();
+			if (id.isEmpty()) {
+				continue;
+			}
+			List<String> packages = new ArrayList<>();
+			lib.path("packages").forEach(p -> packages.add(p.asText()));
+			List<String> markers = new ArrayList<>();
+			lib.path("markers").forEach(m -> markers.add(m.asText()));
+			Set<Long> hashes = new HashSet<>();
+			lib.path("method_hashes").forEach(h -> hashes.add(Long.parseUnsignedLong(h.asText(), 16)));
+			out.put(id, new Library(id, lib.path("name").asText(id), packages, markers, hashes));
+		}
+	}
+
+	/**
+	 * @param classRawNames 应用中全部类的原始名（含内部类）
+	 * @param structural 类的结构摘要，签名库没有方法哈希时可为null
+	 */
+	public static LibraryDetector detect(List<Library> database, Collection<String> classRawNames,
+			Map<String, StructuralIndex.ClassEntry> structural) {
+		long startTime = System.currentTimeMillis();
+		LibraryDetector result = new LibraryDetector();
+		result.totalClassCount = classRawNames.size();
+
+		// 包树：包名 -> 子树中的类数量
+		Map<String, Integer> packageClassCounts = new HashMap<>();
+		Set<String> classes = new HashSet<>(classRawNames);
+		for (String cls : classRawNames) {
+			for (int dot = cls.indexOf('.'); dot > 0; dot = cls.indexOf('.', dot + 1)) {
+				packageClassCounts.merge(cls.substring(0, dot), 1, Integer::sum);
+			}
+		}
+
+		// 先处理短包名，签名库中互相嵌套的包（如 androidx 与 androidx.core）只计一次
+		List<Object[]> candidates = new ArrayList<>();
+		for (Library lib : database) {
+			for (String pkg : lib.packages) {
+				candidates.add(new Object[] { lib, pkg });
+			}
+		}
+		candidates.sort((a, b) -> Integer.compare(((String) a[1]).length(), ((String) b[1]).length()));
+		Map<Library, Integer> libraryMarkers = new HashMap<>();
+		for (Library lib : database) {
+			int found = 0;
+			for (String marker : lib.markers) {
+				if (classes.contains(marker)) {
+					found++;
+				}
+			}
+			libraryMarkers.put(lib, found);
+		}
+		for (Object[] candidate : candidates) {
+			Library lib = (Library) candidate[0];
+			String pkg = (String) candidate[1];
+			Integer count = packageClassCounts.get(pkg);
+			// 一个标志类都没有时不按包名识别，避免把恰好使用相同包名的应用代码排除掉
+			if (count == null || libraryMarkers.get(lib) == 0 || result.isLibraryClass(pkg + ".")) {
+				continue;
+			}
+			int markersFound = 0;
+			for (String marker : lib.markers) {
+				if (marker.startsWith(pkg + ".") && classes.contains(marker)) {
+					markersFound++;
+				}
+			}
+			double confidence = 0.5 + 0.5 * libraryMarkers.get(lib) / lib.markers.size();
+			result.add(new Detection(lib, pkg, "package", count, confidence, markersFound));
+		}
+
+		if (structural != null) {
+			result.detectByFingerprint(database, structural);
+		}
+		result.elapsedMillis = System.currentTimeMillis() - startTime;
+		return result;
+	}
+
+	/**
+	 * 按包统计命中各库方法哈希的方法数，跳过已按包名识别的类
+	 */
+	private void detectByFingerprint(List<Library> database, Map<String, StructuralIndex.ClassEntry> structural) {
+		List<Library> withHashes = new ArrayList<>();
+		for (Library lib : database) {
+			if (!lib.methodHashes.isEmpty()) {
+				withHashes.add(lib);
+			}
+		}
+		if (withHashes.isEmpty()) {
+			return;
+		}
+		Map<String, Integer> packageMethods = new HashMap<>();
+		Map<String, Integer> packageClasses = new HashMap<>();
+		Map<String, Map<Library, Integer>> packageMatches = new HashMap<>();
+		for (StructuralIndex.ClassEntry entry : structural.values()) {
+			if (isLibraryClass(entry.rawName)) {
+				continue;
+			}
+			int dot = entry.rawName.lastIndexOf('.');
+			String pkg = dot > 0 ? entry.rawName.substring(0, dot) : "";
+			packageMethods.merge(pkg, entry.methods.size(), Integer::sum);
+			packageClasses.merge(pkg, 1, Integer::sum);
+			for (Library lib : withHashes) {
+				int matched = 0;
+				for (long hash : entry.methods.values()) {
+					if (lib.methodHashes.contains(hash)) {
+						matched++;
+					}
+				}
+				if (matched > 0) {
+					packageMatches.computeIfAbsent(pkg, k -> new HashMap<>()).merge(lib, matched, Integer::sum);
+				}
+			}
+		}
+		for (Map.Entry<String, Map<Library, Integer>> entry : packageMatches.entrySet()) {
+			String pkg = entry.getKey();
+			int total = packageMethods.get(pkg);
+			Library best = null;
+			int bestMatched = 0;
+			for (Map.Entry<Library, Integer> match : entry.getValue().entrySet()) {
+				if (match.getValue() > bestMatched) {
+					best = match.getKey();
+					bestMatched = match.getValue();
+				}
+			}
+			double ratio = total == 0 ? 0 : (double) bestMatched / total;
+			if (!pkg.isEmpty() && bestMatched >= MIN_FINGERPRINT_MATCHES && ratio >= MIN_FINGERPRINT_RATIO) {
+				add(new Detection(best, pkg, "fingerprint", packageClasses.get(pkg), ratio, 0));
+			}
+		}
+	}
+
+	private void add(Detection detection) {
+		detections.add(detection);
+		libraryRoots.add(detection.packageRoot);
+		libraryClassCount += detection.classCount;
+	}
+
+	/**
+	 * 类是否位于识别出的库包中（包括子包）
+	 */
+	public boolean isLibraryClass(String rawName) {
+		for (int dot = rawName.indexOf('.'); dot > 0; dot = rawName.indexOf('.', dot + 1)) {
+			if (libraryRoots.contains(rawName.substring(0, dot))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> toJson() {
+		Map<String, Map<String, Object>> byLibrary = new LinkedHashMap<>();
+		for (Detection d : detections) {
+			Map<String, Object> lib = byLibrary.computeIfAbsent(d.library.id, id -> {
+				Map<String, Object> info = new LinkedHashMap<>();
+				info.put("id", d.library.id);
+				info.put("name", d.library.name);
+				info.put("packages", new TreeSet<String>());
+				info.put("classes", 0);
+				info.put("confidence", 0.0);
+				info.put("matched_by", new TreeSet<String>());
+				return info;
+			});
+			((TreeSet<String>) lib.get("packages")).add(d.packageRoot);
+			((TreeSet<String>) lib.get("matched_by")).add(d.matchedBy);
+			lib.put("classes", (Integer) lib.get("classes") + d.classCount);
+			lib.put("confidence", Math.max((Double) lib.get("confidence"), d.confidence));
+			if (d.markersFound > 0) {
+				lib.merge("markers_found", d.markersFound, (a, b) -> (Integer) a + (Integer) b);
+			}
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("status", "ready");
+		result.put("libraries", new ArrayList<>(byLibrary.values()));
+		result.put("library_classes", libraryClassCount);
+		result.put("total_classes", totalClassCount);
+		result.put("app_classes", totalClassCount - libraryClassCount);
+		result.put("elapsed_ms", elapsedMillis);
+		return result;
+	}
+}
@@ -0,0 +1,136 @@
+package jadx.plugins.mcp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 有界LRU缓存 - 线程安全，超过容量时淘汰最久未访问的条目，并统计命中率
+ */
+public final class LruCache<K, V> {
+
+	private final String name;
+	private final LinkedHashMap<K, V> map;
+	private int maxSize;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public LruCache(String name, int maxSize) {
+		this.name = name;
+		this.maxSize = Math.max(1, maxSize);
+		this.map = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public V get(K key) {
+		V value;
+		synchronized (this) {
+			value = map.get(key);
+		}
+		if (value != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return value;
+	}
+
+	public void put(K key, V value) {
+		synchronized (this) {
+			map.put(key, value);
+			trim();
+		}
+	}
+
+	/**
+	 * 未命中时在锁外计算，避免耗时的计算阻塞其他线程的读取
+	 */
+	public V computeIfAbsent(K key, Function<K, V> loader) {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		value = loader.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	public synchronized V remove(K key) {
+		return map.remove(key);
+	}
+
+	public synchronized int removeIf(Predicate<K> predicate) {
+		int removed = 0;
+		Iterator<K> it = map.keySet().iterator();
+		while (it.hasNext()) {
+			if (predicate.test(it.next())) {
+				it.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	public synchronized void clear() {
+		map.clear();
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+		trim();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new HashMap<>();
+		long h = hits.get();
+		long m = misses.get();
+		stats.put("name", name);
+		stats.put("size", size());
+		stats.put("max_size", getMaxSize());
+		stats.put("hits", h);
+		stats.put("misses", m);
+		stats.put("evictions", evictions.get());
+		stats.put("hit_ratio", h + m == 0 ? 0.0 : (double) h / (h + m));
+		return stats;
+	}
+
+	private void trim() {
+		Iterator<K> it = map.keySet().iterator();
+		while (map.size() > maxSize && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+import jadx.api.JavaPackage;
+import jadx.api.ResourceFile;
+import jadx.api.data.impl.JadxCodeData;
+import jadx.api.plugins.events.IJadxEvents;
+import jadx.api.plugins.events.types.NodeRenamedByUser;
+import jadx.core.dex.nodes.ClassNode;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 路由处理函数访问反编译数据的入口，jadx-gui 插件模式和无界面模式各有一个实现
+ */
+public interface McpBackend {
+
+	/**
+	 * 是否运行在 jadx-gui 中，当前标签页、选中文本等接口只在GUI模式可用
+	 */
+	boolean isGui();
+
+	/**
+	 * @return 尚未加载完成时为null
+	 */
+	JadxDecompiler getDecompiler();
+
+	/**
+	 * 参与分析的类（含内部类），GUI模式下排除用户设置排除的包
+	 */
+	List<JavaClass> getClasses();
+
+	List<JavaPackage> getPackages();
+
+	List<ResourceFile> getResources();
+
+	JadxArgs getArgs();
+
+	IJadxEvents events();
+
+	/**
+	 * 重命名写入代码数据、受影响的类按新名称刷新之后回调，缓存失效和变更事件在此之后进行，
+	 * 不会有请求在中间重新缓存旧代码
+	 */
+	void addRenameListener(Consumer<NodeRenamedByUser> listener);
+
+	JadxCodeData getCodeData();
+
+	void setCodeData(JadxCodeData codeData);
+
+	/**
+	 * 重命名、注释等修改后通知jadx重新应用代码数据
+	 */
+	void reloadCodeData();
+
+	void saveProject();
+
+	/**
+	 * @return 项目文件路径，未保存项目或无界面模式时为null
+	 */
+	Path getProjectPath();
+
+	/**
+	 * jadx-gui 标签页中打开的类（顶层类），卸载空闲类代码时跳过；无界面模式为空集，读取失败时为null
+	 */
+	Set<ClassNode> getOpenClasses();
+}
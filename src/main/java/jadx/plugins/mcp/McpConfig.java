@@ -0,0 +1,182 @@
+package jadx.plugins.mcp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行时配置快照 - 不可变，修改时合并出新快照再整体替换（插件中的 volatile 字段），
+ * 请求处理期间看到的配置始终一致；可从 JSON 配置文件读取和保存
+ */
+public final class McpConfig {
+
+	public static final McpConfig DEFAULTS = new McpConfig(8650, 500, 100, Runtime.getRuntime().availableProcessors(),
+			256, 128, 512, 256, 16, true, true, true, 0, 20, Runtime.getRuntime().availableProcessors());
+
+	public final int port;
+	public final int pageThreshold;
+	public final int pageSize;
+	public final int workerThreads;
+	public final int codeIndexCache;
+	public final int smaliIndexCache;
+	public final int insnSnapshotCache;
+	public final int cfgCache;
+	public final int codeStoreHotCache;
+	public final boolean persistentIndex;
+	public final boolean libraryDetection;
+	public final boolean similaritySearch;
+	// 每个客户端每秒请求数上限，0 为不限制
+	public final int rateLimit;
+	// 令牌桶容量，允许的突发请求数
+	public final int rateLimitBurst;
+	// 反编译、搜索等重接口同时执行的请求数，超出的在公平队列中等待
+	public final int heavyConcurrency;
+
+	McpConfig(int port, int pageThreshold, int pageSize, int workerThreads,
+			int codeIndexCache, int smaliIndexCache, int insnSnapshotCache, int cfgCache, int codeStoreHotCache,
+			boolean persistentIndex, boolean libraryDetection, boolean similaritySearch,
+			int rateLimit, int rateLimitBurst, int heavyConcurrency) {
+		this.port = port;
+		this.pageThreshold = pageThreshold;
+		this.pageSize = pageSize;
+		this.workerThreads = workerThreads;
+		this.codeIndexCache = codeIndexCache;
+		this.smaliIndexCache = smaliIndexCache;
+		this.insnSnapshotCache = insnSnapshotCache;
+		this.cfgCache = cfgCache;
+		this.codeStoreHotCache = codeStoreHotCache;
+		this.persistentIndex = persistentIndex;
+		this.libraryDetection = libraryDetection;
+		this.similaritySearch = similaritySearch;
+		this.rateLimit = rateLimit;
+		this.rateLimitBurst = rateLimitBurst;
+		this.heavyConcurrency = heavyConcurrency;
+	}
+
+	/**
+	 * 以本快照为基础合并 values 中的配置项，值可以是数字、布尔或其字符串形式（请求参数）；
+	 * 有未知配置项或取值无效时抛出 IllegalArgumentException，本快照不受影响
+	 */
+	public McpConfig merge(Map<String, ?> values) {
+		for (String key : values.keySet()) {
+			if (!toJson().containsKey(key)) {
+				throw new IllegalArgumentException("Unknown config key: " + key);
+			}
+		}
+		return new McpConfig(
+				intValue(values, "port", port, 1, 65535),
+				intValue(values, "page_threshold", pageThreshold, 0, Integer.MAX_VALUE),
+				intValue(values, "page_size", pageSize, 0, Integer.MAX_VALUE),
+				intValue(values, "worker_threads", workerThreads, 1, 1024),
+				intValue(values, "code_index_cache", codeIndexCache, 1, Integer.MAX_VALUE),
+				intValue(values, "smali_index_cache", smaliIndexCache, 1, Integer.MAX_VALUE),
+				intValue(values, "insn_snapshot_cache", insnSnapshotCache, 1, Integer.MAX_VALUE),
+				intValue(values, "cfg_cache", cfgCache, 1, Integer.MAX_VALUE),
+				intValue(values, "code_store_hot_cache", codeStoreHotCache, 1, Integer.MAX_VALUE),
+				boolValue(values, "persistent_index", persistentIndex),
+				boolValue(values, "library_detection", libraryDetection),
+				boolValue(values, "similarity_search", similaritySearch),
+				intValue(values, "rate_limit", rateLimit, 0, 100_000),
+				intValue(values, "rate_limit_burst", rateLimitBurst, 1, 100_000),
+				intValue(values, "heavy_concurrency", heavyConcurrency, 1, 1024));
+	}
+
+	public Map<String, Object> toJson() {
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("port", port);
+		json.put("page_threshold", pageThreshold);
+		json.put("page_size", pageSize);
+		json.put("worker_threads", workerThreads);
+		json.put("code_index_cache", codeIndexCache);
+		json.put("smali_index_cache", smaliIndexCache);
+		json.put("insn_snapshot_cache", insnSnapshotCache);
+		json.put("cfg_cache", cfgCache);
+		json.put("code_store_hot_cache", codeStoreHotCache);
+		json.put("persistent_index", persistentIndex);
+		json.put("library_detection", libraryDetection);
+		json.put("similarity_search", similaritySearch);
+		json.put("rate_limit", rateLimit);
+		json.put("rate_limit_burst", rateLimitBurst);
+		json.put("heavy_concurrency", heavyConcurrency);
+		return json;
+	}
+
+	/**
+	 * 与 other 取值不同的配置项 -> other 中的值
+	 */
+	public Map<String, Object> diff(McpConfig other) {
+		Map<String, Object> changed = new LinkedHashMap<>();
+		Map<String, Object> otherJson = other.toJson();
+		for (Map.Entry<String, Object> entry : toJson().entrySet()) {
+			if (!entry.getValue().equals(otherJson.get(entry.getKey()))) {
+				changed.put(entry.getKey(), otherJson.get(entry.getKey()));
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * 读取配置文件并合并到本快照，文件不存在时原样返回
+	 */
+	public McpConfig load(ObjectMapper mapper, Path file) throws IOException {
+		if (file == null || !Files.isRegularFile(file)) {
+			return this;
+		}
+		try (InputStream in = Files.newInputStream(file)) {
+			return merge(mapper.readValue(in, new TypeReference<Map<String, Object>>() {
+			}));
+		}
+	}
+
+	/**
+	 * 先写临时文件再替换，写入中途失败不会留下不完整的配置文件
+	 */
+	public void save(ObjectMapper mapper, Path file) throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tmp)) {
+			mapper.writerWithDefaultPrettyPrinter().writeValue(out, toJson());
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int intValue(Map<String, ?> values, String key, int current, int min, int max) {
+		Object value = values.get(key);
+		if (value == null) {
+			return current;
+		}
+		int result;
+		try {
+			result = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for '" + key + "': " + value);
+		}
+		if (result < min || result > max) {
+			throw new IllegalArgumentException("'" + key + "' must be between " + min + " and " + max + ": " + result);
+		}
+		return result;
+	}
+
+	private static boolean boolValue(Map<String, ?> values, String key, boolean current) {
+		Object value = values.get(key);
+		if (value == null) {
+			return current;
+		}
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		String text = value.toString().trim();
+		if ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text)) {
+			return Boolean.parseBoolean(text);
+		}
+		throw new IllegalArgumentException("Invalid value for '" + key + "': " + value);
+	}
+}
@@ -0,0 +1,234 @@
+package jadx.plugins.mcp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * JDK Flight Recorder 事件及录制控制 - 请求处理的各阶段（查找、反编译、分页、序列化）各对应一种事件，
+ * 未录制时调用方先用 isRequestEnabled/isLookupEnabled 判断，不创建事件对象也不拼接字段
+ */
+public final class McpJfr {
+
+	private static final String CATEGORY = "JADX MCP";
+
+	private static final List<Class<? extends Event>> EVENT_TYPES = List.of(
+			RequestEvent.class, LookupEvent.class, DecompileEvent.class, PaginateEvent.class, SerializeEvent.class);
+
+	private static final EventType REQUEST_TYPE = EventType.getEventType(RequestEvent.class);
+	private static final EventType LOOKUP_TYPE = EventType.getEventType(LookupEvent.class);
+
+	@Name("jadx.mcp.Request")
+	@Label("MCP Request")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static final class RequestEvent extends Event {
+		@Label("Method")
+		public String method;
+		@Label("Route")
+		public String route;
+		@Label("Status")
+		public int status;
+		@Label("Response Bytes")
+		public long responseBytes;
+	}
+
+	@Name("jadx.mcp.Lookup")
+	@Label("MCP Lookup")
+	@Description("类/方法名解析")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static final class LookupEvent extends Event {
+		@Label("Kind")
+		public String kind;
+		@Label("Query")
+		public String query;
+		@Label("Found")
+		public boolean found;
+	}
+
+	@Name("jadx.mcp.Decompile")
+	@Label("MCP Decompile")
+	@Description("获取类代码，source 为 jadx 时可能触发反编译")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static final class DecompileEvent extends Event {
+		@Label("Class")
+		public String className;
+		@Label("Source")
+		public String source;
+		@Label("Code Length")
+		public int codeLength;
+	}
+
+	@Name("jadx.mcp.Paginate")
+	@Label("MCP Paginate")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static final class PaginateEvent extends Event {
+		@Label("Kind")
+		public String kind;
+		@Label("Total")
+		public int total;
+		@Label("Page Size")
+		public int pageSize;
+	}
+
+	@Name("jadx.mcp.Serialize")
+	@Label("MCP Serialize")
+	@Description("响应对象的JSON序列化")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static final class SerializeEvent extends Event {
+		@Label("Type")
+		public String type;
+		@Label("JSON Length")
+		public long length;
+	}
+
+	/**
+	 * 是否有录制启用了请求事件，未启用时不需要创建 RequestEvent
+	 */
+	public static boolean isRequestEnabled() {
+		return REQUEST_TYPE.isEnabled();
+	}
+
+	/**
+	 * 是否有录制启用了查找事件，未启用时调用方直接执行查找，不拼接 query
+	 */
+	public static boolean isLookupEnabled() {
+		return LOOKUP_TYPE.isEnabled();
+	}
+
+	/**
+	 * 执行一次名称解析并记录查找事件，未找到（抛出异常）时 found 为 false
+	 */
+	public static <T> T lookup(String kind, String query, Supplier<T> finder) {
+		LookupEvent event = new LookupEvent();
+		event.begin();
+		T result = null;
+		try {
+			result = finder.get();
+			return result;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.kind = kind;
+				event.query = query;
+				event.found = result != null;
+				event.commit();
+			}
+		}
+	}
+
+	private final Path outputDir;
+	private Recording recording;
+	private Path recordingFile;
+	private long startedAt;
+
+	public McpJfr(Path outputDir) {
+		this.outputDir = outputDir;
+	}
+
+	/**
+	 * @param settings mcp 只录制插件事件；default/profile 为JDK自带配置，另外加上插件事件
+	 * @param durationSeconds 大于0时到时自动停止并写出文件
+	 */
+	public synchronized Map<String, Object> start(String settings, long durationSeconds) throws IOException {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			throw new IllegalStateException("A recording is already running");
+		}
+		closeRecording();
+
+		Recording r;
+		if (settings == null || settings.isEmpty() || "mcp".equals(settings)) {
+			r = new Recording();
+		} else {
+			try {
+				r = new Recording(Configuration.getConfiguration(settings));
+			} catch (java.text.ParseException | IOException e) {
+				throw new IllegalArgumentException("Unknown JFR settings: " + settings);
+			}
+		}
+		for (Class<? extends Event> type : EVENT_TYPES) {
+			r.enable(type).withoutStackTrace();
+		}
+		Files.createDirectories(outputDir);
+		Path file = outputDir.resolve("jadx-mcp-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".jfr");
+		r.setName("jadx-mcp");
+		r.setToDisk(true);
+		r.setDestination(file);
+		if (durationSeconds > 0) {
+			r.setDuration(Duration.ofSeconds(durationSeconds));
+		}
+		r.start();
+
+		recording = r;
+		recordingFile = file;
+		startedAt = System.currentTimeMillis();
+		return getStatus();
+	}
+
+	/**
+	 * 停止录制并写出到文件，录制已按时长自动结束时直接返回文件信息
+	 */
+	public synchronized Map<String, Object> stop() throws IOException {
+		if (recording == null) {
+			throw new IllegalStateException("No recording has been started");
+		}
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		Map<String, Object> status = getStatus();
+		status.put("file_bytes", Files.exists(recordingFile) ? Files.size(recordingFile) : 0);
+		closeRecording();
+		return status;
+	}
+
+	public synchronized Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		if (recording == null) {
+			status.put("state", "NONE");
+			return status;
+		}
+		status.put("state", recording.getState().name());
+		status.put("file", recordingFile.toString());
+		status.put("started_at", startedAt);
+		status.put("elapsed_ms", System.currentTimeMillis() - startedAt);
+		Duration duration = recording.getDuration();
+		status.put("duration_seconds", duration != null ? duration.getSeconds() : 0);
+		return status;
+	}
+
+	public synchronized void close() {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		closeRecording();
+	}
+
+	private void closeRecording() {
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import jadx.api.plugins.options.impl.BasePluginOptionsBuilder;
 public class McpOptions extends BasePluginOptionsBuilder {
 
 	private boolean enable;
+	private boolean codeStore;
 
 	@Override
 	public void registerOptions() {
@@ -12,9 +13,17 @@ public class McpOptions extends BasePluginOptionsBuilder {
 				.description("enable comment")
 				.defaultValue(true)
 				.setter(v -> enable = v);
+		boolOption(JadxMcpPlugin.PLUGIN_ID + ".code-store")
+				.description("keep decompiled code compressed off-heap for source requests")
+				.defaultValue(false)
+				.setter(v -> codeStore = v);
 	}
 
 	public boolean isEnable() {
 		return enable;
 	}
+
+	public boolean isCodeStore() {
+		return codeStore;
+	}
 }
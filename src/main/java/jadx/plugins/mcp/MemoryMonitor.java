@@ -0,0 +1,239 @@
+package jadx.plugins.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * 内存压力监控 - 根据堆内存池GC后的使用率分级：HIGH 时逐步减半插件缓存容量，
+ * CRITICAL 时清空缓存并卸载最近未访问类的代码，恢复正常后还原缓存容量
+ */
+public final class MemoryMonitor {
+
+	private static final Logger logger = LoggerFactory.getLogger(MemoryMonitor.class);
+
+	public enum Level {
+		NORMAL, HIGH, CRITICAL
+	}
+
+	private static final int MIN_CACHE_SIZE = 8;
+	private static final int MAX_RECENT_EVENTS = 32;
+
+	private final double highRatio;
+	private final double criticalRatio;
+	private final Map<LruCache<?, ?>, Integer> caches = new IdentityHashMap<>();
+	private final IntSupplier codeUnloader;
+
+	private final AtomicLong shedEvents = new AtomicLong();
+	private final AtomicLong unloadedClasses = new AtomicLong();
+	private final Deque<Map<String, Object>> recentEvents = new ArrayDeque<>();
+	private final NotificationListener thresholdListener = this::onNotification;
+
+	private ScheduledExecutorService scheduler;
+	private volatile Level level = Level.NORMAL;
+	private volatile double lastRatio;
+
+	/**
+	 * @param codeUnloader 卸载最近未访问类的代码，返回卸载的类数量
+	 */
+	public MemoryMonitor(double highRatio, double criticalRatio, IntSupplier codeUnloader) {
+		this.highRatio = highRatio;
+		this.criticalRatio = criticalRatio;
+		this.codeUnloader = codeUnloader;
+	}
+
+	/**
+	 * 注册可收缩的缓存，以当前容量作为正常容量
+	 */
+	public synchronized void register(LruCache<?, ?> cache) {
+		caches.put(cache, cache.getMaxSize());
+	}
+
+	/**
+	 * 取消注册并还原其正常容量，多项目模式下项目卸载时调用
+	 */
+	public synchronized void unregister(LruCache<?, ?> cache) {
+		Integer normalSize = caches.remove(cache);
+		if (normalSize != null) {
+			cache.setMaxSize(normalSize);
+		}
+	}
+
+	/**
+	 * 修改缓存的正常容量（运行时配置），内存紧张期间只缩小不扩大，恢复正常后还原为新容量
+	 */
+	public synchronized void resize(LruCache<?, ?> cache, int normalSize) {
+		if (caches.containsKey(cache)) {
+			caches.put(cache, normalSize);
+			if (level != Level.NORMAL) {
+				cache.setMaxSize(Math.min(cache.getMaxSize(), normalSize));
+				return;
+			}
+		}
+		cache.setMaxSize(normalSize);
+	}
+
+	public synchronized void start(long periodSeconds) {
+		if (scheduler != null) {
+			return;
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			long max = pool.getUsage().getMax();
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+				pool.setCollectionUsageThreshold((long) (max * highRatio));
+			}
+		}
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(thresholdListener, null, null);
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "JADX-AI-MCP-Memory");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleWithFixedDelay(this::check, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stop() {
+		if (scheduler == null) {
+			return;
+		}
+		scheduler.shutdownNow();
+		scheduler = null;
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(thresholdListener);
+		} catch (ListenerNotFoundException e) {
+			// 未注册，忽略
+		}
+	}
+
+	private void onNotification(Notification notification, Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+			ScheduledExecutorService s = scheduler;
+			if (s != null) {
+				s.execute(this::check);
+			}
+		}
+	}
+
+	/**
+	 * 检查一次内存使用率并按级别处理
+	 */
+	public synchronized void check() {
+		try {
+			double ratio = heapRatio();
+			lastRatio = ratio;
+			Level newLevel = ratio >= criticalRatio ? Level.CRITICAL : ratio >= highRatio ? Level.HIGH : Level.NORMAL;
+			Level oldLevel = level;
+			level = newLevel;
+
+			if (newLevel == Level.HIGH) {
+				int shrunk = 0;
+				for (LruCache<?, ?> cache : caches.keySet()) {
+					int size = cache.getMaxSize();
+					if (size > MIN_CACHE_SIZE) {
+						cache.setMaxSize(Math.max(MIN_CACHE_SIZE, size / 2));
+						shrunk++;
+					}
+				}
+				if (shrunk > 0) {
+					recordEvent(newLevel, ratio, "shrink_caches", shrunk);
+				}
+			} else if (newLevel == Level.CRITICAL) {
+				for (LruCache<?, ?> cache : caches.keySet()) {
+					cache.clear();
+					cache.setMaxSize(MIN_CACHE_SIZE);
+				}
+				int unloaded = codeUnloader.getAsInt();
+				unloadedClasses.addAndGet(unloaded);
+				recordEvent(newLevel, ratio, "clear_caches_unload_code", unloaded);
+			} else if (oldLevel != Level.NORMAL) {
+				for (Map.Entry<LruCache<?, ?>, Integer> entry : caches.entrySet()) {
+					entry.getKey().setMaxSize(entry.getValue());
+				}
+				recordEvent(newLevel, ratio, "restore_caches", caches.size());
+			}
+		} catch (Exception e) {
+			logger.warn("JADX AI MCP: memory check failed: " + e.getMessage(), e);
+		}
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public long getShedEvents() {
+		return shedEvents.get();
+	}
+
+	public long getUnloadedClasses() {
+		return unloadedClasses.get();
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("level", level.name());
+		stats.put("heap_ratio", lastRatio);
+		stats.put("high_ratio", highRatio);
+		stats.put("critical_ratio", criticalRatio);
+		stats.put("shed_events", shedEvents.get());
+		stats.put("unloaded_classes", unloadedClasses.get());
+		stats.put("recent_events", new ArrayList<>(recentEvents));
+		return stats;
+	}
+
+	/**
+	 * 老年代等支持GC后阈值的堆内存池中的最高使用率，取不到时使用整个堆的使用率
+	 */
+	private static double heapRatio() {
+		double ratio = -1;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+				continue;
+			}
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null && usage.getMax() > 0) {
+				ratio = Math.max(ratio, (double) usage.getUsed() / usage.getMax());
+			}
+		}
+		if (ratio < 0) {
+			Runtime rt = Runtime.getRuntime();
+			ratio = (double) (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory();
+		}
+		return ratio;
+	}
+
+	private void recordEvent(Level level, double ratio, String action, int count) {
+		shedEvents.incrementAndGet();
+		Map<String, Object> event = new LinkedHashMap<>();
+		event.put("time", System.currentTimeMillis());
+		event.put("level", level.name());
+		event.put("heap_ratio", ratio);
+		event.put("action", action);
+		event.put("count", count);
+		recentEvents.addLast(event);
+		while (recentEvents.size() > MAX_RECENT_EVENTS) {
+			recentEvents.removeFirst();
+		}
+		logger.info("JADX AI MCP: memory {} ({}%), {} x{}", level, Math.round(ratio * 100), action, count);
+	}
+}
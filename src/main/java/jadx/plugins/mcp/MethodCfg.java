@@ -0,0 +1,418 @@
+package jadx.plugins.mcp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方法控制流图 - 基于指令快照划分基本块，边、前驱、直接支配者和自然循环均以邻接数组存储，
+ * 支配树使用 Cooper-Harvey-Kennedy 迭代算法，循环由回边（目标支配源）求得；
+ * 基本块在 try 区间边界处切分，try 区间内的每个块都有到其异常处理器入口块的边
+ */
+public final class MethodCfg {
+
+	private final int blockCount;
+	private final int[] blockStarts;
+	private final int[] startOffsets;
+	private final int[] endOffsets;
+	private final int[] succStarts;
+	private final int[] succs;
+	private final int[] predStarts;
+	private final int[] preds;
+	private final int[] idom;
+	private final int[] rpo;
+	private final int[] handlerBlocks;
+	private final List<Map<String, Object>> loops;
+
+	private MethodCfg(int[] blockStarts, int[] startOffsets, int[] endOffsets,
+					  int[] succStarts, int[] succs, int[] predStarts, int[] preds,
+					  int[] idom, int[] rpo, int[] handlerBlocks, List<Map<String, Object>> loops) {
+		this.blockCount = startOffsets.length;
+		this.blockStarts = blockStarts;
+		this.startOffsets = startOffsets;
+		this.endOffsets = endOffsets;
+		this.succStarts = succStarts;
+		this.succs = succs;
+		this.predStarts = predStarts;
+		this.preds = preds;
+		this.idom = idom;
+		this.rpo = rpo;
+		this.handlerBlocks = handlerBlocks;
+		this.loops = loops;
+	}
+
+	public static MethodCfg build(InsnSnapshot insns) {
+		int n = insns.getCount();
+		if (n == 0) {
+			int[] empty = new int[0];
+			return new MethodCfg(new int[] { 0 }, empty, empty, new int[] { 0 }, empty, new int[] { 0 }, empty,
+					empty, empty, empty, new ArrayList<>());
+		}
+
+		// 基本块起点：入口、跳转目标、跳转/返回/抛出之后的指令、try 区间的首尾边界、异常处理器入口
+		BitSet leaders = new BitSet(n);
+		leaders.set(0);
+		for (int i = 0; i < n; i++) {
+			String op = insns.getOpcode(i);
+			if (isBranch(op)) {
+				markTarget(leaders, insns, insns.getTarget(i));
+				for (int target : insns.getSwitchTargets(i)) {
+					markTarget(leaders, insns, target);
+				}
+			}
+			if ((isBranch(op) || isExit(op)) && i + 1 < n) {
+				leaders.set(i + 1);
+			}
+		}
+		int tryCount = insns.getTryCount();
+		for (int t = 0; t < tryCount; t++) {
+			int first = firstIndexAtOrAfter(insns, insns.getTryStart(t));
+			int after = firstIndexAtOrAfter(insns, insns.getTryEnd(t) + 1);
+			if (first < n) {
+				leaders.set(first);
+			}
+			if (after < n) {
+				leaders.set(after);
+			}
+			for (int handler : insns.getTryHandlers(t)) {
+				markTarget(leaders, insns, handler);
+			}
+		}
+
+		int blockCount = leaders.cardinality();
+		int[] blockStarts = new int[blockCount + 1];
+		int[] blockOfInsn = new int[n];
+		int b = -1;
+		for (int i = 0; i < n; i++) {
+			if (leaders.get(i)) {
+				blockStarts[++b] = i;
+			}
+			blockOfInsn[i] = b;
+		}
+		blockStarts[blockCount] = n;
+
+		int[] startOffsets = new int[blockCount];
+		int[] endOffsets = new int[blockCount];
+		List<int[]> succLists = new ArrayList<>(blockCount);
+		int edgeCount = 0;
+		for (b = 0; b < blockCount; b++) {
+			int first = blockStarts[b];
+			int last = blockStarts[b + 1] - 1;
+			startOffsets[b] = insns.getOffset(first);
+			endOffsets[b] = insns.getOffset(last);
+
+			String op = insns.getOpcode(last);
+			IntList out = new IntList();
+			if (isBranch(op)) {
+				addTarget(out, insns, blockOfInsn, insns.getTarget(last));
+				for (int target : insns.getSwitchTargets(last)) {
+					addTarget(out, insns, blockOfInsn, target);
+				}
+			}
+			if (!isExit(op) && !"GOTO".equals(op) && last + 1 < n) {
+				out.addUnique(blockOfInsn[last + 1]);
+			}
+			// 块在 try 区间边界处切分，首条指令在区间内即整个块在区间内
+			for (int t = 0; t < tryCount; t++) {
+				if (startOffsets[b] >= insns.getTryStart(t) && startOffsets[b] <= insns.getTryEnd(t)) {
+					for (int handler : insns.getTryHandlers(t)) {
+						addTarget(out, insns, blockOfInsn, handler);
+					}
+				}
+			}
+			int[] arr = out.toArray();
+			succLists.add(arr);
+			edgeCount += arr.length;
+		}
+
+		int[] succStarts = new int[blockCount + 1];
+		int[] succs = new int[edgeCount];
+		int[] predCount = new int[blockCount];
+		int pos = 0;
+		for (b = 0; b < blockCount; b++) {
+			succStarts[b] = pos;
+			for (int s : succLists.get(b)) {
+				succs[pos++] = s;
+				predCount[s]++;
+			}
+		}
+		succStarts[blockCount] = pos;
+
+		int[] predStarts = new int[blockCount + 1];
+		for (b = 0; b < blockCount; b++) {
+			predStarts[b + 1] = predStarts[b] + predCount[b];
+		}
+		int[] preds = new int[edgeCount];
+		int[] fill = Arrays.copyOf(predStarts, blockCount);
+		for (b = 0; b < blockCount; b++) {
+			for (int e = succStarts[b]; e < succStarts[b + 1]; e++) {
+				preds[fill[succs[e]]++] = b;
+			}
+		}
+
+		IntList handlers = new IntList();
+		for (int t = 0; t < tryCount; t++) {
+			for (int handler : insns.getTryHandlers(t)) {
+				addTarget(handlers, insns, blockOfInsn, handler);
+			}
+		}
+		int[] handlerBlocks = handlers.toArray();
+		Arrays.sort(handlerBlocks);
+
+		int[] rpo = reversePostOrder(blockCount, succStarts, succs);
+		int[] idom = dominators(blockCount, rpo, predStarts, preds);
+		List<Map<String, Object>> loops = naturalLoops(blockCount, succStarts, succs, predStarts, preds, idom);
+		return new MethodCfg(blockStarts, startOffsets, endOffsets, succStarts, succs, predStarts, preds, idom, rpo,
+				handlerBlocks, loops);
+	}
+
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	public int getIdom(int block) {
+		return idom[block];
+	}
+
+	/**
+	 * 异常处理器入口块，升序
+	 */
+	public int[] getHandlerBlocks() {
+		return handlerBlocks;
+	}
+
+	public List<Map<String, Object>> getLoops() {
+		return loops;
+	}
+
+	public Map<String, Object> toMap() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("blockCount", blockCount);
+		result.put("blockInsnStarts", blockStarts);
+		result.put("blockStartOffsets", startOffsets);
+		result.put("blockEndOffsets", endOffsets);
+		result.put("succStarts", succStarts);
+		result.put("succs", succs);
+		result.put("predStarts", predStarts);
+		result.put("preds", preds);
+		result.put("idom", idom);
+		result.put("rpo", rpo);
+		result.put("handlerBlocks", handlerBlocks);
+		result.put("loops", loops);
+		return result;
+	}
+
+	private static boolean isBranch(String op) {
+		return "GOTO".equals(op) || "IF".equals(op) || "SWITCH".equals(op);
+	}
+
+	private static boolean isExit(String op) {
+		return "RETURN".equals(op) || "THROW".equals(op);
+	}
+
+	private static void markTarget(BitSet leaders, InsnSnapshot insns, int targetOffset) {
+		if (targetOffset >= 0) {
+			int idx = insns.indexOfOffset(targetOffset);
+			if (idx >= 0) {
+				leaders.set(idx);
+			}
+		}
+	}
+
+	/**
+	 * 偏移不小于 offset 的第一条指令下标，没有时返回指令数
+	 */
+	private static int firstIndexAtOrAfter(InsnSnapshot insns, int offset) {
+		int lo = 0;
+		int hi = insns.getCount();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (insns.getOffset(mid) < offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static void addTarget(IntList out, InsnSnapshot insns, int[] blockOfInsn, int targetOffset) {
+		if (targetOffset >= 0) {
+			int idx = insns.indexOfOffset(targetOffset);
+			if (idx >= 0) {
+				out.addUnique(blockOfInsn[idx]);
+			}
+		}
+	}
+
+	private static int[] reversePostOrder(int blockCount, int[] succStarts, int[] succs) {
+		int[] order = new int[blockCount];
+		int pos = blockCount;
+		boolean[] visited = new boolean[blockCount];
+		int[] stack = new int[blockCount];
+		int[] edgeIdx = new int[blockCount];
+		int sp = 0;
+		stack[sp++] = 0;
+		visited[0] = true;
+		edgeIdx[0] = succStarts[0];
+		while (sp > 0) {
+			int node = stack[sp - 1];
+			if (edgeIdx[node] < succStarts[node + 1]) {
+				int next = succs[edgeIdx[node]++];
+				if (!visited[next]) {
+					visited[next] = true;
+					edgeIdx[next] = succStarts[next];
+					stack[sp++] = next;
+				}
+			} else {
+				order[--pos] = node;
+				sp--;
+			}
+		}
+		// 不可达块不参与排序
+		return Arrays.copyOfRange(order, pos, blockCount);
+	}
+
+	/**
+	 * Cooper-Harvey-Kennedy：按逆后序迭代求直接支配者，入口块为-1，不可达块为-2
+	 */
+	private static int[] dominators(int blockCount, int[] rpo, int[] predStarts, int[] preds) {
+		int[] rpoIndex = new int[blockCount];
+		Arrays.fill(rpoIndex, -1);
+		for (int i = 0; i < rpo.length; i++) {
+			rpoIndex[rpo[i]] = i;
+		}
+		int[] idom = new int[blockCount];
+		Arrays.fill(idom, -2);
+		if (rpo.length == 0) {
+			return idom;
+		}
+		idom[rpo[0]] = rpo[0];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 1; i < rpo.length; i++) {
+				int b = rpo[i];
+				int newIdom = -2;
+				for (int p = predStarts[b]; p < predStarts[b + 1]; p++) {
+					int pred = preds[p];
+					if (idom[pred] == -2) {
+						continue;
+					}
+					newIdom = newIdom == -2 ? pred : intersect(pred, newIdom, idom, rpoIndex);
+				}
+				if (newIdom != -2 && idom[b] != newIdom) {
+					idom[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+		idom[rpo[0]] = -1;
+		return idom;
+	}
+
+	private static int intersect(int a, int b, int[] idom, int[] rpoIndex) {
+		while (a != b) {
+			while (rpoIndex[a] > rpoIndex[b]) {
+				a = idom[a];
+			}
+			while (rpoIndex[b] > rpoIndex[a]) {
+				b = idom[b];
+			}
+		}
+		return a;
+	}
+
+	private static boolean dominates(int a, int b, int[] idom) {
+		while (b >= 0) {
+			if (a == b) {
+				return true;
+			}
+			b = idom[b];
+		}
+		return false;
+	}
+
+	/**
+	 * 回边 latch->header（header 支配 latch）确定一个自然循环，同一 header 的回边合并
+	 */
+	private static List<Map<String, Object>> naturalLoops(int blockCount, int[] succStarts, int[] succs,
+														  int[] predStarts, int[] preds, int[] idom) {
+		Map<Integer, BitSet> bodies = new LinkedHashMap<>();
+		Map<Integer, IntList> latches = new LinkedHashMap<>();
+		for (int latch = 0; latch < blockCount; latch++) {
+			if (idom[latch] == -2) {
+				continue;
+			}
+			for (int e = succStarts[latch]; e < succStarts[latch + 1]; e++) {
+				int header = succs[e];
+				if (!dominates(header, latch, idom)) {
+					continue;
+				}
+				BitSet body = bodies.computeIfAbsent(header, h -> new BitSet(blockCount));
+				latches.computeIfAbsent(header, h -> new IntList()).addUnique(latch);
+				body.set(header);
+				IntList work = new IntList();
+				if (!body.get(latch)) {
+					body.set(latch);
+					work.add(latch);
+				}
+				while (work.size() > 0) {
+					int node = work.pop();
+					for (int p = predStarts[node]; p < predStarts[node + 1]; p++) {
+						int pred = preds[p];
+						if (idom[pred] != -2 && !body.get(pred)) {
+							body.set(pred);
+							work.add(pred);
+						}
+					}
+				}
+			}
+		}
+		List<Map<String, Object>> loops = new ArrayList<>(bodies.size());
+		for (Map.Entry<Integer, BitSet> entry : bodies.entrySet()) {
+			Map<String, Object> loop = new LinkedHashMap<>();
+			loop.put("header", entry.getKey());
+			loop.put("latches", latches.get(entry.getKey()).toArray());
+			loop.put("blocks", entry.getValue().stream().toArray());
+			loops.add(loop);
+		}
+		return loops;
+	}
+
+	private static final class IntList {
+		private int[] data = new int[4];
+		private int size;
+
+		void add(int value) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = value;
+		}
+
+		void addUnique(int value) {
+			for (int i = 0; i < size; i++) {
+				if (data[i] == value) {
+					return;
+				}
+			}
+			add(value);
+		}
+
+		int pop() {
+			return data[--size];
+		}
+
+		int size() {
+			return size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package jadx.plugins.mcp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * MinHash/LSH 相似度索引 - 指令记号序列切成 SHINGLE 元组，计算 NUM_HASHES 个最小哈希作为签名，
+ * 签名分成 BANDS 段，每段的哈希排序存放；查询只比较至少一段完全相同的候选，
+ * 用签名相同位置的比例估计 Jaccard 相似度，不需要两两比较
+ *
+ * @param <T> 被索引的对象，如 MethodNode
+ */
+public final class MinHashIndex<T> {
+
+	public static final int SHINGLE = 3;
+	public static final int NUM_HASHES = 32;
+	public static final int BANDS = 8;
+	private static final int ROWS = NUM_HASHES / BANDS;
+
+	// 超过此数量的候选不再收集，避免常见短模式的大桶拖慢查询
+	private static final int MAX_CANDIDATES = 10_000;
+
+	private static final long[] HASH_A = new long[NUM_HASHES];
+	private static final long[] HASH_B = new long[NUM_HASHES];
+
+	static {
+		Random random = new Random(0x4A4D4858L);
+		for (int i = 0; i < NUM_HASHES; i++) {
+			HASH_A[i] = random.nextLong() | 1;
+			HASH_B[i] = random.nextLong();
+		}
+	}
+
+	public static final class Match<T> {
+		public final T item;
+		public final double similarity;
+
+		Match(T item, double similarity) {
+			this.item = item;
+			this.similarity = similarity;
+		}
+	}
+
+	private final List<T> items;
+	private final int[] signatures;
+	// 每段一个有序数组，元素为 (段哈希 << 32) | 下标
+	private final long[][] bands;
+
+	/**
+	 * @param signatures 与 items 一一对应，由 signature() 计算
+	 */
+	public MinHashIndex(List<T> items, List<int[]> signatures) {
+		int n = items.size();
+		this.items = new ArrayList<>(items);
+		this.signatures = new int[n * NUM_HASHES];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(signatures.get(i), 0, this.signatures, i * NUM_HASHES, NUM_HASHES);
+		}
+		this.bands = new long[BANDS][n];
+		for (int b = 0; b < BANDS; b++) {
+			for (int i = 0; i < n; i++) {
+				bands[b][i] = bandKey(bandHash(this.signatures, i * NUM_HASHES, b), i);
+			}
+			Arrays.sort(bands[b]);
+		}
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * 记号序列的 MinHash 签名，序列为空时返回null
+	 */
+	public static int[] signature(long[] tokens) {
+		if (tokens == null || tokens.length == 0) {
+			return null;
+		}
+		int[] sig = new int[NUM_HASHES];
+		Arrays.fill(sig, Integer.MAX_VALUE);
+		int shingles = Math.max(1, tokens.length - SHINGLE + 1);
+		for (int s = 0; s < shingles; s++) {
+			long shingle = 0;
+			for (int k = s; k < Math.min(s + SHINGLE, tokens.length); k++) {
+				shingle = (shingle * 0x9E3779B97F4A7C15L) ^ tokens[k];
+			}
+			for (int i = 0; i < NUM_HASHES; i++) {
+				int h = (int) ((shingle * HASH_A[i] + HASH_B[i]) >>> 32);
+				if (h < sig[i]) {
+					sig[i] = h;
+				}
+			}
+		}
+		return sig;
+	}
+
+	/**
+	 * 签名相同位置的比例，即 Jaccard 相似度的估计
+	 */
+	public static double similarity(int[] a, int[] b) {
+		return similarity(a, 0, b, 0);
+	}
+
+	/**
+	 * 查找与签名相似度不低于 threshold 的条目，按相似度降序，最多 limit 个
+	 */
+	public List<Match<T>> findSimilar(int[] signature, double threshold, int limit) {
+		return findSimilar(signature, threshold, limit, item -> true);
+	}
+
+	/**
+	 * 同上，只保留 accept 接受的条目；过滤在截取 limit 个之前进行
+	 */
+	public List<Match<T>> findSimilar(int[] signature, double threshold, int limit, Predicate<T> accept) {
+		BitSet seen = new BitSet(items.size());
+		List<Match<T>> matches = new ArrayList<>();
+		int candidates = 0;
+		for (int b = 0; b < BANDS && candidates < MAX_CANDIDATES; b++) {
+			long[] band = bands[b];
+			long from = bandKey(bandHash(signature, 0, b), 0);
+			int pos = Arrays.binarySearch(band, from);
+			if (pos < 0) {
+				pos = -pos - 1;
+			}
+			for (; pos < band.length && (band[pos] >>> 32) == (from >>> 32) && candidates < MAX_CANDIDATES; pos++) {
+				int idx = (int) band[pos];
+				if (seen.get(idx)) {
+					continue;
+				}
+				seen.set(idx);
+				candidates++;
+				double sim = similarity(signature, 0, signatures, idx * NUM_HASHES);
+				if (sim >= threshold && accept.test(items.get(idx))) {
+					matches.add(new Match<>(items.get(idx), sim));
+				}
+			}
+		}
+		matches.sort((x, y) -> Double.compare(y.similarity, x.similarity));
+		return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+	}
+
+	private static double similarity(int[] a, int aFrom, int[] b, int bFrom) {
+		int same = 0;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			if (a[aFrom + i] == b[bFrom + i]) {
+				same++;
+			}
+		}
+		return (double) same / NUM_HASHES;
+	}
+
+	private static int bandHash(int[] sig, int offset, int band) {
+		int h = band;
+		for (int r = 0; r < ROWS; r++) {
+			h = h * 31 + sig[offset + band * ROWS + r];
+		}
+		return h;
+	}
+
+	private static long bandKey(int bandHash, int index) {
+		return ((long) bandHash << 32) | (index & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,191 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JavaClass;
+import jadx.api.JavaField;
+import jadx.api.JavaMethod;
+import jadx.api.metadata.ICodeAnnotation;
+import jadx.api.metadata.annotations.NodeDeclareRef;
+import jadx.api.metadata.annotations.VarNode;
+import jadx.api.metadata.annotations.VarRef;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 响应构建 - 类、方法、字段信息的Map构建，供单个接口和批量接口共用
+ */
+public final class NodeInfoBuilder {
+
+	private NodeInfoBuilder() {
+	}
+
+	/**
+	 * 方法基础信息（不含源码）
+	 */
+	public static Map<String, Object> methodInfo(JavaMethod method) {
+		Map<String, Object> result = new HashMap<>();
+		result.put("className", method.getDeclaringClass().getName());
+		MethodNode methodNode = method.getMethodNode();
+		MethodInfo methodInfo = methodNode.getMethodInfo();
+		result.put("name(originalName)", methodInfo.getName());
+		result.put("Alias", method.getName());
+		result.put("fullName", method.getFullName());             // 方法名称
+		result.put("signature", methodInfo.getShortId());
+		result.put("isPublic", method.getAccessFlags().isPublic());
+		result.put("isStatic", method.getAccessFlags().isStatic());
+		result.put("arguments", method.getArguments().stream()
+				.map(arg -> arg.toString()) // 转换为字符串
+				.collect(Collectors.toList()));            //List<ArgType> 类型
+		result.put("returnType", method.getReturnType().toString());             //ArgType 类型
+		result.put("defPos", method.getDefPos());
+		result.put("nodeRef", method.getCodeNodeRef().toString());
+		result.put("isConstructor", method.isConstructor());
+		result.put("isClassInit", method.isClassInit());
+		result.put("regsCount", methodNode.getRegsCount());
+		result.put("insnsCount", methodNode.getInsnsCount());
+		result.put("methodCodeOffset", methodNode.getMethodCodeOffset());
+		result.put("useInCount", methodNode.getUseIn().size());
+		return result;
+	}
+
+	public static Map<String, Object> classInfo(JavaClass cls) {
+		Map<String, Object> classInfo = new HashMap<>();
+		classInfo.put("className", cls.getFullName());
+		classInfo.put("shortName", cls.getName());
+		classInfo.put("rawName", cls.getClassNode().getRawName());
+		classInfo.put("type", cls.isInner() ? "inner class" : "class");
+		classInfo.put("packageName", cls.getPackage());
+		classInfo.put("isInner", cls.isInner());
+		classInfo.put("codeSourceLength", cls.getCode().length());
+
+		classInfo.put("innerClassesCount", cls.getInnerClasses().size());
+		classInfo.put("inlinedClassesCount", cls.getInlinedClasses().size());
+		classInfo.put("fieldsCount", cls.getFields().size());
+		classInfo.put("methodsCount", cls.getMethods().size());
+
+		List<String> innerClassNames = new ArrayList<>();
+		for (JavaClass innerClass : cls.getInnerClasses()) {
+			innerClassNames.add(innerClass.getFullName());
+		}
+		classInfo.put("innerClassNames", innerClassNames);
+		return classInfo;
+	}
+
+	public static List<Map<String, Object>> methodsOfClass(JavaClass cls) {
+		List<Map<String, Object>> methodInfos = new ArrayList<>();
+		for (JavaMethod method : cls.getMethods()) {
+			Map<String, Object> methodInfo = new HashMap<>();
+
+			MethodInfo methodInfoDetail = method.getMethodNode().getMethodInfo();
+			methodInfo.put("signature", methodInfoDetail.getShortId());
+			methodInfo.put("originalName", methodInfoDetail.getName());
+
+			methodInfo.put("name", method.getName());
+			methodInfo.put("isPublic", method.getAccessFlags().isPublic());
+			methodInfo.put("isStatic", method.getAccessFlags().isStatic());
+			methodInfo.put("isConstructor", method.isConstructor());
+
+			methodInfos.add(methodInfo);
+		}
+		return methodInfos;
+	}
+
+	public static List<Map<String, Object>> fieldsOfClass(JavaClass cls) {
+		List<Map<String, Object>> fieldInfos = new ArrayList<>();
+		for (JavaField field : cls.getFields()) {
+			Map<String, Object> fieldInfo = new HashMap<>();
+
+			fieldInfo.put("name", field.getName());
+			fieldInfo.put("fullName", field.getFullName());
+			fieldInfo.put("rawName", field.getRawName());
+			fieldInfo.put("isPublic", field.getAccessFlags().isPublic());
+			fieldInfo.put("isStatic", field.getAccessFlags().isStatic());
+			fieldInfo.put("type", field.getType().toString());
+
+			fieldInfos.add(fieldInfo);
+		}
+		return fieldInfos;
+	}
+
+	public static Map<String, Object> methodParameters(JavaMethod method) {
+		MethodNode methodNode = method.getMethodNode();
+		List<VarNode> argNodes = methodNode.collectArgNodes();
+		List<ArgType> argTypes = method.getArguments();
+
+		List<Map<String, Object>> parameters = new ArrayList<>();
+		for (int i = 0; i < argNodes.size(); i++) {
+			VarNode varNode = argNodes.get(i);
+			ArgType argType = i < argTypes.size() ? argTypes.get(i) : null;
+
+			Map<String, Object> paramInfo = new HashMap<>();
+			paramInfo.put("index", i);
+			paramInfo.put("name", varNode.getName());
+			paramInfo.put("type", argType != null ? argType.toString() : "unknown");
+			paramInfo.put("register", varNode.getReg());
+			paramInfo.put("ssa_version", varNode.getSsa());
+
+			parameters.add(paramInfo);
+		}
+
+		Map<String, Object> result = new HashMap<>();
+		result.put("method", method.getName());
+		result.put("parameters", parameters);
+		result.put("total_count", parameters.size());
+		return result;
+	}
+
+	/**
+	 * 代码元数据中的节点引用信息，VarRef 解析为其指向的变量声明；无法识别的注解返回null
+	 */
+	public static Map<String, Object> codeRefInfo(ICodeAnnotation ann, ClassCodeIndex index) {
+		boolean declaration = false;
+		Object node = ann;
+		if (ann instanceof NodeDeclareRef) {
+			declaration = true;
+			node = ((NodeDeclareRef) ann).getNode();
+		} else if (ann instanceof VarRef) {
+			ICodeAnnotation target = index.getRefAt(((VarRef) ann).getRefPos());
+			node = target instanceof NodeDeclareRef ? ((NodeDeclareRef) target).getNode() : null;
+		}
+
+		Map<String, Object> info = new HashMap<>();
+		if (node instanceof ClassNode) {
+			ClassNode cls = (ClassNode) node;
+			info.put("kind", "class");
+			info.put("name", cls.getFullName());
+			info.put("rawName", cls.getRawName());
+		} else if (node instanceof MethodNode) {
+			MethodNode mth = (MethodNode) node;
+			info.put("kind", "method");
+			info.put("className", mth.getParentClass().getFullName());
+			info.put("name", mth.getName());
+			info.put("signature", mth.getMethodInfo().getShortId());
+		} else if (node instanceof FieldNode) {
+			FieldNode fld = (FieldNode) node;
+			info.put("kind", "field");
+			info.put("className", fld.getParentClass().getFullName());
+			info.put("name", fld.getName());
+			info.put("rawName", fld.getFieldInfo().getName());
+		} else if (node instanceof VarNode) {
+			VarNode var = (VarNode) node;
+			info.put("kind", "var");
+			info.put("name", var.getName());
+			info.put("type", String.valueOf(var.getType()));
+			info.put("register", var.getReg());
+			info.put("ssa_version", var.getSsa());
+			info.put("method", var.getMth().getMethodInfo().getShortId());
+		} else {
+			return null;
+		}
+		info.put("declaration", declaration);
+		return info;
+	}
+}
@@ -0,0 +1,226 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JavaClass;
+import jadx.api.JavaField;
+import jadx.api.JavaMethod;
+import jadx.core.dex.info.MethodInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类/方法/字段查找 - 按名称索引类列表，并缓存方法、字段的查找结果，供同一批次内的多个子请求共享
+ */
+public final class NodeResolver {
+
+	private static final Logger logger = LoggerFactory.getLogger(NodeResolver.class);
+
+	private final Map<String, JavaClass> byRawName;
+	private final Map<String, JavaClass> byFullName;
+	private final Map<MemberKey, JavaMethod> methodCache = new ConcurrentHashMap<>();
+	private final Map<MemberKey, JavaField> fieldCache = new ConcurrentHashMap<>();
+
+	public NodeResolver(List<JavaClass> classes) {
+		this.byRawName = new HashMap<>(classes.size() * 2);
+		this.byFullName = new HashMap<>(classes.size() * 2);
+		for (JavaClass cls : classes) {
+			byRawName.putIfAbsent(cls.getClassNode().getRawName(), cls);
+			byFullName.putIfAbsent(cls.getFullName(), cls);
+		}
+	}
+
+	/**
+	 * 按原始名或普通名查找类，原始名优先
+	 */
+	public JavaClass findClass(String className, String rawName) {
+		boolean hasClassName = className != null && !className.isEmpty();
+		boolean hasRawName = rawName != null && !rawName.isEmpty();
+		if (!hasClassName && !hasRawName) {
+			throw new IllegalArgumentException("Missing 'className' or 'rawName' parameter.");
+		}
+		if (hasRawName) {
+			JavaClass cls = byRawName.get(rawName);
+			if (cls != null) {
+				return cls;
+			}
+		}
+		if (hasClassName) {
+			JavaClass cls = byFullName.get(className.replace('$', '.'));
+			if (cls != null) {
+				return cls;
+			}
+		}
+		throw new NoSuchElementException("Class not found: " + (hasClassName ? className : rawName));
+	}
+
+	public JavaMethod findMethod(JavaClass cls, String methodName, String originalName, String methodSignature) {
+		MemberKey key = new MemberKey(cls, methodName, originalName, methodSignature);
+		JavaMethod cached = methodCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		JavaMethod method = findMethodIn(cls, methodName, originalName, methodSignature);
+		methodCache.put(key, method);
+		return method;
+	}
+
+	public JavaField findField(JavaClass cls, String fieldName, String fieldRawName) {
+		MemberKey key = new MemberKey(cls, fieldName, fieldRawName, null);
+		JavaField cached = fieldCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		JavaField field = findFieldIn(cls, fieldName, fieldRawName);
+		fieldCache.put(key, field);
+		return field;
+	}
+
+	/**
+	 * 线性查找类（不建索引），适合单次请求
+	 */
+	public static JavaClass findClassIn(List<JavaClass> classes, String className, String rawName) {
+		if ((className == null || className.isEmpty()) && (rawName == null || rawName.isEmpty())) {
+			logger.error("JADX AI MCP Error: Missing class name parameters");
+			throw new IllegalArgumentException("Missing 'className' or 'rawName' parameter.");
+		}
+
+		if (rawName != null && !rawName.isEmpty()) {
+			for (JavaClass cls : classes) {
+				if (cls.getClassNode().getRawName().equals(rawName)) {
+					return cls;
+				}
+			}
+		}
+
+		if (className != null && !className.isEmpty()) {
+			String searchName = className.replace('$', '.');
+			for (JavaClass cls : classes) {
+				if (cls.getFullName().equals(searchName)) {
+					return cls;
+				}
+			}
+		}
+
+		String searchName = className != null ? className : rawName;
+		logger.error("JADX AI MCP Error: Class not found: " + searchName);
+		throw new NoSuchElementException("Class not found: " + searchName);
+	}
+
+	public static JavaField findFieldIn(JavaClass cls, String fieldName, String fieldRawName) {
+		boolean hasFieldName = fieldName != null && !fieldName.isEmpty();
+		boolean hasFieldRawName = fieldRawName != null && !fieldRawName.isEmpty();
+
+		if (!hasFieldName && !hasFieldRawName) {
+			logger.error("JADX AI MCP Error: Missing 'field_name' or 'field_rawName' name parameters");
+			throw new IllegalArgumentException("Missing 'field_name' or 'field_rawName' name parameters");
+		}
+
+		try {
+			for (JavaField field : cls.getFields()) {
+
+				if (hasFieldRawName && field.getRawName().equals(fieldRawName)) {
+					return field;
+				}
+
+				if (hasFieldName && field.getName().equals(fieldName)) {
+					return field;
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Error finding field: " + e.getMessage(), e);
+		}
+		throw new NoSuchElementException("Field not found: " + (hasFieldRawName ? fieldRawName : fieldName));
+	}
+
+	public static JavaMethod findMethodIn(JavaClass cls, String methodName, String originalName, String methodSignature) {
+		boolean hasMethodName = methodName != null && !methodName.isEmpty();
+		boolean hasOriginalName = originalName != null && !originalName.isEmpty();
+		boolean hasSignature = methodSignature != null && !methodSignature.isEmpty();
+
+		if (!hasMethodName && !hasOriginalName) {
+			throw new IllegalArgumentException("Missing 'method_name' or 'original_name' parameter");
+		}
+
+		try {
+			for (JavaMethod method : cls.getMethods()) {
+				MethodInfo methodInfo = method.getMethodNode().getMethodInfo();
+
+				boolean nameMatch = (hasOriginalName && methodInfo.getName().equals(originalName))
+						|| (hasMethodName && method.getName().equals(methodName));
+
+				if (nameMatch) {
+					if (hasSignature) {
+
+						if (methodInfo.getShortId().equals(methodSignature) ||
+								methodInfo.getShortId().contains(methodSignature)) {
+							return method;
+						}
+
+						continue;
+					}
+
+					return method;
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Error searching methods in class {}: {}", cls.getFullName(), e.getMessage());
+			throw new RuntimeException("Failed to search methods: " + e.getMessage(), e);
+		}
+
+		String errorMsg = String.format("Method not found in class %s", cls.getFullName());
+		if (hasOriginalName) {
+			errorMsg += String.format(" (searched for original name: '%s'", originalName);
+		}
+		if (hasMethodName) {
+			errorMsg += String.format("%ssearched for name: '%s'",
+					hasOriginalName ? ", " : " (", methodName);
+		}
+		if (hasSignature) {
+			errorMsg += String.format(" with signature containing: '%s'", methodSignature);
+		}
+		errorMsg += ")";
+
+		throw new NoSuchElementException(errorMsg);
+	}
+
+	private static final class MemberKey {
+		private final JavaClass cls;
+		private final String name;
+		private final String altName;
+		private final String signature;
+
+		MemberKey(JavaClass cls, String name, String altName, String signature) {
+			this.cls = cls;
+			this.name = name;
+			this.altName = altName;
+			this.signature = signature;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof MemberKey)) {
+				return false;
+			}
+			MemberKey other = (MemberKey) o;
+			return cls == other.cls
+					&& Objects.equals(name, other.name)
+					&& Objects.equals(altName, other.altName)
+					&& Objects.equals(signature, other.signature);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(cls), name, altName, signature);
+		}
+	}
+}
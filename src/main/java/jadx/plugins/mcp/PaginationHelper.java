@@ -81,6 +81,14 @@ public final class PaginationHelper {
 	 */
 	public <T> Map<String, Object> paginateList(List<T> data, int page, int pageSize,
 												Function<T, Object> itemTransformer) {
+		McpJfr.PaginateEvent event = beginPaginate();
+		Map<String, Object> result = doPaginateList(data, page, pageSize, itemTransformer);
+		commitPaginate(event, "list", data != null ? data.size() : 0, pageSize);
+		return result;
+	}
+
+	private <T> Map<String, Object> doPaginateList(List<T> data, int page, int pageSize,
+												   Function<T, Object> itemTransformer) {
 		if (data == null) {
 			data = new ArrayList<>();
 		}
@@ -114,6 +122,14 @@ public final class PaginationHelper {
 	 */
 	public <T> Map<String, Object> paginateByOffset(List<T> data, int offset, int limit,
 													Function<T, Object> itemTransformer) {
+		McpJfr.PaginateEvent event = beginPaginate();
+		Map<String, Object> result = doPaginateByOffset(data, offset, limit, itemTransformer);
+		commitPaginate(event, "list_offset", data != null ? data.size() : 0, limit);
+		return result;
+	}
+
+	private <T> Map<String, Object> doPaginateByOffset(List<T> data, int offset, int limit,
+													   Function<T, Object> itemTransformer) {
 		if (data == null) {
 			data = new ArrayList<>();
 		}
@@ -196,6 +212,13 @@ public final class PaginationHelper {
 	 * 长字符串分页 - 按字符数分页
 	 */
 	public Map<String, Object> paginateLongString(String content, int page, int pageSize) {
+		McpJfr.PaginateEvent event = beginPaginate();
+		Map<String, Object> result = doPaginateLongString(content, page, pageSize);
+		commitPaginate(event, "string", content != null ? content.length() : 0, pageSize);
+		return result;
+	}
+
+	private Map<String, Object> doPaginateLongString(String content, int page, int pageSize) {
 		if (content == null) {
 			content = "";
 		}
@@ -258,6 +281,13 @@ public final class PaginationHelper {
 	 * 基于偏移量的字符串分页
 	 */
 	public Map<String, Object> paginateStringByOffset(String content, int offset, int pageSize) {
+		McpJfr.PaginateEvent event = beginPaginate();
+		Map<String, Object> result = doPaginateStringByOffset(content, offset, pageSize);
+		commitPaginate(event, "string_offset", content != null ? content.length() : 0, pageSize);
+		return result;
+	}
+
+	private Map<String, Object> doPaginateStringByOffset(String content, int offset, int pageSize) {
 		if (content == null) {
 			content = "";
 		}
@@ -286,6 +316,22 @@ public final class PaginationHelper {
 		);
 	}
 
+	private static McpJfr.PaginateEvent beginPaginate() {
+		McpJfr.PaginateEvent event = new McpJfr.PaginateEvent();
+		event.begin();
+		return event;
+	}
+
+	private static void commitPaginate(McpJfr.PaginateEvent event, String kind, int total, int pageSize) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.kind = kind;
+			event.total = total;
+			event.pageSize = pageSize;
+			event.commit();
+		}
+	}
+
 	private Map<String, Object> buildEmptyStringResult() {
 		Map<String, Object> result = new HashMap<>();
 		result.put("content", "");
@@ -0,0 +1,633 @@
+package jadx.plugins.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 持久化分析索引 - 类、方法、调用关系(xref)和资源字符串写入单个二进制文件，
+ * 以输入文件SHA-256、jadx版本和插件版本为键；重启后内存映射直接读取，字符串按需解码；
+ * 用户方法重命名不写入文件，打开时由调用方按项目当前的重命名数据设置，之后随重命名事件更新，不需要重建索引
+ */
+public final class PersistentIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistentIndex.class);
+
+	private static final int MAGIC = 0x4A4D4958;
+	private static final int FORMAT_VERSION = 2;
+	// 索引文件名为 index-<键>-<写入时间>.bin；每次写入新文件，不覆盖可能仍被映射的旧文件（Windows 上无法替换）
+	private static final String INDEX_PREFIX = "index-";
+	private static final String INDEX_SUFFIX = ".bin";
+	private static final String INPUTS_FILE = "inputs.properties";
+	// 旧版本的索引文件和重命名日志，写入新索引时清理
+	private static final List<String> LEGACY_FILES = List.of("index.bin", "renames.log");
+
+	private static final int CLASS_ENTRY = 4;
+	private static final int METHOD_ENTRY = 7;
+	private static final int RES_STRING_ENTRY = 4;
+	private static final int RES_NAME_ENTRY = 2;
+
+	private final Path dir;
+	private final String key;
+	private final MappedByteBuffer buf;
+	private final int classCount;
+	private final int methodCount;
+	private final int resStringCount;
+	private final int resNameCount;
+	private final int classTable;
+	private final int methodTable;
+	private final int aliasOrder;
+	private final int xrefStarts;
+	private final int xrefData;
+	private final int resStringTable;
+	private final int resNameTable;
+	private final int pool;
+
+	// "类原始名->shortId" -> 用户重命名后的方法名
+	private final Map<String, String> methodAliases = new ConcurrentHashMap<>();
+	// 重命名后的方法名 -> "类原始名->shortId" 集合，与 methodAliases 同步修改
+	private final Map<String, Set<String>> aliasMethods = new HashMap<>();
+
+	private PersistentIndex(Path dir, String key, MappedByteBuffer buf) {
+		this.dir = dir;
+		this.key = key;
+		this.buf = buf;
+		int pos = 8;
+		int keyLen = buf.getInt(pos);
+		pos += 4 + keyLen;
+		this.classCount = buf.getInt(pos);
+		this.methodCount = buf.getInt(pos + 4);
+		int xrefCount = buf.getInt(pos + 8);
+		this.resStringCount = buf.getInt(pos + 12);
+		this.resNameCount = buf.getInt(pos + 16);
+		pos += 24;
+		this.classTable = pos;
+		this.methodTable = classTable + classCount * CLASS_ENTRY * 4;
+		this.aliasOrder = methodTable + methodCount * METHOD_ENTRY * 4;
+		this.xrefStarts = aliasOrder + methodCount * 4;
+		this.xrefData = xrefStarts + (methodCount + 1) * 4;
+		this.resStringTable = xrefData + xrefCount * 4;
+		this.resNameTable = resStringTable + resStringCount * RES_STRING_ENTRY * 4;
+		this.pool = resNameTable + resNameCount * RES_NAME_ENTRY * 4;
+	}
+
+	/**
+	 * 打开已有索引，键不匹配或文件损坏时返回null
+	 */
+	public static PersistentIndex open(Path dir, String key) {
+		Path file = findIndexFile(dir, key);
+		if (file == null) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.limit() < 12 || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION) {
+				return null;
+			}
+			int keyLen = buf.getInt(8);
+			byte[] keyBytes = new byte[keyLen];
+			ByteBuffer dup = buf.duplicate();
+			dup.position(12);
+			dup.get(keyBytes);
+			if (!key.equals(new String(keyBytes, StandardCharsets.US_ASCII))) {
+				return null;
+			}
+			return new PersistentIndex(dir, key, buf);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("JADX AI MCP: failed to open persistent index {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 该键最新写入的索引文件
+	 */
+	private static Path findIndexFile(Path dir, String key) {
+		if (!Files.isDirectory(dir)) {
+			return null;
+		}
+		String prefix = INDEX_PREFIX + key + "-";
+		Path latest = null;
+		long latestStamp = -1;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + INDEX_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					long stamp = Long.parseLong(name.substring(prefix.length(), name.length() - INDEX_SUFFIX.length()));
+					if (stamp > latestStamp) {
+						latestStamp = stamp;
+						latest = file;
+					}
+				} catch (NumberFormatException e) {
+					// 不是索引文件
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("JADX AI MCP: failed to list persistent index dir {}: {}", dir, e.getMessage());
+		}
+		return latest;
+	}
+
+	/**
+	 * 删除旧的索引文件；仍被映射的文件（Windows）删除失败时保留，下次写入时再清理
+	 */
+	private static void deleteStaleFiles(Path dir, Path keep) {
+		List<Path> stale = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, INDEX_PREFIX + "*" + INDEX_SUFFIX)) {
+			for (Path file : files) {
+				if (!file.equals(keep)) {
+					stale.add(file);
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("JADX AI MCP: failed to list persistent index dir {}: {}", dir, e.getMessage());
+		}
+		for (String legacy : LEGACY_FILES) {
+			stale.add(dir.resolve(legacy));
+		}
+		for (Path file : stale) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.debug("JADX AI MCP: stale index file kept {}: {}", file, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 索引键：输入文件内容的SHA-256加上版本信息；输入文件大小和修改时间未变时复用上次计算的摘要
+	 */
+	public static String computeKey(Path dir, List<File> inputs, String versions) throws IOException {
+		Properties cached = new Properties();
+		Path inputsFile = dir.resolve(INPUTS_FILE);
+		if (Files.isRegularFile(inputsFile)) {
+			try (Reader reader = Files.newBufferedReader(inputsFile, StandardCharsets.UTF_8)) {
+				cached.load(reader);
+			}
+		}
+
+		Properties current = new Properties();
+		current.setProperty("count", String.valueOf(inputs.size()));
+		for (int i = 0; i < inputs.size(); i++) {
+			File input = inputs.get(i);
+			current.setProperty("file." + i + ".path", input.getAbsolutePath());
+			current.setProperty("file." + i + ".size", String.valueOf(input.length()));
+			current.setProperty("file." + i + ".mtime", String.valueOf(input.lastModified()));
+		}
+
+		String inputsSha = null;
+		boolean unchanged = cached.getProperty("sha256") != null;
+		for (String name : current.stringPropertyNames()) {
+			if (!current.getProperty(name).equals(cached.getProperty(name))) {
+				unchanged = false;
+				break;
+			}
+		}
+		if (unchanged) {
+			inputsSha = cached.getProperty("sha256");
+		} else {
+			MessageDigest digest = sha256();
+			byte[] buffer = new byte[1 << 16];
+			for (File input : inputs) {
+				try (InputStream in = Files.newInputStream(input.toPath())) {
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						digest.update(buffer, 0, read);
+					}
+				}
+			}
+			inputsSha = hex(digest.digest());
+			current.setProperty("sha256", inputsSha);
+			Files.createDirectories(dir);
+			try (Writer writer = Files.newBufferedWriter(inputsFile, StandardCharsets.UTF_8)) {
+				current.store(writer, "jadx mcp index inputs");
+			}
+		}
+		String material = inputsSha + "|" + versions + "|" + FORMAT_VERSION;
+		return hex(sha256().digest(material.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public Path getDir() {
+		return dir;
+	}
+
+	public int getClassCount() {
+		return classCount;
+	}
+
+	public int getMethodCount() {
+		return methodCount;
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("dir", dir.toString());
+		stats.put("key", key);
+		stats.put("size_bytes", buf.limit());
+		stats.put("classes", classCount);
+		stats.put("methods", methodCount);
+		stats.put("resource_strings", resStringCount);
+		stats.put("resource_names", resNameCount);
+		stats.put("renamed_methods", methodAliases.size());
+		return stats;
+	}
+
+	/**
+	 * 方法原始名或当前名（含重命名）匹配的类原始名集合
+	 */
+	public Set<String> findClassesWithMethod(String originalName, String alias) {
+		Set<String> result = new LinkedHashSet<>();
+		if (originalName != null && !originalName.isEmpty()) {
+			int i = lowerBoundByName(originalName);
+			for (; i < methodCount && originalName.equals(methodName(i)); i++) {
+				result.add(className(methodClass(i)));
+			}
+		}
+		if (alias != null && !alias.isEmpty()) {
+			// 索引中的名称按排序表二分查找，已被用户改名的方法跳过
+			for (int i = lowerBoundByAlias(alias); i < methodCount; i++) {
+				int mth = buf.getInt(aliasOrder + i * 4);
+				if (!alias.equals(storedAlias(mth))) {
+					break;
+				}
+				if (methodAliases.isEmpty() || !methodAliases.containsKey(methodId(mth))) {
+					result.add(className(methodClass(mth)));
+				}
+			}
+			synchronized (aliasMethods) {
+				for (String id : aliasMethods.getOrDefault(alias, Set.of())) {
+					result.add(id.substring(0, id.indexOf("->")));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 方法的调用者，每项为 {className(原始名), signature, name}；方法不在索引中返回null
+	 */
+	public List<Map<String, Object>> getCallers(String classRawName, String name, String shortId) {
+		int idx = findMethod(classRawName, name, shortId);
+		if (idx == -1) {
+			return null;
+		}
+		int from = buf.getInt(xrefStarts + idx * 4);
+		int to = buf.getInt(xrefStarts + (idx + 1) * 4);
+		List<Map<String, Object>> callers = new ArrayList<>(to - from);
+		for (int e = from; e < to; e++) {
+			int caller = buf.getInt(xrefData + e * 4);
+			Map<String, Object> info = new LinkedHashMap<>();
+			info.put("className", className(methodClass(caller)));
+			info.put("signature", methodShortId(caller));
+			info.put("name", methodAlias(caller));
+			callers.add(info);
+		}
+		return callers;
+	}
+
+	public List<Map<String, Object>> getResourceStrings() {
+		List<Map<String, Object>> entries = new ArrayList<>(resStringCount);
+		for (int i = 0; i < resStringCount; i++) {
+			int base = resStringTable + i * RES_STRING_ENTRY * 4;
+			Map<String, Object> entry = new HashMap<>();
+			entry.put("file", poolString(base));
+			entry.put("content", poolString(base + 8));
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	public List<String> getResourceNames() {
+		List<String> names = new ArrayList<>(resNameCount);
+		for (int i = 0; i < resNameCount; i++) {
+			names.add(poolString(resNameTable + i * RES_NAME_ENTRY * 4));
+		}
+		return names;
+	}
+
+	/**
+	 * 用项目当前的方法重命名替换全部重命名，键为 "类原始名->shortId"；
+	 * 重命名只在内存中保存，未保存到项目的重命名不会在下次打开时出现
+	 */
+	public void setMethodRenames(Map<String, String> renames) {
+		synchronized (aliasMethods) {
+			methodAliases.clear();
+			aliasMethods.clear();
+			for (Map.Entry<String, String> entry : renames.entrySet()) {
+				putAlias(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * 记录方法重命名；newName 为空表示恢复原名
+	 */
+	public void recordMethodRename(String classRawName, String shortId, String newName) {
+		String id = classRawName + "->" + shortId;
+		synchronized (aliasMethods) {
+			String old = methodAliases.remove(id);
+			if (old != null) {
+				Set<String> ids = aliasMethods.get(old);
+				ids.remove(id);
+				if (ids.isEmpty()) {
+					aliasMethods.remove(old);
+				}
+			}
+			if (newName != null && !newName.isEmpty()) {
+				putAlias(id, newName);
+			}
+		}
+	}
+
+	private void putAlias(String id, String alias) {
+		methodAliases.put(id, alias);
+		aliasMethods.computeIfAbsent(alias, k -> new HashSet<>()).add(id);
+	}
+
+	private int findMethod(String classRawName, String name, String shortId) {
+		for (int i = lowerBoundByName(name); i < methodCount && name.equals(methodName(i)); i++) {
+			if (shortId.equals(methodShortId(i)) && classRawName.equals(className(methodClass(i)))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int lowerBoundByAlias(String alias) {
+		int lo = 0;
+		int hi = methodCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (storedAlias(buf.getInt(aliasOrder + mid * 4)).compareTo(alias) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private int lowerBoundByName(String name) {
+		int lo = 0;
+		int hi = methodCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (methodName(mid).compareTo(name) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private String className(int cls) {
+		return poolString(classTable + cls * CLASS_ENTRY * 4);
+	}
+
+	private int methodClass(int mth) {
+		return buf.getInt(methodTable + mth * METHOD_ENTRY * 4);
+	}
+
+	private String methodName(int mth) {
+		return poolString(methodTable + mth * METHOD_ENTRY * 4 + 4);
+	}
+
+	private String methodShortId(int mth) {
+		return poolString(methodTable + mth * METHOD_ENTRY * 4 + 12);
+	}
+
+	private String methodAlias(int mth) {
+		String renamed = methodAliases.isEmpty() ? null : methodAliases.get(methodId(mth));
+		return renamed != null ? renamed : storedAlias(mth);
+	}
+
+	private String storedAlias(int mth) {
+		return poolString(methodTable + mth * METHOD_ENTRY * 4 + 20);
+	}
+
+	private String methodId(int mth) {
+		return className(methodClass(mth)) + "->" + methodShortId(mth);
+	}
+
+	/**
+	 * 读取表项中 (offset, length) 指向的字符串
+	 */
+	private String poolString(int refPos) {
+		int off = buf.getInt(refPos);
+		int len = buf.getInt(refPos + 4);
+		byte[] bytes = new byte[len];
+		ByteBuffer dup = buf.duplicate();
+		dup.position(pool + off);
+		dup.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 索引写入器：收集数据后一次写出，写入临时文件后改名为新的索引文件，再删除旧文件
+	 */
+	public static final class Builder {
+		private final List<String[]> classes = new ArrayList<>();
+		private final List<int[]> methodClassIdx = new ArrayList<>();
+		private final List<String[]> methods = new ArrayList<>();
+		private final List<int[]> xrefs = new ArrayList<>();
+		private final List<String[]> resStrings = new ArrayList<>();
+		private final List<String> resNames = new ArrayList<>();
+
+		public int addClass(String rawName, String fullName) {
+			classes.add(new String[] { rawName, fullName });
+			return classes.size() - 1;
+		}
+
+		/**
+		 * @param alias 不含用户重命名的方法名，用户重命名通过 {@link PersistentIndex#setMethodRenames} 设置
+		 * @return 方法编号，用于 addXref
+		 */
+		public int addMethod(int classIdx, String name, String shortId, String alias) {
+			methodClassIdx.add(new int[] { classIdx });
+			methods.add(new String[] { name, shortId, alias });
+			return methods.size() - 1;
+		}
+
+		public void addXref(int callee, int caller) {
+			xrefs.add(new int[] { callee, caller });
+		}
+
+		public void addResourceString(String file, String content) {
+			resStrings.add(new String[] { file, content });
+		}
+
+		public void addResourceName(String name) {
+			resNames.add(name);
+		}
+
+		public PersistentIndex write(Path dir, String key) throws IOException {
+			Files.createDirectories(dir);
+
+			// 方法按原始名排序，支持二分查找
+			Integer[] order = new Integer[methods.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparing(i -> methods.get(i)[0]));
+			int[] newIndex = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				newIndex[order[i]] = i;
+			}
+
+			// 按不含用户重命名的方法名排序的方法编号（排序后的编号），支持按当前名二分查找
+			Integer[] byAlias = new Integer[order.length];
+			for (int i = 0; i < byAlias.length; i++) {
+				byAlias[i] = i;
+			}
+			Arrays.sort(byAlias, Comparator.comparing(i -> methods.get(order[i])[2] != null ? methods.get(order[i])[2] : ""));
+
+			int[] xrefStarts = new int[order.length + 1];
+			for (int[] xref : xrefs) {
+				xrefStarts[newIndex[xref[0]] + 1]++;
+			}
+			for (int i = 0; i < order.length; i++) {
+				xrefStarts[i + 1] += xrefStarts[i];
+			}
+			int[] xrefData = new int[xrefs.size()];
+			int[] fill = Arrays.copyOf(xrefStarts, order.length);
+			for (int[] xref : xrefs) {
+				xrefData[fill[newIndex[xref[0]]]++] = newIndex[xref[1]];
+			}
+
+			StringPool strings = new StringPool();
+			Path tmp = Files.createTempFile(dir, INDEX_PREFIX, ".tmp");
+			try (OutputStream fileOut = Files.newOutputStream(tmp);
+				 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+				byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(keyBytes.length);
+				out.write(keyBytes);
+				out.writeInt(classes.size());
+				out.writeInt(methods.size());
+				out.writeInt(xrefData.length);
+				out.writeInt(resStrings.size());
+				out.writeInt(resNames.size());
+				out.writeInt(0);
+
+				for (String[] cls : classes) {
+					strings.writeRef(out, cls[0]);
+					strings.writeRef(out, cls[1]);
+				}
+				for (Integer i : order) {
+					String[] mth = methods.get(i);
+					out.writeInt(methodClassIdx.get(i)[0]);
+					strings.writeRef(out, mth[0]);
+					strings.writeRef(out, mth[1]);
+					strings.writeRef(out, mth[2]);
+				}
+				for (Integer i : byAlias) {
+					out.writeInt(i);
+				}
+				for (int start : xrefStarts) {
+					out.writeInt(start);
+				}
+				for (int caller : xrefData) {
+					out.writeInt(caller);
+				}
+				for (String[] res : resStrings) {
+					strings.writeRef(out, res[0]);
+					strings.writeRef(out, res[1]);
+				}
+				for (String name : resNames) {
+					strings.writeRef(out, name);
+				}
+				strings.writeBytes(out);
+			}
+			long stamp = System.currentTimeMillis();
+			Path file = dir.resolve(INDEX_PREFIX + key + "-" + stamp + INDEX_SUFFIX);
+			while (Files.exists(file)) {
+				file = dir.resolve(INDEX_PREFIX + key + "-" + (++stamp) + INDEX_SUFFIX);
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+			deleteStaleFiles(dir, file);
+
+			PersistentIndex index = open(dir, key);
+			if (index == null) {
+				throw new IOException("Failed to reopen written index: " + dir);
+			}
+			return index;
+		}
+	}
+
+	private static final class StringPool {
+		private final Map<String, int[]> refs = new HashMap<>();
+		private final List<byte[]> chunks = new ArrayList<>();
+		private int size;
+
+		void writeRef(DataOutputStream out, String value) throws IOException {
+			int[] ref = refs.computeIfAbsent(value != null ? value : "", s -> {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				chunks.add(bytes);
+				int[] r = { size, bytes.length };
+				size += bytes.length;
+				return r;
+			});
+			out.writeInt(ref[0]);
+			out.writeInt(ref[1]);
+		}
+
+		void writeBytes(DataOutputStream out) throws IOException {
+			for (byte[] chunk : chunks) {
+				out.write(chunk);
+			}
+		}
+	}
+}
@@ -0,0 +1,648 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.json.JavalinJackson;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多项目注册表 - 一个端口上托管多个独立加载的 JadxDecompiler，各项目有自己的缓存、索引和路由指标，
+ * 共用工作线程池和内存监控；请求用 project 参数选择项目，空闲超时或超出同时加载数的项目自动卸载，
+ * 下次访问时重新加载
+ */
+public final class ProjectRegistry {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProjectRegistry.class);
+
+	private static final String[] PROJECT_PARAMS = {"project", "project_id", "projectId"};
+
+	// 内存紧张时，只卸载至少这么久没有请求的项目
+	private static final long MIN_IDLE_BEFORE_SHED_MILLIS = 30_000;
+
+	private static final class Project {
+		final String id;
+		final List<File> inputs;
+		final ReentrantLock lock = new ReentrantLock();
+		final AtomicInteger activeRequests = new AtomicInteger();
+
+		volatile JadxDecompiler decompiler;
+		volatile JadxMcpPlugin server;
+		volatile Map<String, Handler> routes;
+		volatile long lastAccess;
+		volatile long loadMillis;
+		volatile int loadCount;
+		// 正在进行的加载，由 lock 保护；加载本身不持有 lock，其他请求等待这个 future
+		CompletableFuture<Void> loading;
+
+		Project(String id, List<File> inputs) {
+			this.id = id;
+			this.inputs = inputs;
+		}
+
+		boolean isLoaded() {
+			return server != null;
+		}
+	}
+
+	private final int port;
+	private final int threads;
+	private final int pageThreshold;
+	private final int pageSize;
+	private final boolean codeStore;
+	private final long idleUnloadMillis;
+	private final int maxLoaded;
+
+	private final Map<String, Project> projects = new ConcurrentHashMap<>();
+
+	// /load-project 的 path 参数只能指向这些目录下的文件，为空时不允许通过接口注册项目
+	private final List<File> loadDirs = new CopyOnWriteArrayList<>();
+
+	// 同一时间只加载一个项目，避免多个APK同时解析造成堆峰值叠加
+	private final Semaphore loadPermit = new Semaphore(1);
+
+	// /diff 超过客户端截止时间而中止的次数，各项目接口的计数在项目的 /metrics 中
+	private final AtomicLong diffDeadlineExceeded = new AtomicLong();
+
+	private ExecutorService workerPool;
+	private MemoryMonitor memoryMonitor;
+	private ScheduledExecutorService evictor;
+	private Javalin app;
+
+	/**
+	 * @param threads 每个反编译器的线程数，0 为 jadx 默认值
+	 * @param idleUnloadMillis 超过此时间没有请求的项目自动卸载，0 为不按空闲时间卸载
+	 * @param maxLoaded 同时加载的项目数上限，超出时卸载最久未访问的项目，0 为不限制
+	 */
+	public ProjectRegistry(int port, int threads, int pageThreshold, int pageSize, boolean codeStore,
+			long idleUnloadMillis, int maxLoaded) {
+		this.port = port;
+		this.threads = threads;
+		this.pageThreshold = pageThreshold;
+		this.pageSize = pageSize;
+		this.codeStore = codeStore;
+		this.idleUnloadMillis = idleUnloadMillis;
+		this.maxLoaded = maxLoaded;
+	}
+
+	/**
+	 * 注册项目，不立即加载，第一次请求时加载
+	 */
+	public void add(String id, List<File> inputs) {
+		if (id == null || id.isEmpty() || inputs.isEmpty()) {
+			throw new IllegalArgumentException("Project id and input files are required");
+		}
+		if (projects.putIfAbsent(id, new Project(id, List.copyOf(inputs))) != null) {
+			throw new IllegalArgumentException("Project already registered: " + id);
+		}
+	}
+
+	/**
+	 * 允许 /load-project 用 path 参数注册此目录（含子目录）下的文件
+	 */
+	public void addLoadDir(File dir) throws IOException {
+		if (!dir.isDirectory()) {
+			throw new IllegalArgumentException("Not a directory: " + dir);
+		}
+		loadDirs.add(dir.getCanonicalFile());
+	}
+
+	public void start() {
+		AtomicInteger workerIndex = new AtomicInteger();
+		workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+			Thread t = new Thread(r, "JADX-AI-MCP-Worker-" + workerIndex.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		memoryMonitor = new MemoryMonitor(0.75, 0.90, this::shedMemory);
+		memoryMonitor.start(5);
+
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "JADX-AI-MCP-Evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		if (idleUnloadMillis > 0) {
+			long period = Math.max(1, Math.min(60, idleUnloadMillis / 4000));
+			evictor.scheduleWithFixedDelay(this::unloadIdleProjects, period, period, TimeUnit.SECONDS);
+		}
+
+		app = Javalin.create(config -> config.jsonMapper(new TimedJsonMapper(new JavalinJackson())));
+		app.get("/projects", this::handleProjects);
+		app.post("/load-project", this::handleLoadProject);
+		app.post("/unload-project", this::handleUnloadProject);
+		app.get("/diff", RequestDeadline.wrap(this::handleDiff, diffDeadlineExceeded));
+		// 路由表与项目无关，用未挂载的实例取得所有路径
+		for (String key : new JadxMcpPlugin().createRouteTable().keySet()) {
+			String[] route = key.split(" ", 2);
+			if ("POST".equals(route[0])) {
+				app.post(route[1], dispatch(key));
+			} else {
+				app.get(route[1], dispatch(key));
+			}
+		}
+		app.start(port);
+		logger.info("JADX AI MCP multi-project server started: http://127.0.0.1:{}/ projects: {}", port, projects.keySet());
+	}
+
+	public void shutdown() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+		if (app != null) {
+			app.stop();
+		}
+		for (Project project : projects.values()) {
+			project.lock.lock();
+			try {
+				unload(project);
+			} finally {
+				project.lock.unlock();
+			}
+		}
+		if (memoryMonitor != null) {
+			memoryMonitor.stop();
+		}
+		if (workerPool != null) {
+			workerPool.shutdownNow();
+		}
+	}
+
+
+	private Handler dispatch(String routeKey) {
+		return ctx -> {
+			Project project;
+			try {
+				project = acquire(getProjectParam(ctx));
+			} catch (NoSuchElementException e) {
+				ctx.status(404).json(Map.of("error", e.getMessage()));
+				return;
+			} catch (IllegalArgumentException e) {
+				ctx.status(400).json(Map.of("error", e.getMessage()));
+				return;
+			} catch (Exception e) {
+				logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+				ctx.status(500).json(Map.of("error", "Internal Error while trying to load project: " + e.getMessage()));
+				return;
+			}
+			try {
+				project.routes.get(routeKey).handle(ctx);
+			} finally {
+				release(project);
+			}
+		};
+	}
+
+	/**
+	 * 按参数取项目并保证已加载，只注册了一个项目时可省略参数；返回后项目在 release 前不会被卸载
+	 */
+	private Project acquire(String id) throws InterruptedException {
+		Project project;
+		if (id == null) {
+			if (projects.size() != 1) {
+				throw new IllegalArgumentException("Missing 'project' parameter, available: " + new TreeMap<>(projects).keySet());
+			}
+			project = projects.values().iterator().next();
+		} else {
+			project = projects.get(id);
+			if (project == null) {
+				throw new NoSuchElementException("Project not found: " + id);
+			}
+		}
+		while (true) {
+			CompletableFuture<Void> pending;
+			project.lock.lock();
+			try {
+				if (project.isLoaded()) {
+					project.activeRequests.incrementAndGet();
+					project.lastAccess = System.currentTimeMillis();
+					return project;
+				}
+				pending = project.loading;
+				if (pending == null) {
+					project.loading = new CompletableFuture<>();
+				}
+			} finally {
+				project.lock.unlock();
+			}
+			if (pending == null) {
+				// 本线程负责加载，load 返回时已登记本次请求
+				load(project);
+				return project;
+			}
+			try {
+				pending.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException("Project load failed: " + project.id, cause);
+			}
+			// 加载完成后可能已被卸载，重新检查
+		}
+	}
+
+	private void release(Project project) {
+		project.lastAccess = System.currentTimeMillis();
+		project.activeRequests.decrementAndGet();
+	}
+
+	/**
+	 * 调用方已设置 project.loading，加载期间不持有 project.lock；成功时登记一个进行中的请求，
+	 * 结束时完成 project.loading 唤醒等待的请求
+	 */
+	private void load(Project project) throws InterruptedException {
+		JadxDecompiler decompiler = null;
+		JadxMcpPlugin server = null;
+		boolean published = false;
+		try {
+			loadPermit.acquire();
+			try {
+				if (maxLoaded > 0) {
+					while (countLoaded() >= maxLoaded && unloadLeastRecentlyUsed(project, 0)) {
+						// 每次卸载一个，直到低于上限或没有可卸载的项目
+					}
+				}
+				long startTime = System.currentTimeMillis();
+				JadxArgs jadxArgs = new JadxArgs();
+				jadxArgs.getInputFiles().addAll(project.inputs);
+				if (threads > 0) {
+					jadxArgs.setThreadsCount(threads);
+				}
+				decompiler = new JadxDecompiler(jadxArgs);
+				decompiler.load();
+				server = new JadxMcpPlugin();
+				server.attachProject(project.id, new HeadlessBackend(decompiler), port, pageThreshold, pageSize, codeStore,
+						workerPool, memoryMonitor);
+				Map<String, Handler> routes = new LinkedHashMap<>();
+				for (Map.Entry<String, Handler> route : server.createRouteTable().entrySet()) {
+					String[] key = route.getKey().split(" ", 2);
+					routes.put(route.getKey(), server.getRouteMetrics().wrap(key[0], key[1], route.getValue()));
+				}
+				long loadMillis = System.currentTimeMillis() - startTime;
+				project.lock.lock();
+				try {
+					if (projects.get(project.id) != project) {
+						throw new NoSuchElementException("Project was removed while loading: " + project.id);
+					}
+					project.decompiler = decompiler;
+					project.routes = routes;
+					project.server = server;
+					project.loadMillis = loadMillis;
+					project.loadCount++;
+					// 在同一临界区内登记请求，发布后不会在返回前被卸载
+					project.activeRequests.incrementAndGet();
+					project.lastAccess = System.currentTimeMillis();
+					published = true;
+				} finally {
+					project.lock.unlock();
+				}
+				logger.info("JADX AI MCP: project '{}' loaded {} classes in {} ms",
+						project.id, decompiler.getClassesWithInners().size(), loadMillis);
+			} finally {
+				loadPermit.release();
+			}
+		} catch (RuntimeException | InterruptedException | Error e) {
+			if (!published) {
+				if (server != null) {
+					server.shutdown();
+				}
+				if (decompiler != null) {
+					decompiler.close();
+				}
+			}
+			finishLoading(project).completeExceptionally(e);
+			throw e;
+		}
+		finishLoading(project).complete(null);
+	}
+
+	private static CompletableFuture<Void> finishLoading(Project project) {
+		project.lock.lock();
+		try {
+			CompletableFuture<Void> loading = project.loading;
+			project.loading = null;
+			return loading;
+		} finally {
+			project.lock.unlock();
+		}
+	}
+
+	/**
+	 * 调用方持有 project.lock
+	 */
+	private void unload(Project project) {
+		JadxMcpPlugin server = project.server;
+		if (server == null) {
+			return;
+		}
+		project.server = null;
+		project.routes = null;
+		server.shutdown();
+		project.decompiler.close();
+		project.decompiler = null;
+		logger.info("JADX AI MCP: project '{}' unloaded", project.id);
+	}
+
+	/**
+	 * 卸载没有进行中请求、且最久未访问的一个已加载项目（不含 keep），正在加载或处理请求的项目跳过
+	 */
+	private boolean unloadLeastRecentlyUsed(Project keep, long minIdleMillis) {
+		long cutoff = System.currentTimeMillis() - minIdleMillis;
+		List<Project> candidates = new ArrayList<>();
+		for (Project project : projects.values()) {
+			if (project != keep && project.isLoaded() && project.activeRequests.get() == 0 && project.lastAccess <= cutoff) {
+				candidates.add(project);
+			}
+		}
+		candidates.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+		for (Project project : candidates) {
+			if (tryUnload(project)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean tryUnload(Project project) {
+		if (!project.lock.tryLock()) {
+			return false;
+		}
+		try {
+			if (!project.isLoaded() || project.activeRequests.get() > 0) {
+				return false;
+			}
+			unload(project);
+			return true;
+		} finally {
+			project.lock.unlock();
+		}
+	}
+
+	private void unloadIdleProjects() {
+		try {
+			long cutoff = System.currentTimeMillis() - idleUnloadMillis;
+			for (Project project : projects.values()) {
+				if (project.isLoaded() && project.lastAccess < cutoff && project.activeRequests.get() == 0) {
+					tryUnload(project);
+				}
+			}
+		} catch (Exception e) {
+			logger.warn("JADX AI MCP: idle project check failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 内存监控进入 CRITICAL 时调用：先卸载各项目中空闲类的代码，再卸载一个最久未访问的项目
+	 */
+	private int shedMemory() {
+		int unloaded = 0;
+		for (Project project : projects.values()) {
+			JadxMcpPlugin server = project.server;
+			if (server != null) {
+				unloaded += server.unloadIdleClasses();
+			}
+		}
+		if (countLoaded() > 1) {
+			unloadLeastRecentlyUsed(null, MIN_IDLE_BEFORE_SHED_MILLIS);
+		}
+		return unloaded;
+	}
+
+	private int countLoaded() {
+		int count = 0;
+		for (Project project : projects.values()) {
+			if (project.isLoaded()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	private void handleProjects(Context ctx) {
+		try {
+			List<Map<String, Object>> list = new ArrayList<>();
+			long now = System.currentTimeMillis();
+			for (Project project : new TreeMap<>(projects).values()) {
+				Map<String, Object> info = new LinkedHashMap<>();
+				info.put("id", project.id);
+				List<String> inputs = new ArrayList<>();
+				for (File input : project.inputs) {
+					inputs.add(input.getPath());
+				}
+				info.put("inputs", inputs);
+				JadxDecompiler decompiler = project.decompiler;
+				info.put("loaded", decompiler != null);
+				if (decompiler != null) {
+					info.put("classes", decompiler.getClasses().size());
+				}
+				info.put("active_requests", project.activeRequests.get());
+				info.put("idle_ms", project.lastAccess == 0 ? -1 : now - project.lastAccess);
+				info.put("load_ms", project.loadMillis);
+				info.put("load_count", project.loadCount);
+				list.add(info);
+			}
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("projects", list);
+			result.put("loaded", countLoaded());
+			result.put("max_loaded", maxLoaded);
+			result.put("idle_unload_ms", idleUnloadMillis);
+			result.put("memory", memoryMonitor.getStats());
+			result.put("diff_deadline_exceeded", diffDeadlineExceeded.get());
+			ctx.json(result);
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to list projects: " + e.getMessage()));
+		}
+	}
+
+	/**
+	 * 注册（提供 path 时，多个文件用逗号分隔）并加载项目
+	 */
+	private void handleLoadProject(Context ctx) {
+		try {
+			String id = getProjectParam(ctx);
+			if (id == null) {
+				throw new IllegalArgumentException("Missing 'project' parameter");
+			}
+			String path = ctx.queryParam("path");
+			if (path != null && !path.isEmpty() && !projects.containsKey(id)) {
+				if (loadDirs.isEmpty()) {
+					ctx.status(403).json(Map.of("error", "Registering projects by path is disabled, start with --load-dir <dir>"));
+					return;
+				}
+				List<File> inputs = new ArrayList<>();
+				for (String file : path.split(",")) {
+					File input = new File(file.trim()).getCanonicalFile();
+					if (!isUnderLoadDir(input)) {
+						ctx.status(403).json(Map.of("error", "Path is outside the allowed load directories: " + file.trim()));
+						return;
+					}
+					if (!input.isFile()) {
+						throw new IllegalArgumentException("Input file not found: " + file.trim());
+					}
+					inputs.add(input);
+				}
+				add(id, inputs);
+			}
+			Project project = acquire(id);
+			release(project);
+			ctx.json(Map.of("project", id, "loaded", true, "load_ms", project.loadMillis));
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to load project: " + e.getMessage()));
+		}
+	}
+
+	private boolean isUnderLoadDir(File file) {
+		for (File dir : loadDirs) {
+			if (file.toPath().startsWith(dir.toPath())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 卸载项目释放内存，项目仍保留在注册表中，下次访问时重新加载；remove=true 时同时移除注册
+	 */
+	private void handleUnloadProject(Context ctx) {
+		try {
+			String id = getProjectParam(ctx);
+			Project project = id != null ? projects.get(id) : null;
+			if (project == null) {
+				throw new NoSuchElementException("Project not found: " + id);
+			}
+			boolean remove = Boolean.parseBoolean(ctx.queryParam("remove"));
+			project.lock.lock();
+			try {
+				if (project.activeRequests.get() > 0) {
+					ctx.status(409).json(Map.of("error", "Project has requests in progress: " + id));
+					return;
+				}
+				unload(project);
+				if (remove) {
+					projects.remove(id);
+				}
+			} finally {
+				project.lock.unlock();
+			}
+			ctx.json(Map.of("project", id, "loaded", false, "removed", remove));
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to unload project: " + e.getMessage()));
+		}
+	}
+
+	/**
+	 * 两个项目的结构对比：base/target 为项目id，package 限定原始包名前缀，limit 为每个列表的最大条目数
+	 */
+	private void handleDiff(Context ctx) {
+		Project base = null;
+		Project target = null;
+		try {
+			String baseId = ctx.queryParam("base");
+			String targetId = ctx.queryParam("target");
+			if (baseId == null || targetId == null || baseId.equals(targetId)) {
+				throw new IllegalArgumentException("Parameters 'base' and 'target' must name two different projects");
+			}
+			String packagePrefix = ctx.queryParam("package");
+			if (packagePrefix != null && packagePrefix.isEmpty()) {
+				packagePrefix = null;
+			}
+			String limitParam = ctx.queryParam("limit");
+			int limit = limitParam != null && !limitParam.isEmpty() ? Integer.parseInt(limitParam) : 1000;
+
+			long startTime = System.currentTimeMillis();
+			base = acquire(baseId);
+			target = acquire(targetId);
+			Map<String, StructuralIndex.ClassEntry> baseEntries = base.server.getStructuralEntries(packagePrefix);
+			Map<String, StructuralIndex.ClassEntry> targetEntries = target.server.getStructuralEntries(packagePrefix);
+			long hashMillis = System.currentTimeMillis() - startTime;
+
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("base", baseId);
+			result.put("target", targetId);
+			if (packagePrefix != null) {
+				result.put("package", packagePrefix);
+			}
+			result.putAll(ApkDiff.diff(baseEntries, targetEntries, limit));
+			result.put("hash_ms", hashMillis);
+			result.put("elapsed_ms", System.currentTimeMillis() - startTime);
+			ctx.json(result);
+		} catch (RequestDeadline.Exceeded e) {
+			throw e;
+		} catch (NumberFormatException e) {
+			ctx.status(400).json(Map.of("error", "Invalid 'limit' parameter: " + e.getMessage()));
+		} catch (NoSuchElementException e) {
+			ctx.status(404).json(Map.of("error", e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400).json(Map.of("error", e.getMessage()));
+		} catch (Exception e) {
+			logger.error("JADX AI MCP Error: " + e.getMessage(), e);
+			ctx.status(500).json(Map.of("error", "Internal Error while trying to diff projects: " + e.getMessage()));
+		} finally {
+			if (base != null) {
+				release(base);
+			}
+			if (target != null) {
+				release(target);
+			}
+		}
+	}
+
+	private static String getProjectParam(Context ctx) {
+		for (String name : PROJECT_PARAMS) {
+			String value = ctx.queryParam(name);
+			if ((value == null || value.isEmpty()) && isFormRequest(ctx)) {
+				value = ctx.formParam(name);
+			}
+			if (value != null && !value.isEmpty()) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * JSON 请求体（如 /batch）不按表单解析
+	 */
+	private static boolean isFormRequest(Context ctx) {
+		String contentType = ctx.contentType();
+		return contentType != null && contentType.startsWith("application/x-www-form-urlencoded");
+	}
+}
@@ -0,0 +1,145 @@
+package jadx.plugins.mcp;
+
+import io.javalin.http.Handler;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求截止时间 - 客户端在请求头中给出剩余超时（毫秒），处理线程在 ThreadLocal 中持有截止时间；
+ * 遍历全部类、批量子请求、索引计算等长循环中调用 check()，超时或任务被取消时抛出 Exceeded，
+ * 客户端已放弃的请求不再继续占用CPU。没有请求头时不限制
+ */
+public final class RequestDeadline {
+
+	public static final String HEADER = "X-Request-Timeout-Ms";
+
+	private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * 截止时间已过或任务被取消（中断），由路由包装转换为 504
+	 */
+	public static final class Exceeded extends RuntimeException {
+		Exceeded(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	private final long timeoutMillis;
+	private final long deadlineNanos;
+
+	public RequestDeadline(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	/**
+	 * 解析请求头，为空时返回null，格式无效时抛出 IllegalArgumentException
+	 */
+	public static RequestDeadline parse(String header) {
+		if (header == null || header.isBlank()) {
+			return null;
+		}
+		long timeout;
+		try {
+			timeout = Long.parseLong(header.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + HEADER + " header: " + header);
+		}
+		if (timeout <= 0) {
+			throw new IllegalArgumentException(HEADER + " must be positive: " + header);
+		}
+		return new RequestDeadline(timeout);
+	}
+
+	/**
+	 * 当前线程所处理请求的截止时间，没有时返回null
+	 */
+	public static RequestDeadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * 当前请求超时或被取消时抛出 Exceeded；当前线程没有截止时间时不做任何检查（包括中断）
+	 */
+	public static void checkCurrent() {
+		RequestDeadline deadline = CURRENT.get();
+		if (deadline != null) {
+			deadline.check();
+		}
+	}
+
+	public void check() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new Exceeded("Request cancelled");
+		}
+		if (isExpired()) {
+			throw new Exceeded("Request deadline of " + timeoutMillis + " ms exceeded");
+		}
+	}
+
+	public boolean isExpired() {
+		return System.nanoTime() - deadlineNanos >= 0;
+	}
+
+	public long remainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+	}
+
+	/**
+	 * 在 deadline（可为null）下执行 task，用于把请求的截止时间传递到工作线程
+	 */
+	public static <T> T call(RequestDeadline deadline, Callable<T> task) throws Exception {
+		RequestDeadline previous = CURRENT.get();
+		CURRENT.set(deadline);
+		try {
+			if (deadline != null) {
+				deadline.check();
+			}
+			return task.call();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * 包装路由处理函数：读取请求头设置截止时间，排队期间已超时的请求直接返回 504 不再处理；
+	 * 处理中抛出的 Exceeded 转换为 504 并计入 exceeded
+	 */
+	public static Handler wrap(Handler handler, AtomicLong exceeded) {
+		return ctx -> {
+			RequestDeadline deadline;
+			try {
+				deadline = parse(ctx.header(HEADER));
+			} catch (IllegalArgumentException e) {
+				ctx.status(400).json(Map.of("error", e.getMessage()));
+				return;
+			}
+			if (deadline == null) {
+				handler.handle(ctx);
+				return;
+			}
+			RequestDeadline previous = CURRENT.get();
+			CURRENT.set(deadline);
+			try {
+				deadline.check();
+				handler.handle(ctx);
+			} catch (Exceeded e) {
+				exceeded.incrementAndGet();
+				ctx.status(504).json(Map.of("error", e.getMessage()));
+			} finally {
+				restore(previous);
+			}
+		};
+	}
+
+	private static void restore(RequestDeadline previous) {
+		if (previous != null) {
+			CURRENT.set(previous);
+		} else {
+			CURRENT.remove();
+		}
+	}
+}
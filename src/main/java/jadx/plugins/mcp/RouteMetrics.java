@@ -0,0 +1,226 @@
+package jadx.plugins.mcp;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 路由指标 - 注册路由时包装处理函数，统计请求数、错误数、输出字节数、并发数和延迟直方图；
+ * 请求路径上只有计数器自增，不分配对象（录制JFR时另外创建并提交请求事件）；/metrics 以 Prometheus 文本格式输出
+ */
+public final class RouteMetrics {
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final Map<String, Route> routes = new LinkedHashMap<>();
+	private final List<LruCache<?, ?>> caches = new ArrayList<>();
+	private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+	private final Map<String, Summary> summaries = new LinkedHashMap<>();
+
+	private static final class Route {
+		final String method;
+		final String path;
+		final LongAdder requests = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder bytesOut = new LongAdder();
+		final LongAdder inFlight = new LongAdder();
+		final LatencyHistogram latencyMicros = new LatencyHistogram();
+
+		Route(String method, String path) {
+			this.method = method;
+			this.path = path;
+		}
+	}
+
+	private static final class Gauge {
+		final String help;
+		final String type;
+		final DoubleSupplier value;
+
+		Gauge(String help, String type, DoubleSupplier value) {
+			this.help = help;
+			this.type = type;
+			this.value = value;
+		}
+	}
+
+	private static final class Summary {
+		final String help;
+		final LatencyHistogram micros;
+
+		Summary(String help, LatencyHistogram micros) {
+			this.help = help;
+			this.micros = micros;
+		}
+	}
+
+	public synchronized Handler wrap(String method, String path, Handler handler) {
+		Route route = routes.computeIfAbsent(method + " " + path, key -> new Route(method, path));
+		return ctx -> {
+			route.inFlight.increment();
+			McpJfr.RequestEvent event = McpJfr.isRequestEnabled() ? new McpJfr.RequestEvent() : null;
+			if (event != null) {
+				event.begin();
+			}
+			long start = System.nanoTime();
+			boolean failed = true;
+			try {
+				handler.handle(ctx);
+				failed = false;
+			} finally {
+				route.latencyMicros.record((System.nanoTime() - start) / 1000);
+				route.inFlight.decrement();
+				route.requests.increment();
+				int status = ctx.statusCode();
+				if (failed || status >= 400) {
+					route.errors.increment();
+				}
+				long bytes = resultSize(ctx);
+				route.bytesOut.add(bytes);
+				if (event != null) {
+					event.end();
+					if (event.shouldCommit()) {
+						event.method = method;
+						event.route = path;
+						event.status = failed ? 500 : status;
+						event.responseBytes = bytes;
+						event.commit();
+					}
+				}
+			}
+		};
+	}
+
+	public synchronized void registerCache(LruCache<?, ?> cache) {
+		if (!caches.contains(cache)) {
+			caches.add(cache);
+		}
+	}
+
+	/**
+	 * @param type Prometheus 类型，gauge 或 counter
+	 */
+	public synchronized void registerGauge(String name, String help, String type, DoubleSupplier value) {
+		gauges.put(name, new Gauge(help, type, value));
+	}
+
+	/**
+	 * 以秒为单位输出分位数的 summary，micros 中记录的是微秒
+	 */
+	public synchronized void registerSummary(String name, String help, LatencyHistogram micros) {
+		summaries.put(name, new Summary(help, micros));
+	}
+
+	public synchronized String toPrometheus() {
+		StringBuilder sb = new StringBuilder(4096);
+
+		header(sb, "jadx_mcp_requests_total", "Requests handled per route", "counter");
+		for (Route r : routes.values()) {
+			sample(sb, "jadx_mcp_requests_total", r, null, r.requests.sum());
+		}
+		header(sb, "jadx_mcp_request_errors_total", "Requests that threw or returned status >= 400", "counter");
+		for (Route r : routes.values()) {
+			sample(sb, "jadx_mcp_request_errors_total", r, null, r.errors.sum());
+		}
+		header(sb, "jadx_mcp_response_bytes_total", "Response body bytes per route", "counter");
+		for (Route r : routes.values()) {
+			sample(sb, "jadx_mcp_response_bytes_total", r, null, r.bytesOut.sum());
+		}
+		header(sb, "jadx_mcp_requests_in_flight", "Requests currently being handled", "gauge");
+		for (Route r : routes.values()) {
+			sample(sb, "jadx_mcp_requests_in_flight", r, null, r.inFlight.sum());
+		}
+		header(sb, "jadx_mcp_request_duration_seconds", "Request latency per route", "summary");
+		for (Route r : routes.values()) {
+			if (r.latencyMicros.getCount() == 0) {
+				continue;
+			}
+			for (double q : QUANTILES) {
+				sample(sb, "jadx_mcp_request_duration_seconds", r, formatDouble(q), r.latencyMicros.getValueAtQuantile(q) / 1e6);
+			}
+			sample(sb, "jadx_mcp_request_duration_seconds_sum", r, null, r.latencyMicros.getSum() / 1e6);
+			sample(sb, "jadx_mcp_request_duration_seconds_count", r, null, r.latencyMicros.getCount());
+		}
+
+		header(sb, "jadx_mcp_cache_hits_total", "Cache hits", "counter");
+		for (LruCache<?, ?> c : caches) {
+			cacheSample(sb, "jadx_mcp_cache_hits_total", c, c.getHits());
+		}
+		header(sb, "jadx_mcp_cache_misses_total", "Cache misses", "counter");
+		for (LruCache<?, ?> c : caches) {
+			cacheSample(sb, "jadx_mcp_cache_misses_total", c, c.getMisses());
+		}
+		header(sb, "jadx_mcp_cache_evictions_total", "Cache evictions", "counter");
+		for (LruCache<?, ?> c : caches) {
+			cacheSample(sb, "jadx_mcp_cache_evictions_total", c, c.getEvictions());
+		}
+		header(sb, "jadx_mcp_cache_size", "Cache entries", "gauge");
+		for (LruCache<?, ?> c : caches) {
+			cacheSample(sb, "jadx_mcp_cache_size", c, c.size());
+		}
+		header(sb, "jadx_mcp_cache_hit_ratio", "Cache hit ratio since start", "gauge");
+		for (LruCache<?, ?> c : caches) {
+			long total = c.getHits() + c.getMisses();
+			cacheSample(sb, "jadx_mcp_cache_hit_ratio", c, total == 0 ? 0 : (double) c.getHits() / total);
+		}
+
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+			Gauge g = entry.getValue();
+			header(sb, entry.getKey(), g.help, g.type);
+			sb.append(entry.getKey()).append(' ').append(formatDouble(g.value.getAsDouble())).append('\n');
+		}
+		for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+			String name = entry.getKey();
+			LatencyHistogram h = entry.getValue().micros;
+			header(sb, name, entry.getValue().help, "summary");
+			for (double q : QUANTILES) {
+				sb.append(name).append("{quantile=\"").append(formatDouble(q)).append("\"} ")
+						.append(formatDouble(h.getValueAtQuantile(q) / 1e6)).append('\n');
+			}
+			sb.append(name).append("_sum ").append(formatDouble(h.getSum() / 1e6)).append('\n');
+			sb.append(name).append("_count ").append(formatDouble(h.getCount())).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static long resultSize(Context ctx) {
+		try {
+			InputStream result = ctx.resultInputStream();
+			return result != null ? result.available() : 0;
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private static void header(StringBuilder sb, String name, String help, String type) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder sb, String name, Route r, String quantile, double value) {
+		sb.append(name).append("{method=\"").append(r.method).append("\",route=\"").append(r.path).append('"');
+		if (quantile != null) {
+			sb.append(",quantile=\"").append(quantile).append('"');
+		}
+		sb.append("} ").append(formatDouble(value)).append('\n');
+	}
+
+	private static void cacheSample(StringBuilder sb, String name, LruCache<?, ?> cache, double value) {
+		sb.append(name).append("{cache=\"").append(cache.getName()).append("\"} ").append(formatDouble(value)).append('\n');
+	}
+
+	private static String formatDouble(double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+}
@@ -0,0 +1,122 @@
+package jadx.plugins.mcp;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Smali方法索引 - 对顶层类（含内部类）的smali文本做一次扫描，记录每个 .class 段和每个 .method ... .end method 的区间，
+ * 以 "类描述符->MethodInfo.getShortId()" 为键，方法级smali读取直接截取
+ */
+public final class SmaliIndex {
+
+	private final String smali;
+	private final Map<String, int[]> spans;
+	// 类描述符 -> 该类 .class 段的区间（不含内部类的段），按出现顺序
+	private final Map<String, int[]> classSpans;
+
+	private SmaliIndex(String smali, Map<String, int[]> spans, Map<String, int[]> classSpans) {
+		this.smali = smali;
+		this.spans = spans;
+		this.classSpans = classSpans;
+	}
+
+	public static SmaliIndex build(String smali) {
+		if (smali == null) {
+			smali = "";
+		}
+		Map<String, int[]> spans = new HashMap<>();
+		Map<String, int[]> classSpans = new LinkedHashMap<>();
+		String currentClass = "";
+		int[] classSpan = null;
+		int methodStart = -1;
+		String methodKey = null;
+
+		int pos = 0;
+		int len = smali.length();
+		while (pos < len) {
+			int end = smali.indexOf('\n', pos);
+			if (end == -1) {
+				end = len;
+			}
+			String line = smali.substring(pos, end).trim();
+			if (line.startsWith(".class ")) {
+				if (classSpan != null) {
+					classSpan[1] = pos;
+				}
+				currentClass = lastToken(line);
+				classSpan = new int[] { pos, len };
+				classSpans.putIfAbsent(currentClass, classSpan);
+			} else if (line.startsWith(".method ")) {
+				methodStart = pos;
+				methodKey = lastToken(line);
+			} else if (line.startsWith(".end method") && methodKey != null) {
+				int[] span = { methodStart, Math.min(end + 1, len) };
+				spans.putIfAbsent(key(currentClass, methodKey), span);
+				methodKey = null;
+			}
+			pos = end + 1;
+		}
+		return new SmaliIndex(smali, spans, classSpans);
+	}
+
+	/**
+	 * @param rawClassName 类原始名，如 "a.b.C$D"
+	 * @param shortId      MethodInfo.getShortId()，如 "main([Ljava/lang/String;)V"
+	 * @return 方法的smali代码，只在该类自己的 .class 段中查找，未找到返回null
+	 */
+	public String getMethodSmali(String rawClassName, String shortId) {
+		String descriptor = toDescriptor(rawClassName);
+		int[] span = spans.get(key(descriptor, shortId));
+		if (span == null && classSpans.size() == 1 && !classSpans.containsKey(descriptor)) {
+			// 描述符与smali中的类名对不上（只有一个类段，不会取到其他类的同名方法）
+			span = spans.get(key(classSpans.keySet().iterator().next(), shortId));
+		}
+		return span != null ? smali.substring(span[0], span[1]) : null;
+	}
+
+	/**
+	 * 类及其内部类的smali；顶层类或描述符不在索引中时返回全部文本
+	 */
+	public String getClassSmali(String rawClassName) {
+		String descriptor = toDescriptor(rawClassName);
+		int[] own = classSpans.get(descriptor);
+		if (own == null || classSpans.keySet().iterator().next().equals(descriptor)) {
+			return smali;
+		}
+		String innerPrefix = descriptor.substring(0, descriptor.length() - 1) + "$";
+		StringBuilder sb = new StringBuilder(own[1] - own[0]);
+		sb.append(smali, own[0], own[1]);
+		for (Map.Entry<String, int[]> entry : classSpans.entrySet()) {
+			if (entry.getKey().startsWith(innerPrefix)) {
+				sb.append(smali, entry.getValue()[0], entry.getValue()[1]);
+			}
+		}
+		return sb.toString();
+	}
+
+	public String getSmali() {
+		return smali;
+	}
+
+	public int getMethodCount() {
+		return spans.size();
+	}
+
+	public int getSmaliLength() {
+		return smali.length();
+	}
+
+	public static String toDescriptor(String rawClassName) {
+		return "L" + rawClassName.replace('.', '/') + ";";
+	}
+
+	private static String key(String classDescriptor, String shortId) {
+		return classDescriptor + "->" + shortId;
+	}
+
+	private static String lastToken(String line) {
+		int idx = line.lastIndexOf(' ');
+		return idx == -1 ? line : line.substring(idx + 1);
+	}
+}
@@ -0,0 +1,316 @@
+package jadx.plugins.mcp;
+
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.codegen.TypeGen;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 结构哈希索引 - 直接读取输入中的原始指令（不触发反编译），对每个方法计算与寄存器分配和名称无关的64位哈希：
+ * 操作码、字面量、相对跳转、字符串和框架类型/方法/字段引用参与计算，本应用内的类型和成员引用只保留形状；
+ * 按类惰性计算并缓存，只比较某个包时只哈希该包的类，用于版本对比（ApkDiff）
+ */
+public final class StructuralIndex {
+
+	private static final int CHUNK_SIZE = 256;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * 一个类的结构摘要，成员按原始名称索引
+	 */
+	public static final class ClassEntry {
+		final String rawName;
+		final long fingerprint;
+		// 方法 shortId（名称+原始签名） -> 结构哈希
+		final Map<String, Long> methods;
+		// 字段原始名称 -> 原始类型描述符
+		final Map<String, String> fields;
+
+		ClassEntry(String rawName, Map<String, Long> methods, Map<String, String> fields, long fingerprint) {
+			this.rawName = rawName;
+			this.methods = methods;
+			this.fields = fields;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private final Map<String, ClassNode> classes = new TreeMap<>();
+	private final Set<String> appTypes = new HashSet<>();
+	private final Map<String, ClassEntry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * @param classes 包括内部类在内的全部类（RootNode.getClasses()）
+	 */
+	public StructuralIndex(List<ClassNode> classes) {
+		for (ClassNode cls : classes) {
+			this.classes.put(cls.getRawName(), cls);
+			appTypes.add(descriptorOf(cls.getRawName()));
+		}
+	}
+
+	public int getClassCount() {
+		return classes.size();
+	}
+
+	public int getHashedCount() {
+		return entries.size();
+	}
+
+	/**
+	 * 返回原始名以 packagePrefix 开头（null 为全部）的类的摘要，未计算的类分块提交到线程池并行哈希
+	 * （已在该线程池中运行的调用方传入 Runnable::run，在当前线程计算）；
+	 * 调用线程有请求截止时间时各块逐类检查，超时抛出 RequestDeadline.Exceeded，已算出的类保留在缓存中
+	 */
+	public Map<String, ClassEntry> entries(String packagePrefix, Executor pool) {
+		List<ClassNode> selected = new ArrayList<>();
+		List<ClassNode> missing = new ArrayList<>();
+		for (Map.Entry<String, ClassNode> entry : classes.entrySet()) {
+			if (packagePrefix == null || entry.getKey().startsWith(packagePrefix)) {
+				selected.add(entry.getValue());
+				if (!entries.containsKey(entry.getKey())) {
+					missing.add(entry.getValue());
+				}
+			}
+		}
+
+		RequestDeadline deadline = RequestDeadline.current();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int from = 0; from < missing.size(); from += CHUNK_SIZE) {
+			List<ClassNode> chunk = missing.subList(from, Math.min(from + CHUNK_SIZE, missing.size()));
+			futures.add(CompletableFuture.runAsync(() -> {
+				for (ClassNode cls : chunk) {
+					if (deadline != null) {
+						deadline.check();
+					}
+					entries.put(cls.getRawName(), hashClass(cls));
+				}
+			}, pool));
+		}
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RequestDeadline.Exceeded) {
+				throw (RequestDeadline.Exceeded) e.getCause();
+			}
+			throw e;
+		}
+
+		Map<String, ClassEntry> result = new LinkedHashMap<>();
+		for (ClassNode cls : selected) {
+			result.put(cls.getRawName(), entries.get(cls.getRawName()));
+		}
+		return result;
+	}
+
+	private ClassEntry hashClass(ClassNode cls) {
+		Map<String, Long> methods = new LinkedHashMap<>();
+		for (MethodNode mth : cls.getMethods()) {
+			methods.put(mth.getMethodInfo().getShortId(), hashMethod(mth));
+		}
+		Map<String, String> fields = new LinkedHashMap<>();
+		for (FieldNode field : cls.getFields()) {
+			fields.put(field.getFieldInfo().getName(), TypeGen.signature(field.getFieldInfo().getType()));
+		}
+
+		// 类指纹与成员名称和顺序无关：方法哈希、字段类型形状和父类形状排序后合并
+		long[] methodHashes = new long[methods.size()];
+		int i = 0;
+		for (long hash : methods.values()) {
+			methodHashes[i++] = hash;
+		}
+		Arrays.sort(methodHashes);
+		List<String> fieldShapes = new ArrayList<>();
+		for (String type : fields.values()) {
+			fieldShapes.add(normType(type));
+		}
+		Collections.sort(fieldShapes);
+
+		long h = FNV_OFFSET;
+		for (long hash : methodHashes) {
+			h = mix(h, hash);
+		}
+		for (String shape : fieldShapes) {
+			h = mix(h, shape);
+		}
+		h = mix(h, cls.getSuperClass() != null ? normType(TypeGen.signature(cls.getSuperClass())) : "-");
+		return new ClassEntry(cls.getRawName(), methods, fields, h);
+	}
+
+	private long hashMethod(MethodNode mth) {
+		String shortId = mth.getMethodInfo().getShortId();
+		long h = mix(FNV_OFFSET, normProto(shortId.substring(shortId.indexOf('('))));
+		h = mix(h, mth.getAccessFlags().rawValue());
+		long[] tokens = insnTokens(mth);
+		if (tokens == null) {
+			return mix(h, "!error");
+		}
+		for (long token : tokens) {
+			h = mix(h, token);
+		}
+		return h;
+	}
+
+	/**
+	 * 方法的原始指令序列，每条指令归一化为一个64位记号（与 hashMethod 使用相同的归一化规则）；
+	 * 无代码的方法返回空数组，读取失败返回null
+	 */
+	public long[] insnTokens(MethodNode mth) {
+		ICodeReader codeReader = mth.getCodeReader();
+		if (codeReader == null) {
+			return new long[0];
+		}
+		long[][] tokens = { new long[Math.max(4, codeReader.getUnitsCount() / 2)] };
+		int[] count = { 0 };
+		try {
+			// 副本读取，不影响反编译线程正在使用的同一读取器
+			codeReader.copy().visitInstructions(insn -> {
+				insn.decode();
+				if (count[0] == tokens[0].length) {
+					tokens[0] = Arrays.copyOf(tokens[0], count[0] * 2);
+				}
+				tokens[0][count[0]++] = hashInsn(FNV_OFFSET, insn);
+			});
+		} catch (Exception e) {
+			return null;
+		}
+		return Arrays.copyOf(tokens[0], count[0]);
+	}
+
+	private long hashInsn(long h, InsnData insn) {
+		Opcode opcode = insn.getOpcode();
+		// 用操作码名称而不是序号，哈希不随 jadx 版本变化，可写入签名库
+		h = mix(h, opcode.name());
+		switch (insn.getIndexType()) {
+			case STRING_REF:
+				return mix(h, insn.getIndexAsString());
+			case TYPE_REF:
+				return mix(h, normType(insn.getIndexAsType()));
+			case FIELD_REF: {
+				IFieldRef field = insn.getIndexAsField();
+				if (appTypes.contains(field.getParentClassType())) {
+					return mix(h, "F:" + normType(field.getType()));
+				}
+				return mix(h, field.getParentClassType() + "->" + field.getName() + ':' + field.getType());
+			}
+			case METHOD_REF: {
+				IMethodRef method = insn.getIndexAsMethod();
+				method.load();
+				StringBuilder proto = new StringBuilder("(");
+				for (String argType : method.getArgTypes()) {
+					proto.append(argType);
+				}
+				proto.append(')').append(method.getReturnType());
+				if (appTypes.contains(method.getParentClassType())) {
+					return mix(h, "M:" + normProto(proto.toString()));
+				}
+				return mix(h, method.getParentClassType() + "->" + method.getName() + proto);
+			}
+			case CALL_SITE:
+				return mix(h, "callsite");
+			default:
+				break;
+		}
+		// 跳转用相对偏移，字面量只取常量和 *_LIT 运算的立即数
+		String name = opcode.name();
+		if (name.equals("GOTO") || name.startsWith("IF_")) {
+			return mix(h, insn.getTarget() - insn.getOffset());
+		}
+		if (name.startsWith("CONST") || name.endsWith("_LIT") || name.equals("RSUB_INT")) {
+			return mix(h, insn.getLiteral());
+		}
+		return h;
+	}
+
+	/**
+	 * 本应用内的类型替换为 L?;（保留数组维度），框架类型保持不变
+	 */
+	String normType(String desc) {
+		int dims = 0;
+		while (dims < desc.length() && desc.charAt(dims) == '[') {
+			dims++;
+		}
+		if (appTypes.contains(desc.substring(dims))) {
+			StringBuilder sb = new StringBuilder(dims + 3);
+			for (int i = 0; i < dims; i++) {
+				sb.append('[');
+			}
+			return sb.append("L?;").toString();
+		}
+		return desc;
+	}
+
+	/**
+	 * 对 (参数描述符)返回值描述符 中的每个类型做 normType
+	 */
+	String normProto(String proto) {
+		StringBuilder sb = new StringBuilder(proto.length());
+		int i = 0;
+		while (i < proto.length()) {
+			char c = proto.charAt(i);
+			if (c == '(' || c == ')') {
+				sb.append(c);
+				i++;
+				continue;
+			}
+			int start = i;
+			while (proto.charAt(i) == '[') {
+				i++;
+			}
+			if (proto.charAt(i) == 'L') {
+				i = proto.indexOf(';', i);
+			}
+			i++;
+			sb.append(normType(proto.substring(start, i)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 原始类名（a.b.C$D）转为类型描述符（La/b/C$D;）
+	 */
+	static String descriptorOf(String rawName) {
+		return 'L' + rawName.replace('.', '/') + ';';
+	}
+
+	static long mix(long h, long value) {
+		for (int i = 0; i < 8; i++) {
+			h ^= (value >>> (i * 8)) & 0xff;
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	static long mix(long h, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			h ^= c & 0xff;
+			h *= FNV_PRIME;
+			h ^= c >>> 8;
+			h *= FNV_PRIME;
+		}
+		// 分隔符，避免相邻字符串拼接后碰撞
+		h ^= 0xff;
+		return h * FNV_PRIME;
+	}
+}
@@ -0,0 +1,54 @@
+package jadx.plugins.mcp;
+
+import io.javalin.json.JsonMapper;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.stream.Stream;
+
+/**
+ * 包装 Javalin 的 JSON 映射器，为每次响应序列化记录 JFR 序列化事件
+ */
+public final class TimedJsonMapper implements JsonMapper {
+
+	private final JsonMapper delegate;
+
+	public TimedJsonMapper(JsonMapper delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String toJsonString(Object obj, Type type) {
+		McpJfr.SerializeEvent event = new McpJfr.SerializeEvent();
+		event.begin();
+		String json = delegate.toJsonString(obj, type);
+		event.end();
+		if (event.shouldCommit()) {
+			event.type = obj.getClass().getSimpleName();
+			event.length = json.length();
+			event.commit();
+		}
+		return json;
+	}
+
+	@Override
+	public InputStream toJsonStream(Object obj, Type type) {
+		return delegate.toJsonStream(obj, type);
+	}
+
+	@Override
+	public void writeToOutputStream(Stream<?> stream, OutputStream outputStream) {
+		delegate.writeToOutputStream(stream, outputStream);
+	}
+
+	@Override
+	public <T> T fromJsonString(String json, Type targetType) {
+		return delegate.fromJsonString(json, targetType);
+	}
+
+	@Override
+	public <T> T fromJsonStream(InputStream json, Type targetType) {
+		return delegate.fromJsonStream(json, targetType);
+	}
+}
@@ -0,0 +1,90 @@
+package jadx.plugins.mcp;
+
+import jadx.plugins.mcp.StructuralIndex.ClassEntry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApkDiffTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void membersAddedRemovedChangedRenamed() {
+		ClassEntry base = entry("a.A", Map.of("run()V", 1L, "old()V", 2L, "gone()V", 3L, "edit(I)I", 4L),
+				Map.of("f", "I", "g", "Ljava/lang/String;"), 10);
+		ClassEntry target = entry("a.A", Map.of("run()V", 1L, "renamed()V", 2L, "fresh()V", 5L, "edit(I)I", 6L),
+				Map.of("f", "J", "h", "Ljava/lang/String;"), 11);
+
+		Map<String, Object> result = ApkDiff.diff(map(base), map(target), 100);
+		Map<String, Integer> summary = (Map<String, Integer>) result.get("summary");
+		assertThat(summary).containsEntry("classes_changed", 1)
+				.containsEntry("methods_added", 1)
+				.containsEntry("methods_removed", 1)
+				.containsEntry("methods_renamed", 1)
+				.containsEntry("methods_changed", 1)
+				.containsEntry("fields_changed", 1)
+				.containsEntry("fields_renamed", 1);
+
+		Map<String, List<Object>> classes = (Map<String, List<Object>>) result.get("classes");
+		Map<String, Object> change = (Map<String, Object>) classes.get("changed").get(0);
+		Map<String, Object> methods = (Map<String, Object>) change.get("methods");
+		assertThat(methods.get("renamed")).isEqualTo(List.of(Map.of("from", "old()V", "to", "renamed()V")));
+		assertThat(methods.get("added")).isEqualTo(List.of("fresh()V"));
+		assertThat(methods.get("removed")).isEqualTo(List.of("gone()V"));
+		assertThat(methods.get("changed")).isEqualTo(List.of("edit(I)I"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void classesPairedByFingerprint() {
+		ClassEntry same = entry("a.Same", Map.of("x()V", 1L), Map.of(), 100);
+		ClassEntry oldName = entry("a.b", Map.of("a()V", 2L), Map.of(), 200);
+		ClassEntry newName = entry("a.c", Map.of("b()V", 2L), Map.of(), 200);
+		ClassEntry removed = entry("a.Removed", Map.of("y()V", 3L), Map.of(), 300);
+		ClassEntry added = entry("a.Added", Map.of("z()V", 4L, "w()V", 5L), Map.of("f", "I"), 400);
+
+		Map<String, Object> result = ApkDiff.diff(map(same, oldName, removed), map(same, newName, added), 100);
+		Map<String, Integer> summary = (Map<String, Integer>) result.get("summary");
+		assertThat(summary).containsEntry("classes_unchanged", 1)
+				.containsEntry("classes_renamed", 1)
+				.containsEntry("classes_removed", 1)
+				.containsEntry("classes_added", 1)
+				.containsEntry("methods_added", 2)
+				.containsEntry("methods_removed", 1)
+				.containsEntry("fields_added", 1);
+
+		Map<String, List<Object>> classes = (Map<String, List<Object>>) result.get("classes");
+		assertThat(classes.get("renamed")).isEqualTo(List.of(Map.of("from", "a.b", "to", "a.c")));
+		assertThat(classes.get("removed")).isEqualTo(List.of("a.Removed"));
+		assertThat(classes.get("added")).isEqualTo(List.of("a.Added"));
+		assertThat(classes.get("changed")).isEmpty();
+	}
+
+	@Test
+	public void listsAreLimited() {
+		Map<String, ClassEntry> target = new LinkedHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			target.put("a.C" + i, entry("a.C" + i, Map.of("m()V", (long) i), Map.of(), i));
+		}
+		Map<String, Object> result = ApkDiff.diff(Map.of(), target, 3);
+		assertThat(result.get("truncated")).isEqualTo(true);
+		assertThat((Map<?, ?>) result.get("summary")).containsEntry("classes_added", 10);
+	}
+
+	private static ClassEntry entry(String name, Map<String, Long> methods, Map<String, String> fields, long fingerprint) {
+		return new ClassEntry(name, new LinkedHashMap<>(methods), new LinkedHashMap<>(fields), fingerprint);
+	}
+
+	private static Map<String, ClassEntry> map(ClassEntry... entries) {
+		Map<String, ClassEntry> map = new LinkedHashMap<>();
+		for (ClassEntry entry : entries) {
+			map.put(entry.rawName, entry);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,80 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeFeedTest {
+
+	@Test
+	public void sinceReturnsEventsStillInBuffer() {
+		ChangeFeed feed = new ChangeFeed(4);
+		try {
+			for (int i = 0; i < 6; i++) {
+				feed.publish("rename", Map.of("i", i));
+			}
+			assertThat(feed.getLastSeq()).isEqualTo(6);
+			assertThat(feed.getOldestSeq()).isEqualTo(3);
+			assertThat(feed.since(2)).extracting(e -> e.seq).containsExactly(3L, 4L, 5L, 6L);
+			assertThat(feed.since(6)).isEmpty();
+			assertThat(feed.since(1)).isNull();
+		} finally {
+			feed.close();
+		}
+	}
+
+	@Test
+	public void subscriberResumesWithoutGapsOrDuplicates() throws Exception {
+		ChangeFeed feed = new ChangeFeed(16);
+		try {
+			feed.publish("load", Map.of());
+			feed.publish("comment", Map.of());
+			List<ChangeFeed.Event> received = new CopyOnWriteArrayList<>();
+			CountDownLatch done = new CountDownLatch(3);
+			feed.subscribe(1, event -> {
+				received.add(event);
+				done.countDown();
+				return true;
+			});
+			feed.publish("rename", Map.of());
+			feed.publish("invalidate", Map.of());
+
+			assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(received.stream().map(e -> e.seq).collect(Collectors.toList())).containsExactly(2L, 3L, 4L);
+		} finally {
+			feed.close();
+		}
+	}
+
+	@Test
+	public void overwrittenPositionSendsReset() throws Exception {
+		ChangeFeed feed = new ChangeFeed(2);
+		try {
+			for (int i = 0; i < 5; i++) {
+				feed.publish("rename", Map.of());
+			}
+			List<ChangeFeed.Event> received = new CopyOnWriteArrayList<>();
+			CountDownLatch done = new CountDownLatch(2);
+			feed.subscribe(0, event -> {
+				received.add(event);
+				done.countDown();
+				return true;
+			});
+			feed.publish("comment", Map.of());
+
+			assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(received.get(0).type).isEqualTo("reset");
+			assertThat(received.get(0).seq).isEqualTo(5);
+			assertThat(received.get(1).seq).isEqualTo(6);
+		} finally {
+			feed.close();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package jadx.plugins.mcp;
+
+import jadx.api.ICodeInfo;
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassCodeIndexTest {
+
+	@Test
+	public void methodSpansMatchMethodCode() throws Exception {
+		JadxArgs args = new JadxArgs();
+		args.getInputFiles().add(getSampleFile("hello.smali"));
+		try (JadxDecompiler jadx = new JadxDecompiler(args)) {
+			jadx.load();
+			JavaClass cls = jadx.getClasses().get(0);
+			ClassNode clsNode = cls.getClassNode();
+			ICodeInfo codeInfo = clsNode.getCode();
+
+			ClassCodeIndex index = ClassCodeIndex.build(codeInfo);
+			MethodNode main = cls.getMethods().get(0).getMethodNode();
+
+			String mthCode = index.getMethodCode(main);
+			assertThat(mthCode).isNotNull();
+			assertThat(mthCode.trim()).startsWith("public static void main(");
+			assertThat(mthCode).contains("System.out.println(\"Hello, World\");");
+			assertThat(mthCode.trim()).endsWith("}");
+			assertThat(index.getMethodCodeLength(main)).isEqualTo(mthCode.length());
+
+			int startLine = index.getMethodStartLine(main);
+			assertThat(codeInfo.getCodeStr().split("\n")[startLine - 1]).contains("main(");
+			assertThat(index.getMethodEndLine(main)).isGreaterThan(startLine);
+		}
+	}
+
+	@Test
+	public void refsByLine() throws Exception {
+		JadxArgs args = new JadxArgs();
+		args.getInputFiles().add(getSampleFile("hello.smali"));
+		try (JadxDecompiler jadx = new JadxDecompiler(args)) {
+			jadx.load();
+			JavaClass cls = jadx.getClasses().get(0);
+			ClassNode clsNode = cls.getClassNode();
+			ClassCodeIndex index = ClassCodeIndex.build(clsNode.getCode());
+			MethodNode main = cls.getMethods().get(0).getMethodNode();
+
+			int printLine = -1;
+			for (int line = index.getMethodStartLine(main); line <= index.getMethodEndLine(main); line++) {
+				if (index.getCode().substring(index.lineStart(line), index.lineLimit(line)).contains("println")) {
+					printLine = line;
+				}
+			}
+			assertThat(printLine).isPositive();
+
+			int start = index.lineStart(printLine);
+			int end = index.lineLimit(printLine);
+			assertThat(index.getRefs(start, end))
+					.extracting(entry -> NodeInfoBuilder.codeRefInfo(entry.getValue(), index))
+					.anySatisfy(info -> assertThat(info).containsEntry("kind", "field").containsEntry("name", "out"));
+			assertThat(index.getRefs(start, end)).allSatisfy(entry -> assertThat(entry.getKey()).isBetween(start, end - 1));
+		}
+	}
+
+	private File getSampleFile(String fileName) throws URISyntaxException {
+		URL file = getClass().getClassLoader().getResource("samples/" + fileName);
+		assertThat(file).isNotNull();
+		return new File(file.toURI());
+	}
+}
@@ -0,0 +1,22 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientRateLimiterTest {
+
+	@Test
+	public void burstThenRejectPerClient() {
+		ClientRateLimiter limiter = new ClientRateLimiter();
+		assertThat(limiter.tryAcquire("a")).isZero();
+
+		limiter.configure(1, 2);
+		assertThat(limiter.tryAcquire("a")).isZero();
+		assertThat(limiter.tryAcquire("a")).isZero();
+		assertThat(limiter.tryAcquire("a")).isBetween(1L, 1000L);
+		// 其他客户端有自己的桶
+		assertThat(limiter.tryAcquire("b")).isZero();
+		assertThat(limiter.getRejected()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,70 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FairSchedulerTest {
+
+	@Test
+	public void occasionalClientOvertakesBacklog() throws Exception {
+		FairScheduler scheduler = new FairScheduler(1);
+		FairScheduler.Ticket running = scheduler.acquire("bulk", 1, 1000);
+
+		List<String> order = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(4);
+		for (int i = 0; i < 3; i++) {
+			startWaiter(scheduler, "bulk", order, done);
+			waitForQueue(scheduler, i + 1);
+		}
+		startWaiter(scheduler, "interactive", order, done);
+		waitForQueue(scheduler, 4);
+
+		running.close();
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(order).containsExactly("interactive", "bulk", "bulk", "bulk");
+		assertThat(scheduler.getRunning()).isZero();
+	}
+
+	@Test
+	public void queueTimeoutLeavesQueue() throws Exception {
+		FairScheduler scheduler = new FairScheduler(1);
+		try (FairScheduler.Ticket ticket = scheduler.acquire("a", 1, 1000)) {
+			assertThatThrownBy(() -> scheduler.acquire("b", 1, 20)).isInstanceOf(TimeoutException.class);
+			assertThat(scheduler.getQueueLength()).isZero();
+			assertThat(scheduler.getTimeouts()).isEqualTo(1);
+		}
+		// 许可已释放，不需要排队
+		try (FairScheduler.Ticket ticket = scheduler.acquire("b", 1, 0)) {
+			assertThat(scheduler.getRunning()).isEqualTo(1);
+		}
+		assertThat(scheduler.getWaitMicros().getCount()).isEqualTo(2);
+	}
+
+	private static void startWaiter(FairScheduler scheduler, String client, List<String> order, CountDownLatch done) {
+		Thread thread = new Thread(() -> {
+			try (FairScheduler.Ticket ticket = scheduler.acquire(client, 1, 5000)) {
+				order.add(client);
+			} catch (Exception e) {
+				order.add("failed");
+			}
+			done.countDown();
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void waitForQueue(FairScheduler scheduler, int length) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (scheduler.getQueueLength() < length && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+}
@@ -22,7 +22,7 @@ class JadxExamplePluginTest {
 			JavaClass cls = jadx.getClasses().get(0);
 			String clsCode = cls.getCode();
 			System.out.println(clsCode);
-			assertThat(clsCode).contains("Class generated by jadx decompiler");
+			assertThat(clsCode).contains("class HelloWorld").contains("\"Hello, World\"");
 		}
 	}
 
@@ -0,0 +1,47 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+	@Test
+	public void bucketsCoverValues() {
+		for (long v : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123_456, 10_000_000_000L }) {
+			int index = LatencyHistogram.bucketIndex(v);
+			assertThat(LatencyHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(v);
+			if (index > 0) {
+				assertThat(LatencyHistogram.bucketUpperBound(index - 1)).isLessThan(v);
+			}
+		}
+	}
+
+	@Test
+	public void quantiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertThat(histogram.getValueAtQuantile(0.5)).isZero();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertThat(histogram.getCount()).isEqualTo(1000);
+		assertThat(histogram.getSum()).isEqualTo(500_500);
+		assertThat(histogram.getMax()).isEqualTo(1000);
+		assertThat(histogram.getValueAtQuantile(0.5)).isBetween(500L, 532L);
+		assertThat(histogram.getValueAtQuantile(0.99)).isBetween(990L, 1000L);
+		assertThat(histogram.getValueAtQuantile(1.0)).isEqualTo(1000);
+	}
+
+	@Test
+	public void add() {
+		LatencyHistogram a = new LatencyHistogram();
+		LatencyHistogram b = new LatencyHistogram();
+		a.record(10);
+		b.record(5000);
+		a.add(b);
+		assertThat(a.getCount()).isEqualTo(2);
+		assertThat(a.getSum()).isEqualTo(5010);
+		assertThat(a.getMax()).isEqualTo(5000);
+		assertThat(a.getValueAtQuantile(0.5)).isEqualTo(10);
+	}
+}
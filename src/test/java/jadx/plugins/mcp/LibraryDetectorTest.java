@@ -0,0 +1,75 @@
+package jadx.plugins.mcp;
+
+import jadx.plugins.mcp.LibraryDetector.Library;
+import jadx.plugins.mcp.StructuralIndex.ClassEntry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryDetectorTest {
+
+	@Test
+	public void bundledDatabaseLoads() throws Exception {
+		List<Library> database = LibraryDetector.loadDatabase(new ObjectMapper(), null);
+		assertThat(database).extracting(lib -> lib.id).contains("okhttp3", "gson", "androidx");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void detectsByPackageAndMarkers() {
+		List<Library> database = List.of(
+				new Library("okhttp3", "OkHttp", List.of("okhttp3"), List.of("okhttp3.OkHttpClient", "okhttp3.Call"), Set.of()),
+				new Library("androidx", "AndroidX", List.of("androidx", "androidx.core"), List.of("androidx.core.app.A"), Set.of()),
+				// 包名存在但没有任何标志类，不识别
+				new Library("gson", "Gson", List.of("com.example"), List.of("com.example.Gson"), Set.of()));
+		LibraryDetector detector = LibraryDetector.detect(database,
+				List.of("okhttp3.OkHttpClient", "okhttp3.internal.Util", "androidx.core.app.A", "com.example.Main"), null);
+
+		assertThat(detector.isLibraryClass("okhttp3.internal.Util")).isTrue();
+		assertThat(detector.isLibraryClass("androidx.core.app.A")).isTrue();
+		assertThat(detector.isLibraryClass("com.example.Main")).isFalse();
+
+		Map<String, Object> json = detector.toJson();
+		assertThat(json).containsEntry("library_classes", 3).containsEntry("app_classes", 1);
+		List<Map<String, Object>> libraries = (List<Map<String, Object>>) json.get("libraries");
+		assertThat(libraries).hasSize(2);
+		assertThat(libraries.get(0)).containsEntry("id", "okhttp3").containsEntry("classes", 2).containsEntry("confidence", 0.75);
+		assertThat(libraries.get(1)).containsEntry("id", "androidx").containsEntry("classes", 1);
+	}
+
+	@Test
+	public void bundledLibrariesHaveMarkers() throws Exception {
+		// 按包名识别至少需要一个标志类，没有标志类的条目永远不会被识别
+		assertThat(LibraryDetector.loadDatabase(new ObjectMapper(), null)).allSatisfy(lib -> assertThat(lib.markers).isNotEmpty());
+	}
+
+	@Test
+	public void detectsRelocatedPackageByFingerprint() {
+		Set<Long> hashes = Set.of(1L, 2L, 3L, 4L, 5L, 6L);
+		List<Library> database = List.of(new Library("okhttp3", "OkHttp", List.of("okhttp3"), List.of(), hashes));
+		Map<String, ClassEntry> structural = new LinkedHashMap<>();
+		structural.put("a.b.c", entry("a.b.c", 1L, 2L, 3L));
+		structural.put("a.b.d", entry("a.b.d", 4L, 5L, 100L));
+		structural.put("com.example.Main", entry("com.example.Main", 1L, 200L, 300L));
+
+		LibraryDetector detector = LibraryDetector.detect(database, structural.keySet(), structural);
+		assertThat(detector.isLibraryClass("a.b.c")).isTrue();
+		assertThat(detector.isLibraryClass("com.example.Main")).isFalse();
+	}
+
+	private static ClassEntry entry(String name, long... methodHashes) {
+		Map<String, Long> methods = new LinkedHashMap<>();
+		for (int i = 0; i < methodHashes.length; i++) {
+			methods.put("m" + i + "()V", methodHashes[i]);
+		}
+		return new ClassEntry(name, methods, new LinkedHashMap<>(), name.hashCode());
+	}
+}
@@ -0,0 +1,48 @@
+package jadx.plugins.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class McpConfigTest {
+
+	@Test
+	public void mergeAcceptsNumbersAndStrings() {
+		McpConfig config = McpConfig.DEFAULTS.merge(Map.of("page_size", 200, "code_index_cache", "1024", "similarity_search", "false"));
+		assertThat(config.pageSize).isEqualTo(200);
+		assertThat(config.codeIndexCache).isEqualTo(1024);
+		assertThat(config.similaritySearch).isFalse();
+		assertThat(config.port).isEqualTo(McpConfig.DEFAULTS.port);
+		assertThat(McpConfig.DEFAULTS.diff(config)).containsOnlyKeys("page_size", "code_index_cache", "similarity_search");
+	}
+
+	@Test
+	public void invalidValuesLeaveSnapshotUnchanged() {
+		assertThatThrownBy(() -> McpConfig.DEFAULTS.merge(Map.of("port", 70000)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> McpConfig.DEFAULTS.merge(Map.of("page_size", 50, "unknown", 1)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> McpConfig.DEFAULTS.merge(Map.of("persistent_index", "maybe")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(McpConfig.DEFAULTS.pageSize).isEqualTo(100);
+	}
+
+	@Test
+	public void saveAndLoadRoundTrip(@TempDir Path dir) throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		Path file = dir.resolve("config.json");
+		McpConfig saved = McpConfig.DEFAULTS.merge(Map.of("port", 9000, "worker_threads", 3, "library_detection", false));
+		saved.save(mapper, file);
+
+		McpConfig loaded = McpConfig.DEFAULTS.load(mapper, file);
+		assertThat(loaded.toJson()).isEqualTo(saved.toJson());
+		assertThat(McpConfig.DEFAULTS.load(mapper, dir.resolve("missing.json"))).isSameAs(McpConfig.DEFAULTS);
+	}
+}
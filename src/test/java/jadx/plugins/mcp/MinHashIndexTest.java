@@ -0,0 +1,62 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinHashIndexTest {
+
+	@Test
+	public void signatureSimilarity() {
+		long[] tokens = randomTokens(new Random(1), 200);
+		long[] edited = tokens.clone();
+		edited[100] = 42;
+		long[] other = randomTokens(new Random(2), 200);
+
+		int[] sig = MinHashIndex.signature(tokens);
+		assertThat(MinHashIndex.similarity(sig, MinHashIndex.signature(tokens.clone()))).isEqualTo(1.0);
+		assertThat(MinHashIndex.similarity(sig, MinHashIndex.signature(edited))).isGreaterThan(0.8);
+		assertThat(MinHashIndex.similarity(sig, MinHashIndex.signature(other))).isLessThan(0.2);
+		assertThat(MinHashIndex.signature(new long[0])).isNull();
+	}
+
+	@Test
+	public void findSimilar() {
+		Random random = new Random(3);
+		List<String> items = new ArrayList<>();
+		List<int[]> signatures = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			items.add("m" + i);
+			signatures.add(MinHashIndex.signature(randomTokens(random, 50)));
+		}
+		long[] original = randomTokens(random, 50);
+		items.add("original");
+		signatures.add(MinHashIndex.signature(original));
+		long[] clone = original.clone();
+		clone[49] = 7;
+		items.add("clone");
+		signatures.add(MinHashIndex.signature(clone));
+
+		MinHashIndex<String> index = new MinHashIndex<>(items, signatures);
+		assertThat(index.size()).isEqualTo(1002);
+		List<MinHashIndex.Match<String>> matches = index.findSimilar(MinHashIndex.signature(original), 0.7, 10);
+		assertThat(matches).extracting(m -> m.item).containsExactly("original", "clone");
+		assertThat(matches.get(0).similarity).isEqualTo(1.0);
+		assertThat(index.findSimilar(MinHashIndex.signature(original), 0.7, 1)).hasSize(1);
+		// 过滤在截取之前：排除最相似的条目后仍能取到下一个
+		assertThat(index.findSimilar(MinHashIndex.signature(original), 0.7, 1, item -> !item.equals("original")))
+				.extracting(m -> m.item).containsExactly("clone");
+	}
+
+	private static long[] randomTokens(Random random, int count) {
+		long[] tokens = new long[count];
+		for (int i = 0; i < count; i++) {
+			tokens[i] = random.nextLong();
+		}
+		return tokens;
+	}
+}
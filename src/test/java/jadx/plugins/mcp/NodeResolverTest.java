@@ -0,0 +1,44 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+import jadx.api.JavaMethod;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NodeResolverTest {
+
+	@Test
+	public void resolveClassAndMethod() throws Exception {
+		JadxArgs args = new JadxArgs();
+		args.getInputFiles().add(getSampleFile("hello.smali"));
+		try (JadxDecompiler jadx = new JadxDecompiler(args)) {
+			jadx.load();
+			NodeResolver resolver = new NodeResolver(jadx.getClassesWithInners());
+
+			JavaClass cls = resolver.findClass(null, "HelloWorld");
+			assertThat(resolver.findClass("HelloWorld", null)).isSameAs(cls);
+
+			JavaMethod method = resolver.findMethod(cls, null, "main", "main([Ljava/lang/String;)V");
+			assertThat(method.getName()).isEqualTo("main");
+			assertThat(resolver.findMethod(cls, null, "main", "main([Ljava/lang/String;)V")).isSameAs(method);
+
+			assertThatThrownBy(() -> resolver.findClass("Missing", null)).isInstanceOf(NoSuchElementException.class);
+			assertThatThrownBy(() -> resolver.findClass(null, null)).isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	private File getSampleFile(String fileName) throws URISyntaxException {
+		URL file = getClass().getClassLoader().getResource("samples/" + fileName);
+		assertThat(file).isNotNull();
+		return new File(file.toURI());
+	}
+}
@@ -0,0 +1,68 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentIndexTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void writeReopenAndReplayRenames() throws Exception {
+		Path input = dir.resolve("app.apk");
+		Files.write(input, "apk".getBytes(StandardCharsets.UTF_8));
+		String key = PersistentIndex.computeKey(dir, List.of(input.toFile()), "1.5.3|dev");
+		assertThat(PersistentIndex.computeKey(dir, List.of(input.toFile()), "1.5.3|dev")).isEqualTo(key);
+		assertThat(PersistentIndex.open(dir, key)).isNull();
+
+		PersistentIndex.Builder builder = new PersistentIndex.Builder();
+		int clsA = builder.addClass("a.A", "a.A");
+		int clsB = builder.addClass("b.B$C", "b.B.C");
+		int run = builder.addMethod(clsA, "run", "run()V", "run");
+		int compute = builder.addMethod(clsB, "a", "a(I)I", "compute");
+		int runB = builder.addMethod(clsB, "run", "run()V", "run");
+		builder.addXref(run, compute);
+		builder.addXref(run, runB);
+		builder.addResourceName("AndroidManifest.xml");
+		builder.write(dir, key);
+
+		PersistentIndex index = PersistentIndex.open(dir, key);
+		assertThat(index).isNotNull();
+		assertThat(index.findClassesWithMethod("run", null)).containsExactly("a.A", "b.B$C");
+		assertThat(index.findClassesWithMethod(null, "compute")).containsExactly("b.B$C");
+		assertThat(index.getCallers("a.A", "run", "run()V"))
+				.extracting(caller -> caller.get("signature"))
+				.containsExactly("a(I)I", "run()V");
+		assertThat(index.getResourceNames()).containsExactly("AndroidManifest.xml");
+
+		index.recordMethodRename("b.B$C", "a(I)I", "calc");
+		assertThat(index.findClassesWithMethod(null, "calc")).containsExactly("b.B$C");
+		assertThat(index.findClassesWithMethod(null, "compute")).isEmpty();
+		index.recordMethodRename("b.B$C", "a(I)I", "");
+		assertThat(index.findClassesWithMethod(null, "calc")).isEmpty();
+		assertThat(index.findClassesWithMethod(null, "compute")).containsExactly("b.B$C");
+
+		// 重命名不写入文件，重新打开时由项目数据设置
+		index.recordMethodRename("b.B$C", "a(I)I", "calc");
+		PersistentIndex reopened = PersistentIndex.open(dir, key);
+		assertThat(reopened.findClassesWithMethod(null, "calc")).isEmpty();
+		reopened.setMethodRenames(Map.of("b.B$C->a(I)I", "calc"));
+		assertThat(reopened.findClassesWithMethod(null, "calc")).containsExactly("b.B$C");
+		assertThat(reopened.findClassesWithMethod(null, "compute")).isEmpty();
+
+		// 重建时写入新文件，旧文件（可能仍被映射）不被覆盖
+		builder.write(dir, key);
+		assertThat(PersistentIndex.open(dir, key).findClassesWithMethod("run", null)).containsExactly("a.A", "b.B$C");
+
+		assertThat(PersistentIndex.open(dir, "other-key")).isNull();
+	}
+}
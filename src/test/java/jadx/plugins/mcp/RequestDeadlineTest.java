@@ -0,0 +1,62 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestDeadlineTest {
+
+	@Test
+	public void parseHeader() {
+		assertThat(RequestDeadline.parse(null)).isNull();
+		assertThat(RequestDeadline.parse(" ")).isNull();
+		assertThat(RequestDeadline.parse("60000").remainingMillis()).isBetween(59_000L, 60_000L);
+		assertThatThrownBy(() -> RequestDeadline.parse("soon")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> RequestDeadline.parse("0")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void deadlinePropagatesToWorkerThreads() throws Exception {
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			RequestDeadline expired = new RequestDeadline(1);
+			Thread.sleep(5);
+			Future<Object> future = pool.submit(() -> RequestDeadline.call(expired, () -> "done"));
+			assertThatThrownBy(future::get).hasCauseInstanceOf(RequestDeadline.Exceeded.class);
+
+			RequestDeadline open = new RequestDeadline(60_000);
+			assertThat(pool.submit(() -> RequestDeadline.call(open, RequestDeadline::current)).get()).isSameAs(open);
+			// 任务结束后工作线程上不残留截止时间
+			assertThat(pool.submit(RequestDeadline::current).get()).isNull();
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void cancelledTaskStopsAtNextCheck() throws Exception {
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			RequestDeadline deadline = new RequestDeadline(60_000);
+			Future<Object> future = pool.submit(() -> RequestDeadline.call(deadline, () -> {
+				while (true) {
+					RequestDeadline.checkCurrent();
+				}
+			}));
+			Thread.sleep(20);
+			future.cancel(true);
+			// 循环在下一次检查时退出，线程可以执行后续任务
+			assertThat(pool.submit(() -> "next").get(5, TimeUnit.SECONDS)).isEqualTo("next");
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package jadx.plugins.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmaliIndexTest {
+
+	private static final String SMALI = ".class public La/B;\n"
+			+ ".method public run()V\n    return-void\n.end method\n"
+			+ "\n"
+			+ ".class La/B$C;\n"
+			+ ".method public run()V\n    nop\n    return-void\n.end method\n"
+			+ ".method public only()V\n    return-void\n.end method\n"
+			+ "\n"
+			+ ".class La/B$C$D;\n"
+			+ ".method public deep()V\n    return-void\n.end method\n";
+
+	@Test
+	public void methodLookupStaysInItsClass() {
+		SmaliIndex index = SmaliIndex.build(SMALI);
+		assertThat(index.getMethodSmali("a.B", "run()V")).doesNotContain("nop");
+		assertThat(index.getMethodSmali("a.B$C", "run()V")).contains("nop");
+		// 顶层类没有 only()V，不能取到内部类的同名方法
+		assertThat(index.getMethodSmali("a.B", "only()V")).isNull();
+	}
+
+	@Test
+	public void innerClassSmaliIncludesNestedClasses() {
+		SmaliIndex index = SmaliIndex.build(SMALI);
+		assertThat(index.getClassSmali("a.B")).isEqualTo(SMALI);
+		String inner = index.getClassSmali("a.B$C");
+		assertThat(inner).startsWith(".class La/B$C;").contains("deep()V").doesNotContain(".class public La/B;");
+	}
+}
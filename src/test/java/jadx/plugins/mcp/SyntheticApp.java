@@ -0,0 +1,105 @@
+package jadx.plugins.mcp;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.JavaClass;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 合成输入 - 生成指定数量的 smali 类（每类若干字段和互相调用的方法），通过 jadx-smali-input 加载，
+ * 类名、方法名按序号确定，每次生成的结果相同，便于基准测试之间对比
+ */
+public final class SyntheticApp implements AutoCloseable {
+
+	private static final int CLASSES_PER_PACKAGE = 100;
+
+	private final Path dir;
+	private final JadxDecompiler jadx;
+
+	private SyntheticApp(Path dir, JadxDecompiler jadx) {
+		this.dir = dir;
+		this.jadx = jadx;
+	}
+
+	public static SyntheticApp load(int classCount, int methodsPerClass, int fieldsPerClass) throws IOException {
+		Path dir = Files.createTempDirectory("jadx-mcp-synthetic-");
+		JadxArgs args = new JadxArgs();
+		args.setSkipResources(true);
+		for (int i = 0; i < classCount; i++) {
+			Path file = dir.resolve("C" + i + ".smali");
+			Files.write(file, smali(i, classCount, methodsPerClass, fieldsPerClass).getBytes(StandardCharsets.UTF_8));
+			args.getInputFiles().add(file.toFile());
+		}
+		JadxDecompiler jadx = new JadxDecompiler(args);
+		jadx.load();
+		return new SyntheticApp(dir, jadx);
+	}
+
+	public static String rawName(int classIndex) {
+		return "synth.p" + classIndex / CLASSES_PER_PACKAGE + ".C" + classIndex;
+	}
+
+	public JadxDecompiler getDecompiler() {
+		return jadx;
+	}
+
+	public List<JavaClass> getClasses() {
+		return jadx.getClassesWithInners();
+	}
+
+	/**
+	 * 静态方法 mJ 写入字段 f(J % 字段数) 并调用下一个类的 m(J+1)，形成跨类引用
+	 */
+	static String smali(int index, int classCount, int methodsPerClass, int fieldsPerClass) {
+		String type = descriptor(index);
+		String next = descriptor((index + 1) % classCount);
+		StringBuilder sb = new StringBuilder(256 + methodsPerClass * 256);
+		sb.append(".class public ").append(type).append('\n');
+		sb.append(".super Ljava/lang/Object;\n\n");
+		for (int f = 0; f < fieldsPerClass; f++) {
+			sb.append(".field private static f").append(f).append(":I\n");
+		}
+		sb.append('\n');
+		for (int m = 0; m < methodsPerClass; m++) {
+			sb.append(".method public static m").append(m).append("(I)I\n");
+			sb.append("    .registers 2\n");
+			sb.append("    add-int/lit8 v0, p0, ").append(m + 1).append('\n');
+			if (fieldsPerClass > 0) {
+				sb.append("    sput v0, ").append(type).append("->f").append(m % fieldsPerClass).append(":I\n");
+			}
+			if (m + 1 < methodsPerClass) {
+				sb.append("    invoke-static {v0}, ").append(next).append("->m").append(m + 1).append("(I)I\n");
+				sb.append("    move-result v0\n");
+			}
+			sb.append("    return v0\n");
+			sb.append(".end method\n\n");
+		}
+		return sb.toString();
+	}
+
+	private static String descriptor(int index) {
+		return 'L' + rawName(index).replace('.', '/') + ';';
+	}
+
+	@Override
+	public void close() throws IOException {
+		jadx.close();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> {
+				try {
+					Files.delete(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+}